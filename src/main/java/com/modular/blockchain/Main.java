@@ -1,73 +1,260 @@
 package com.modular.blockchain;
 
+import com.modular.blockchain.api.ApiServerConfig;
 import com.modular.blockchain.api.RestApiServer;
 import com.modular.blockchain.blockchain.Blockchain;
 import com.modular.blockchain.blockchain.Miner;
+import com.modular.blockchain.consensus.BftConsensusEngine;
+import com.modular.blockchain.consensus.BftTransport;
 import com.modular.blockchain.consensus.ConsensusEngine;
+import com.modular.blockchain.consensus.LocalBftTransport;
+import com.modular.blockchain.consensus.ProofOfAuthorityEngine;
 import com.modular.blockchain.consensus.SimpleConsensusEngine;
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.ledger.Amounts;
+import com.modular.blockchain.networking.NetworkService;
+import com.modular.blockchain.networking.Peer;
 import com.modular.blockchain.transaction.TransactionPool;
+import com.modular.blockchain.wallet.SimpleWallet;
 import com.modular.blockchain.wallet.WalletStore;
 import com.modular.blockchain.util.Logger;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main entry point for the Modular Blockchain application.
  * Initializes and starts all core blockchain components including miners, consensus engine,
  * transaction pool, and REST API server.
+ * <p>
+ * Settings are given on the command line as {@code name=value}, for example
+ * {@code apiPort=8081 p2pPort=9091 peers=127.0.0.1:9090 faucetKey=faucet.key} to start a second
+ * node on the same host that joins the first one.
  */
 public class Main {
     public static void main(String[] args) throws IOException {
         Logger.info("Modular Blockchain starting up");
 
         // Configuration parameters
-        int difficulty = 4;           // Mining difficulty level - higher means more computation required
-        int port = 8080;             // Port number for REST API server
+        boolean proofOfAuthority = false; // Let the miners take turns signing blocks instead of mining them
+        long slotMillis = ProofOfAuthorityEngine.DEFAULT_SLOT_MILLIS; // Time each authority has to produce its block
+        boolean bft = false; // Let the miners vote on every block instead, for immediate finality
+        int difficulty = proofOfAuthority || bft ? 0 : 4; // Mining difficulty level - higher means more computation required
+        Map<String, String> settings = parseSettings(args);
+        int port = Integer.parseInt(settings.getOrDefault("apiPort", "8080"));    // Port number for REST API server
+        int p2pPort = Integer.parseInt(settings.getOrDefault("p2pPort", "9090")); // Port number for peer-to-peer connections
+        String nodeId = settings.getOrDefault("nodeId", "node-" + p2pPort);       // Identifier announced to peers
+        List<Peer> peers = parsePeers(settings.getOrDefault("peers", ""));         // Nodes to connect to, as host:port
+        String faucetKey = settings.get("faucetKey"); // File holding the faucet's key pair, shared by all nodes of a network
+        int maxInFlightRequests = 256; // Concurrent API requests before the server answers 503
+        int requestBacklog = 128;     // Pending TCP connections the API server queues
         int miningThreshold = 5;      // Number of transactions required before mining starts
         int miningInterval = 2;       // Time between mining attempts in minutes
         String[] minerIds = {"miner-01", "miner-02", "miner-03"}; // Unique identifiers for miners
+        long faucetFunds = 1_000_000 * Amounts.UNITS_PER_COIN; // Genesis funds of the wallet that funds registered wallets
         ArrayList<Miner> miners = new ArrayList<>();
 
         // Initialize core system components
-        // ConsensusEngine handles agreement between nodes on blockchain state
-        ConsensusEngine consensusEngine = new SimpleConsensusEngine();
-
         // WalletStore manages cryptographic wallets for transaction signing
         WalletStore walletStore = new WalletStore();
 
+        // The faucet funds newly registered wallets from a genesis allocation. Nodes only exchange
+        // blocks if their genesis blocks match, so nodes of a network load the faucet's key from
+        // the same file; a node with peers but no key file starts without a faucet
+        SimpleWallet faucet = faucetKey != null ? loadFaucet(Path.of(faucetKey))
+                : peers.isEmpty() ? new SimpleWallet("faucet")
+                : null;
+        Map<String, Long> allocations = faucet != null ? Map.of(faucet.getAddress(), faucetFunds) : Map.of();
+
         // Initialize blockchain with specified mining difficulty
-        Blockchain blockchain = new Blockchain(difficulty);
+        Blockchain blockchain = new Blockchain(difficulty, allocations);
         Logger.info("Blockchain initialized with difficulty: " + difficulty);
 
         // Transaction pool holds pending transactions waiting to be mined
         TransactionPool pool = new TransactionPool();
         Logger.info("Transaction pool created");
 
-        // Initialize miners that will compete to create new blocks
-        for(String minerId : minerIds){
+        // ConsensusEngine handles agreement between nodes on blockchain state
+        List<BftConsensusEngine> replicas = bft ? createReplicas(minerIds, blockchain, pool) : List.of();
+        ConsensusEngine consensusEngine = bft ? replicas.getFirst()
+                : proofOfAuthority ? createAuthorityEngine(minerIds, slotMillis)
+                : new SimpleConsensusEngine();
+
+        // Initialize miners that will compete to create new blocks; BFT replicas propose blocks themselves
+        for(String minerId : bft ? new String[0] : minerIds){
             Miner miner = new Miner(minerId, miningThreshold, pool, blockchain, consensusEngine);
             miners.add(miner);
             Logger.info("Miner created: " + minerId);
         }
 
+        // Connect to other nodes so blocks and transactions propagate between them
+        NetworkService network = new NetworkService(nodeId, p2pPort, blockchain, pool, consensusEngine);
+        peers.forEach(network::addPeer);
+        network.start();
+        Logger.info("Peer-to-peer network started on port: " + p2pPort + " with " + peers.size() + " configured peers");
+
         // Initialize and start REST API server for external interaction
-        RestApiServer server = new RestApiServer(blockchain, pool, port, walletStore);
+        ApiServerConfig apiConfig = new ApiServerConfig();
+        apiConfig.setMaxInFlight(maxInFlightRequests);
+        apiConfig.setBacklog(requestBacklog);
+        RestApiServer server = new RestApiServer(blockchain, pool, port, walletStore, apiConfig);
+        server.setFaucet(faucet);
+        server.setNetworkService(network);
         Logger.info("REST API server initialized on port: " + port);
         server.start();
         Logger.info("REST API server started");
 
+        // Start consensus among the BFT replicas
+        replicas.forEach(BftConsensusEngine::start);
+
         // Start mining operations on all miners
         miners.forEach(miner -> {
             Logger.info("Starting mining for miner: " + miner.getMinerId());
-            miner.startMining(miningInterval);
+            if (consensusEngine instanceof ProofOfAuthorityEngine authority) {
+                // Wake at the start of every slot so each authority gets the whole of its turn
+                miner.startMining(authority.millisUntilNextSlot(), slotMillis, TimeUnit.MILLISECONDS);
+            } else {
+                miner.startMining(miningInterval);
+            }
         });
 
         // Register shutdown hook for graceful system termination
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             server.stop();
+            network.stop();
             miners.forEach(Miner::stopMining);
+            replicas.forEach(BftConsensusEngine::stop);
             Logger.info("Server and miners stopped.");
         }));
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the command line settings, each given as {@code name=value}: {@code apiPort},
+     * {@code p2pPort}, {@code nodeId}, {@code peers} and {@code faucetKey}.
+     *
+     * @param args The command line arguments
+     * @return The settings by name
+     * @throws IllegalArgumentException If an argument is not a known setting
+     */
+    private static Map<String, String> parseSettings(String[] args) {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            String name = parts[0].trim();
+            switch (name) {
+                case "apiPort", "p2pPort", "nodeId", "peers", "faucetKey" -> settings.put(name, parts[1].trim());
+                default -> throw new IllegalArgumentException("Unknown setting: " + name);
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * Parses a comma separated list of peer addresses. A peer's node id is only learnt in the
+     * handshake, so each is named after its address until then.
+     *
+     * @param list Addresses as {@code host:port}, separated by commas; may be empty
+     * @return The peers, in the order given
+     * @throws IllegalArgumentException If an address has no port
+     */
+    private static List<Peer> parsePeers(String list) {
+        List<Peer> peers = new ArrayList<>();
+        for (String address : list.split(",")) {
+            address = address.trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            int colon = address.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Expected host:port, got " + address);
+            }
+            peers.add(new Peer(address, address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+        }
+        return peers;
+    }
+
+    /**
+     * Loads the faucet's key pair from a file, creating the file with a new key pair if it does not
+     * exist yet. The file holds the Base64 encoded public and private keys on separate lines; copying
+     * it to every node gives them the same genesis block.
+     *
+     * @param file The key file
+     * @return The faucet wallet
+     * @throws IOException If the file cannot be read or written
+     */
+    private static SimpleWallet loadFaucet(Path file) throws IOException {
+        if (Files.exists(file)) {
+            List<String> lines = Files.readAllLines(file);
+            if (lines.size() < 2) {
+                throw new IOException("Faucet key file " + file + " needs a public and a private key line");
+            }
+            KeyPair keyPair = new KeyPair(CryptoUtils.decodePublicKey(lines.get(0).trim()),
+                    CryptoUtils.decodePrivateKey(lines.get(1).trim()));
+            Logger.info("Faucet key loaded from " + file);
+            return new SimpleWallet("faucet", keyPair);
+        }
+        SimpleWallet faucet = new SimpleWallet("faucet");
+        Files.write(file, List.of(faucet.getKeys().getPublicKeyBase64(), faucet.getKeys().getPrivateKeyBase64()));
+        Logger.info("Faucet key created in " + file);
+        return faucet;
+    }
+
+    /**
+     * Creates a proof-of-authority engine whose authorities are the configured miners, each with a
+     * freshly generated key pair. A network of several nodes would instead distribute the public
+     * keys of all authorities and give each node the private keys of its own.
+     *
+     * @param minerIds The authorities, in the order they take turns
+     * @param slotMillis Length of a slot in milliseconds
+     * @return The engine, able to sign for every miner of this node
+     */
+    private static ProofOfAuthorityEngine createAuthorityEngine(String[] minerIds, long slotMillis) {
+        Map<String, KeyPair> keyPairs = new LinkedHashMap<>();
+        for (String minerId : minerIds) {
+            keyPairs.put(minerId, CryptoUtils.generateKeyPair());
+        }
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        keyPairs.forEach((minerId, keyPair) -> publicKeys.put(minerId, keyPair.getPublic()));
+        ProofOfAuthorityEngine engine = new ProofOfAuthorityEngine(List.of(minerIds), publicKeys, slotMillis);
+        keyPairs.forEach((minerId, keyPair) -> engine.addSigningKey(minerId, keyPair.getPrivate()));
+        Logger.info("Proof-of-authority enabled for " + minerIds.length + " authorities");
+        return engine;
+    }
+
+    /**
+     * Creates a BFT replica for every configured miner, sharing this node's chain and pool and
+     * exchanging messages in-process. A network of several nodes would instead run one replica
+     * per node, with the public keys of all of them, over a transport between the nodes.
+     *
+     * @param minerIds The replicas, in the order they lead views
+     * @param blockchain Chain the replicas commit to
+     * @param pool Pool the replicas propose from
+     * @return The replicas, not yet started
+     */
+    private static List<BftConsensusEngine> createReplicas(String[] minerIds, Blockchain blockchain, TransactionPool pool) {
+        Map<String, KeyPair> keyPairs = new LinkedHashMap<>();
+        for (String minerId : minerIds) {
+            keyPairs.put(minerId, CryptoUtils.generateKeyPair());
+        }
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        keyPairs.forEach((minerId, keyPair) -> publicKeys.put(minerId, keyPair.getPublic()));
+        BftTransport transport = new LocalBftTransport();
+        List<BftConsensusEngine> replicas = new ArrayList<>();
+        keyPairs.forEach((minerId, keyPair) -> replicas.add(new BftConsensusEngine(minerId, List.of(minerIds), publicKeys,
+                keyPair.getPrivate(), transport, blockchain, pool)));
+        Logger.info("BFT consensus enabled for " + minerIds.length + " replicas");
+        return replicas;
+    }
+}
@@ -0,0 +1,51 @@
+package com.modular.blockchain.api;
+
+import com.modular.blockchain.util.Logger;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * HTTP filter that caps the number of requests being handled at once.
+ * When the limit is reached, new requests are rejected with 503 Service Unavailable
+ * and a Retry-After header instead of queueing, which keeps latency bounded under overload.
+ * A single instance is shared by all contexts so the limit applies server-wide.
+ */
+class AdmissionFilter extends Filter {
+    private final Semaphore permits;
+    private final String retryAfterSeconds;
+
+    /**
+     * Creates a new admission filter.
+     *
+     * @param maxInFlight Maximum number of concurrently handled requests
+     * @param retryAfterSeconds Value of the Retry-After header on rejection
+     */
+    AdmissionFilter(int maxInFlight, int retryAfterSeconds) {
+        this.permits = new Semaphore(maxInFlight);
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (!permits.tryAcquire()) {
+            Logger.error("Rejecting " + exchange.getRequestURI().getPath() + ": too many requests in flight");
+            exchange.getResponseHeaders().set("Retry-After", retryAfterSeconds);
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Limits the number of requests handled concurrently";
+    }
+}
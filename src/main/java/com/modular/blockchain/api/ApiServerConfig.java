@@ -0,0 +1,336 @@
+package com.modular.blockchain.api;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tuning parameters for the {@link RestApiServer} HTTP layer.
+ * Defaults run every request on its own virtual thread, so a slow handler never blocks
+ * the dispatcher, while the in-flight limit keeps latency bounded under overload.
+ */
+public class ApiServerConfig {
+    /** Default maximum number of requests handled concurrently before answering 503 */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    /** Default TCP accept backlog */
+    public static final int DEFAULT_BACKLOG = 128;
+    /** Default Retry-After value sent with 503 responses, in seconds */
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+    /** Default number of events buffered for /events subscribers that fall behind */
+    public static final int DEFAULT_EVENT_BUFFER_SIZE = 1024;
+    /** Default maximum number of concurrently open /events streams */
+    public static final int DEFAULT_MAX_EVENT_SUBSCRIBERS = 64;
+    /** Default number of transactions that may wait for asynchronous acceptance */
+    public static final int DEFAULT_ACCEPT_QUEUE_CAPACITY = 10_000;
+    /** Default number of transaction statuses retained for /tx/{id}/status */
+    public static final int DEFAULT_STATUS_CAPACITY = 100_000;
+    /** Default sustained request rate per client on ordinary routes, per second */
+    public static final double DEFAULT_RATE_LIMIT = 100;
+    /** Default burst per client on ordinary routes */
+    public static final int DEFAULT_RATE_BURST = 200;
+    /** Default sustained request rate per client on expensive routes, per second */
+    public static final double DEFAULT_EXPENSIVE_RATE_LIMIT = 5;
+    /** Default burst per client on expensive routes */
+    public static final int DEFAULT_EXPENSIVE_RATE_BURST = 10;
+    /** Default time an idle keep-alive connection is kept open, in seconds */
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+    /** Default number of idle keep-alive connections kept open */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 1024;
+    /** Default budget of the compressed block range cache, in bytes */
+    public static final long DEFAULT_COMPRESSED_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private ExecutorService executor;
+    private int backlog = DEFAULT_BACKLOG;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+    private int eventBufferSize = DEFAULT_EVENT_BUFFER_SIZE;
+    private int maxEventSubscribers = DEFAULT_MAX_EVENT_SUBSCRIBERS;
+    private int acceptQueueCapacity = DEFAULT_ACCEPT_QUEUE_CAPACITY;
+    private int acceptWorkers = Runtime.getRuntime().availableProcessors();
+    private int statusCapacity = DEFAULT_STATUS_CAPACITY;
+    private double rateLimit = DEFAULT_RATE_LIMIT;
+    private int rateBurst = DEFAULT_RATE_BURST;
+    private double expensiveRateLimit = DEFAULT_EXPENSIVE_RATE_LIMIT;
+    private int expensiveRateBurst = DEFAULT_EXPENSIVE_RATE_BURST;
+    private int keepAliveSeconds = DEFAULT_KEEP_ALIVE_SECONDS;
+    private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+    private long compressedCacheBytes = DEFAULT_COMPRESSED_CACHE_BYTES;
+
+    /**
+     * Returns the executor that runs request handlers.
+     * When none has been set, a virtual-thread-per-task executor is created on first use.
+     *
+     * @return The handler executor
+     */
+    public ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return executor;
+    }
+
+    /**
+     * Sets the executor that runs request handlers, replacing the virtual-thread default.
+     *
+     * @param executor The handler executor
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return The TCP accept backlog passed to the HTTP server
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Sets the TCP accept backlog; 0 uses the system default.
+     *
+     * @param backlog Maximum number of queued incoming connections
+     */
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * @return The maximum number of requests handled concurrently
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of requests handled concurrently.
+     * Requests beyond the limit are answered immediately with 503 Service Unavailable.
+     *
+     * @param maxInFlight The in-flight limit, must be positive
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return The Retry-After value sent with 503 responses, in seconds
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Sets the Retry-After value sent with 503 responses.
+     *
+     * @param retryAfterSeconds Seconds clients should wait before retrying
+     */
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return The number of events buffered for /events subscribers
+     */
+    public int getEventBufferSize() {
+        return eventBufferSize;
+    }
+
+    /**
+     * Sets the number of events buffered for /events subscribers.
+     * A subscriber that falls further behind than this is disconnected.
+     *
+     * @param eventBufferSize The ring buffer capacity, must be positive
+     */
+    public void setEventBufferSize(int eventBufferSize) {
+        if (eventBufferSize <= 0) {
+            throw new IllegalArgumentException("eventBufferSize must be positive: " + eventBufferSize);
+        }
+        this.eventBufferSize = eventBufferSize;
+    }
+
+    /**
+     * @return The maximum number of concurrently open /events streams
+     */
+    public int getMaxEventSubscribers() {
+        return maxEventSubscribers;
+    }
+
+    /**
+     * Sets the maximum number of concurrently open /events streams.
+     * Streams are long-lived and do not count towards the in-flight limit.
+     *
+     * @param maxEventSubscribers The subscriber limit
+     */
+    public void setMaxEventSubscribers(int maxEventSubscribers) {
+        this.maxEventSubscribers = maxEventSubscribers;
+    }
+
+    /**
+     * @return The number of transactions that may wait for asynchronous acceptance
+     */
+    public int getAcceptQueueCapacity() {
+        return acceptQueueCapacity;
+    }
+
+    /**
+     * Sets the number of transactions that may wait for asynchronous acceptance.
+     * Asynchronous submissions beyond it are answered with 503 Service Unavailable.
+     *
+     * @param acceptQueueCapacity The queue capacity, must be positive
+     */
+    public void setAcceptQueueCapacity(int acceptQueueCapacity) {
+        if (acceptQueueCapacity <= 0) {
+            throw new IllegalArgumentException("acceptQueueCapacity must be positive: " + acceptQueueCapacity);
+        }
+        this.acceptQueueCapacity = acceptQueueCapacity;
+    }
+
+    /**
+     * @return The number of threads that sign and pool asynchronously submitted transactions
+     */
+    public int getAcceptWorkers() {
+        return acceptWorkers;
+    }
+
+    /**
+     * Sets the number of threads that sign and pool asynchronously submitted transactions.
+     * Defaults to the number of available processors.
+     *
+     * @param acceptWorkers The worker count, must be positive
+     */
+    public void setAcceptWorkers(int acceptWorkers) {
+        if (acceptWorkers <= 0) {
+            throw new IllegalArgumentException("acceptWorkers must be positive: " + acceptWorkers);
+        }
+        this.acceptWorkers = acceptWorkers;
+    }
+
+    /**
+     * @return The number of transaction statuses retained for /tx/{id}/status
+     */
+    public int getStatusCapacity() {
+        return statusCapacity;
+    }
+
+    /**
+     * Sets the number of transaction statuses retained for /tx/{id}/status.
+     * The oldest statuses are evicted first.
+     *
+     * @param statusCapacity The capacity, must be positive
+     */
+    public void setStatusCapacity(int statusCapacity) {
+        if (statusCapacity <= 0) {
+            throw new IllegalArgumentException("statusCapacity must be positive: " + statusCapacity);
+        }
+        this.statusCapacity = statusCapacity;
+    }
+
+    /**
+     * @return The sustained request rate per client on ordinary routes, per second; 0 if unlimited
+     */
+    public double getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @return The burst per client on ordinary routes
+     */
+    public int getRateBurst() {
+        return rateBurst;
+    }
+
+    /**
+     * Sets the per-client token bucket of ordinary routes.
+     * Clients are identified by X-API-Key, or by IP address without one.
+     *
+     * @param ratePerSecond Sustained requests per second, or 0 to disable the limit
+     * @param burst Requests allowed at once after an idle period, must be positive
+     */
+    public void setRateLimit(double ratePerSecond, int burst) {
+        if (ratePerSecond < 0 || burst <= 0) {
+            throw new IllegalArgumentException("invalid rate limit: " + ratePerSecond + "/s, burst " + burst);
+        }
+        this.rateLimit = ratePerSecond;
+        this.rateBurst = burst;
+    }
+
+    /**
+     * @return The sustained request rate per client on expensive routes, per second; 0 if unlimited
+     */
+    public double getExpensiveRateLimit() {
+        return expensiveRateLimit;
+    }
+
+    /**
+     * @return The burst per client on expensive routes
+     */
+    public int getExpensiveRateBurst() {
+        return expensiveRateBurst;
+    }
+
+    /**
+     * Sets the per-client token bucket of expensive routes, such as transaction submission
+     * and wallet registration. This budget is separate from that of ordinary routes.
+     *
+     * @param ratePerSecond Sustained requests per second, or 0 to disable the limit
+     * @param burst Requests allowed at once after an idle period, must be positive
+     */
+    public void setExpensiveRateLimit(double ratePerSecond, int burst) {
+        if (ratePerSecond < 0 || burst <= 0) {
+            throw new IllegalArgumentException("invalid rate limit: " + ratePerSecond + "/s, burst " + burst);
+        }
+        this.expensiveRateLimit = ratePerSecond;
+        this.expensiveRateBurst = burst;
+    }
+
+    /**
+     * @return The time an idle keep-alive connection is kept open, in seconds
+     */
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    /**
+     * Sets the time an idle keep-alive connection is kept open.
+     * Like all JDK HTTP server settings it takes effect for the first server created in the JVM.
+     *
+     * @param keepAliveSeconds Idle timeout in seconds
+     */
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    /**
+     * @return The number of idle keep-alive connections kept open
+     */
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    /**
+     * Sets the number of idle keep-alive connections kept open for reuse.
+     * Like all JDK HTTP server settings it takes effect for the first server created in the JVM.
+     *
+     * @param maxIdleConnections The idle connection limit
+     */
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    /**
+     * @return The budget of the compressed block range cache, in bytes
+     */
+    public long getCompressedCacheBytes() {
+        return compressedCacheBytes;
+    }
+
+    /**
+     * Sets the budget of the cache of compressed /chain and /headers ranges.
+     *
+     * @param compressedCacheBytes Maximum total size of cached bodies in bytes
+     */
+    public void setCompressedCacheBytes(long compressedCacheBytes) {
+        this.compressedCacheBytes = compressedCacheBytes;
+    }
+}
@@ -0,0 +1,69 @@
+package com.modular.blockchain.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of compressed /chain and /headers responses for fixed block ranges.
+ * A range below the tip never changes, so its compressed bytes can be served to every client that
+ * pages through the chain. Keys include the hash of the last block of the range, so a rollback that
+ * replaces those blocks produces new keys and the stale entries simply age out. The cache is bounded
+ * by the total size of the retained bodies.
+ */
+class CompressedRangeCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxBytes Maximum total size of the cached bodies
+     */
+    CompressedRangeCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Builds the cache key of a range.
+     *
+     * @param headersOnly Whether the response holds headers only
+     * @param encoding The content coding
+     * @param from First block height
+     * @param to Last block height, inclusive
+     * @param lastHash Hash of the block at height to
+     * @return The key
+     */
+    static String key(boolean headersOnly, String encoding, int from, int to, Object lastHash) {
+        return (headersOnly ? "h:" : "b:") + encoding + ":" + from + "-" + to + ":" + lastHash;
+    }
+
+    /**
+     * @param key The range key
+     * @return The cached compressed body, or null
+     */
+    synchronized byte[] get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds a compressed body, evicting the least recently used entries to stay within the budget.
+     * Bodies larger than a quarter of the budget are not retained.
+     *
+     * @param key The range key
+     * @param body The compressed body
+     */
+    synchronized void put(String key, byte[] body) {
+        if (body.length > maxBytes / 4) {
+            return;
+        }
+        byte[] previous = entries.put(key, body);
+        totalBytes += body.length - (previous == null ? 0 : previous.length);
+        Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().getValue().length;
+            it.remove();
+        }
+    }
+}
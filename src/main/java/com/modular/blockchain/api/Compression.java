@@ -0,0 +1,211 @@
+package com.modular.blockchain.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-Encoding negotiation and compressed response streams.
+ * Responses are compressed with gzip, or deflate when that is all the client accepts, once they
+ * reach {@link #MIN_SIZE} bytes; smaller bodies are sent as they are, since the framing overhead
+ * would outweigh the saving. Compressed representations get their own entity tag so conditional
+ * requests never mix encodings.
+ */
+final class Compression {
+    /** Bodies shorter than this are never compressed */
+    static final int MIN_SIZE = 1024;
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private Compression() {
+    }
+
+    /**
+     * Picks the content coding for a response from the request's Accept-Encoding header.
+     * gzip is preferred over deflate; codings with q=0 are treated as refused.
+     *
+     * @param exchange The request
+     * @return "gzip", "deflate", or null to send the identity encoding
+     */
+    static String negotiate(HttpExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (accept == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String part : accept.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase();
+            if (params.length > 1 && params[1].trim().matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (coding.equals(GZIP) || coding.equals("*")) {
+                return GZIP;
+            }
+            deflate |= coding.equals(DEFLATE);
+        }
+        return deflate ? DEFLATE : null;
+    }
+
+    /**
+     * Derives the entity tag of an encoded representation, e.g. "c5-ab" becomes "c5-ab-gzip".
+     *
+     * @param etag The quoted entity tag of the identity representation
+     * @param encoding The content coding, or null
+     * @return The quoted entity tag of the encoded representation
+     */
+    static String tag(String etag, String encoding) {
+        if (encoding == null) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * Compresses a complete body.
+     *
+     * @param body The identity-encoded body
+     * @param encoding "gzip" or "deflate"
+     * @return The compressed body
+     * @throws IOException If compression fails
+     */
+    static byte[] compress(byte[] body, String encoding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream out = wrap(bytes, encoding)) {
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Wraps a stream in a compressing stream; closing the wrapper finishes and closes the target.
+     *
+     * @param out The target stream
+     * @param encoding "gzip" or "deflate"
+     * @return The compressing stream
+     * @throws IOException If the stream header cannot be written
+     */
+    static OutputStream wrap(OutputStream out, String encoding) throws IOException {
+        return GZIP.equals(encoding) ? new GZIPOutputStream(out, 8192) : new DeflaterOutputStream(out);
+    }
+
+    /**
+     * Sets the headers of an encoded response. Vary is always set so shared caches key on
+     * Accept-Encoding even when the identity encoding is chosen.
+     *
+     * @param exchange The exchange to respond to
+     * @param encoding The content coding, or null
+     */
+    static void setHeaders(HttpExchange exchange, String encoding) {
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (encoding != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+    }
+
+    /**
+     * Sends a complete body, compressing it when negotiated and large enough, and closes the exchange.
+     *
+     * @param exchange The exchange to respond to
+     * @param status HTTP status code
+     * @param body The identity-encoded body
+     * @param encoding The negotiated content coding, or null
+     * @throws IOException If sending fails
+     */
+    static void sendBytes(HttpExchange exchange, int status, byte[] body, String encoding) throws IOException {
+        if (encoding != null && body.length >= MIN_SIZE) {
+            body = compress(body, encoding);
+        } else {
+            encoding = null;
+        }
+        setHeaders(exchange, encoding);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    /**
+     * Opens the body of a response whose length is not known in advance. The first
+     * {@link #MIN_SIZE} bytes are buffered: if the body ends within them it is sent uncompressed
+     * with a Content-Length, otherwise the response switches to chunked transfer in the negotiated
+     * encoding. Closing the returned stream completes the response and closes the exchange.
+     *
+     * @param exchange The exchange to respond to
+     * @param status HTTP status code
+     * @return The body stream
+     */
+    static OutputStream open(HttpExchange exchange, int status) {
+        return new ThresholdStream(exchange, status, negotiate(exchange));
+    }
+
+    private static final class ThresholdStream extends OutputStream {
+        private final HttpExchange exchange;
+        private final int status;
+        private final String encoding;
+        private byte[] buffer = new byte[MIN_SIZE];
+        private int count;
+        /** Set once the response headers are sent and the body is streamed */
+        private OutputStream target;
+        private boolean closed;
+
+        ThresholdStream(HttpExchange exchange, int status, String encoding) {
+            this.exchange = exchange;
+            this.status = status;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null && count + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, count, len);
+                count += len;
+                return;
+            }
+            if (target == null) {
+                commitStreaming();
+            }
+            target.write(b, off, len);
+        }
+
+        private void commitStreaming() throws IOException {
+            setHeaders(exchange, encoding);
+            exchange.sendResponseHeaders(status, 0);
+            target = encoding == null ? exchange.getResponseBody() : wrap(exchange.getResponseBody(), encoding);
+            target.write(buffer, 0, count);
+            buffer = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (target == null) {
+                setHeaders(exchange, null);
+                exchange.sendResponseHeaders(status, count == 0 ? -1 : count);
+                exchange.getResponseBody().write(buffer, 0, count);
+                buffer = null;
+            } else {
+                target.close();
+            }
+            exchange.close();
+        }
+    }
+}
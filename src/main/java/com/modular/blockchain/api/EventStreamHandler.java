@@ -0,0 +1,143 @@
+package com.modular.blockchain.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.events.ChainEvent;
+import com.modular.blockchain.events.EventRing;
+import com.modular.blockchain.util.Logger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the /events Server-Sent Events stream of new blocks, rollbacks and accepted transactions.
+ * Every connection reads the shared {@link EventRing} through its own subscription, so a slow client
+ * only delays itself; one that falls a full ring behind receives a final "dropped" event and is
+ * disconnected. Clients reconnecting with Last-Event-ID resume where they left off while the events
+ * are still buffered. Streams are long-lived, so they are capped separately from the in-flight limit.
+ */
+class EventStreamHandler implements HttpHandler {
+    /** Maximum number of events written per flush */
+    private static final int BATCH_SIZE = 64;
+    /** A comment line is sent after this long without events so proxies keep the connection open */
+    private static final long KEEP_ALIVE_SECONDS = 15;
+    private static final byte[] KEEP_ALIVE = ": keep-alive\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final EventRing ring;
+    private final int maxSubscribers;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * Creates a new event stream handler.
+     *
+     * @param ring The ring buffer the chain and the pool publish into
+     * @param maxSubscribers Maximum number of concurrently open streams
+     */
+    EventStreamHandler(EventRing ring, int maxSubscribers) {
+        this.ring = ring;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    /**
+     * @return The number of currently open streams
+     */
+    int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            Logger.error("Rejecting /events subscriber: limit of " + maxSubscribers + " reached");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        try {
+            stream(exchange, subscribe(exchange.getRequestHeaders().getFirst("Last-Event-ID")));
+        } catch (IOException e) {
+            Logger.debug("/events subscriber disconnected: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscribers.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private EventRing.Subscription subscribe(String lastEventId) {
+        if (lastEventId != null) {
+            try {
+                return ring.resume(Long.parseLong(lastEventId.trim()));
+            } catch (NumberFormatException e) {
+                Logger.debug("Ignoring malformed Last-Event-ID: " + lastEventId);
+            }
+        }
+        return ring.subscribe();
+    }
+
+    private void stream(HttpExchange exchange, EventRing.Subscription subscription)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = new BufferedOutputStream(exchange.getResponseBody());
+        // Tell clients how long to wait before reconnecting, then flush so the stream opens immediately
+        out.write("retry: 3000\n\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        while (true) {
+            List<ChainEvent> events = subscription.poll(BATCH_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            if (subscription.isDropped()) {
+                Logger.info("Dropping slow /events subscriber");
+                out.write("event: dropped\ndata: {}\n\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return;
+            }
+            if (events.isEmpty()) {
+                out.write(KEEP_ALIVE);
+            }
+            for (ChainEvent event : events) {
+                writeEvent(out, event);
+            }
+            out.flush();
+        }
+    }
+
+    private static void writeEvent(OutputStream out, ChainEvent event) throws IOException {
+        String head = "id: " + event.getSequence() + "\nevent: " + eventName(event.getType()) + "\ndata: ";
+        out.write(head.getBytes(StandardCharsets.US_ASCII));
+        // The generator escapes control characters, so the data never spans more than one line
+        try (JsonGenerator gen = JsonSupport.FACTORY.createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            Block block = event.getBlock();
+            if (block != null) {
+                JsonSupport.writeHeader(gen, block);
+            } else {
+                JsonSupport.writeTransaction(gen, event.getTransaction());
+            }
+        }
+        out.write('\n');
+        out.write('\n');
+    }
+
+    private static String eventName(ChainEvent.Type type) {
+        return switch (type) {
+            case BLOCK -> "block";
+            case BLOCK_REMOVED -> "block-removed";
+            case TRANSACTION -> "transaction";
+        };
+    }
+}
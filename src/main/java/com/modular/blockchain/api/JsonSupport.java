@@ -0,0 +1,227 @@
+package com.modular.blockchain.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.BlockHeader;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Jackson streaming helpers shared by the API handlers.
+ * Responses are produced with a {@link JsonGenerator} writing straight to the exchange stream,
+ * request bodies are read with a {@link JsonParser}, and serialized blocks are cached on the
+ * {@link Block} so repeat reads of the chain are a plain byte copy.
+ */
+final class JsonSupport {
+    /** Thread-safe factory shared by all parsers and generators */
+    static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Writes the body of a JSON response.
+     */
+    @FunctionalInterface
+    interface JsonBody {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    private JsonSupport() {
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange. Small documents are sent with a
+     * Content-Length; larger ones are streamed with chunked transfer encoding and compressed
+     * when the client accepts it.
+     *
+     * @param exchange The exchange to respond to
+     * @param status HTTP status code
+     * @param body Writes the JSON document
+     * @throws IOException If writing the response fails
+     */
+    static void send(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        try (JsonGenerator gen = FACTORY.createGenerator(Compression.open(exchange, status))) {
+            body.write(gen);
+        }
+    }
+
+    /**
+     * Sends a {"status": message} response and closes the exchange.
+     *
+     * @param exchange The exchange to respond to
+     * @param status HTTP status code
+     * @param message Status message
+     * @throws IOException If writing the response fails
+     */
+    static void sendStatus(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("status", message);
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * Serializes a JSON document into a byte array, for bodies that are also persisted or cached.
+     *
+     * @param body Writes the JSON document
+     * @return The UTF-8 encoded JSON
+     * @throws IOException If serialization fails
+     */
+    static byte[] toBytes(JsonBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonGenerator gen = FACTORY.createGenerator(bytes)) {
+            body.write(gen);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Parses a flat JSON object whose values are scalars into a map of field name to value text.
+     * Nested objects and arrays are rejected.
+     *
+     * @param in The request body
+     * @return Field values as text, null for JSON null
+     * @throws IOException If the body is not a flat JSON object
+     */
+    static Map<String, String> parseFlatObject(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return readFlatObject(parser, parser.nextToken());
+        }
+    }
+
+    /**
+     * Reads a flat JSON object starting at the current token of an open parser.
+     * The parser is left positioned on the object's closing brace.
+     *
+     * @param parser The parser
+     * @param start The current token, which must be the start of an object
+     * @return Field values as text, null for JSON null
+     * @throws IOException If the input is not a flat JSON object
+     */
+    static Map<String, String> readFlatObject(JsonParser parser, JsonToken start) throws IOException {
+        if (start != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        Map<String, String> fields = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == null || value.isStructStart()) {
+                throw new JsonParseException(parser, "Expected a scalar value for field " + name);
+            }
+            fields.put(name, value == JsonToken.VALUE_NULL ? null : parser.getText());
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the serialized JSON of a block that is part of the chain, serializing and caching
+     * it on the block the first time.
+     *
+     * @param block A block that has been added to the chain
+     * @return The JSON bytes of the block
+     * @throws IOException If serialization fails
+     */
+    static byte[] blockBytes(Block block) throws IOException {
+        byte[] cached = block.getSerializedJson();
+        if (cached == null) {
+            cached = toBytes(gen -> writeBlock(gen, block));
+            block.setSerializedJson(cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Writes a full block, including its transactions, as a JSON object.
+     *
+     * @param gen The generator to write to
+     * @param block The block to write
+     * @throws IOException If writing fails
+     */
+    static void writeBlock(JsonGenerator gen, Block block) throws IOException {
+        gen.writeStartObject();
+        writeHeaderFields(gen, block);
+        gen.writeArrayFieldStart("transactions");
+        for (Transaction tx : block.getTransactions()) {
+            writeTransaction(gen, tx);
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes only the header of a block, plus its hash and transaction count, as a JSON object.
+     *
+     * @param gen The generator to write to
+     * @param block The block whose header to write
+     * @throws IOException If writing fails
+     */
+    static void writeHeader(JsonGenerator gen, Block block) throws IOException {
+        gen.writeStartObject();
+        writeHeaderFields(gen, block);
+        gen.writeNumberField("transactionCount", block.getTransactions().size());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes a transaction as a JSON object.
+     *
+     * @param gen The generator to write to
+     * @param tx The transaction to write
+     * @throws IOException If writing fails
+     */
+    static void writeTransaction(JsonGenerator gen, Transaction tx) throws IOException {
+        if (!(tx instanceof SignedTransaction signed)) {
+            gen.writeRawValue(tx.toJson());
+            return;
+        }
+        gen.writeStartObject();
+        gen.writeStringField("id", signed.getId().toString());
+        gen.writeStringField("sender", signed.getSenderPublicKey());
+        gen.writeStringField("receiver", signed.getReceiverPublicKey());
+        gen.writeNumberField("amount", signed.getAmount());
+        gen.writeNumberField("nonce", signed.getNonce());
+        gen.writeStringField("signature", signed.getSignature());
+        gen.writeEndObject();
+    }
+
+    private static void writeHeaderFields(JsonGenerator gen, Block block) throws IOException {
+        BlockHeader header = block.getHeader();
+        gen.writeNumberField("index", block.getIndex());
+        gen.writeNumberField("timestamp", block.getTimestamp());
+        gen.writeStringField("previousHash", String.valueOf(block.getPreviousHash()));
+        gen.writeStringField("merkleRoot", String.valueOf(header.getMerkleRoot()));
+        gen.writeStringField("hash", String.valueOf(block.getHash()));
+        gen.writeNumberField("nonce", block.getNonce());
+        gen.writeStringField("minerId", block.getMinerId());
+        if (block.getSignature() != null) {
+            gen.writeStringField("signature", block.getSignature());
+        }
+    }
+
+    /**
+     * Writes pre-serialized JSON array elements, separated by commas, to a raw stream.
+     * Used to stream cached block bytes without re-encoding them.
+     *
+     * @param out The destination stream
+     * @param element The serialized element
+     * @param first Whether this is the first element of the array
+     * @throws IOException If writing fails
+     */
+    static void writeArrayElement(OutputStream out, byte[] element, boolean first) throws IOException {
+        if (!first) out.write(',');
+        out.write(element);
+    }
+}
@@ -0,0 +1,49 @@
+package com.modular.blockchain.api;
+
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP filter that records the latency and status code of every request to one route.
+ * It runs before the rate limit and admission filters, so rejected requests are counted too.
+ */
+class MetricsFilter extends Filter {
+    private final String route;
+    private final Histogram latency;
+    private final ConcurrentHashMap<Integer, Counter> byStatus = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new metrics filter.
+     *
+     * @param route The context path, used as the route label
+     */
+    MetricsFilter(String route) {
+        this.route = route;
+        this.latency = Metrics.histogram("http_request_duration_seconds", "Time to handle an HTTP request",
+                Metrics.LATENCY_BUCKETS, "route", route);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(exchange);
+        } finally {
+            latency.observeSince(start);
+            // -1 means the handler failed before sending a response
+            byStatus.computeIfAbsent(exchange.getResponseCode(), code -> Metrics.counter("http_requests_total",
+                    "HTTP requests handled, by route and status", "route", route, "status", String.valueOf(code))).inc();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "Records request latency and status per route";
+    }
+}
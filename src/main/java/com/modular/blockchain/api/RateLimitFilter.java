@@ -0,0 +1,108 @@
+package com.modular.blockchain.api;
+
+import com.modular.blockchain.util.Logger;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP filter that applies a token-bucket rate limit per client.
+ * Clients are identified by their X-API-Key header, or by remote IP address when none is sent.
+ * Each bucket is a single atomic timestamp updated with compare-and-set (the GCRA formulation of a
+ * token bucket), so requests never block on a lock. Buckets that have refilled completely carry no
+ * state worth keeping and are swept from the map periodically, which bounds it to recently active
+ * clients. Requests over the limit are answered with 429 Too Many Requests and a Retry-After header.
+ * One instance is shared by all routes of the same lane, so those routes draw on a common budget.
+ */
+class RateLimitFilter extends Filter {
+    /** Header that identifies a client independently of its address */
+    static final String API_KEY_HEADER = "X-API-Key";
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String lane;
+    /** Time one token takes to refill */
+    private final long intervalNanos;
+    /** How far ahead of now a bucket's theoretical arrival time may run, i.e. the burst size */
+    private final long toleranceNanos;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+
+    /**
+     * Creates a new rate limit filter.
+     *
+     * @param lane Name of the lane, used in log messages
+     * @param ratePerSecond Sustained number of requests per second allowed per client
+     * @param burst Number of requests a client may make at once after being idle
+     */
+    RateLimitFilter(String lane, double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.lane = lane;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        this.toleranceNanos = intervalNanos * burst;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        String client = clientKey(exchange);
+        long now = System.nanoTime();
+        long waitNanos = acquire(client, now);
+        if (waitNanos > 0) {
+            Logger.error("Rate limit (" + lane + ") exceeded by " + client + " on " + exchange.getRequestURI().getPath());
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfter));
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+            return;
+        }
+        sweepIfDue(now);
+        chain.doFilter(exchange);
+    }
+
+    /**
+     * Takes one token from the client's bucket.
+     *
+     * @return 0 if the request is allowed, otherwise the time until a token is available
+     */
+    private long acquire(String client, long now) {
+        AtomicLong bucket = buckets.computeIfAbsent(client, key -> new AtomicLong(now));
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long excess = next - now - toleranceNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        // A bucket whose arrival time has passed is full again, exactly like a new one
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() - now < 0);
+    }
+
+    private static String clientKey(HttpExchange exchange) {
+        String apiKey = exchange.getRequestHeaders().getFirst(API_KEY_HEADER);
+        if (apiKey != null && !apiKey.isEmpty()) {
+            return "key:" + apiKey;
+        }
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    @Override
+    public String description() {
+        return "Limits the request rate of each client";
+    }
+}
@@ -0,0 +1,119 @@
+package com.modular.blockchain.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conditional-GET support and a small cache of serialized responses keyed by request.
+ * Each cached body is stored with the ETag of the state it was built from, e.g. the chain tip
+ * or the wallet-store version. A lookup with a different ETag rebuilds the body, so entries are
+ * invalidated as soon as a block is appended or a wallet registered. Clients that send a matching
+ * If-None-Match get 304 Not Modified without any body being produced.
+ */
+class ResponseCache {
+    /** Upper bound on cached responses; the cache is cleared when it is exceeded */
+    private static final int MAX_ENTRIES = 64;
+    /** Bodies larger than this are served but not retained */
+    private static final int MAX_BODY_BYTES = 256 * 1024;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final String etag;
+        final byte[] body;
+        /** Compressed forms of the body, built on first request for each encoding */
+        volatile byte[] gzip;
+        volatile byte[] deflate;
+
+        Entry(String etag, byte[] body) {
+            this.etag = etag;
+            this.body = body;
+        }
+
+        byte[] encoded(String encoding) throws IOException {
+            if (encoding == null || body.length < Compression.MIN_SIZE) {
+                return body;
+            }
+            boolean gz = Compression.GZIP.equals(encoding);
+            byte[] compressed = gz ? gzip : deflate;
+            if (compressed == null) {
+                compressed = Compression.compress(body, encoding);
+                if (gz) {
+                    gzip = compressed;
+                } else {
+                    deflate = compressed;
+                }
+            }
+            return compressed;
+        }
+    }
+
+    /**
+     * Sets the ETag header and answers 304 Not Modified if the client already holds that version.
+     *
+     * @param exchange The exchange to respond to
+     * @param etag The quoted entity tag of the current representation
+     * @return true if a 304 was sent and the exchange closed, false if the caller must send the body
+     * @throws IOException If sending the response fails
+     */
+    static boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null || !matches(ifNoneMatch, etag)) {
+            return false;
+        }
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return true;
+    }
+
+    /**
+     * Sends a JSON response honouring If-None-Match, serving the body from the cache when
+     * it was built for the same ETag and building and caching it otherwise. Compressed forms
+     * are cached alongside the body, so each is produced at most once per state.
+     *
+     * @param exchange The exchange to respond to
+     * @param etag The quoted entity tag of the current state
+     * @param body Writes the JSON document when it is not cached
+     * @throws IOException If sending the response fails
+     */
+    void send(HttpExchange exchange, String etag, JsonSupport.JsonBody body) throws IOException {
+        String encoding = Compression.negotiate(exchange);
+        if (notModified(exchange, Compression.tag(etag, encoding))) {
+            return;
+        }
+        String key = exchange.getRequestURI().toString();
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.etag.equals(etag)) {
+            entry = new Entry(etag, JsonSupport.toBytes(body));
+            if (entry.body.length <= MAX_BODY_BYTES) {
+                if (entries.size() >= MAX_ENTRIES) {
+                    entries.clear();
+                }
+                entries.put(key, entry);
+            }
+        }
+        byte[] encoded = entry.encoded(encoding);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        Compression.setHeaders(exchange, encoded == entry.body ? null : encoding);
+        exchange.sendResponseHeaders(200, encoded.length);
+        exchange.getResponseBody().write(encoded);
+        exchange.close();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
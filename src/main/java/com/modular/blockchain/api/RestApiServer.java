@@ -1,30 +1,94 @@
 package com.modular.blockchain.api;
 
+import com.modular.blockchain.blockchain.Block;
 import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.events.EventRing;
+import com.modular.blockchain.index.AddressDictionary;
+import com.modular.blockchain.index.AddressIndex;
+import com.modular.blockchain.index.TxLocation;
+import com.modular.blockchain.ledger.Amounts;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.networking.NetworkService;
+import com.modular.blockchain.networking.PeerConnection;
+import com.modular.blockchain.transaction.Transaction;
 import com.modular.blockchain.transaction.TransactionPool;
 import com.modular.blockchain.util.Logger;
 import com.modular.blockchain.transaction.SignedTransaction;
 import com.modular.blockchain.wallet.SimpleWallet;
+import com.modular.blockchain.wallet.Wallet;
 import com.modular.blockchain.wallet.WalletStore;
 
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
 import java.io.File;
-import java.io.FileWriter;
 
 /**
  * REST API server that provides HTTP endpoints to interact with the blockchain network.
  * Exposes functionality for managing wallets, submitting transactions, and querying chain state.
  */
 public class RestApiServer {
+    /** Default and maximum page sizes for paginated endpoints */
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    /** Number of blocks fetched from the chain per step while streaming */
+    private static final int STREAM_PAGE_SIZE = 256;
+    /** Size of the write buffer between the serializer and the chunked response stream */
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+    /** Coins the faucet sends to every newly registered wallet so it can start transacting */
+    private static final double WALLET_GRANT = 1000;
+    /** Maximum number of transactions accepted by one /transactions/batch request */
+    private static final int MAX_BATCH_SIZE = 10_000;
+    /** Upper bound on the wait parameter of /tx/{id}/status, in seconds */
+    private static final int MAX_STATUS_WAIT_SECONDS = 30;
+
     private final Blockchain blockchain;
     private final TransactionPool transactionPool;
     private final HttpServer server;
     private final WalletStore walletStore;
+    private final ApiServerConfig config;
+    private final AdmissionFilter admissionFilter;
+    /** Per-client rate limits of ordinary and expensive routes; null when disabled */
+    private final RateLimitFilter rateLimit;
+    private final RateLimitFilter expensiveRateLimit;
+    private final ResponseCache responseCache = new ResponseCache();
+    private final CompressedRangeCache rangeCache;
+    private final EventRing events;
+    private final EventStreamHandler eventStream;
+    private final TransactionStatusTracker statusTracker;
+    /** Signs and pools transactions submitted asynchronously; its queue bounds the backlog */
+    private final ThreadPoolExecutor acceptExecutor;
+    /** Wallet funding newly registered wallets; null when registration grants nothing */
+    private volatile SimpleWallet faucet;
+    /** Node's peer-to-peer service, whose connections /peers lists; null when the node runs alone */
+    private volatile NetworkService networkService;
 
     /**
      * Creates a new REST API server instance
@@ -35,33 +99,140 @@ public class RestApiServer {
      * @throws IOException If the HTTP server cannot bind to the specified port
      */
     public RestApiServer(Blockchain blockchain, TransactionPool transactionPool, int port, WalletStore walletStore) throws IOException {
+        this(blockchain, transactionPool, port, walletStore, new ApiServerConfig());
+    }
+
+    /**
+     * Creates a new REST API server instance with explicit HTTP tuning
+     * @param blockchain The blockchain instance that will store blocks and validate the chain
+     * @param transactionPool The pool for holding pending transactions before mining
+     * @param port The TCP port number that the server will listen on
+     * @param walletStore The store containing all registered wallet instances
+     * @param config Executor, backlog and admission limits for the HTTP server
+     * @throws IOException If the HTTP server cannot bind to the specified port
+     */
+    public RestApiServer(Blockchain blockchain, TransactionPool transactionPool, int port, WalletStore walletStore,
+                         ApiServerConfig config) throws IOException {
         Logger.info("Initializing REST API server on port: " + port);
         this.blockchain = blockchain;
         this.transactionPool = transactionPool;
         this.walletStore = walletStore;
-        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.config = config;
+        this.admissionFilter = new AdmissionFilter(config.getMaxInFlight(), config.getRetryAfterSeconds());
+        this.rateLimit = config.getRateLimit() > 0
+                ? new RateLimitFilter("default", config.getRateLimit(), config.getRateBurst()) : null;
+        this.expensiveRateLimit = config.getExpensiveRateLimit() > 0
+                ? new RateLimitFilter("expensive", config.getExpensiveRateLimit(), config.getExpensiveRateBurst()) : null;
+        this.rangeCache = new CompressedRangeCache(config.getCompressedCacheBytes());
+        applyKeepAliveSettings(config);
+        this.server = HttpServer.create(new InetSocketAddress(port), config.getBacklog());
+        this.server.setExecutor(config.getExecutor());
+        this.events = new EventRing(config.getEventBufferSize());
+        blockchain.addListener(events);
+        transactionPool.addListener(events);
+        this.eventStream = new EventStreamHandler(events, config.getMaxEventSubscribers());
+        this.statusTracker = new TransactionStatusTracker(config.getStatusCapacity());
+        blockchain.addListener(statusTracker);
+        transactionPool.addListener(statusTracker);
+        AtomicInteger workerCount = new AtomicInteger();
+        this.acceptExecutor = new ThreadPoolExecutor(config.getAcceptWorkers(), config.getAcceptWorkers(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getAcceptQueueCapacity()), runnable -> {
+                    Thread thread = new Thread(runnable, "tx-acceptor-" + workerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        registerGauges();
         setupEndpoints();
     }
 
+    /**
+     * Registers the gauges that describe this node's chain and pool.
+     */
+    private void registerGauges() {
+        Metrics.gauge("blockchain_height", "Height of the chain tip", blockchain::getHeight);
+        Metrics.gauge("mempool_size", "Transactions waiting in the pool", transactionPool::size);
+        Metrics.gauge("mempool_oldest_age_seconds", "Time the longest-waiting pooled transaction has waited",
+                () -> transactionPool.getOldestAgeNanos() / 1e9);
+        Metrics.gauge("api_accept_queue_size", "Asynchronously submitted transactions waiting to be pooled",
+                () -> acceptExecutor.getQueue().size());
+        Metrics.gauge("api_event_subscribers", "Open /events streams", eventStream::getSubscriberCount);
+    }
+
+    /**
+     * Passes the keep-alive settings to the JDK HTTP server, which reads them from system properties
+     * when the first server is created. Properties already set on the command line take precedence.
+     * @param config The server configuration
+     */
+    private static void applyKeepAliveSettings(ApiServerConfig config) {
+        if (System.getProperty("sun.net.httpserver.idleInterval") == null) {
+            System.setProperty("sun.net.httpserver.idleInterval", String.valueOf(config.getKeepAliveSeconds()));
+        }
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(config.getMaxIdleConnections()));
+        }
+    }
+
+    /**
+     * Registers a handler for a path with the ordinary rate limit and the server-wide filters applied.
+     * @param path The context path
+     * @param handler The handler for requests under that path
+     */
+    private void createContext(String path, HttpHandler handler) {
+        createContext(path, handler, rateLimit);
+    }
+
+    /**
+     * Registers a handler for a path with the given rate limit lane and the server-wide filters applied.
+     * The rate limit runs first so throttled requests never take an in-flight permit.
+     * @param path The context path
+     * @param handler The handler for requests under that path
+     * @param limit The rate limit lane, or null for operator routes that bypass rate limiting
+     */
+    private void createContext(String path, HttpHandler handler, RateLimitFilter limit) {
+        List<Filter> filters = server.createContext(path, handler).getFilters();
+        filters.add(new MetricsFilter(path));
+        if (limit != null) {
+            filters.add(limit);
+        }
+        filters.add(admissionFilter);
+    }
+
     /**
      * Configures all HTTP endpoints and their handlers for the API server.
      * Endpoints include:
-     * - /chain - Get the full blockchain
-     * - /transaction - Submit new transactions
+     * - /chain?from=&to=&limit= - Stream a range of blocks (the full chain by default)
+     * - /headers?from=&to=&limit= - Stream a range of block headers
+     * - /transaction - Submit new transactions; ?async=true or Prefer: respond-async answers 202 once queued
+     * - /tx/{id}/status?wait= - Status of a submitted transaction, optionally long-polling for inclusion
+     * - /transactions/batch - Submit many transactions at once, with per-item results
      * - /peers - Get connected peer nodes
      * - /register-wallet - Create new wallet
      * - /wallets - List all wallets
      * - /isChainValid - Check chain validity
+     * - /address/{addr}/txs - Paginated transaction history of an address
+     * - /balance/{addr} - Confirmed balance of an address
+     * - /events - Server-Sent Events stream of blocks and accepted transactions
+     * - /metrics - Node metrics in Prometheus text format
+     * Transaction submission and wallet registration draw on the expensive rate limit budget,
+     * /isChainValid and /metrics bypass rate limiting, and all other routes share the ordinary budget.
      */
     private void setupEndpoints() {
-        // Chain endpoint handler - returns the full blockchain
-        server.createContext("/chain", exchange -> {
+        // Chain endpoint handler - streams a range of full blocks
+        createContext("/chain", exchange -> {
             Logger.debug("Received /chain request: " + exchange.getRequestMethod());
             if ("GET".equals(exchange.getRequestMethod())) {
-                String response = blockchainToJson();
-                exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                exchange.getResponseBody().write(response.getBytes(StandardCharsets.UTF_8));
+                streamBlocks(exchange, false);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
                 exchange.close();
+            }
+        });
+
+        // Headers endpoint handler - streams a range of block headers without transactions
+        createContext("/headers", exchange -> {
+            Logger.debug("Received /headers request: " + exchange.getRequestMethod());
+            if ("GET".equals(exchange.getRequestMethod())) {
+                streamBlocks(exchange, true);
             } else {
                 exchange.sendResponseHeaders(405, -1);
                 exchange.close();
@@ -69,94 +240,132 @@ public class RestApiServer {
         });
 
         // Transaction endpoint handler - processes new transaction submissions
-        server.createContext("/transaction", exchange -> {
+        createContext("/transaction", exchange -> {
             Logger.debug("Received /transaction request: " + exchange.getRequestMethod());
             if ("POST".equals(exchange.getRequestMethod())) {
-                byte[] body = exchange.getRequestBody().readAllBytes();
-                String txJson = new String(body, StandardCharsets.UTF_8);
-                Logger.info("Transaction received: " + txJson);
+                Map<String, String> request;
                 try {
-                    // Parse transaction JSON into components
-                    String[] parts = txJson.replace("{", "").replace("}", "").replace("\"", "").split(",");
-                    String sender = "", receiver = "", senderPrivateKey = "", receiverPublicKey = "";
-                    double amount = 0;
-                    for (String part : parts) {
-                        String[] kv = part.split(":");
-                        if (kv[0].trim().equals("sender")) sender = kv[1].trim();
-                        if (kv[0].trim().equals("receiver")) receiver = kv[1].trim();
-                        if (kv[0].trim().equals("senderPrivateKey")) senderPrivateKey = kv[1].trim();
-                        if (kv[0].trim().equals("receiverPublicKey")) receiverPublicKey = kv[1].trim();
-                        if (kv[0].trim().equals("amount")) amount = Double.parseDouble(kv[1].trim());
-                    }
-
-                    // Validate wallet existence and keys
-                    SimpleWallet senderWallet = (SimpleWallet) walletStore.getWallet(sender);
-                    SimpleWallet receiverWallet = (SimpleWallet) walletStore.getWallet(receiver);
-                    if (senderWallet == null || receiverWallet == null) {
-                        exchange.sendResponseHeaders(400, 0);
-                        exchange.getResponseBody().write("{\"status\":\"unknown sender or receiver\"}".getBytes(StandardCharsets.UTF_8));
-                        exchange.close();
-                        return;
-                    }
-                    if (senderPrivateKey.isEmpty()) {
-                        exchange.sendResponseHeaders(400, 0);
-                        exchange.getResponseBody().write("{\"status\":\"missing sender private key\"}".getBytes(StandardCharsets.UTF_8));
-                        exchange.close();
-                        return;
-                    }
-                    if (receiverPublicKey.isEmpty()) {
-                        exchange.sendResponseHeaders(400, 0);
-                        exchange.getResponseBody().write("{\"status\":\"missing receiver public key\"}".getBytes(StandardCharsets.UTF_8));
-                        exchange.close();
-                        return;
-                    }
-
-                    // Verify key authenticity
-                    String senderTruePrivateKey = senderWallet.getKeys().getPrivateKeyBase64();
-                    String receiverTruePublicKey = receiverWallet.getKeys().getPublicKeyBase64();
-                    if(!senderTruePrivateKey.equals(senderPrivateKey)){
-                        exchange.sendResponseHeaders(400, 0);
-                        exchange.getResponseBody().write("{\"status\":\"invalid sender private key\"}".getBytes(StandardCharsets.UTF_8));
-                        exchange.close();
-                        return;
-                    }
-                    if (!receiverTruePublicKey.equals(receiverPublicKey)){
-                        exchange.sendResponseHeaders(400, 0);
-                        exchange.getResponseBody().write("{\"status\":\"invalid receiver public key\"}".getBytes(StandardCharsets.UTF_8));
-                        exchange.close();
-                        return;
-                    }
-
-                    // Create and validate transaction
-                    SignedTransaction tx = senderWallet.createTransaction(receiverWallet.getPublicKeyBase64(), amount);
-                    if (tx.isValid()) {
-                        transactionPool.addTransaction(tx);
-                        String response = String.format("{\"status\":\"accepted\",\"id\":\"%s\"}", tx.getId());
-                        exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                        exchange.getResponseBody().write(response.getBytes(StandardCharsets.UTF_8));
+                    request = JsonSupport.parseFlatObject(exchange.getRequestBody());
+                } catch (IOException e) {
+                    Logger.error("Malformed transaction request: " + e.getMessage());
+                    JsonSupport.sendStatus(exchange, 400, "invalid json");
+                    return;
+                }
+                Logger.info("Transaction received from: " + request.get("sender"));
+                if (isAsync(exchange)) {
+                    acceptAsync(exchange, request);
+                    return;
+                }
+                try {
+                    SignedTransaction tx = createTransaction(request);
+                    // The pool verifies the signature, so it is checked once
+                    if (transactionPool.addTransaction(tx)) {
+                        JsonSupport.send(exchange, 200, gen -> {
+                            gen.writeStartObject();
+                            gen.writeStringField("status", "accepted");
+                            gen.writeStringField("id", tx.getId().toString());
+                            gen.writeEndObject();
+                        });
+                    } else if (isDuplicate(tx)) {
+                        JsonSupport.sendStatus(exchange, 409, "duplicate");
                     } else {
-                        exchange.sendResponseHeaders(400, 0);
-                        exchange.getResponseBody().write("{\"status\":\"invalid signature\"}".getBytes(StandardCharsets.UTF_8));
+                        JsonSupport.sendStatus(exchange, 400, "invalid signature");
                     }
+                } catch (IllegalArgumentException e) {
+                    JsonSupport.sendStatus(exchange, 400, e.getMessage());
                 } catch (Exception e) {
-                    exchange.sendResponseHeaders(400, 0);
-                    exchange.getResponseBody().write("{\"status\":\"error\"}".getBytes(StandardCharsets.UTF_8));
+                    Logger.error("Transaction request failed: " + e.getMessage());
+                    JsonSupport.sendStatus(exchange, 400, "error");
                 }
-                exchange.close();
             } else {
                 exchange.sendResponseHeaders(405, -1);
                 exchange.close();
             }
+        }, expensiveRateLimit);
+
+        // Transaction status endpoint - pending, included(height) or rejected(reason), with optional long-polling
+        createContext("/tx/", exchange -> {
+            Logger.debug("Received /tx request: " + exchange.getRequestMethod());
+            String path = exchange.getRequestURI().getPath();
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            if (!path.endsWith("/status")) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            Hash256 id;
+            try {
+                id = Hash256.fromHex(path.substring("/tx/".length(), path.length() - "/status".length()));
+            } catch (IllegalArgumentException e) {
+                JsonSupport.sendStatus(exchange, 400, "invalid transaction id");
+                return;
+            }
+            int wait = Math.min(intParam(parseQuery(exchange.getRequestURI().getRawQuery()), "wait", 0),
+                    MAX_STATUS_WAIT_SECONDS);
+            TransactionStatusTracker.Status status;
+            try {
+                status = statusTracker.await(id, wait, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            if (status == null) {
+                JsonSupport.sendStatus(exchange, 404, "unknown transaction");
+                return;
+            }
+            JsonSupport.send(exchange, 200, gen -> {
+                gen.writeStartObject();
+                gen.writeStringField("id", id.toString());
+                gen.writeStringField("status", status.state.name().toLowerCase());
+                if (status.height >= 0) {
+                    gen.writeNumberField("height", status.height);
+                }
+                if (status.reason != null) {
+                    gen.writeStringField("reason", status.reason);
+                }
+                gen.writeEndObject();
+            });
         });
 
-        // Peers endpoint handler - returns list of connected peers
-        server.createContext("/peers", exchange -> {
+        // Batch transaction endpoint - accepts a JSON array or NDJSON stream of transaction requests
+        createContext("/transactions/batch", exchange -> {
+            Logger.debug("Received /transactions/batch request: " + exchange.getRequestMethod());
+            if ("POST".equals(exchange.getRequestMethod())) {
+                handleBatch(exchange);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            }
+        }, expensiveRateLimit);
+
+        // Peers endpoint handler - returns the connected peers with their height and latency
+        createContext("/peers", exchange -> {
             Logger.debug("Received /peers request: " + exchange.getRequestMethod());
             if ("GET".equals(exchange.getRequestMethod())) {
-                String response = "[]";
-                exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                exchange.getResponseBody().write(response.getBytes(StandardCharsets.UTF_8));
-                exchange.close();
+                NetworkService network = networkService;
+                List<PeerConnection> connections = network == null ? List.of() : network.getConnections();
+                JsonSupport.send(exchange, 200, gen -> {
+                    gen.writeStartArray();
+                    for (PeerConnection connection : connections) {
+                        gen.writeStartObject();
+                        gen.writeStringField("nodeId", connection.getNodeId());
+                        gen.writeStringField("address", connection.getRemoteHost() + ":" + connection.getListenPort());
+                        gen.writeStringField("direction", connection.isOutbound() ? "outbound" : "inbound");
+                        gen.writeNumberField("bestHeight", connection.getBestHeight());
+                        gen.writeNumberField("rttMillis", TimeUnit.NANOSECONDS.toMillis(connection.getRttNanos()));
+                        gen.writeNumberField("blockLatencyMillis", TimeUnit.NANOSECONDS.toMillis(connection.getBlockLatencyNanos()));
+                        gen.writeNumberField("failures", connection.getFailures());
+                        gen.writeNumberField("misbehaviourScore", connection.getMisbehaviourScore());
+                        gen.writeEndObject();
+                    }
+                    gen.writeEndArray();
+                });
             } else {
                 exchange.sendResponseHeaders(405, -1);
                 exchange.close();
@@ -164,60 +373,66 @@ public class RestApiServer {
         });
 
         // Wallet registration endpoint - creates new wallet and returns credentials
-        server.createContext("/register-wallet", exchange -> {
+        createContext("/register-wallet", exchange -> {
             Logger.debug("Received /register-wallet request: " + exchange.getRequestMethod());
             if ("POST".equals(exchange.getRequestMethod())) {
-                String userId = "user-" + System.currentTimeMillis();
+                // Random, so registrations handled concurrently never share an id and overwrite each other
+                String userId = "user-" + UUID.randomUUID();
                 SimpleWallet newWallet = new SimpleWallet(userId);
                 walletStore.addWallet(newWallet);
+                blockchain.getAddressIndex().registerWallet(newWallet);
+                SignedTransaction grant = fund(newWallet);
 
                 // Generate wallet credentials
                 KeyPair keyPair = newWallet.getKeys().getKeyPair();
                 String privateKeyBase64 = java.util.Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
                 String publicKeyBase64 = newWallet.getPublicKeyBase64();
-                String response = String.format("{\"userId\":\"%s\",\"publicKey\":\"%s\",\"privateKey\":\"%s\"}",
-                        userId, publicKeyBase64, privateKeyBase64);
+                byte[] response = JsonSupport.toBytes(gen -> {
+                    gen.writeStartObject();
+                    gen.writeStringField("userId", userId);
+                    gen.writeStringField("publicKey", publicKeyBase64);
+                    gen.writeStringField("privateKey", privateKeyBase64);
+                    if (grant != null) {
+                        gen.writeStringField("fundingTransaction", grant.getId().toString());
+                    }
+                    gen.writeEndObject();
+                });
 
                 // Persist wallet data
                 try {
                     File dir = new File("wallets");
                     if (!dir.exists()) dir.mkdirs();
-                    File file = new File(dir, userId + ".json");
-                    try (FileWriter fw = new FileWriter(file)) {
-                        fw.write(response);
-                    }
+                    Files.write(new File(dir, userId + ".json").toPath(), response);
                 } catch (Exception e) {
                     Logger.error("Failed to write wallet file: " + e.getMessage());
                 }
-                exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                exchange.getResponseBody().write(response.getBytes(StandardCharsets.UTF_8));
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
                 exchange.close();
             } else {
                 exchange.sendResponseHeaders(405, -1);
                 exchange.close();
             }
-        });
+        }, expensiveRateLimit);
 
         // Wallets listing endpoint - returns all registered wallets
-        server.createContext("/wallets", exchange -> {
+        createContext("/wallets", exchange -> {
             Logger.debug("Received /wallets request: " + exchange.getRequestMethod());
             if ("GET".equals(exchange.getRequestMethod())) {
-                StringBuilder sb = new StringBuilder("[");
-                boolean first = true;
-                for (String userId : walletStore.getAllUserIds()) {
-                    SimpleWallet wallet = (SimpleWallet) walletStore.getWallet(userId);
-                    if (wallet != null) {
-                        if (!first) sb.append(",");
-                        sb.append(String.format("{\"userId\":\"%s\",\"publicKey\":\"%s\"}",
-                            userId, wallet.getPublicKeyBase64()));
-                        first = false;
+                responseCache.send(exchange, "\"w" + walletStore.getVersion() + "\"", gen -> {
+                    gen.writeStartArray();
+                    for (String userId : walletStore.getAllUserIds()) {
+                        SimpleWallet wallet = (SimpleWallet) walletStore.getWallet(userId);
+                        if (wallet != null) {
+                            gen.writeStartObject();
+                            gen.writeStringField("userId", userId);
+                            gen.writeStringField("publicKey", wallet.getPublicKeyBase64());
+                            gen.writeEndObject();
+                        }
                     }
-                }
-                sb.append("]");
-                String response = sb.toString();
-                exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                exchange.getResponseBody().write(response.getBytes(StandardCharsets.UTF_8));
-                exchange.close();
+                    gen.writeEndArray();
+                });
             } else {
                 exchange.sendResponseHeaders(405, -1);
                 exchange.close();
@@ -225,29 +440,569 @@ public class RestApiServer {
         });
 
         // Chain validation endpoint - checks integrity of the blockchain
-        server.createContext("/isChainValid", exchange -> {
+        createContext("/isChainValid", exchange -> {
             Logger.debug("Received /isChainValid request: " + exchange.getRequestMethod());
             if ("GET".equals(exchange.getRequestMethod())) {
-                boolean isValid = blockchain.isChainValid();
-                String response = String.format("{\"isValid\":%b}", isValid);
-                exchange.sendResponseHeaders(200, response.getBytes(StandardCharsets.UTF_8).length);
-                exchange.getResponseBody().write(response.getBytes(StandardCharsets.UTF_8));
+                // Re-validated only when the tip changes; polls in between are served from the cache
+                responseCache.send(exchange, chainTag(), gen -> {
+                    gen.writeStartObject();
+                    gen.writeBooleanField("isValid", blockchain.isChainValid());
+                    gen.writeEndObject();
+                });
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            }
+        }, null);
+
+        // Address history endpoint - returns the transactions that touched an address, newest first
+        createContext("/address/", exchange -> {
+            Logger.debug("Received /address request: " + exchange.getRequestMethod());
+            if ("GET".equals(exchange.getRequestMethod())) {
+                String path = exchange.getRequestURI().getRawPath();
+                if (!path.endsWith("/txs") || path.length() <= "/address//txs".length()) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                String address = decodeAddress(path.substring("/address/".length(), path.length() - "/txs".length()));
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                int offset = Math.max(intParam(query, "offset", 0), 0);
+                int limit = Math.min(Math.max(intParam(query, "limit", DEFAULT_PAGE_SIZE), 0), MAX_PAGE_SIZE);
+
+                String resolved = resolveAddress(address);
+                JsonSupport.send(exchange, 200, gen -> writeAddressHistory(gen, resolved, offset, limit));
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            }
+        });
+
+        // Balance endpoint - returns the confirmed balance of an address from the ledger
+        createContext("/balance/", exchange -> {
+            Logger.debug("Received /balance request: " + exchange.getRequestMethod());
+            if ("GET".equals(exchange.getRequestMethod())) {
+                String path = exchange.getRequestURI().getRawPath();
+                String address = resolveAddress(decodeAddress(path.substring("/balance/".length())));
+                long units = blockchain.getLedger().getBalance(address);
+                JsonSupport.send(exchange, 200, gen -> {
+                    gen.writeStartObject();
+                    gen.writeStringField("address", address);
+                    gen.writeFieldName("balance");
+                    gen.writeNumber(new BigDecimal(Amounts.format(units)));
+                    gen.writeNumberField("units", units);
+                    gen.writeEndObject();
+                });
+            } else {
+                exchange.sendResponseHeaders(405, -1);
                 exchange.close();
+            }
+        });
+
+        // Event stream - long-lived, so it has its own subscriber cap instead of the admission filter
+        server.createContext("/events", eventStream)
+                .getFilters().add(new MetricsFilter("/events"));
+
+        // Metrics endpoint - Prometheus text format; operator traffic, so it bypasses rate limiting
+        createContext("/metrics", exchange -> {
+            if ("GET".equals(exchange.getRequestMethod())) {
+                byte[] body = Metrics.scrape().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                Compression.sendBytes(exchange, 200, body, Compression.negotiate(exchange));
             } else {
                 exchange.sendResponseHeaders(405, -1);
                 exchange.close();
             }
+        }, null);
+    }
+
+    /**
+     * Result of preparing one item of a batch: either the signed transaction or the reason it was rejected.
+     */
+    private static final class BatchItem {
+        final SignedTransaction tx;
+        final String status;
+
+        BatchItem(SignedTransaction tx, String status) {
+            this.tx = tx;
+            this.status = status;
+        }
+    }
+
+    /**
+     * Checks whether the client asked for asynchronous acceptance, via ?async=true or the
+     * RFC 7240 Prefer: respond-async header.
+     * @param exchange The request
+     * @return true if the transaction should be queued and answered with 202
+     */
+    private static boolean isAsync(HttpExchange exchange) {
+        String prefer = exchange.getRequestHeaders().getFirst("Prefer");
+        if (prefer != null && prefer.contains("respond-async")) {
+            return true;
+        }
+        return "true".equals(parseQuery(exchange.getRequestURI().getRawQuery()).get("async"));
+    }
+
+    /**
+     * Checks a transaction request, queues it for signing and pooling, and answers 202 Accepted
+     * with its id. Progress is reported through /tx/{id}/status. When the queue is full the request
+     * is answered with 503 Service Unavailable and nothing is queued.
+     * @param exchange The exchange to respond to
+     * @param request The parsed transaction request
+     * @throws IOException If writing the response fails
+     */
+    private void acceptAsync(HttpExchange exchange, Map<String, String> request) throws IOException {
+        SignedTransaction tx;
+        try {
+            tx = newTransaction(request);
+        } catch (IllegalArgumentException e) {
+            JsonSupport.sendStatus(exchange, 400, e.getMessage());
+            return;
+        } catch (Exception e) {
+            Logger.error("Transaction request failed: " + e.getMessage());
+            JsonSupport.sendStatus(exchange, 400, "error");
+            return;
+        }
+        String sender = request.get("sender");
+        statusTracker.pending(tx.getId());
+        try {
+            acceptExecutor.execute(() -> acceptQueued(tx, sender));
+        } catch (RejectedExecutionException e) {
+            Logger.error("Transaction acceptance queue full, rejecting " + tx.getId());
+            statusTracker.rejected(tx.getId(), "queue full");
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(config.getRetryAfterSeconds()));
+            JsonSupport.sendStatus(exchange, 503, "queue full");
+            return;
+        }
+        String statusPath = "/tx/" + tx.getId() + "/status";
+        exchange.getResponseHeaders().set("Location", statusPath);
+        JsonSupport.send(exchange, 202, gen -> {
+            gen.writeStartObject();
+            gen.writeStringField("status", "queued");
+            gen.writeStringField("id", tx.getId().toString());
+            gen.writeStringField("statusUrl", statusPath);
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * Tells why the pool refused a transaction: either it is already pending, or its signature is invalid.
+     * @param tx The refused transaction
+     * @return true if the transaction is already pending
+     */
+    private boolean isDuplicate(Transaction tx) {
+        return transactionPool.contains(tx.getId());
+    }
+
+    private void acceptQueued(SignedTransaction tx, String sender) {
+        try {
+            signTransaction(tx, sender);
+            if (!transactionPool.addTransaction(tx)) {
+                statusTracker.rejected(tx.getId(), isDuplicate(tx) ? "duplicate" : "invalid signature");
+            }
+        } catch (IllegalArgumentException e) {
+            statusTracker.rejected(tx.getId(), e.getMessage());
+        } catch (Exception e) {
+            Logger.error("Queued transaction " + tx.getId() + " failed: " + e.getMessage());
+            statusTracker.rejected(tx.getId(), "error");
+        }
+    }
+
+    /**
+     * Handles a batch submission. Items are parsed one at a time from the request stream, either
+     * as the elements of a JSON array or as newline-delimited JSON objects, and each is handed to
+     * the common pool for checking and signing as soon as it is read. Valid transactions are then
+     * verified in parallel and pooled with a single batched insert, and the response lists the
+     * outcome of every item in request order.
+     * @param exchange The exchange to respond to
+     * @throws IOException If reading the request or writing the response fails
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        List<CompletableFuture<BatchItem>> pending = new ArrayList<>();
+        try (JsonParser parser = JsonSupport.FACTORY.createParser(exchange.getRequestBody())) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (pending.size() == MAX_BATCH_SIZE) {
+                    JsonSupport.sendStatus(exchange, 413, "batch larger than " + MAX_BATCH_SIZE + " transactions");
+                    return;
+                }
+                Map<String, String> request = JsonSupport.readFlatObject(parser, token);
+                pending.add(CompletableFuture.supplyAsync(() -> prepareBatchItem(request)));
+                token = parser.nextToken();
+            }
+            if (array && token == null) {
+                throw new JsonParseException(parser, "Unterminated JSON array");
+            }
+        } catch (IOException e) {
+            Logger.error("Malformed batch request at item " + pending.size() + ": " + e.getMessage());
+            JsonSupport.sendStatus(exchange, 400, "invalid json at item " + pending.size());
+            return;
+        }
+
+        List<BatchItem> items = new ArrayList<>(pending.size());
+        List<Transaction> txs = new ArrayList<>();
+        for (CompletableFuture<BatchItem> future : pending) {
+            BatchItem item = future.join();
+            items.add(item);
+            if (item.tx != null) {
+                txs.add(item.tx);
+            }
+        }
+        boolean[] added = transactionPool.addTransactions(txs);
+        int acceptedCount = 0;
+        for (boolean a : added) {
+            if (a) acceptedCount++;
+        }
+        Logger.info("Batch of " + items.size() + " transactions processed, " + acceptedCount + " accepted");
+
+        int accepted = acceptedCount;
+        JsonSupport.send(exchange, 200, gen -> {
+            gen.writeStartObject();
+            gen.writeNumberField("accepted", accepted);
+            gen.writeNumberField("rejected", items.size() - accepted);
+            gen.writeArrayFieldStart("results");
+            int pooled = 0;
+            for (int i = 0; i < items.size(); i++) {
+                BatchItem item = items.get(i);
+                gen.writeStartObject();
+                gen.writeNumberField("index", i);
+                if (item.tx == null) {
+                    gen.writeStringField("status", item.status);
+                } else {
+                    gen.writeStringField("status", added[pooled++] ? "accepted" : "rejected");
+                    gen.writeStringField("id", item.tx.getId().toString());
+                }
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
         });
     }
 
+    private BatchItem prepareBatchItem(Map<String, String> request) {
+        try {
+            return new BatchItem(createTransaction(request), null);
+        } catch (IllegalArgumentException e) {
+            return new BatchItem(null, e.getMessage());
+        } catch (Exception e) {
+            Logger.error("Batch item failed: " + e.getMessage());
+            return new BatchItem(null, "error");
+        }
+    }
+
+    /**
+     * Checks a transaction request against the wallet store and the ledger and creates the signed
+     * transaction it describes. The signature is not verified here; callers verify it before pooling.
+     * @param request The flat request object with sender, receiver, senderPrivateKey, receiverPublicKey and amount
+     * @return The signed transaction
+     * @throws IllegalArgumentException If the request is rejected; the message is the status reported to the client
+     */
+    private SignedTransaction createTransaction(Map<String, String> request) {
+        SignedTransaction tx = newTransaction(request);
+        signTransaction(tx, request.get("sender"));
+        return tx;
+    }
+
+    /**
+     * Signs a transaction created by {@link #newTransaction} with the sender's wallet.
+     * @param tx The unsigned transaction
+     * @param sender The user id of the sending wallet
+     * @throws IllegalArgumentException If the wallet is no longer registered
+     */
+    private void signTransaction(SignedTransaction tx, String sender) {
+        Wallet wallet = walletStore.getWallet(sender);
+        if (wallet == null) {
+            throw new IllegalArgumentException("unknown sender or receiver");
+        }
+        wallet.signTransaction(tx);
+    }
+
+    /**
+     * Checks a transaction request against the wallet store and the ledger and creates the unsigned
+     * transaction it describes.
+     * @param request The flat request object with sender, receiver, senderPrivateKey, receiverPublicKey and amount
+     * @return The unsigned transaction, whose id is final
+     * @throws IllegalArgumentException If the request is rejected; the message is the status reported to the client
+     */
+    private SignedTransaction newTransaction(Map<String, String> request) {
+        String sender = request.getOrDefault("sender", "");
+        String receiver = request.getOrDefault("receiver", "");
+        String senderPrivateKey = request.getOrDefault("senderPrivateKey", "");
+        String receiverPublicKey = request.getOrDefault("receiverPublicKey", "");
+        double amount;
+        try {
+            amount = Double.parseDouble(request.getOrDefault("amount", "0"));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("invalid amount");
+        }
+
+        // Validate wallet existence and keys
+        SimpleWallet senderWallet = (SimpleWallet) walletStore.getWallet(sender);
+        SimpleWallet receiverWallet = (SimpleWallet) walletStore.getWallet(receiver);
+        if (senderWallet == null || receiverWallet == null) {
+            throw new IllegalArgumentException("unknown sender or receiver");
+        }
+        if (senderPrivateKey == null || senderPrivateKey.isEmpty()) {
+            throw new IllegalArgumentException("missing sender private key");
+        }
+        if (receiverPublicKey == null || receiverPublicKey.isEmpty()) {
+            throw new IllegalArgumentException("missing receiver public key");
+        }
+
+        // Verify key authenticity
+        String senderTruePrivateKey = senderWallet.getKeys().getPrivateKeyBase64();
+        String receiverTruePublicKey = receiverWallet.getKeys().getPublicKeyBase64();
+        if (!senderTruePrivateKey.equals(senderPrivateKey)) {
+            throw new IllegalArgumentException("invalid sender private key");
+        }
+        if (!receiverTruePublicKey.equals(receiverPublicKey)) {
+            throw new IllegalArgumentException("invalid receiver public key");
+        }
+
+        // Reject transfers the sender cannot cover with its confirmed balance
+        if (blockchain.getLedger().getBalance(senderWallet.getAddress()) < Amounts.toUnits(amount)) {
+            throw new IllegalArgumentException("insufficient funds");
+        }
+        return senderWallet.newTransaction(receiverWallet.getPublicKeyBase64(), amount);
+    }
+
+    /**
+     * Builds the entity tag of all chain-derived responses from the tip height and hash.
+     * It changes whenever a block is appended or the chain is rolled back.
+     * @return The quoted entity tag
+     */
+    private String chainTag() {
+        Block tip = blockchain.getLatestBlock();
+        return "\"c" + tip.getIndex() + "-" + tip.getHash().toString().substring(0, 16) + "\"";
+    }
+
+    /**
+     * Decodes a raw address path segment. Base64 keys may contain '+' and '/', so the
+     * segment is decoded manually instead of relying on form decoding, which turns '+' into a space.
+     * @param rawSegment The raw, percent-encoded path segment
+     * @return The decoded address
+     */
+    private static String decodeAddress(String rawSegment) {
+        return URLDecoder.decode(rawSegment.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Resolves an address path segment, accepting either a Base64 public key or a registered user ID.
+     * @param address The decoded path segment
+     * @return The Base64 public key address
+     */
+    private String resolveAddress(String address) {
+        if (AddressDictionary.global().find(address) == AddressDictionary.UNKNOWN) {
+            Wallet wallet = walletStore.getWallet(address);
+            if (wallet != null) {
+                return wallet.getAddress();
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Writes one page of an address's transaction history, newest first.
+     * @param gen The generator to write to
+     * @param address Base64 public key address
+     * @param offset Number of most recent transactions to skip
+     * @param limit Maximum number of transactions to include
+     * @throws IOException If writing fails
+     */
+    private void writeAddressHistory(JsonGenerator gen, String address, int offset, int limit) throws IOException {
+        AddressIndex index = blockchain.getAddressIndex();
+        Wallet owner = index.getWallet(address);
+        int total;
+        List<TxLocation> locations;
+        List<Transaction> txs = new ArrayList<>();
+        // The chain updates the index under its lock, so no rollback or reorg can move the
+        // located transactions before they are read; the response is written after the lock is released
+        synchronized (blockchain) {
+            total = index.getTransactionCount(address);
+            locations = index.getTransactions(address, offset, limit);
+            for (TxLocation location : locations) {
+                txs.add(blockchain.getBlock(location.getHeight()).getTransactions().get(location.getPosition()));
+            }
+        }
+        gen.writeStartObject();
+        gen.writeStringField("address", address);
+        gen.writeStringField("userId", owner == null ? null : owner.getUserId());
+        gen.writeNumberField("total", total);
+        gen.writeNumberField("offset", offset);
+        gen.writeNumberField("limit", limit);
+        gen.writeArrayFieldStart("transactions");
+        for (int i = 0; i < locations.size(); i++) {
+            gen.writeStartObject();
+            gen.writeNumberField("height", locations.get(i).getHeight());
+            gen.writeNumberField("position", locations.get(i).getPosition());
+            gen.writeFieldName("transaction");
+            JsonSupport.writeTransaction(gen, txs.get(i));
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    /**
+     * Parses a raw URL query string into a map of decoded parameter names and values.
+     * @param rawQuery The raw query string, may be null
+     * @return Map of query parameters
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            String[] kv = pair.split("=", 2);
+            String key = URLDecoder.decode(kv[0], StandardCharsets.UTF_8);
+            String value = kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "";
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    /**
+     * Reads an integer query parameter, falling back to a default when absent or malformed.
+     * @param params Parsed query parameters
+     * @param name Parameter name
+     * @param defaultValue Value used when the parameter is missing or not a number
+     * @return The parameter value
+     */
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        try {
+            String value = params.get(name);
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Streams blocks in the requested height range as a JSON array using chunked transfer encoding.
+     * Query parameters: from (first height, default 0), to (last height inclusive, default the tip)
+     * and limit (maximum number of blocks). Blocks are read from the chain a page at a time and
+     * written straight to the socket, so the response is never materialized as a single String.
+     * Full blocks are served from the JSON bytes cached on each block, and clients that already
+     * hold the current tip get 304 Not Modified.
+     * @param exchange The HTTP exchange to respond to
+     * @param headersOnly true to write only block headers, false to include transactions
+     * @throws IOException If writing the response fails
+     */
+    private void streamBlocks(HttpExchange exchange, boolean headersOnly) throws IOException {
+        String encoding = Compression.negotiate(exchange);
+        if (ResponseCache.notModified(exchange, Compression.tag(chainTag(), encoding))) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int tip = blockchain.getHeight();
+        int from = Math.max(intParam(query, "from", 0), 0);
+        int to = Math.min(intParam(query, "to", tip), tip);
+        int limit = intParam(query, "limit", Integer.MAX_VALUE);
+        if (limit >= 0 && (long) to - from + 1 > limit) {
+            to = from + limit - 1;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+
+        // Ranges that end below the tip are immutable, so their compressed form is cached
+        if (encoding != null && to < tip && from <= to) {
+            Block last = blockchain.getBlock(to);
+            String key = CompressedRangeCache.key(headersOnly, encoding, from, to, last.getHash());
+            byte[] body = rangeCache.get(key);
+            if (body == null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (OutputStream out = Compression.wrap(bytes, encoding)) {
+                    writeBlocks(out, from, to, headersOnly);
+                }
+                body = bytes.toByteArray();
+                rangeCache.put(key, body);
+            }
+            Compression.setHeaders(exchange, encoding);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            return;
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Compression.open(exchange, 200), STREAM_BUFFER_SIZE)) {
+            writeBlocks(out, from, to, headersOnly);
+        }
+    }
+
+    /**
+     * Writes a JSON array of the blocks, or block headers, in a height range.
+     * @param out The destination stream
+     * @param from First block height
+     * @param to Last block height, inclusive
+     * @param headersOnly Whether to write headers instead of full blocks
+     * @throws IOException If writing fails
+     */
+    private void writeBlocks(OutputStream out, int from, int to, boolean headersOnly) throws IOException {
+        if (headersOnly) {
+            try (JsonGenerator gen = JsonSupport.FACTORY.createGenerator(out)) {
+                gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                gen.writeStartArray();
+                for (int start = from; start <= to; start += STREAM_PAGE_SIZE) {
+                    for (Block block : blockchain.getBlocks(start, Math.min(start + STREAM_PAGE_SIZE, to + 1))) {
+                        JsonSupport.writeHeader(gen, block);
+                    }
+                }
+                gen.writeEndArray();
+            }
+        } else {
+            // Full blocks are copied from their cached serialized bytes
+            out.write('[');
+            boolean first = true;
+            for (int start = from; start <= to; start += STREAM_PAGE_SIZE) {
+                for (Block block : blockchain.getBlocks(start, Math.min(start + STREAM_PAGE_SIZE, to + 1))) {
+                    JsonSupport.writeArrayElement(out, JsonSupport.blockBytes(block), first);
+                    first = false;
+                }
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * Sets the wallet that funds newly registered wallets. Its funds must come from the chain,
+     * typically an allocation of the genesis block; each grant is an ordinary transfer that
+     * confirms once it is mined, so grants beyond the faucet's balance are never confirmed.
+     *
+     * @param faucet The funding wallet, or null to register wallets without funds
+     */
+    public void setFaucet(SimpleWallet faucet) {
+        this.faucet = faucet;
+    }
+
+    /**
+     * Sets the peer-to-peer service whose connections the /peers endpoint reports.
+     *
+     * @param networkService The node's network service, or null to report no peers
+     */
+    public void setNetworkService(NetworkService networkService) {
+        this.networkService = networkService;
+    }
+
     /**
-     * Serializes the blockchain data structure into a JSON string representation.
-     * Currently returns a basic string representation - should be enhanced with proper JSON serialization.
-     * @return JSON formatted string containing all blocks in the chain
+     * Submits the faucet's grant to a newly registered wallet.
+     *
+     * @return The grant, or null if there is no faucet or the pool refused it
      */
-    private String blockchainToJson() {
-        List<String> blocks = blockchain.getChain().stream().map(Object::toString).toList();
-        return blocks.toString();
+    private SignedTransaction fund(SimpleWallet wallet) {
+        SimpleWallet funder = faucet;
+        if (funder == null) {
+            return null;
+        }
+        SignedTransaction grant = funder.createTransaction(wallet.getAddress(), WALLET_GRANT);
+        if (!transactionPool.addTransaction(grant)) {
+            Logger.error("Faucet grant to " + wallet.getUserId() + " was refused by the pool");
+            return null;
+        }
+        return grant;
     }
 
     /**
@@ -264,5 +1019,7 @@ public class RestApiServer {
     public void stop() {
         Logger.info("Stopping REST API server");
         server.stop(0);
+        config.getExecutor().shutdown();
+        acceptExecutor.shutdown();
     }
 }
\ No newline at end of file
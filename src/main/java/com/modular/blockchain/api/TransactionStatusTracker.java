@@ -0,0 +1,150 @@
+package com.modular.blockchain.api;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.ChainListener;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.transaction.PoolListener;
+import com.modular.blockchain.transaction.Transaction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded map from transaction id to its lifecycle state, backing /tx/{id}/status.
+ * Transactions become pending when they are queued or enter the pool, included when a block
+ * containing them is appended, and rejected when acceptance fails. The oldest entries are evicted
+ * once the capacity is reached. Readers may wait for a pending transaction to be resolved, which
+ * lets clients long-poll for inclusion instead of re-polling.
+ */
+class TransactionStatusTracker implements ChainListener, PoolListener {
+    /**
+     * Lifecycle state of a tracked transaction.
+     */
+    enum State {
+        PENDING, INCLUDED, REJECTED
+    }
+
+    /**
+     * Immutable snapshot of a transaction's status.
+     */
+    static final class Status {
+        final State state;
+        /** Height of the including block, or -1 */
+        final int height;
+        /** Rejection reason, or null */
+        final String reason;
+
+        Status(State state, int height, String reason) {
+            this.state = state;
+            this.height = height;
+            this.reason = reason;
+        }
+    }
+
+    private static final Status PENDING = new Status(State.PENDING, -1, null);
+
+    private final Map<Hash256, Status> statuses;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Creates a new tracker.
+     *
+     * @param capacity Maximum number of transactions tracked before the oldest are evicted
+     */
+    TransactionStatusTracker(int capacity) {
+        this.statuses = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Hash256, Status> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Records a transaction as pending, e.g. when it is queued for asynchronous acceptance.
+     *
+     * @param id The transaction id
+     */
+    void pending(Hash256 id) {
+        update(id, PENDING);
+    }
+
+    /**
+     * Records that a transaction will not be pooled.
+     *
+     * @param id The transaction id
+     * @param reason Why the transaction was rejected
+     */
+    void rejected(Hash256 id, String reason) {
+        update(id, new Status(State.REJECTED, -1, reason));
+    }
+
+    @Override
+    public void transactionAdded(Transaction tx) {
+        update(tx.getId(), PENDING);
+    }
+
+    @Override
+    public void blockAdded(Block block) {
+        Status included = new Status(State.INCLUDED, block.getIndex(), null);
+        lock.lock();
+        try {
+            for (Transaction tx : block.getTransactions()) {
+                statuses.put(tx.getId(), included);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void blockRemoved(Block block) {
+        lock.lock();
+        try {
+            for (Transaction tx : block.getTransactions()) {
+                statuses.replace(tx.getId(), PENDING);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the status of a transaction, waiting up to the given time while it is still pending.
+     *
+     * @param id The transaction id
+     * @param timeout Maximum time to wait for the transaction to be included or rejected; 0 to not wait
+     * @param unit Unit of the timeout
+     * @return The current status, or null if the transaction is not tracked
+     * @throws InterruptedException If interrupted while waiting
+     */
+    Status await(Hash256 id, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            Status status = statuses.get(id);
+            while (status != null && status.state == State.PENDING && nanos > 0) {
+                nanos = changed.awaitNanos(nanos);
+                status = statuses.get(id);
+            }
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(Hash256 id, Status status) {
+        lock.lock();
+        try {
+            statuses.put(id, status);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
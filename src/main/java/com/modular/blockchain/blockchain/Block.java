@@ -2,6 +2,7 @@ package com.modular.blockchain.blockchain;
 
 import com.modular.blockchain.transaction.Transaction;
 import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
 import com.modular.blockchain.util.Logger;
 
 import java.util.List;
@@ -15,11 +16,13 @@ public class Block {
     private final int index;
     private final long timestamp;
     private final List<Transaction> transactions;
-    private final String previousHash;
-    private String hash;
+    private final Hash256 previousHash;
+    private Hash256 hash;
     private int nonce;
     private final String minerId;
     private final BlockHeader header;
+    /** Serialized JSON form of the block, cached by the API once the block is part of the chain */
+    private volatile byte[] serializedJson;
 
     /**
      * Creates a new Block with the specified parameters.
@@ -30,7 +33,7 @@ public class Block {
      * @param previousHash The hash of the previous block in the chain
      * @param minerId The ID of the miner who created this block
      */
-    public Block(int index, long timestamp, List<Transaction> transactions, String previousHash, String minerId) {
+    public Block(int index, long timestamp, List<Transaction> transactions, Hash256 previousHash, String minerId) {
         Logger.info("Creating new block at index " + index + ", miner: " + minerId);
         this.index = index;
         this.timestamp = timestamp;
@@ -42,6 +45,25 @@ public class Block {
         this.hash = null;
     }
 
+    /**
+     * Rebuilds a block that was mined elsewhere, e.g. one received from a peer.
+     * The hash is recomputed from the content rather than trusted, so a tampered block
+     * simply ends up with a hash that fails proof-of-work validation.
+     *
+     * @param index The position of the block in the blockchain
+     * @param timestamp The time when the block was created
+     * @param transactions The list of transactions included in this block
+     * @param previousHash The hash of the previous block in the chain
+     * @param minerId The ID of the miner who created this block
+     * @param nonce The proof-of-work nonce found by the miner
+     */
+    public Block(int index, long timestamp, List<Transaction> transactions, Hash256 previousHash, String minerId, int nonce) {
+        this(index, timestamp, transactions, previousHash, minerId);
+        this.nonce = nonce;
+        this.header.setNonce(nonce);
+        this.hash = BlockUtils.calculateHash(header);
+    }
+
     /**
      * Mines the block by finding a hash that meets the difficulty requirement.
      * Increments the nonce until a hash with the required number of leading zeros is found.
@@ -50,10 +72,9 @@ public class Block {
      */
     public void mineBlock(int difficulty) {
         Logger.info("Mining block at index " + index + " with difficulty " + difficulty);
-        String target = new String(new char[difficulty]).replace('\0', '0');
         while (true) {
-            this.hash = BlockUtils.calculateHash(header, transactions);
-            if (hash.substring(0, difficulty).equals(target)) {
+            this.hash = BlockUtils.calculateHash(header);
+            if (hash.leadingZeroNibbles() >= difficulty) {
                 Logger.info("Block mined! Hash: " + hash);
                 break;
             }
@@ -94,12 +115,12 @@ public class Block {
     /**
      * @return The hash of the previous block
      */
-    public String getPreviousHash() { return previousHash; }
+    public Hash256 getPreviousHash() { return previousHash; }
 
     /**
      * @return The hash of this block
      */
-    public String getHash() { return hash; }
+    public Hash256 getHash() { return hash; }
 
     /**
      * @return The nonce used in mining this block
@@ -111,8 +132,36 @@ public class Block {
      */
     public String getMinerId() { return minerId; }
 
+    /**
+     * @return The Base64 signature of the block hash by the authority that produced it, or null if unsigned
+     */
+    public String getSignature() { return header.getSignature(); }
+
+    /**
+     * Attaches the producing authority's signature of the block hash.
+     *
+     * @param signature The Base64 encoded signature
+     */
+    public void setSignature(String signature) { header.setSignature(signature); }
+
     /**
      * @return The header of this block
      */
     public BlockHeader getHeader() { return header; }
+
+    /**
+     * Returns the cached serialized JSON form of this block.
+     * The array is shared and must not be modified.
+     *
+     * @return The cached JSON bytes, or null if the block has not been serialized yet
+     */
+    public byte[] getSerializedJson() { return serializedJson; }
+
+    /**
+     * Caches the serialized JSON form of this block so repeat reads are a plain byte copy.
+     * Only blocks that have been added to the chain should be cached; mining still mutates the nonce.
+     *
+     * @param serializedJson The JSON bytes of the block
+     */
+    public void setSerializedJson(byte[] serializedJson) { this.serializedJson = serializedJson; }
 }
\ No newline at end of file
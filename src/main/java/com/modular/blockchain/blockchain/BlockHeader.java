@@ -1,11 +1,14 @@
 package com.modular.blockchain.blockchain;
 
+import com.modular.blockchain.crypto.Hash256;
 import com.modular.blockchain.util.Logger;
 
 /**
  * Represents the header of a block in the blockchain.
  * Contains essential metadata about the block including its position, timestamp,
  * previous block reference, merkle root hash, proof-of-work nonce and miner ID.
+ * Under proof-of-authority the header also carries the producing authority's signature of the
+ * block hash; the signature is not part of the hash itself.
  */
 public class BlockHeader {
     /** Index/height of this block in the chain */
@@ -13,13 +16,15 @@ public class BlockHeader {
     /** Timestamp when this block was created */
     private final long timestamp;
     /** Hash of the previous block in the chain */
-    private final String previousHash;
+    private final Hash256 previousHash;
     /** Merkle root hash of all transactions in this block */
-    private final String merkleRoot;
+    private final Hash256 merkleRoot;
     /** Proof-of-work nonce value */
     private int nonce;
     /** ID of the miner who created this block */
     private final String minerId;
+    /** Base64 signature of the block hash by the authority that produced it, null under proof-of-work */
+    private String signature;
 
     /**
      * Creates a new block header with the specified parameters.
@@ -31,7 +36,7 @@ public class BlockHeader {
      * @param nonce Initial proof-of-work nonce value
      * @param minerId ID of the miner who created this block
      */
-    public BlockHeader(int index, long timestamp, String previousHash, String merkleRoot, int nonce, String minerId) {
+    public BlockHeader(int index, long timestamp, Hash256 previousHash, Hash256 merkleRoot, int nonce, String minerId) {
         Logger.debug("Creating BlockHeader: index=" + index + ", minerId=" + minerId);
         this.index = index;
         this.timestamp = timestamp;
@@ -52,14 +57,68 @@ public class BlockHeader {
         this.nonce = nonce;
     }
 
+    /**
+     * Attaches the producing authority's signature of the block hash.
+     *
+     * @param signature The Base64 encoded signature, or null to remove it
+     */
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    /**
+     * @return The index/height of this block in the chain
+     */
+    public int getIndex() { return index; }
+
+    /**
+     * @return The timestamp when this block was created
+     */
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * @return The hash of the previous block
+     */
+    public Hash256 getPreviousHash() { return previousHash; }
+
+    /**
+     * @return The merkle root hash of the block's transactions
+     */
+    public Hash256 getMerkleRoot() { return merkleRoot; }
+
+    /**
+     * @return The current proof-of-work nonce
+     */
+    public int getNonce() { return nonce; }
+
+    /**
+     * @return The ID of the miner who created this block
+     */
+    public String getMinerId() { return minerId; }
+
+    /**
+     * @return The Base64 signature of the block hash, or null if the block is not signed
+     */
+    public String getSignature() { return signature; }
+
+    /**
+     * Calculates the hash of the block this header belongs to.
+     * The hash covers only the header, so proof-of-work can be checked before the transactions are known.
+     *
+     * @return The block hash for the current nonce
+     */
+    public Hash256 calculateHash() {
+        return BlockUtils.calculateHash(this);
+    }
+
     /**
      * Returns a string representation of this block header,
-     * concatenating all fields in sequence.
+     * concatenating all fields in sequence except the signature, which signs the resulting hash.
      *
      * @return String containing all block header fields
      */
     @Override
     public String toString() {
-        return index + timestamp + previousHash + merkleRoot + nonce + minerId;
+        return index + timestamp + previousHash.toString() + merkleRoot + nonce + minerId;
     }
 }
\ No newline at end of file
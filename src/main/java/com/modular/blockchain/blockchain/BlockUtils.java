@@ -1,6 +1,7 @@
 package com.modular.blockchain.blockchain;
 
 import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
 import com.modular.blockchain.transaction.Transaction;
 import com.modular.blockchain.util.Logger;
 
@@ -12,18 +13,15 @@ import java.util.stream.Collectors;
  */
 public class BlockUtils {
     /**
-     * Calculates the hash of a block based on its header and transactions.
+     * Calculates the hash of a block from its header.
+     * The header's merkle root commits to the transactions, so they are not hashed again;
+     * this keeps each mining attempt cheap and lets peers check proof-of-work on headers alone.
      * @param header The block header containing metadata
-     * @param transactions List of transactions in the block
-     * @return SHA-256 hash of the block data
+     * @return SHA-256 hash of the block header
      */
-    static String calculateHash(BlockHeader header, List<Transaction> transactions) {
+    static Hash256 calculateHash(BlockHeader header) {
         Logger.debug("Calculating hash for block header: index=" + header.toString());
-        String dataToHash = header.toString() +
-                transactions.stream()
-                        .map(Transaction::toJson)
-                        .collect(Collectors.joining());
-        String hash = CryptoUtils.sha256(dataToHash);
+        Hash256 hash = CryptoUtils.sha256Hash(header.toString());
         Logger.debug("Calculated hash: " + hash);
         return hash;
     }
@@ -34,9 +32,8 @@ public class BlockUtils {
      * @param difficulty The number of leading zeros required
      * @return true if hash meets difficulty requirement, false otherwise
      */
-    static boolean isHashValid(String hash, int difficulty) {
-        String target = new String(new char[difficulty]).replace('\0', '0');
-        boolean valid = hash.substring(0, difficulty).equals(target);
+    static boolean isHashValid(Hash256 hash, int difficulty) {
+        boolean valid = hash.leadingZeroNibbles() >= difficulty;
         if (!valid) {
             Logger.debug("Hash does not meet difficulty: " + hash + ", difficulty: " + difficulty);
         }
@@ -59,6 +56,7 @@ public class BlockUtils {
                 ", previousHash='" + block.getPreviousHash() + '\'' +
                 ", hash='" + block.getHash() + '\'' +
                 ", nonce=" + block.getNonce() +
+                (block.getSignature() != null ? ", signature='" + block.getSignature() + '\'' : "") +
                 '}';
     }
 
@@ -67,9 +65,9 @@ public class BlockUtils {
      * @param txs List of transactions to hash
      * @return SHA-256 hash representing the Merkle root
      */
-    static String calculateMerkleRoot(List<Transaction> txs) {
+    static Hash256 calculateMerkleRoot(List<Transaction> txs) {
         // Simple concatenated hash for demo; replace with real Merkle root if needed
         String concat = txs.stream().map(Transaction::toJson).collect(Collectors.joining());
-        return CryptoUtils.sha256(concat);
+        return CryptoUtils.sha256Hash(concat);
     }
 }
\ No newline at end of file
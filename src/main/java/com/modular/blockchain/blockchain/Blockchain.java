@@ -4,31 +4,79 @@
  */
 package com.modular.blockchain.blockchain;
 
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.index.AddressIndex;
+import com.modular.blockchain.ledger.AccountLedger;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.transaction.AllocationTransaction;
+import com.modular.blockchain.transaction.SignedTransaction;
 import com.modular.blockchain.transaction.Transaction;
 import com.modular.blockchain.util.Logger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Blockchain {
+    /** Fixed genesis timestamp, so every node derives the same genesis block and can exchange blocks */
+    private static final long GENESIS_TIMESTAMP = 1_700_000_000_000L;
+    private static final Histogram BLOCK_INTERVAL = Metrics.histogram("blockchain_block_interval_seconds",
+            "Time between the timestamps of consecutive blocks", Metrics.BLOCK_TIME_BUCKETS);
+    private static final Counter BLOCKS_REJECTED = Metrics.counter("blockchain_blocks_rejected_total",
+            "Blocks refused by the chain because of an invalid hash, a stale parent or insufficient funds");
+    private static final Counter BLOCKS_ROLLED_BACK = Metrics.counter("blockchain_blocks_rolled_back_total",
+            "Blocks removed from the tip by rollbacks");
+
     private final List<Block> blocks;
+    /** Height of every block in the chain, keyed by its hash */
+    private final Map<Hash256, Integer> heights = new HashMap<>();
     private final int difficulty;
+    private final AddressIndex addressIndex;
+    private final AccountLedger ledger;
+    private final List<ChainListener> listeners = new CopyOnWriteArrayList<>();
+    /** Initial funds recorded in the genesis block, in a fixed order */
+    private final List<Transaction> allocations;
 
     /**
-     * Creates a new blockchain with specified mining difficulty.
+     * Creates a new blockchain with specified mining difficulty and no initial funds.
      * Initializes the chain with a genesis block and configures mining parameters.
      *
      * @param difficulty The mining difficulty level - higher values require more computational work
      */
     public Blockchain(int difficulty){
+        this(difficulty, Map.of());
+    }
+
+    /**
+     * Creates a new blockchain whose genesis block allocates initial funds.
+     * The allocations are part of the genesis block and hence of its hash, so nodes can only
+     * exchange blocks if they were created with the same allocations.
+     *
+     * @param difficulty The mining difficulty level - higher values require more computational work
+     * @param allocations Units allocated to each Base64 encoded public key
+     */
+    public Blockchain(int difficulty, Map<String, Long> allocations){
         Logger.info("Initializing blockchain with difficulty: " + difficulty);
         this.blocks = new ArrayList<>();
         this.difficulty = difficulty;
+        this.addressIndex = new AddressIndex();
+        this.ledger = new AccountLedger();
+        // Sorted, so the genesis block does not depend on the iteration order of the map
+        this.allocations = new TreeMap<>(allocations).entrySet().stream()
+                .<Transaction>map(entry -> new AllocationTransaction(entry.getKey(), entry.getValue()))
+                .toList();
         // Initialize chain with genesis block
         Block genesisBlock = genesisBlock();
         genesisBlock.mineBlock(difficulty);
         blocks.add(genesisBlock);
-        Logger.info("Genesis block created and added to blockchain");
+        heights.put(genesisBlock.getHash(), 0);
+        ledger.applyBlock(genesisBlock);
+        Logger.info("Genesis block created and added to blockchain with " + this.allocations.size() + " allocations");
     }
 
     /**
@@ -36,44 +84,113 @@ public class Blockchain {
      *
      * @return The latest Block object in the blockchain
      */
-    Block getLatestBlock() {
+    public synchronized Block getLatestBlock() {
         return blocks.getLast();
     }
 
     /**
-     * Adds a new block to the chain after validating its hash.
-     * Only adds blocks that meet the current difficulty requirement.
+     * Adds a new block to the chain after validating its hash, its link to the tip and balances.
+     * Only adds blocks that meet the current difficulty requirement, directly extend the current tip,
+     * and whose senders can cover their transfers. Accepted blocks are applied to the ledger and the address index.
      *
      * @param block The Block to be added to the blockchain
+     * @return true if the block was appended, false if it was rejected
      */
-    void addBlock(Block block) {
+    public synchronized boolean addBlock(Block block) {
         Logger.info("Attempting to add new block to blockchain");
-        if (BlockUtils.isHashValid(block.getHash(), difficulty)) {
-            blocks.add(block);
-            Logger.info("Block added to blockchain: " + block.getHash());
-        } else {
+        if (!BlockUtils.isHashValid(block.getHash(), difficulty)) {
             Logger.error("Block hash invalid, block not added: " + block.getHash());
+            BLOCKS_REJECTED.inc();
+            return false;
+        }
+        // The block must extend the current tip; another miner or a peer may have got there first
+        Block tip = blocks.getLast();
+        if (block.getIndex() != tip.getIndex() + 1 || !block.getPreviousHash().equals(tip.getHash())) {
+            Logger.error("Block does not extend the tip, block not added: " + block.getHash());
+            BLOCKS_REJECTED.inc();
+            return false;
+        }
+        // Re-check balances under the chain lock; another miner may have spent the same funds
+        String ledgerError = ledger.checkTransactions(block.getTransactions());
+        if (ledgerError != null) {
+            Logger.error("Block rejected by ledger, block not added: " + ledgerError);
+            BLOCKS_REJECTED.inc();
+            return false;
+        }
+        BLOCK_INTERVAL.observeNanos(Math.max(0, block.getTimestamp() - tip.getTimestamp()) * 1_000_000L);
+        // Addresses are interned only once their block is accepted, as the dictionary never shrinks
+        for (Transaction tx : block.getTransactions()) {
+            if (tx instanceof SignedTransaction signed) {
+                signed.intern();
+            }
+        }
+        blocks.add(block);
+        heights.put(block.getHash(), block.getIndex());
+        ledger.applyBlock(block);
+        addressIndex.indexBlock(block);
+        Logger.info("Block added to blockchain: " + block.getHash());
+        listeners.forEach(listener -> listener.blockAdded(block));
+        return true;
+    }
+
+    /**
+     * Removes all blocks above the given height, reverting their effect on the ledger and
+     * the address index in reverse order. Used when reorganising onto a different branch.
+     *
+     * @param height The height of the block that becomes the new tip; the genesis block is never removed
+     * @return The removed blocks, lowest height first
+     */
+    public synchronized List<Block> rollbackTo(int height) {
+        int keep = Math.max(height, 0) + 1;
+        List<Block> removed = new ArrayList<>();
+        while (blocks.size() > keep) {
+            Block block = blocks.removeLast();
+            heights.remove(block.getHash());
+            ledger.revertBlock(block);
+            addressIndex.unindexBlock(block);
+            removed.addFirst(block);
+            listeners.forEach(listener -> listener.blockRemoved(block));
         }
+        if (!removed.isEmpty()) {
+            BLOCKS_ROLLED_BACK.add(removed.size());
+            Logger.info("Rolled back " + removed.size() + " blocks to height " + (keep - 1));
+        }
+        return removed;
+    }
+
+    /**
+     * Registers a listener that is notified whenever a block is appended or rolled back.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(ChainListener listener) {
+        listeners.add(listener);
     }
 
     /**
      * Validates the entire blockchain by checking:
      * 1. Hash integrity of each block
-     * 2. Proper linking between consecutive blocks
+     * 2. That each block's merkle root matches its transactions
+     * 3. Proper linking between consecutive blocks
      *
      * @return true if the entire chain is valid, false if any validation fails
      */
-    public boolean isChainValid() {
+    public synchronized boolean isChainValid() {
         Logger.info("Validating blockchain integrity");
         for (int i = 1; i < blocks.size(); i++) {
             Block currentBlock = blocks.get(i);
             Block previousBlock = blocks.get(i - 1);
 
-            if (!currentBlock.getHash().equals(BlockUtils.calculateHash(currentBlock.getHeader(), currentBlock.getTransactions()))) {
+            if (!currentBlock.getHash().equals(BlockUtils.calculateHash(currentBlock.getHeader()))) {
                 Logger.error("Block hash mismatch at index " + i);
                 return false;
             }
 
+            if (!currentBlock.getHeader().getMerkleRoot().equals(BlockUtils.calculateMerkleRoot(currentBlock.getTransactions()))) {
+                Logger.error("Block merkle root mismatch at index " + i);
+                return false;
+            }
+
             if (!currentBlock.getPreviousHash().equals(previousBlock.getHash())) {
                 Logger.error("Block previous hash mismatch at index " + i);
                 return false;
@@ -86,8 +203,8 @@ public class Blockchain {
     /**
      * Creates and returns the genesis block for the blockchain.
      * The genesis block is the first block in the chain with special properties:
-     * - Has no previous hash (uses "0")
-     * - Contains no transactions
+     * - Has no previous hash (uses the all-zero hash)
+     * - Contains only the allocations of initial funds, if any
      * - Marks the start of the blockchain
      *
      * @return The genesis Block object with initial configuration
@@ -95,13 +212,12 @@ public class Blockchain {
     public Block genesisBlock() {
         Logger.info("Creating genesis block");
         // Initialize genesis block with default values
-        String genesisPreviousHash = "0";
-        long timestamp = System.currentTimeMillis();
+        Hash256 genesisPreviousHash = Hash256.ZERO;
+        long timestamp = GENESIS_TIMESTAMP;
         int nonce = 0;
-        List<Transaction> emptyTransactions = List.of();
 
-        BlockHeader header = new BlockHeader(0, timestamp,genesisPreviousHash, "", nonce, "genesis");
-        return new Block(0, timestamp, emptyTransactions, genesisPreviousHash, "genesis");
+        BlockHeader header = new BlockHeader(0, timestamp,genesisPreviousHash, Hash256.ZERO, nonce, "genesis");
+        return new Block(0, timestamp, allocations, genesisPreviousHash, "genesis");
     }
 
     /**
@@ -110,10 +226,74 @@ public class Blockchain {
      *
      * @return A new ArrayList containing all blocks in the chain
      */
-    public List<Block> getChain() {
+    public synchronized List<Block> getChain() {
         return new ArrayList<>(blocks);
     }
 
+    /**
+     * Returns the block at the given height without copying the chain.
+     *
+     * @param index The height of the block, 0 being the genesis block
+     * @return The Block at that height
+     * @throws IndexOutOfBoundsException if no block exists at that height
+     */
+    public synchronized Block getBlock(int index) {
+        return blocks.get(index);
+    }
+
+    /**
+     * Looks up a block of the chain by its hash.
+     *
+     * @param hash The block hash
+     * @return The block, or null if no block in the chain has that hash
+     */
+    public synchronized Block getBlockByHash(Hash256 hash) {
+        Integer height = heights.get(hash);
+        return height == null ? null : blocks.get(height);
+    }
+
+    /**
+     * Returns the blocks in a height range without copying the rest of the chain.
+     * The range is clamped to the existing chain.
+     *
+     * @param fromIndex Height of the first block to return, inclusive
+     * @param toIndex Height after the last block to return, exclusive
+     * @return The blocks in the range, lowest height first; empty if the range holds no blocks
+     */
+    public synchronized List<Block> getBlocks(int fromIndex, int toIndex) {
+        int from = Math.max(fromIndex, 0);
+        int to = Math.min(toIndex, blocks.size());
+        if (from >= to) {
+            return List.of();
+        }
+        return new ArrayList<>(blocks.subList(from, to));
+    }
+
+    /**
+     * Returns the height of the latest block, the genesis block being at height 0.
+     *
+     * @return The current chain height
+     */
+    public synchronized int getHeight() {
+        return blocks.size() - 1;
+    }
+
+    /**
+     * Returns the index of addresses to their wallets and transaction history.
+     * The index is kept up to date as blocks are added.
+     *
+     * @return The address index for this chain
+     */
+    public AddressIndex getAddressIndex() { return addressIndex; }
+
+    /**
+     * Returns the account ledger holding the confirmed balance of every address.
+     * The ledger is updated as blocks are added and rolled back.
+     *
+     * @return The account ledger for this chain
+     */
+    public AccountLedger getLedger() { return ledger; }
+
     /**
      * Returns the mining difficulty level of the blockchain.
      * Higher difficulty requires more computational work to mine blocks.
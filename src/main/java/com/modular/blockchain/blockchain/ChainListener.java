@@ -0,0 +1,23 @@
+package com.modular.blockchain.blockchain;
+
+/**
+ * Callback interface for components that react to changes of the chain.
+ * Listeners are invoked synchronously while the chain is locked, so they must return quickly
+ * and must not call back into the {@link Blockchain}.
+ */
+public interface ChainListener {
+    /**
+     * Called after a block has been appended to the chain.
+     *
+     * @param block The appended block
+     */
+    void blockAdded(Block block);
+
+    /**
+     * Called after a block has been removed from the tip of the chain during a rollback.
+     *
+     * @param block The removed block
+     */
+    default void blockRemoved(Block block) {
+    }
+}
@@ -2,13 +2,27 @@ package com.modular.blockchain.blockchain;
 
 import com.modular.blockchain.consensus.ConsensusEngine;
 import com.modular.blockchain.consensus.ConsensusResult;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
 import com.modular.blockchain.transaction.Transaction;
 import com.modular.blockchain.transaction.TransactionPool;
 import com.modular.blockchain.util.Logger;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Miner node in the blockchain network that creates new blocks by validating and combining transactions.
@@ -17,12 +31,26 @@ import java.util.concurrent.ScheduledExecutorService;
  * added to the blockchain.
  */
 public class Miner {
+    /** Default largest number of blocks a miner produces back to back in one round */
+    public static final int DEFAULT_MAX_BLOCKS_PER_ROUND = 4;
+
     private final TransactionPool pool;
     private final Blockchain blockchain;
     private final ConsensusEngine consensusEngine;
     private final String minerId;
     private final int miningThreshold;
     private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
+    /** Runs the hashing stage, so templates are assembled while a block is hashed */
+    private final ExecutorService hasher;
+    /** Runs the validation stage, shared with the rest of the node */
+    private final Executor validator = ForkJoinPool.commonPool();
+    /** Mined blocks not yet validated and added, oldest first */
+    private final Queue<Block> inFlight = new ConcurrentLinkedQueue<>();
+    private volatile int maxBlocksPerRound = DEFAULT_MAX_BLOCKS_PER_ROUND;
+    private final Counter hashes;
+    private final Histogram miningTime;
+    private final Counter blocksAccepted;
+    private final Counter blocksRejected;
 
     /**
      * Creates a new Miner instance with the specified configuration.
@@ -40,6 +68,18 @@ public class Miner {
         this.pool = pool;
         this.blockchain = blockchain;
         this.consensusEngine = consensusEngine;
+        this.hasher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "miner-" + minerId + "-hash");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.hashes = Metrics.counter("miner_hashes_total", "Block hashes computed while mining", "miner", minerId);
+        this.miningTime = Metrics.histogram("miner_mining_seconds", "Time spent finding a proof of work for a block",
+                Metrics.BLOCK_TIME_BUCKETS, "miner", minerId);
+        this.blocksAccepted = Metrics.counter("miner_blocks_total", "Blocks mined, by outcome",
+                "miner", minerId, "result", "accepted");
+        this.blocksRejected = Metrics.counter("miner_blocks_total", "Blocks mined, by outcome",
+                "miner", minerId, "result", "rejected");
     }
 
     /**
@@ -50,8 +90,31 @@ public class Miner {
      * @param minutes Time interval between mining attempts in minutes
      */
     public void startMining(int minutes) {
-        Logger.info("Miner " + minerId + " started mining with interval: " + minutes + " minutes");
-        service.scheduleAtFixedRate(this::checkAndMine, 0, minutes, java.util.concurrent.TimeUnit.MINUTES);
+        startMining(minutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Initiates the automated mining process with an interval in any time unit, for networks
+     * that produce blocks faster than once a minute.
+     *
+     * @param interval Time between mining attempts
+     * @param unit Unit of the interval
+     */
+    public void startMining(long interval, TimeUnit unit) {
+        startMining(0, interval, unit);
+    }
+
+    /**
+     * Initiates the automated mining process after an initial delay, e.g. to line attempts up with
+     * the slots of a proof-of-authority engine.
+     *
+     * @param initialDelay Time before the first mining attempt
+     * @param interval Time between mining attempts
+     * @param unit Unit of the delay and the interval
+     */
+    public void startMining(long initialDelay, long interval, TimeUnit unit) {
+        Logger.info("Miner " + minerId + " started mining with interval: " + interval + " " + unit.toString().toLowerCase());
+        service.scheduleAtFixedRate(this::checkAndMine, initialDelay, interval, unit);
     }
 
     /**
@@ -61,40 +124,207 @@ public class Miner {
     public void stopMining() {
         Logger.info("Miner " + minerId + " stopped mining");
         service.shutdownNow();
+        hasher.shutdownNow();
+    }
+
+    /**
+     * Sets how many blocks the miner may produce back to back in one round, while the pool
+     * holds enough transactions. Successive blocks of a round overlap in the pipeline.
+     *
+     * @param maxBlocksPerRound The limit, at least 1
+     */
+    public void setMaxBlocksPerRound(int maxBlocksPerRound) {
+        this.maxBlocksPerRound = maxBlocksPerRound;
     }
 
     /**
-     * Core mining logic that attempts to create and validate a new block.
-     * This method:
-     * 1. Checks transaction pool for available transactions
-     * 2. Creates a new block if enough transactions exist
-     * 3. Mines the block by finding a valid proof-of-work
-     * 4. Validates the block through consensus
-     * 5. Adds valid block to blockchain or returns transactions to pool on failure
+     * Core mining logic: one round of back-to-back blocks, run as a pipeline of three stages so
+     * that no stage waits for another to finish its block.
+     * <ol>
+     * <li>This thread assembles a block's template: it asks the consensus engine whether this
+     * miner may produce a block now, takes transactions from the pool and drops those the ledger
+     * would refuse after the blocks still in flight. The next template is assembled while the
+     * current block is hashed.</li>
+     * <li>The hasher thread has the consensus engine create the block on top of the previous one,
+     * even before that one is committed.</li>
+     * <li>The common fork-join pool validates each block through consensus and adds it to the
+     * blockchain, in order, while the next block is hashed. A block that fails returns its valid
+     * transactions to the pool, and the blocks mined on top of it are abandoned.</li>
+     * </ol>
+     * The round ends when the pool runs short of transactions, the engine refuses another block
+     * or {@link #setMaxBlocksPerRound the limit} is reached, and returns once its blocks are committed.
      */
     private void checkAndMine() {
+        CompletableFuture<Boolean> committed = CompletableFuture.completedFuture(true);
+        ArrayList<Transaction> batch = new ArrayList<>();
+        ArrayList<Transaction> next = new ArrayList<>();
+        int base = blockchain.getHeight();
         try {
+            if (!consensusEngine.canPropose(minerId, blockchain)) {
+                Logger.debug("Miner " + minerId + " may not produce a block now");
+                return;
+            }
             Logger.debug("Miner " + minerId + " checking transaction pool");
-            List<Transaction> batch = pool.getBatch(miningThreshold);
-            if (batch.size() >= miningThreshold) {
+            Block parent = blockchain.getLatestBlock();
+            batch = assemble(List.of());
+            for (int mined = 0; batch.size() >= miningThreshold; ) {
                 Logger.info("Miner " + minerId + " found " + batch.size() + " transactions, mining new block");
-                Block newBlock = new Block(blockchain.getChain().size(), System.currentTimeMillis(), batch, blockchain.getLatestBlock().getHash(), minerId);
-                newBlock.mineBlock(blockchain.getDifficulty());
-                ConsensusResult result = consensusEngine.validateBlock(newBlock, blockchain);
-                if (result.isSuccess()) {
-                    blockchain.addBlock(newBlock);
-                    Logger.info("Miner " + minerId + " successfully mined and added a new block: " + newBlock.getHash());
-                    Logger.debug("Transactions added to new block by miner " + minerId + ": " + batch.stream().map(Transaction::getId).toList());
-                } else {
-                    Logger.error("Consensus failed for new block by miner " + minerId + ": " + result.getMessage());
-                    pool.addBack((java.util.ArrayList<Transaction>) batch);
+                long start = System.nanoTime();
+                CompletableFuture<Block> hashing = consensusEngine.mineBlockAsync(batch, parent, blockchain, minerId, hasher);
+                if (++mined < maxBlocksPerRound) {
+                    next = assemble(batch);
                 }
-            } else {
+                Block newBlock = hashing.join();
+                if (newBlock == null && !inFlight.isEmpty()) {
+                    // The engine only builds on the tip, so the blocks ahead must be committed first
+                    committed.join();
+                    parent = blockchain.getLatestBlock();
+                    batch = unconfirmed(base + 1, batch);
+                    newBlock = batch.size() < miningThreshold ? null
+                            : consensusEngine.mineBlock(batch, parent, blockchain, minerId);
+                }
+                if (newBlock == null) {
+                    Logger.debug("Miner " + minerId + " lost its turn to produce a block");
+                    break;
+                }
+                miningTime.observeSince(start);
+                // Nonces are tried from zero, so the final nonce counts the hashes computed
+                hashes.add(newBlock.getNonce() + 1);
+                Block block = newBlock;
+                inFlight.add(block);
+                committed = committed.thenCompose(parentAdded -> parentAdded ? commit(block) : abandon(block));
+                parent = block;
+                batch = next;
+                next = new ArrayList<>();
+                if (!batch.isEmpty() && !consensusEngine.canPropose(minerId, blockchain)) {
+                    break;
+                }
+            }
+            if (batch.size() < miningThreshold) {
                 Logger.debug("Miner " + minerId + " found insufficient transactions to mine a block");
             }
         } catch (Exception e) {
             Logger.error("Error during mining by miner " + minerId + ": " + e.getMessage());
+        } finally {
+            // Templates have already been taken out of the pool
+            batch.addAll(next);
+            if (!batch.isEmpty()) {
+                pool.addBack(unconfirmed(base + 1, batch));
+            }
+            committed.join();
+        }
+    }
+
+    /**
+     * Takes the transactions for a block from the pool, keeping those the ledger accepts after
+     * the blocks that are mined but not yet committed and the block being hashed.
+     *
+     * @param hashing Transactions of the block being hashed
+     * @return The template's transactions
+     */
+    private ArrayList<Transaction> assemble(List<Transaction> hashing) {
+        List<Transaction> taken = pool.getBatch(miningThreshold);
+        if (taken.size() < miningThreshold) {
+            return new ArrayList<>(taken);
+        }
+        List<Transaction> applicable;
+        // Holding the chain's lock, each in-flight block is either fully applied or not at all
+        synchronized (blockchain) {
+            List<Transaction> preceding = new ArrayList<>();
+            for (Block block : inFlight) {
+                if (blockchain.getBlockByHash(block.getHash()) == null) {
+                    preceding.addAll(block.getTransactions());
+                }
+            }
+            preceding.addAll(hashing);
+            applicable = blockchain.getLedger().selectApplicable(preceding, taken);
+        }
+        if (applicable.size() < taken.size()) {
+            Logger.error("Miner " + minerId + " dropped " + (taken.size() - applicable.size())
+                    + " transactions the chain would not accept");
+        }
+        return new ArrayList<>(applicable);
+    }
+
+    /**
+     * Validates a mined block whose parent has been committed and adds it to the chain.
+     *
+     * @return Future of whether the block was added
+     */
+    private CompletableFuture<Boolean> commit(Block block) {
+        return consensusEngine.validateBlockAsync(block, blockchain, validator).handle((result, error) -> {
+            boolean added = error == null && result.isSuccess() && blockchain.addBlock(block);
+            inFlight.remove(block);
+            if (added) {
+                blocksAccepted.inc();
+                Logger.info("Miner " + minerId + " successfully mined and added a new block: " + block.getHash());
+                Logger.debug("Transactions added to new block by miner " + minerId + ": " + block.getTransactions().stream().map(Transaction::getId).toList());
+            } else {
+                blocksRejected.inc();
+                String reason = error != null ? error.getMessage() : result.isSuccess() ? "rejected by blockchain" : result.getMessage();
+                Logger.error("Consensus failed for new block by miner " + minerId + ": " + reason);
+                pool.addBack(unconfirmed(block.getIndex(), error != null ? block.getTransactions() : withoutRejected(block.getTransactions(), result)));
+            }
+            return added;
+        });
+    }
+
+    /**
+     * Gives up a mined block whose parent did not make it into the chain.
+     *
+     * @return Future of false
+     */
+    private CompletableFuture<Boolean> abandon(Block block) {
+        inFlight.remove(block);
+        blocksRejected.inc();
+        Logger.debug("Miner " + minerId + " abandoned block " + block.getIndex() + " whose parent was not added");
+        pool.addBack(unconfirmed(block.getIndex(), block.getTransactions()));
+        return CompletableFuture.completedFuture(false);
+    }
+
+    /**
+     * Drops the transactions that a block from the given height on has confirmed. Transactions in
+     * a template or an in-flight block are out of the pool, so the pool cannot drop them when a
+     * competing block confirms them; they must be filtered before being mined again or returned.
+     *
+     * @param fromIndex Height of the first block that may have confirmed them
+     * @param txs The transactions
+     * @return Those not confirmed, in order
+     */
+    private ArrayList<Transaction> unconfirmed(int fromIndex, List<Transaction> txs) {
+        Set<Hash256> included = new HashSet<>();
+        for (Block competing : blockchain.getBlocks(fromIndex, Integer.MAX_VALUE)) {
+            competing.getTransactions().forEach(tx -> included.add(tx.getId()));
+        }
+        ArrayList<Transaction> orphaned = new ArrayList<>(txs.size());
+        for (Transaction tx : txs) {
+            if (!included.contains(tx.getId())) {
+                orphaned.add(tx);
+            }
+        }
+        return orphaned;
+    }
+
+    /**
+     * Returns the transactions of a block that failed validation which may still be mined,
+     * dropping those the engine found invalid so they are not retried forever.
+     *
+     * @param txs The transactions of the block
+     * @param result The validation result
+     * @return The transactions to return to the pool
+     */
+    private ArrayList<Transaction> withoutRejected(List<Transaction> txs, ConsensusResult result) {
+        List<ConsensusResult.TransactionStatus> statuses = result.getTransactionStatuses();
+        ArrayList<Transaction> retry = new ArrayList<>(txs.size());
+        for (int i = 0; i < txs.size(); i++) {
+            if (statuses.isEmpty() || !statuses.get(i).isRejected()) {
+                retry.add(txs.get(i));
+            }
+        }
+        if (retry.size() < txs.size()) {
+            Logger.error("Miner " + minerId + " dropped " + (txs.size() - retry.size()) + " invalid transactions");
         }
+        return retry;
     }
 
     /**
@@ -0,0 +1,784 @@
+package com.modular.blockchain.consensus;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.transaction.TransactionPool;
+import com.modular.blockchain.util.Logger;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One replica of a Byzantine fault tolerant consensus among a fixed set of replicas, in the style
+ * of chained HotStuff with the two-chain commit rule of DiemBFT. Blocks are final as soon as they
+ * are committed; there are no forks to wait out.
+ * <p>
+ * Time is divided into views, each with a leader chosen round robin. The leader proposes a block
+ * extending the highest quorum certificate it knows, and every replica that finds the block valid
+ * sends a signed vote to the leader of the next view. That leader verifies the votes as one batch
+ * once a quorum has arrived, aggregates them into a {@link QuorumCertificate}, and immediately
+ * proposes the next block carrying it. A block is committed once its child, proposed in the very
+ * next view, is certified, so the certificate in each proposal commits the block two back. Heights
+ * are pipelined: a new proposal is in flight while its parent collects the votes that commit the
+ * grandparent.
+ * <p>
+ * With n replicas the protocol tolerates f = (n - 1) / 3 faulty ones, and a quorum is more than
+ * (n + f) / 2 of them. A replica that sees no progress for the view timeout while there is work to
+ * do gives up on the view, never to vote in it, and sends its highest certificate with a signed
+ * timeout to the next leader. Once a quorum has done so, that leader proposes on the highest of
+ * their certificates and proves it with a {@link TimeoutCertificate}; replicas vote for a block
+ * only if it extends the certificate of the view before or such a proof. The timeout doubles with
+ * every consecutive failed view. Leaders only propose while transactions are waiting or recent
+ * blocks still need certificates, so an idle cluster produces no blocks.
+ * <p>
+ * Committed blocks are appended to the replica's {@link Blockchain}, which must use difficulty 0;
+ * several replicas may share one chain and pool, as the miners of one node do. Transactions whose
+ * signature was checked on entering the replica's pool are not verified again when they appear in
+ * a proposal. Blocks are produced by the protocol rather than by {@code Miner}s, so
+ * {@link #canPropose} is always false. All protocol state is confined to the replica's own thread.
+ * <p>
+ * Certificates are not relayed with blocks outside the protocol, so {@link #validateBlock} refuses
+ * every block received that way, e.g. from a peer over the network; a node only takes part in the
+ * chain by running a replica.
+ */
+public class BftConsensusEngine implements ConsensusEngine {
+    /** Default time without progress before a replica gives up on a view, in milliseconds */
+    public static final long DEFAULT_VIEW_TIMEOUT_MILLIS = 1_000;
+    /** Default largest number of transactions in one proposal */
+    public static final int DEFAULT_MAX_BLOCK_TRANSACTIONS = 2_000;
+    /** How often the replica checks its view timer and whether to propose */
+    private static final long TICK_MILLIS = 5;
+    /** Most times the view timeout doubles */
+    private static final int MAX_TIMEOUT_DOUBLINGS = 5;
+    /** Transaction signatures remembered from pool admission */
+    private static final int VERIFIED_TRANSACTIONS = 200_000;
+    /** Certificates remembered as verified */
+    private static final int VERIFIED_CERTIFICATES = 1_024;
+    /** Recent blocks whose transactions still make a leader propose, so that followers learn they are committed */
+    private static final int TRAILING_BLOCKS = 2;
+
+    private static final Histogram VALIDATION_TIME = Metrics.histogram("consensus_validation_seconds",
+            "Time to validate a block", Metrics.LATENCY_BUCKETS, "engine", "bft");
+    private static final Counter VALID = Metrics.counter("consensus_validations_total",
+            "Block validations, by outcome", "engine", "bft", "result", "valid");
+    private static final Counter INVALID = Metrics.counter("consensus_validations_total",
+            "Block validations, by outcome", "engine", "bft", "result", "invalid");
+
+    private final String replicaId;
+    private final List<String> replicas;
+    private final Map<String, PublicKey> replicaKeys;
+    private final PrivateKey privateKey;
+    private final BftTransport transport;
+    private final Blockchain blockchain;
+    private final TransactionPool pool;
+    private final int quorum;
+    private final Counter viewChanges;
+    private final Counter blocksCommitted;
+    private final Histogram finality;
+    /** Signatures of transactions verified on entering the pool, by transaction id */
+    private final Map<Hash256, String> verifiedTransactions = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Hash256, String> eldest) {
+            return size() > VERIFIED_TRANSACTIONS;
+        }
+    });
+    private volatile long viewTimeoutMillis = DEFAULT_VIEW_TIMEOUT_MILLIS;
+    private volatile int maxBlockTransactions = DEFAULT_MAX_BLOCK_TRANSACTIONS;
+    private ScheduledExecutorService executor;
+
+    // Protocol state, confined to the replica thread
+    /** Proposals above the last committed block, by hash */
+    private final Map<Hash256, Node> tree = new HashMap<>();
+    /** The last committed block */
+    private Node root;
+    private Hash256 startHash;
+    private volatile long view = 1;
+    private long lastVotedView;
+    private long proposedView;
+    private QuorumCertificate highQC;
+    private final Map<VoteKey, VoteSet> votes = new HashMap<>();
+    /** New-view messages received as the leader of a view, by view and sender */
+    private final Map<Long, Map<String, BftMessage>> newViews = new HashMap<>();
+    private final Map<VoteKey, Boolean> verifiedCertificates = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<VoteKey, Boolean> eldest) {
+            return size() > VERIFIED_CERTIFICATES;
+        }
+    };
+    private long lastProgressNanos;
+    private int consecutiveTimeouts;
+
+    /** A proposed block with the certificate it extends */
+    private static final class Node {
+        final Block block;
+        final QuorumCertificate justify;
+        final long view;
+
+        Node(Block block, QuorumCertificate justify, long view) {
+            this.block = block;
+            this.justify = justify;
+            this.view = view;
+        }
+    }
+
+    private record VoteKey(long view, Hash256 blockHash) {
+    }
+
+    /** Votes for one proposal, verified in a batch once there are enough of them */
+    private static final class VoteSet {
+        final Map<String, byte[]> unverified = new HashMap<>();
+        final Map<String, byte[]> verified = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates a replica. Every replica of the cluster must be given the same replica list, in the
+     * same order, and must start from the same chain tip.
+     *
+     * @param replicaId Id of this replica, one of the replicas
+     * @param replicas Ids of all replicas, in the order they lead views
+     * @param replicaKeys Public key of every replica, by id
+     * @param privateKey This replica's private key
+     * @param transport Carries messages between the replicas
+     * @param blockchain Chain committed blocks are appended to
+     * @param pool Pool proposals take transactions from
+     * @throws IllegalArgumentException If the replica set is empty, has duplicates or lacks keys, or does not contain this replica
+     */
+    public BftConsensusEngine(String replicaId, List<String> replicas, Map<String, PublicKey> replicaKeys, PrivateKey privateKey,
+                              BftTransport transport, Blockchain blockchain, TransactionPool pool) {
+        if (replicas.isEmpty() || replicas.stream().distinct().count() != replicas.size() || !replicas.contains(replicaId)) {
+            throw new IllegalArgumentException("Replicas must be distinct ids including " + replicaId);
+        }
+        for (String replica : replicas) {
+            if (replicaKeys.get(replica) == null) {
+                throw new IllegalArgumentException("No public key for replica " + replica);
+            }
+        }
+        this.replicaId = replicaId;
+        this.replicas = List.copyOf(replicas);
+        this.replicaKeys = Map.copyOf(replicaKeys);
+        this.privateKey = privateKey;
+        this.transport = transport;
+        this.blockchain = blockchain;
+        this.pool = pool;
+        int faulty = (replicas.size() - 1) / 3;
+        this.quorum = (replicas.size() + faulty) / 2 + 1;
+        this.viewChanges = Metrics.counter("bft_view_changes_total", "Views abandoned because they made no progress",
+                "replica", replicaId);
+        this.blocksCommitted = Metrics.counter("bft_blocks_committed_total", "Blocks committed by BFT consensus",
+                "replica", replicaId);
+        this.finality = Metrics.histogram("bft_finality_seconds", "Time from proposing a block to committing it",
+                Metrics.LATENCY_BUCKETS, "replica", replicaId);
+        pool.addListener(tx -> {
+            if (tx instanceof SignedTransaction signed) {
+                verifiedTransactions.put(signed.getId(), signed.getSignature());
+            }
+        });
+        Logger.info("BFT replica " + replicaId + " created in a cluster of " + replicas.size()
+                + ", tolerating " + faulty + " faulty, quorum " + quorum);
+    }
+
+    /**
+     * Sets how long a view may go without progress, while there is work to do, before the
+     * replica moves on to the next one.
+     *
+     * @param viewTimeoutMillis The timeout in milliseconds
+     */
+    public void setViewTimeoutMillis(long viewTimeoutMillis) {
+        this.viewTimeoutMillis = viewTimeoutMillis;
+    }
+
+    /**
+     * Sets the largest number of transactions this replica puts in a proposal.
+     *
+     * @param maxBlockTransactions The limit
+     */
+    public void setMaxBlockTransactions(int maxBlockTransactions) {
+        this.maxBlockTransactions = maxBlockTransactions;
+    }
+
+    /**
+     * Starts taking part in consensus from the current tip of the chain.
+     *
+     * @throws IllegalStateException If the replica was already started
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            throw new IllegalStateException("Replica " + replicaId + " already started");
+        }
+        Block tip = blockchain.getLatestBlock();
+        startHash = tip.getHash();
+        root = new Node(tip, null, 0);
+        highQC = QuorumCertificate.root(startHash);
+        lastProgressNanos = System.nanoTime();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bft-" + replicaId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        transport.register(replicaId, message -> {
+            try {
+                executor.execute(() -> handle(message));
+            } catch (RejectedExecutionException e) {
+                Logger.debug("[BFT " + replicaId + "] Dropping " + message + " after shutdown");
+            }
+        });
+        executor.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        Logger.info("[BFT " + replicaId + "] Started at height " + tip.getIndex());
+    }
+
+    /**
+     * Stops taking part in consensus.
+     */
+    public synchronized void stop() {
+        transport.unregister(replicaId);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        Logger.info("[BFT " + replicaId + "] Stopped in view " + view);
+    }
+
+    /**
+     * @return The view this replica is in
+     */
+    public long getView() {
+        return view;
+    }
+
+    /**
+     * @return Number of views this replica abandoned for lack of progress
+     */
+    public long getViewChanges() {
+        return viewChanges.get();
+    }
+
+    /**
+     * @return Id of this replica
+     */
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    /**
+     * Blocks are proposed by the replicas in turn as the protocol runs, never by a miner.
+     *
+     * @return false
+     */
+    @Override
+    public boolean canPropose(String minerId, Blockchain blockchain) {
+        return false;
+    }
+
+    /**
+     * Blocks are proposed by the replicas in turn as the protocol runs, never by a miner.
+     *
+     * @return null
+     */
+    @Override
+    public Block mineBlock(List<Transaction> txs, Blockchain blockchain, String minerId) {
+        return null;
+    }
+
+    /**
+     * Refuses a block arriving from outside the protocol, e.g. from a peer over the network.
+     * Such a block carries no quorum certificate, and the signature of the replica that proposed
+     * it does not make it final: a faulty replica can sign conflicting blocks at the same height.
+     *
+     * @param block The block to validate
+     * @param blockchain The blockchain the block extends
+     * @return A failed ConsensusResult
+     */
+    @Override
+    public ConsensusResult validateBlock(Block block, Blockchain blockchain) {
+        INVALID.inc();
+        return ConsensusResult.fail("Block " + block.getIndex() + " by " + block.getMinerId()
+                + " has no quorum certificate; BFT blocks are only committed through the protocol");
+    }
+
+    private void handle(BftMessage message) {
+        try {
+            switch (message.getType()) {
+                case PROPOSAL -> onProposal(message);
+                case VOTE -> onVote(message);
+                case NEW_VIEW -> onNewView(message);
+            }
+        } catch (RuntimeException e) {
+            Logger.error("[BFT " + replicaId + "] Failed to handle " + message + ": " + e.getMessage());
+        }
+    }
+
+    private void onProposal(BftMessage message) {
+        Block block = message.getBlock();
+        long proposalView = message.getView();
+        if (tree.containsKey(block.getHash()) || proposalView <= root.view) {
+            return;
+        }
+        String problem = checkProposal(message);
+        if (problem != null) {
+            Logger.error("[BFT " + replicaId + "] Rejected proposal for view " + proposalView + " from " + message.getSender() + ": " + problem);
+            return;
+        }
+        Node node = new Node(block, message.getCertificate(), proposalView);
+        tree.put(block.getHash(), node);
+        processCertificate(node.justify);
+        if (proposalView > view) {
+            view = proposalView;
+        }
+        if (proposalView == view) {
+            lastProgressNanos = System.nanoTime();
+        }
+        if (proposalView > lastVotedView && proposalView == view) {
+            // The leader built the block from its own verified pool
+            problem = message.getSender().equals(replicaId) ? null : validateProposal(node);
+            if (problem == null) {
+                lastVotedView = proposalView;
+                byte[] signature = CryptoUtils.sign(QuorumCertificate.signedBytes(proposalView, block.getHash()), privateKey);
+                transport.send(leader(proposalView + 1), BftMessage.vote(proposalView, replicaId, block.getHash(), signature));
+            } else {
+                Logger.error("[BFT " + replicaId + "] Not voting for block " + block.getIndex() + " of view " + proposalView + ": " + problem);
+            }
+        }
+        aggregate(new VoteKey(proposalView, block.getHash()));
+        tryPropose();
+    }
+
+    /**
+     * Checks that a proposal comes from the view's leader, is signed by it and extends a known
+     * block through a valid certificate. Its transactions are checked only before voting.
+     */
+    private String checkProposal(BftMessage message) {
+        Block block = message.getBlock();
+        QuorumCertificate justify = message.getCertificate();
+        if (!message.getSender().equals(leader(message.getView())) || !block.getMinerId().equals(message.getSender())) {
+            return "not proposed by the leader of the view";
+        }
+        String problem = checkSignature(block);
+        if (problem != null) {
+            return problem;
+        }
+        if (justify == null || justify.getView() >= message.getView() || !justify.getBlockHash().equals(block.getPreviousHash())) {
+            return "block does not extend its justifying certificate";
+        }
+        if (!isValid(justify)) {
+            return "invalid certificate " + justify;
+        }
+        if (justify.getView() != message.getView() - 1) {
+            TimeoutCertificate timeout = message.getTimeoutCertificate();
+            if (timeout == null || timeout.getView() != message.getView() || !isValid(timeout)) {
+                return "skips views without a valid timeout certificate";
+            }
+            if (justify.getView() < timeout.getMaxHighestView()) {
+                return "extends " + justify + " although a replica knows one from view " + timeout.getMaxHighestView();
+            }
+        }
+        Node parent = node(justify.getBlockHash());
+        if (parent == null) {
+            return "unknown parent " + justify.getBlockHash();
+        }
+        if (block.getIndex() != parent.block.getIndex() + 1) {
+            return "block index " + block.getIndex() + " does not follow its parent's";
+        }
+        return null;
+    }
+
+    private String checkSignature(Block block) {
+        PublicKey key = replicaKeys.get(block.getMinerId());
+        if (key == null) {
+            return "block by " + block.getMinerId() + ", who is not a replica";
+        }
+        if (block.getSignature() == null) {
+            return "block is not signed by its proposer";
+        }
+        try {
+            if (!CryptoUtils.verify(block.getHash().toBytes(), Base64.getDecoder().decode(block.getSignature()), key)) {
+                return "invalid proposer signature";
+            }
+        } catch (IllegalArgumentException e) {
+            return "malformed proposer signature";
+        }
+        return null;
+    }
+
+    /**
+     * Checks the transactions of a proposal on top of the committed chain and the uncommitted
+     * blocks it extends: signatures, no transaction twice on the branch, and sender balances.
+     */
+    private String validateProposal(Node node) {
+        long start = System.nanoTime();
+        String problem = checkTransactions(node);
+        VALIDATION_TIME.observeSince(start);
+        (problem == null ? VALID : INVALID).inc();
+        return problem;
+    }
+
+    private String checkTransactions(Node node) {
+        List<Block> branch = uncommittedAncestors(node);
+        Set<Hash256> ids = new HashSet<>();
+        branch.forEach(block -> block.getTransactions().forEach(tx -> ids.add(tx.getId())));
+        for (Transaction tx : node.block.getTransactions()) {
+            if (!(tx instanceof SignedTransaction signed)) {
+                return "Block contains unsupported transaction type: " + tx.getClass().getSimpleName();
+            }
+            if (!ids.add(tx.getId())) {
+                return "Transaction included twice: " + tx.getId();
+            }
+            String verified = verifiedTransactions.get(tx.getId());
+            if ((verified == null || !verified.equals(signed.getSignature())) && !tx.isValid()) {
+                return "Invalid transaction signature: " + tx.getId();
+            }
+        }
+        // Blocks another replica sharing the chain has already appended are part of the balances
+        synchronized (blockchain) {
+            List<Transaction> transfers = new ArrayList<>();
+            for (Block block : branch) {
+                if (blockchain.getBlockByHash(block.getHash()) == null) {
+                    transfers.addAll(block.getTransactions());
+                }
+            }
+            transfers.addAll(node.block.getTransactions());
+            return blockchain.getLedger().checkTransactions(transfers);
+        }
+    }
+
+    /**
+     * Returns the uncommitted blocks a proposal extends, oldest first.
+     */
+    private List<Block> uncommittedAncestors(Node node) {
+        List<Block> branch = new ArrayList<>();
+        for (Node n = tree.get(node.block.getPreviousHash()); n != null; n = tree.get(n.block.getPreviousHash())) {
+            branch.add(n.block);
+        }
+        Collections.reverse(branch);
+        return branch;
+    }
+
+    private void onVote(BftMessage message) {
+        long voteView = message.getView();
+        if (!leader(voteView + 1).equals(replicaId) || voteView <= root.view || voteView < highQC.getView()) {
+            return;
+        }
+        VoteKey key = new VoteKey(voteView, message.getBlockHash());
+        VoteSet set = votes.computeIfAbsent(key, k -> new VoteSet());
+        if (!set.verified.containsKey(message.getSender())) {
+            set.unverified.put(message.getSender(), message.getSignature());
+        }
+        aggregate(key);
+    }
+
+    /**
+     * Forms a certificate once a quorum of votes has arrived for a known proposal, verifying the
+     * votes collected so far as one batch, and proposes the next block on it.
+     */
+    private void aggregate(VoteKey key) {
+        VoteSet set = votes.get(key);
+        if (set == null || set.verified.size() + set.unverified.size() < quorum || !tree.containsKey(key.blockHash())) {
+            return;
+        }
+        byte[] signed = QuorumCertificate.signedBytes(key.view(), key.blockHash());
+        set.unverified.forEach((voter, signature) -> {
+            PublicKey voterKey = replicaKeys.get(voter);
+            if (voterKey != null && CryptoUtils.verify(signed, signature, voterKey)) {
+                set.verified.put(voter, signature);
+            } else {
+                Logger.error("[BFT " + replicaId + "] Invalid vote from " + voter + " in view " + key.view());
+            }
+        });
+        set.unverified.clear();
+        if (set.verified.size() < quorum) {
+            return;
+        }
+        votes.remove(key);
+        QuorumCertificate certificate = new QuorumCertificate(key.view(), key.blockHash(), set.verified);
+        verifiedCertificates.put(key, Boolean.TRUE);
+        processCertificate(certificate);
+        tryPropose();
+    }
+
+    private void onNewView(BftMessage message) {
+        long newView = message.getView();
+        QuorumCertificate certificate = message.getCertificate();
+        PublicKey key = replicaKeys.get(message.getSender());
+        if (!leader(newView).equals(replicaId) || newView < view || key == null || message.getSignature() == null
+                || !CryptoUtils.verify(TimeoutCertificate.signedBytes(newView, certificate.getView()), message.getSignature(), key)
+                || !isValid(certificate)) {
+            return;
+        }
+        Map<String, BftMessage> received = newViews.computeIfAbsent(newView, v -> new HashMap<>());
+        received.put(message.getSender(), message);
+        processCertificate(certificate);
+        if (received.size() >= quorum && view < newView) {
+            view = newView;
+            lastProgressNanos = System.nanoTime();
+        }
+        tryPropose();
+    }
+
+    /**
+     * Records a certificate: raises the highest known certificate and the view, and commits the
+     * parent of the certified block if the two were proposed in consecutive views.
+     */
+    private void processCertificate(QuorumCertificate certificate) {
+        if (certificate.getView() > highQC.getView()) {
+            highQC = certificate;
+        }
+        if (certificate.getView() + 1 > view) {
+            view = certificate.getView() + 1;
+            lastProgressNanos = System.nanoTime();
+        }
+        Node certified = tree.get(certificate.getBlockHash());
+        if (certified == null) {
+            return;
+        }
+        Node parent = tree.get(certified.justify.getBlockHash());
+        if (parent != null && certified.view == parent.view + 1) {
+            commit(parent);
+        }
+    }
+
+    /**
+     * Appends a block and its uncommitted ancestors to the chain, and prunes proposals that can
+     * no longer be committed, returning their transactions to the pool if this replica took them.
+     */
+    private void commit(Node node) {
+        List<Node> committed = new ArrayList<>();
+        for (Node n = node; n != null; n = tree.get(n.block.getPreviousHash())) {
+            committed.add(n);
+        }
+        Collections.reverse(committed);
+        Set<Hash256> included = new HashSet<>();
+        long now = System.currentTimeMillis();
+        for (Node n : committed) {
+            append(n.block);
+            n.block.getTransactions().forEach(tx -> included.add(tx.getId()));
+            finality.observeNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(0, now - n.block.getTimestamp())));
+        }
+        root = node;
+        ArrayList<Transaction> orphaned = new ArrayList<>();
+        Iterator<Node> nodes = tree.values().iterator();
+        while (nodes.hasNext()) {
+            Node n = nodes.next();
+            if (n.block.getIndex() <= node.block.getIndex()) {
+                nodes.remove();
+                if (n.block.getMinerId().equals(replicaId) && !committed.contains(n)) {
+                    n.block.getTransactions().stream().filter(tx -> !included.contains(tx.getId())).forEach(orphaned::add);
+                }
+            }
+        }
+        if (!orphaned.isEmpty()) {
+            pool.addBack(orphaned);
+        }
+        votes.keySet().removeIf(key -> key.view() <= node.view);
+        newViews.keySet().removeIf(v -> v <= node.view);
+        consecutiveTimeouts = 0;
+        lastProgressNanos = System.nanoTime();
+    }
+
+    private void append(Block block) {
+        synchronized (blockchain) {
+            // Another replica sharing the chain may have appended it already
+            if (blockchain.getBlockByHash(block.getHash()) == null && !blockchain.addBlock(block)) {
+                Logger.error("[BFT " + replicaId + "] Committed block " + block.getIndex() + " does not extend the local chain");
+                return;
+            }
+        }
+        pool.removeTransactions(block.getTransactions());
+        blocksCommitted.inc();
+        Logger.info("[BFT " + replicaId + "] Committed block " + block.getIndex() + " with "
+                + block.getTransactions().size() + " transactions");
+    }
+
+    /**
+     * Proposes a block if this replica leads the current view, holds the certificate of the view
+     * before or a quorum of new-view messages, and there is something to propose.
+     */
+    private void tryPropose() {
+        if (proposedView >= view || !leader(view).equals(replicaId)) {
+            return;
+        }
+        Map<String, BftMessage> timeouts = newViews.getOrDefault(view, Map.of());
+        boolean justified = highQC.getView() == view - 1 || timeouts.size() >= quorum;
+        Node parent = node(highQC.getBlockHash());
+        if (!justified || parent == null || (pool.size() == 0 && !hasRecentTransactions(parent))) {
+            return;
+        }
+        Set<Hash256> pending = new HashSet<>();
+        for (Node n = parent; n != null && n != root; n = node(n.block.getPreviousHash())) {
+            n.block.getTransactions().forEach(tx -> pending.add(tx.getId()));
+        }
+        List<Transaction> taken = pool.getBatch(maxBlockTransactions, pending);
+        List<Transaction> batch = selectApplicable(parent, taken);
+        if (batch.size() < taken.size()) {
+            Logger.error("[BFT " + replicaId + "] Dropped " + (taken.size() - batch.size())
+                    + " transactions the chain would not accept");
+        }
+        Block block = new Block(parent.block.getIndex() + 1, System.currentTimeMillis(), batch, parent.block.getHash(), replicaId);
+        // Computes the hash; with difficulty 0, as this engine requires, that is a single attempt
+        block.mineBlock(blockchain.getDifficulty());
+        block.setSignature(Base64.getEncoder().encodeToString(CryptoUtils.sign(block.getHash().toBytes(), privateKey)));
+        proposedView = view;
+        Logger.info("[BFT " + replicaId + "] Proposing block " + block.getIndex() + " with " + batch.size()
+                + " transactions in view " + view);
+        TimeoutCertificate timeout = null;
+        if (highQC.getView() != view - 1) {
+            // Every received certificate was processed, so highQC is at least as high as theirs
+            Map<String, Long> highestViews = new HashMap<>();
+            Map<String, byte[]> signatures = new HashMap<>();
+            timeouts.forEach((sender, message) -> {
+                highestViews.put(sender, message.getCertificate().getView());
+                signatures.put(sender, message.getSignature());
+            });
+            timeout = new TimeoutCertificate(view, highestViews, signatures);
+        }
+        BftMessage proposal = BftMessage.proposal(view, replicaId, block, highQC, timeout);
+        replicas.forEach(replica -> transport.send(replica, proposal));
+    }
+
+    /**
+     * Keeps the transactions that can be applied after the uncommitted blocks up to the parent,
+     * so that the replicas do not refuse to vote for the proposal.
+     */
+    private List<Transaction> selectApplicable(Node parent, List<Transaction> candidates) {
+        List<Block> branch = uncommittedAncestors(parent);
+        if (parent != root) {
+            branch.add(parent.block);
+        }
+        synchronized (blockchain) {
+            List<Transaction> preceding = new ArrayList<>();
+            for (Block block : branch) {
+                if (blockchain.getBlockByHash(block.getHash()) == null) {
+                    preceding.addAll(block.getTransactions());
+                }
+            }
+            return blockchain.getLedger().selectApplicable(preceding, candidates);
+        }
+    }
+
+    /**
+     * Checks whether any of the last few blocks up to the given one carries transactions, in
+     * which case a proposal is still needed to let every replica commit them.
+     */
+    private boolean hasRecentTransactions(Node node) {
+        Block block = node.block;
+        for (int i = 0; i < TRAILING_BLOCKS && block != null; i++) {
+            if (!block.getTransactions().isEmpty()) {
+                return true;
+            }
+            Node parent = node(block.getPreviousHash());
+            block = parent != null ? parent.block : blockchain.getBlockByHash(block.getPreviousHash());
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether this replica has work that needs the cluster to make progress: waiting
+     * transactions or uncommitted ones on the branch of the highest certificate.
+     */
+    private boolean hasWork() {
+        if (pool.size() > 0) {
+            return true;
+        }
+        for (Node n = tree.get(highQC.getBlockHash()); n != null; n = tree.get(n.block.getPreviousHash())) {
+            if (!n.block.getTransactions().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            if (!hasWork()) {
+                lastProgressNanos = now;
+            } else if (now - lastProgressNanos > timeoutNanos()) {
+                // Never vote in the abandoned view, or a late proposal could be certified behind the timeout
+                lastVotedView = Math.max(lastVotedView, view);
+                view++;
+                consecutiveTimeouts++;
+                lastProgressNanos = now;
+                viewChanges.inc();
+                Logger.info("[BFT " + replicaId + "] No progress, moving to view " + view + " led by " + leader(view));
+                byte[] signature = CryptoUtils.sign(TimeoutCertificate.signedBytes(view, highQC.getView()), privateKey);
+                transport.send(leader(view), BftMessage.newView(view, replicaId, highQC, signature));
+            }
+            tryPropose();
+        } catch (RuntimeException e) {
+            Logger.error("[BFT " + replicaId + "] Tick failed: " + e.getMessage());
+        }
+    }
+
+    private long timeoutNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(viewTimeoutMillis) << Math.min(consecutiveTimeouts, MAX_TIMEOUT_DOUBLINGS);
+    }
+
+    /**
+     * Checks that a certificate carries valid votes of a quorum of replicas. The root certificate
+     * needs no votes; certificates already checked are remembered.
+     */
+    private boolean isValid(QuorumCertificate certificate) {
+        if (certificate.getView() == 0) {
+            return certificate.getBlockHash().equals(startHash);
+        }
+        VoteKey key = new VoteKey(certificate.getView(), certificate.getBlockHash());
+        if (verifiedCertificates.containsKey(key)) {
+            return true;
+        }
+        byte[] signed = QuorumCertificate.signedBytes(certificate.getView(), certificate.getBlockHash());
+        int valid = 0;
+        for (Map.Entry<String, byte[]> vote : certificate.getSignatures().entrySet()) {
+            PublicKey voterKey = replicaKeys.get(vote.getKey());
+            if (voterKey != null && CryptoUtils.verify(signed, vote.getValue(), voterKey)) {
+                valid++;
+            }
+        }
+        if (valid < quorum) {
+            return false;
+        }
+        verifiedCertificates.put(key, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Checks that a timeout certificate carries valid timeouts of a quorum of replicas.
+     */
+    private boolean isValid(TimeoutCertificate certificate) {
+        int valid = 0;
+        for (Map.Entry<String, byte[]> timeout : certificate.getSignatures().entrySet()) {
+            PublicKey key = replicaKeys.get(timeout.getKey());
+            Long highestView = certificate.getHighestViews().get(timeout.getKey());
+            if (key != null && highestView != null
+                    && CryptoUtils.verify(TimeoutCertificate.signedBytes(certificate.getView(), highestView), timeout.getValue(), key)) {
+                valid++;
+            }
+        }
+        return valid >= quorum;
+    }
+
+    private Node node(Hash256 hash) {
+        return root.block.getHash().equals(hash) ? root : tree.get(hash);
+    }
+
+    private String leader(long view) {
+        return replicas.get((int) Math.floorMod(view, (long) replicas.size()));
+    }
+}
@@ -0,0 +1,138 @@
+package com.modular.blockchain.consensus;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.crypto.Hash256;
+
+/**
+ * A message exchanged between {@link BftConsensusEngine} replicas.
+ * <ul>
+ *   <li>PROPOSAL: the leader of a view proposes a block, justified by the highest certificate it
+ *   knows and, if it entered the view by timeout, by a {@link TimeoutCertificate}</li>
+ *   <li>VOTE: a replica's signed vote for a proposal, sent to the leader of the next view</li>
+ *   <li>NEW_VIEW: a replica that gave up on a view hands its highest certificate, and its signed
+ *   timeout, to the leader of the view it moves to</li>
+ * </ul>
+ * Messages are immutable.
+ */
+public final class BftMessage {
+    /** Kinds of BFT messages */
+    public enum Type { PROPOSAL, VOTE, NEW_VIEW }
+
+    private final Type type;
+    private final long view;
+    private final String sender;
+    private final Block block;
+    private final Hash256 blockHash;
+    private final QuorumCertificate certificate;
+    private final TimeoutCertificate timeoutCertificate;
+    private final byte[] signature;
+
+    private BftMessage(Type type, long view, String sender, Block block, Hash256 blockHash,
+                       QuorumCertificate certificate, TimeoutCertificate timeoutCertificate, byte[] signature) {
+        this.type = type;
+        this.view = view;
+        this.sender = sender;
+        this.block = block;
+        this.blockHash = blockHash;
+        this.certificate = certificate;
+        this.timeoutCertificate = timeoutCertificate;
+        this.signature = signature;
+    }
+
+    /**
+     * @param view The view of the proposal
+     * @param sender The proposing leader
+     * @param block The proposed block, signed by the leader
+     * @param justify Certificate for the block's parent
+     * @param timeout Certificate for entering the view by timeout, or null if the parent is from the view before
+     * @return A PROPOSAL message
+     */
+    public static BftMessage proposal(long view, String sender, Block block, QuorumCertificate justify,
+                                      TimeoutCertificate timeout) {
+        return new BftMessage(Type.PROPOSAL, view, sender, block, block.getHash(), justify, timeout, null);
+    }
+
+    /**
+     * @param view The view of the proposal voted for
+     * @param sender The voting replica
+     * @param blockHash Hash of the proposed block
+     * @param signature The replica's signature of {@link QuorumCertificate#signedBytes(long, Hash256)}
+     * @return A VOTE message
+     */
+    public static BftMessage vote(long view, String sender, Hash256 blockHash, byte[] signature) {
+        return new BftMessage(Type.VOTE, view, sender, null, blockHash, null, null, signature);
+    }
+
+    /**
+     * @param view The view the sender is moving to
+     * @param sender The replica changing view
+     * @param highest The highest certificate the sender knows
+     * @param signature The replica's signature of {@link TimeoutCertificate#signedBytes(long, long)}
+     * @return A NEW_VIEW message
+     */
+    public static BftMessage newView(long view, String sender, QuorumCertificate highest, byte[] signature) {
+        return new BftMessage(Type.NEW_VIEW, view, sender, null, highest.getBlockHash(), highest, null, signature);
+    }
+
+    /**
+     * @return The kind of message
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The view the message belongs to
+     */
+    public long getView() {
+        return view;
+    }
+
+    /**
+     * @return Id of the sending replica
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * @return The proposed block, or null if this is not a proposal
+     */
+    public Block getBlock() {
+        return block;
+    }
+
+    /**
+     * @return Hash of the block proposed, voted for, or certified by the carried certificate
+     */
+    public Hash256 getBlockHash() {
+        return blockHash;
+    }
+
+    /**
+     * @return The justifying certificate of a proposal or the sender's highest certificate of a
+     *         new-view message, otherwise null
+     */
+    public QuorumCertificate getCertificate() {
+        return certificate;
+    }
+
+    /**
+     * @return The timeout certificate of a proposal made after a view change, otherwise null
+     */
+    public TimeoutCertificate getTimeoutCertificate() {
+        return timeoutCertificate;
+    }
+
+    /**
+     * @return The signature of a vote or new-view message, otherwise null
+     */
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    @Override
+    public String toString() {
+        return type + "{view=" + view + ", from=" + sender + ", block=" + blockHash + '}';
+    }
+}
@@ -0,0 +1,34 @@
+package com.modular.blockchain.consensus;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link BftMessage}s between the replicas of a {@link BftConsensusEngine} cluster.
+ * Delivery may be delayed, reordered or lost; the protocol tolerates all three, at the cost of a
+ * view change when a proposal or enough of its votes go missing.
+ */
+public interface BftTransport {
+    /**
+     * Registers the receiver of the messages addressed to a replica. The receiver is called on a
+     * transport thread and must hand the message off quickly.
+     *
+     * @param replicaId Id of the replica
+     * @param receiver Consumer of the replica's messages
+     */
+    void register(String replicaId, Consumer<BftMessage> receiver);
+
+    /**
+     * Removes a replica's receiver; messages to it are dropped from then on.
+     *
+     * @param replicaId Id of the replica
+     */
+    void unregister(String replicaId);
+
+    /**
+     * Sends a message to one replica, including the sender itself.
+     *
+     * @param replicaId Id of the receiving replica
+     * @param message The message
+     */
+    void send(String replicaId, BftMessage message);
+}
@@ -4,6 +4,8 @@ import com.modular.blockchain.blockchain.Block;
 import com.modular.blockchain.blockchain.Blockchain;
 import com.modular.blockchain.transaction.Transaction;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Interface defining the consensus mechanism for the blockchain.
@@ -16,10 +18,55 @@ public interface ConsensusEngine {
      * @param txs List of transactions to include in the block
      * @param blockchain Reference to the current blockchain
      * @param minerId Identifier of the miner creating this block
-     * @return The newly mined block
+     * @return The newly mined block, or null if the miner may not produce a block at this time
      */
     Block mineBlock(List<Transaction> txs, Blockchain blockchain, String minerId);
 
+    /**
+     * Mines a new block on top of the given parent, which may still be on its way into the chain,
+     * so a miner can hash its next block while the previous one is validated and committed.
+     * Engines that can only build on the tip, like proof-of-authority with its slots, keep the
+     * default, which mines only if the parent is the tip.
+     *
+     * @param txs List of transactions to include in the block
+     * @param parent The block to build on
+     * @param blockchain Reference to the current blockchain
+     * @param minerId Identifier of the miner creating this block
+     * @return The newly mined block, or null if the engine cannot build on this parent now
+     */
+    default Block mineBlock(List<Transaction> txs, Block parent, Blockchain blockchain, String minerId) {
+        return parent.getHash().equals(blockchain.getLatestBlock().getHash()) ? mineBlock(txs, blockchain, minerId) : null;
+    }
+
+    /**
+     * Mines a new block on top of the given parent on the given executor.
+     *
+     * @param txs List of transactions to include in the block
+     * @param parent The block to build on
+     * @param blockchain Reference to the current blockchain
+     * @param minerId Identifier of the miner creating this block
+     * @param executor Executor to mine on
+     * @return Future of the mined block, or of null if the engine cannot build on this parent now
+     * @see #mineBlock(List, Block, Blockchain, String)
+     */
+    default CompletableFuture<Block> mineBlockAsync(List<Transaction> txs, Block parent, Blockchain blockchain, String minerId,
+                                                    Executor executor) {
+        return CompletableFuture.supplyAsync(() -> mineBlock(txs, parent, blockchain, minerId), executor);
+    }
+
+    /**
+     * Checks whether the miner may produce a block on the current tip right now, so it does not
+     * take transactions out of the pool for a block it is not allowed to make. Engines where any
+     * miner may produce a block at any time, like proof-of-work, keep the default.
+     *
+     * @param minerId Identifier of the miner
+     * @param blockchain Reference to the current blockchain
+     * @return true if the miner may produce a block
+     */
+    default boolean canPropose(String minerId, Blockchain blockchain) {
+        return true;
+    }
+
     /**
      * Validates a block according to the consensus rules.
      *
@@ -28,4 +75,17 @@ public interface ConsensusEngine {
      * @return Result of the validation
      */
     ConsensusResult validateBlock(Block block, Blockchain blockchain);
+
+    /**
+     * Validates a block according to the consensus rules on the given executor. The block's
+     * parent must be the tip of the chain by the time validation runs.
+     *
+     * @param block The block to validate
+     * @param blockchain Reference to the current blockchain
+     * @param executor Executor to validate on
+     * @return Future of the result of the validation
+     */
+    default CompletableFuture<ConsensusResult> validateBlockAsync(Block block, Blockchain blockchain, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> validateBlock(block, blockchain), executor);
+    }
 }
\ No newline at end of file
@@ -2,14 +2,39 @@ package com.modular.blockchain.consensus;
 
 import com.modular.blockchain.blockchain.Block;
 
+import java.util.List;
+
 /**
  * Represents the result of a consensus operation in the blockchain.
  * Contains information about the proposed block, success status, and any relevant messages.
+ * Validations that check the transactions of a block also report the outcome for each of them.
  */
 public class ConsensusResult {
+    /** Outcome of checking a single transaction of a block */
+    public enum TransactionStatus {
+        /** The transaction is valid */
+        VALID,
+        /** The transaction's signature does not verify */
+        INVALID_SIGNATURE,
+        /** The transaction is of a type blocks may not contain */
+        UNSUPPORTED_TYPE,
+        /** The ledger refuses the transfer, e.g. because the sender cannot cover it */
+        REJECTED_BY_LEDGER,
+        /** Validation stopped at another transaction's failure before reaching this one */
+        NOT_CHECKED;
+
+        /**
+         * @return true if the transaction itself is invalid, rather than valid or unchecked
+         */
+        public boolean isRejected() {
+            return this != VALID && this != NOT_CHECKED;
+        }
+    }
+
     private final Block proposedBlock;
     private final boolean success;
     private final String message;
+    private final List<TransactionStatus> transactionStatuses;
 
     /**
      * Constructs a new ConsensusResult with the specified parameters.
@@ -19,9 +44,22 @@ public class ConsensusResult {
      * @param message A message describing the result of the operation
      */
     public ConsensusResult(Block proposedBlock, boolean success, String message) {
+        this(proposedBlock, success, message, List.of());
+    }
+
+    /**
+     * Constructs a new ConsensusResult that reports the outcome for each transaction of the block.
+     *
+     * @param proposedBlock The block that was proposed in the consensus operation
+     * @param success Whether the consensus operation was successful
+     * @param message A message describing the result of the operation
+     * @param transactionStatuses Outcome for each transaction, in block order
+     */
+    public ConsensusResult(Block proposedBlock, boolean success, String message, List<TransactionStatus> transactionStatuses) {
         this.proposedBlock = proposedBlock;
         this.success = success;
         this.message = message;
+        this.transactionStatuses = List.copyOf(transactionStatuses);
     }
 
     /**
@@ -51,6 +89,15 @@ public class ConsensusResult {
         return message;
     }
 
+    /**
+     * Gets the outcome for each transaction of the block, in block order.
+     *
+     * @return The statuses, or an empty list if the transactions were not checked one by one
+     */
+    public List<TransactionStatus> getTransactionStatuses() {
+        return transactionStatuses;
+    }
+
     /**
      * Creates a successful ConsensusResult with the given block.
      *
@@ -70,4 +117,18 @@ public class ConsensusResult {
     public static ConsensusResult fail(String message) {
         return new ConsensusResult(null, false, message);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a ConsensusResult with the outcome of checking the block's transactions.
+     *
+     * @param block The block whose transactions were checked
+     * @param message The first problem found, or null if every transaction is valid
+     * @param transactionStatuses Outcome for each transaction, in block order
+     * @return A successful result if there is no problem, otherwise a failed one
+     */
+    public static ConsensusResult of(Block block, String message, List<TransactionStatus> transactionStatuses) {
+        return message == null
+                ? new ConsensusResult(block, true, "OK", transactionStatuses)
+                : new ConsensusResult(null, false, message, transactionStatuses);
+    }
+}
@@ -0,0 +1,103 @@
+package com.modular.blockchain.consensus;
+
+import com.modular.blockchain.util.Logger;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BftTransport} between replicas in the same JVM, for running a BFT cluster inside one
+ * process: the miners of a single node, or a whole simulated cluster. Messages are handed over as
+ * objects without serialisation. An optional one-way latency with jitter models a network between
+ * the replicas; messages to the sender itself are delivered at once.
+ */
+public class LocalBftTransport implements BftTransport {
+    private final Map<String, Consumer<BftMessage>> receivers = new ConcurrentHashMap<>();
+    private final long latencyMicros;
+    private final long jitterMicros;
+    private final Random random;
+    private final ScheduledExecutorService delayer;
+    private final AtomicLong delivered = new AtomicLong();
+
+    /**
+     * Creates a transport that delivers every message immediately.
+     */
+    public LocalBftTransport() {
+        this(0, 0, new Random());
+    }
+
+    /**
+     * Creates a transport that delays messages between different replicas.
+     *
+     * @param latencyMillis Mean one-way latency in milliseconds
+     * @param jitterMillis Largest deviation from the mean, in milliseconds
+     * @param random Source of the jitter
+     */
+    public LocalBftTransport(long latencyMillis, long jitterMillis, Random random) {
+        this.latencyMicros = TimeUnit.MILLISECONDS.toMicros(latencyMillis);
+        this.jitterMicros = TimeUnit.MILLISECONDS.toMicros(jitterMillis);
+        this.random = random;
+        this.delayer = latencyMillis > 0 || jitterMillis > 0
+                ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "bft-local-transport");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    @Override
+    public void register(String replicaId, Consumer<BftMessage> receiver) {
+        receivers.put(replicaId, receiver);
+    }
+
+    @Override
+    public void unregister(String replicaId) {
+        receivers.remove(replicaId);
+    }
+
+    @Override
+    public void send(String replicaId, BftMessage message) {
+        if (delayer == null || replicaId.equals(message.getSender())) {
+            deliver(replicaId, message);
+            return;
+        }
+        long delay;
+        synchronized (random) {
+            delay = latencyMicros + (jitterMicros == 0 ? 0 : (long) ((random.nextDouble() * 2 - 1) * jitterMicros));
+        }
+        delayer.schedule(() -> deliver(replicaId, message), Math.max(0, delay), TimeUnit.MICROSECONDS);
+    }
+
+    private void deliver(String replicaId, BftMessage message) {
+        Consumer<BftMessage> receiver = receivers.get(replicaId);
+        if (receiver == null) {
+            Logger.debug("[LocalBftTransport] Dropping " + message + " for unknown replica " + replicaId);
+            return;
+        }
+        delivered.incrementAndGet();
+        receiver.accept(message);
+    }
+
+    /**
+     * @return Number of messages delivered so far
+     */
+    public long getMessagesDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * Stops delivering delayed messages.
+     */
+    public void close() {
+        if (delayer != null) {
+            delayer.shutdownNow();
+        }
+    }
+}
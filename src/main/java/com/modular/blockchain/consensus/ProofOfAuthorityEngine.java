@@ -0,0 +1,253 @@
+package com.modular.blockchain.consensus;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.util.Logger;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A proof-of-authority consensus engine for permissioned networks: a fixed, ordered set of
+ * authorities take turns producing blocks, and each block carries its producer's signature of
+ * the block hash instead of a proof of work.
+ * <p>
+ * Time is divided into slots of equal length counted from the epoch, and slot {@code s} belongs
+ * to authority {@code s mod n}. A block is valid only if its timestamp falls in a slot of the
+ * authority named as its miner, that slot is later than its parent's, and the signature verifies
+ * with that authority's key. An authority that is offline or has nothing to include simply leaves
+ * its slot empty; the next authority builds on the latest block it has, so the chain keeps going
+ * at a reduced rate. An authority never signs two blocks for the same slot.
+ * <p>
+ * Every node must be configured with the same authorities in the same order and the same slot
+ * length, and should run its chain with difficulty 0 so that producing a block costs one hash.
+ * Authority clocks are assumed to be roughly synchronised; blocks from a slot that has not started
+ * locally are accepted up to a configurable drift.
+ */
+public class ProofOfAuthorityEngine implements ConsensusEngine {
+    /** Default slot length, in milliseconds */
+    public static final long DEFAULT_SLOT_MILLIS = 1_000;
+    /** Default tolerance for blocks timestamped ahead of the local clock, in milliseconds */
+    public static final long DEFAULT_MAX_CLOCK_DRIFT_MILLIS = 500;
+
+    private static final Histogram VALIDATION_TIME = Metrics.histogram("consensus_validation_seconds",
+            "Time to validate a block", Metrics.LATENCY_BUCKETS, "engine", "poa");
+    private static final Counter VALID = Metrics.counter("consensus_validations_total",
+            "Block validations, by outcome", "engine", "poa", "result", "valid");
+    private static final Counter INVALID = Metrics.counter("consensus_validations_total",
+            "Block validations, by outcome", "engine", "poa", "result", "invalid");
+    private static final Counter MISSED_SLOTS = Metrics.counter("consensus_poa_missed_slots_total",
+            "Slots left empty before a validated block, because their authority was offline or had nothing to include");
+
+    private final List<String> authorities;
+    private final Map<String, PublicKey> authorityKeys;
+    private final Map<String, PrivateKey> signingKeys = new ConcurrentHashMap<>();
+    /** Last slot each local authority signed a block for, guarded by this */
+    private final Map<String, Long> lastSignedSlots = new HashMap<>();
+    private final long slotMillis;
+    private volatile long maxClockDriftMillis = DEFAULT_MAX_CLOCK_DRIFT_MILLIS;
+
+    /**
+     * Creates an engine for the given authority set.
+     *
+     * @param authorities Miner ids of the authorities, in the order they take turns
+     * @param authorityKeys Public key of every authority, by miner id
+     * @param slotMillis Length of a slot in milliseconds
+     * @throws IllegalArgumentException If the set is empty, has duplicates, lacks a key or the slot length is not positive
+     */
+    public ProofOfAuthorityEngine(List<String> authorities, Map<String, PublicKey> authorityKeys, long slotMillis) {
+        if (authorities.isEmpty() || authorities.stream().distinct().count() != authorities.size()) {
+            throw new IllegalArgumentException("Authorities must be a non-empty list of distinct miner ids");
+        }
+        for (String authority : authorities) {
+            if (authorityKeys.get(authority) == null) {
+                throw new IllegalArgumentException("No public key for authority " + authority);
+            }
+        }
+        if (slotMillis <= 0) {
+            throw new IllegalArgumentException("Slot length must be positive");
+        }
+        this.authorities = List.copyOf(authorities);
+        this.authorityKeys = Map.copyOf(authorityKeys);
+        this.slotMillis = slotMillis;
+        Logger.info("Proof-of-authority engine created with " + authorities.size() + " authorities and " + slotMillis + " ms slots");
+    }
+
+    /**
+     * Registers the private key of an authority run by this node, so its miner can sign blocks.
+     *
+     * @param minerId The authority's miner id
+     * @param privateKey The private key matching its configured public key
+     * @throws IllegalArgumentException If the miner id is not an authority
+     */
+    public void addSigningKey(String minerId, PrivateKey privateKey) {
+        if (!authorityKeys.containsKey(minerId)) {
+            throw new IllegalArgumentException(minerId + " is not an authority");
+        }
+        signingKeys.put(minerId, privateKey);
+    }
+
+    /**
+     * Sets how far into the future a block's slot may lie by the local clock and still be accepted.
+     *
+     * @param maxClockDriftMillis The tolerance in milliseconds
+     */
+    public void setMaxClockDriftMillis(long maxClockDriftMillis) {
+        this.maxClockDriftMillis = maxClockDriftMillis;
+    }
+
+    /**
+     * @return The length of a slot in milliseconds
+     */
+    public long getSlotMillis() {
+        return slotMillis;
+    }
+
+    /**
+     * @param timestamp A time in milliseconds since the epoch
+     * @return The slot the time falls in
+     */
+    public long slotOf(long timestamp) {
+        return Math.floorDiv(timestamp, slotMillis);
+    }
+
+    /**
+     * @param slot A slot
+     * @return The miner id of the authority the slot belongs to
+     */
+    public String proposerOf(long slot) {
+        return authorities.get((int) Math.floorMod(slot, (long) authorities.size()));
+    }
+
+    /**
+     * @return Time until the next slot starts by the local clock, for aligning miners with slot boundaries
+     */
+    public long millisUntilNextSlot() {
+        return slotMillis - Math.floorMod(System.currentTimeMillis(), slotMillis);
+    }
+
+    /**
+     * Checks whether the authority may produce a block on the current tip right now: it runs on
+     * this node, the current slot is its turn, and it has not yet signed a block for that slot.
+     *
+     * @param minerId ID of the miner asking
+     * @param blockchain The chain the block would extend
+     * @return true if {@link #mineBlock} would produce a block
+     */
+    @Override
+    public boolean canPropose(String minerId, Blockchain blockchain) {
+        long slot = slotOf(System.currentTimeMillis());
+        if (!signingKeys.containsKey(minerId) || !minerId.equals(proposerOf(slot))
+                || slot <= slotOf(blockchain.getLatestBlock().getTimestamp())) {
+            return false;
+        }
+        synchronized (this) {
+            Long last = lastSignedSlots.get(minerId);
+            return last == null || last < slot;
+        }
+    }
+
+    /**
+     * Produces a block for the current slot on top of the current tip and signs its hash.
+     *
+     * @param txs List of transactions to include in the block
+     * @param blockchain The blockchain to produce the block for
+     * @param minerId ID of the authority producing this block
+     * @return The signed block, or null if the current slot is not the authority's turn or already has its block
+     * @throws IllegalStateException If the authority has no signing key on this node
+     */
+    @Override
+    public Block mineBlock(List<Transaction> txs, Blockchain blockchain, String minerId) {
+        PrivateKey key = signingKeys.get(minerId);
+        if (key == null) {
+            throw new IllegalStateException("No signing key for authority " + minerId);
+        }
+        long timestamp = System.currentTimeMillis();
+        long slot = slotOf(timestamp);
+        Block parent = blockchain.getLatestBlock();
+        if (!minerId.equals(proposerOf(slot)) || slot <= slotOf(parent.getTimestamp())) {
+            Logger.debug("Authority " + minerId + " may not produce a block in slot " + slot);
+            return null;
+        }
+        synchronized (this) {
+            // A second block for the same slot would fork the chain on its own
+            Long last = lastSignedSlots.get(minerId);
+            if (last != null && last >= slot) {
+                return null;
+            }
+            lastSignedSlots.put(minerId, slot);
+        }
+        Block block = new Block(parent.getIndex() + 1, timestamp, txs, parent.getHash(), minerId);
+        // Computes the hash; with difficulty 0, as intended for this engine, that is a single attempt
+        block.mineBlock(blockchain.getDifficulty());
+        block.setSignature(Base64.getEncoder().encodeToString(CryptoUtils.sign(block.getHash().toBytes(), key)));
+        return block;
+    }
+
+    /**
+     * Validates a block by checking its slot, proposer and signature, then transaction signatures
+     * and sender balances.
+     *
+     * @param block The block to validate
+     * @param blockchain The blockchain holding the block's parent
+     * @return ConsensusResult indicating if block is valid
+     */
+    @Override
+    public ConsensusResult validateBlock(Block block, Blockchain blockchain) {
+        long start = System.nanoTime();
+        ConsensusResult result = checkBlock(block, blockchain);
+        VALIDATION_TIME.observeSince(start);
+        (result.isSuccess() ? VALID : INVALID).inc();
+        return result;
+    }
+
+    private ConsensusResult checkBlock(Block block, Blockchain blockchain) {
+        Block parent = blockchain.getBlockByHash(block.getPreviousHash());
+        if (parent == null) {
+            return ConsensusResult.fail("Unknown parent block " + block.getPreviousHash());
+        }
+        long slot = slotOf(block.getTimestamp());
+        long parentSlot = slotOf(parent.getTimestamp());
+        if (slot <= parentSlot) {
+            return ConsensusResult.fail("Block slot " + slot + " does not follow its parent's slot " + parentSlot);
+        }
+        if (slot > slotOf(System.currentTimeMillis() + maxClockDriftMillis)) {
+            return ConsensusResult.fail("Block slot " + slot + " has not started yet");
+        }
+        String proposer = proposerOf(slot);
+        if (!proposer.equals(block.getMinerId())) {
+            return ConsensusResult.fail("Block by " + block.getMinerId() + " in slot " + slot + " of " + proposer);
+        }
+        if (block.getSignature() == null) {
+            return ConsensusResult.fail("Block is not signed by its authority");
+        }
+        byte[] signature;
+        try {
+            signature = Base64.getDecoder().decode(block.getSignature());
+        } catch (IllegalArgumentException e) {
+            return ConsensusResult.fail("Malformed authority signature");
+        }
+        if (!CryptoUtils.verify(block.getHash().toBytes(), signature, authorityKeys.get(proposer))) {
+            return ConsensusResult.fail("Invalid authority signature");
+        }
+        ConsensusResult transactions = TransactionRules.check(block, blockchain);
+        if (!transactions.isSuccess()) {
+            return transactions;
+        }
+        // The genesis block is not produced by an authority, so no slots are missed before the first block
+        if (parent.getIndex() > 0) {
+            MISSED_SLOTS.add(slot - parentSlot - 1);
+        }
+        return transactions;
+    }
+}
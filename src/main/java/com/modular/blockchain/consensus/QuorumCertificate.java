@@ -0,0 +1,77 @@
+package com.modular.blockchain.consensus;
+
+import com.modular.blockchain.crypto.Hash256;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Proof that a quorum of BFT replicas voted for a block in a view: the votes of the replicas,
+ * each a signature of the view and the block hash. Certificates are immutable.
+ */
+public final class QuorumCertificate {
+    private final long view;
+    private final Hash256 blockHash;
+    private final Map<String, byte[]> signatures;
+
+    /**
+     * @param view The view the block was proposed in
+     * @param blockHash Hash of the certified block
+     * @param signatures Vote signatures by replica id
+     */
+    public QuorumCertificate(long view, Hash256 blockHash, Map<String, byte[]> signatures) {
+        this.view = view;
+        this.blockHash = blockHash;
+        this.signatures = Collections.unmodifiableMap(new LinkedHashMap<>(signatures));
+    }
+
+    /**
+     * Creates the certificate every replica starts from, which certifies the block the replicas
+     * agree on at start-up without any votes.
+     *
+     * @param blockHash Hash of the starting block
+     * @return A certificate for view 0
+     */
+    public static QuorumCertificate root(Hash256 blockHash) {
+        return new QuorumCertificate(0, blockHash, Map.of());
+    }
+
+    /**
+     * Encodes what a replica signs when it votes for a block.
+     *
+     * @param view The view the block was proposed in
+     * @param blockHash Hash of the block
+     * @return The bytes to sign
+     */
+    public static byte[] signedBytes(long view, Hash256 blockHash) {
+        return ByteBuffer.allocate(Long.BYTES + Hash256.BYTES).putLong(view).put(blockHash.toBytes()).array();
+    }
+
+    /**
+     * @return The view the block was proposed in, 0 for the root certificate
+     */
+    public long getView() {
+        return view;
+    }
+
+    /**
+     * @return Hash of the certified block
+     */
+    public Hash256 getBlockHash() {
+        return blockHash;
+    }
+
+    /**
+     * @return Vote signatures by replica id; the arrays must not be modified
+     */
+    public Map<String, byte[]> getSignatures() {
+        return signatures;
+    }
+
+    @Override
+    public String toString() {
+        return "QC{view=" + view + ", block=" + blockHash + ", votes=" + signatures.size() + '}';
+    }
+}
@@ -2,8 +2,10 @@ package com.modular.blockchain.consensus;
 
 import com.modular.blockchain.blockchain.Block;
 import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
 import com.modular.blockchain.transaction.Transaction;
-import com.modular.blockchain.transaction.SignedTransaction;
 import java.util.List;
 
 /**
@@ -11,6 +13,12 @@ import java.util.List;
  * using basic Proof of Work (PoW) consensus rules.
  */
 public class SimpleConsensusEngine implements ConsensusEngine {
+    private static final Histogram VALIDATION_TIME = Metrics.histogram("consensus_validation_seconds",
+            "Time to validate a block", Metrics.LATENCY_BUCKETS, "engine", "pow");
+    private static final Counter VALID = Metrics.counter("consensus_validations_total",
+            "Block validations, by outcome", "engine", "pow", "result", "valid");
+    private static final Counter INVALID = Metrics.counter("consensus_validations_total",
+            "Block validations, by outcome", "engine", "pow", "result", "invalid");
 
     /**
      * Mines a new block by creating it with the given transactions and mining until
@@ -23,15 +31,30 @@ public class SimpleConsensusEngine implements ConsensusEngine {
      */
     @Override
     public Block mineBlock(List<Transaction> txs, Blockchain blockchain, String minerId) {
+        return mineBlock(txs, blockchain.getLatestBlock(), blockchain, minerId);
+    }
+
+    /**
+     * Mines a new block on top of the given parent, whether or not it is on the chain yet.
+     *
+     * @param txs List of transactions to include in the block
+     * @param parent The block to build on
+     * @param blockchain The blockchain to mine the block for
+     * @param minerId ID of the miner creating this block
+     * @return The mined block that meets the difficulty requirement
+     */
+    @Override
+    public Block mineBlock(List<Transaction> txs, Block parent, Blockchain blockchain, String minerId) {
         // Create new block with transactions and previous block's hash
-        Block block = new Block(blockchain.getChain().size(), System.currentTimeMillis(), txs, blockchain.getChain().getLast().getHash(), minerId);
+        Block block = new Block(parent.getIndex() + 1, System.currentTimeMillis(), txs, parent.getHash(), minerId);
         // Mine block until it meets difficulty requirement
         block.mineBlock(blockchain.getDifficulty());
         return block;
     }
 
     /**
-     * Validates a block by checking transaction signatures and PoW difficulty.
+     * Validates a block by checking PoW difficulty, then transaction signatures and sender balances.
+     * Signatures are verified in parallel, and the result reports the outcome for each transaction.
      *
      * @param block The block to validate
      * @param blockchain The blockchain to validate against
@@ -39,20 +62,19 @@ public class SimpleConsensusEngine implements ConsensusEngine {
      */
     @Override
     public ConsensusResult validateBlock(Block block, Blockchain blockchain) {
-        // Validate that all transactions are signed and have valid signatures
-        for (Transaction tx : block.getTransactions()) {
-            if (tx instanceof SignedTransaction) {
-                if (!tx.isValid()) {
-                    return ConsensusResult.fail("Invalid transaction signature: " + tx.getId());
-                }
-            } else {
-                return ConsensusResult.fail("Block contains unsupported transaction type: " + tx.getClass().getSimpleName());
-            }
-        }
-        // Verify block hash meets required number of leading zeros for PoW
-        if (!block.getHash().startsWith("0".repeat(blockchain.getDifficulty()))) {
+        long start = System.nanoTime();
+        ConsensusResult result = checkBlock(block, blockchain);
+        VALIDATION_TIME.observeSince(start);
+        (result.isSuccess() ? VALID : INVALID).inc();
+        return result;
+    }
+
+    private ConsensusResult checkBlock(Block block, Blockchain blockchain) {
+        // Verify block hash meets required number of leading zeros for PoW first; it is one hash
+        // comparison, while the transaction rules verify every signature of the block
+        if (block.getHash().leadingZeroNibbles() < blockchain.getDifficulty()) {
             return ConsensusResult.fail("Block hash does not meet difficulty");
         }
-        return ConsensusResult.ok(block);
+        return TransactionRules.check(block, blockchain);
     }
 }
\ No newline at end of file
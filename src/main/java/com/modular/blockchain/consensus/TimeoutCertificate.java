@@ -0,0 +1,74 @@
+package com.modular.blockchain.consensus;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Proof that a quorum of BFT replicas gave up on the view before the given one. Every replica
+ * signs the view it moves to together with the view of the highest {@link QuorumCertificate} it
+ * knows, so a leader that enters a view by timeout can show that the certificate it extends is at
+ * least as high as any of theirs. Certificates are immutable.
+ */
+public final class TimeoutCertificate {
+    private final long view;
+    private final Map<String, Long> highestViews;
+    private final Map<String, byte[]> signatures;
+
+    /**
+     * @param view The view the replicas moved to
+     * @param highestViews View of each replica's highest quorum certificate, by replica id
+     * @param signatures Each replica's signature of {@link #signedBytes(long, long)}, by replica id
+     */
+    public TimeoutCertificate(long view, Map<String, Long> highestViews, Map<String, byte[]> signatures) {
+        this.view = view;
+        this.highestViews = Collections.unmodifiableMap(new LinkedHashMap<>(highestViews));
+        this.signatures = Collections.unmodifiableMap(new LinkedHashMap<>(signatures));
+    }
+
+    /**
+     * Encodes what a replica signs when it gives up on a view. The encoding is shorter than that
+     * of a vote, so neither can be passed off as the other.
+     *
+     * @param view The view the replica moves to
+     * @param highestView View of the replica's highest quorum certificate
+     * @return The bytes to sign
+     */
+    public static byte[] signedBytes(long view, long highestView) {
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(view).putLong(highestView).array();
+    }
+
+    /**
+     * @return The view the replicas moved to
+     */
+    public long getView() {
+        return view;
+    }
+
+    /**
+     * @return View of each replica's highest quorum certificate, by replica id
+     */
+    public Map<String, Long> getHighestViews() {
+        return highestViews;
+    }
+
+    /**
+     * @return The highest certificate view any of the replicas reported
+     */
+    public long getMaxHighestView() {
+        return highestViews.values().stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    /**
+     * @return Signatures by replica id; the arrays must not be modified
+     */
+    public Map<String, byte[]> getSignatures() {
+        return signatures;
+    }
+
+    @Override
+    public String toString() {
+        return "TC{view=" + view + ", timeouts=" + signatures.size() + ", highest=" + getMaxHighestView() + '}';
+    }
+}
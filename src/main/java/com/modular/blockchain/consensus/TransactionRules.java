@@ -0,0 +1,74 @@
+package com.modular.blockchain.consensus;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.consensus.ConsensusResult.TransactionStatus;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Transaction checks shared by every consensus engine, whatever it requires of the block itself.
+ */
+final class TransactionRules {
+    /** Blocks with fewer transactions are verified on the calling thread, where forking would cost more than it saves */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    private TransactionRules() {
+    }
+
+    /**
+     * Checks that every transaction of a block is signed with a valid signature and that every
+     * sender can cover its transfers, applied in block order.
+     * <p>
+     * Signatures are verified in parallel on the common fork-join pool, shared with the rest of
+     * the node, so validation time shrinks with the number of cores. The first invalid signature
+     * cancels the verifications that have not started yet; their transactions are reported as
+     * not checked. Balances are only checked once every signature is valid.
+     *
+     * @param block The block to check
+     * @param blockchain The chain the block extends
+     * @return The outcome, with the first problem found as its message and a status for every transaction
+     */
+    static ConsensusResult check(Block block, Blockchain blockchain) {
+        List<Transaction> txs = block.getTransactions();
+        TransactionStatus[] statuses = new TransactionStatus[txs.size()];
+        IntStream indexes = IntStream.range(0, statuses.length);
+        if (statuses.length >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        // anyMatch stops handing out work at the first failure; the array is visible once it returns
+        if (indexes.anyMatch(i -> (statuses[i] = verify(txs.get(i))) != TransactionStatus.VALID)) {
+            String problem = null;
+            for (int i = 0; i < statuses.length; i++) {
+                if (statuses[i] == null) {
+                    statuses[i] = TransactionStatus.NOT_CHECKED;
+                } else if (problem == null && statuses[i] != TransactionStatus.VALID) {
+                    problem = statuses[i] == TransactionStatus.INVALID_SIGNATURE
+                            ? "Invalid transaction signature: " + txs.get(i).getId()
+                            : "Block contains unsupported transaction type: " + txs.get(i).getClass().getSimpleName();
+                }
+            }
+            return ConsensusResult.of(block, problem, Arrays.asList(statuses));
+        }
+        String[] problems = blockchain.getLedger().checkEach(txs);
+        String problem = null;
+        for (int i = 0; i < problems.length; i++) {
+            if (problems[i] != null) {
+                statuses[i] = TransactionStatus.REJECTED_BY_LEDGER;
+                problem = problem == null ? problems[i] : problem;
+            }
+        }
+        return ConsensusResult.of(block, problem, Arrays.asList(statuses));
+    }
+
+    private static TransactionStatus verify(Transaction tx) {
+        if (!(tx instanceof SignedTransaction)) {
+            return TransactionStatus.UNSUPPORTED_TYPE;
+        }
+        return tx.isValid() ? TransactionStatus.VALID : TransactionStatus.INVALID_SIGNATURE;
+    }
+}
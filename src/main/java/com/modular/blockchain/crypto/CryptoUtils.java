@@ -34,6 +34,33 @@ public class CryptoUtils {
         }
     }
 
+    /**
+     * Computes the SHA-256 hash of input string as a compact {@link Hash256} value.
+     * The hex form of the result is identical to {@link #sha256(String)}.
+     * @param input String data to be hashed
+     * @return The 256-bit hash
+     * @throws RuntimeException if the hashing operation fails
+     */
+    public static Hash256 sha256Hash(String input) {
+        return sha256Hash(input.getBytes());
+    }
+
+    /**
+     * Computes the SHA-256 hash of raw bytes as a compact {@link Hash256} value.
+     * @param input Byte data to be hashed
+     * @return The 256-bit hash
+     * @throws RuntimeException if the hashing operation fails
+     */
+    public static Hash256 sha256Hash(byte[] input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Hash256.of(digest.digest(input));
+        } catch (Exception e) {
+            Logger.error("SHA-256 hashing failed: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Generates a new RSA public/private key pair for asymmetric cryptography.
      * Uses 2048-bit key size for strong security.
@@ -110,4 +137,23 @@ public class CryptoUtils {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Decodes a Base64-encoded RSA private key string into a PrivateKey object.
+     * Expects PKCS#8 encoded key format.
+     * @param base64 Base64 encoded string representation of private key
+     * @return Decoded RSA PrivateKey object
+     * @throws RuntimeException if decoding or key generation fails
+     */
+    public static PrivateKey decodePrivateKey(String base64) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(base64);
+            java.security.spec.PKCS8EncodedKeySpec spec = new java.security.spec.PKCS8EncodedKeySpec(bytes);
+            KeyFactory kf = KeyFactory.getInstance("RSA");
+            return kf.generatePrivate(spec);
+        } catch (Exception e) {
+            Logger.error("Private key decoding failed: " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+}
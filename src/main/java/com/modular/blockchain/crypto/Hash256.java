@@ -0,0 +1,179 @@
+package com.modular.blockchain.crypto;
+
+/**
+ * Immutable 256-bit hash value such as a block hash or merkle root.
+ * Stores the 32 bytes as four big-endian longs instead of a 64-character hex string,
+ * which makes equality checks and hash-keyed lookups cheap and uses about a quarter of the memory.
+ * The hex form is rendered on each use of {@link #toString()} and not kept, so logging a
+ * transaction id does not pin a string to every pooled transaction.
+ */
+public final class Hash256 implements Comparable<Hash256> {
+    /** Number of bytes in a hash */
+    public static final int BYTES = 32;
+
+    /** The all-zero hash, used as the previous hash of the genesis block */
+    public static final Hash256 ZERO = new Hash256(0, 0, 0, 0);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private Hash256(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * Creates a hash from its 32 raw bytes.
+     *
+     * @param bytes The hash bytes, most significant first
+     * @return The hash value
+     * @throws IllegalArgumentException if the array is not exactly 32 bytes long
+     */
+    public static Hash256 of(byte[] bytes) {
+        if (bytes.length != BYTES) {
+            throw new IllegalArgumentException("Expected " + BYTES + " bytes but got " + bytes.length);
+        }
+        return new Hash256(readLong(bytes, 0), readLong(bytes, 8), readLong(bytes, 16), readLong(bytes, 24));
+    }
+
+    /**
+     * Parses a hash from its 64-character hexadecimal form.
+     *
+     * @param hex Hexadecimal string, upper or lower case
+     * @return The hash value
+     * @throws IllegalArgumentException if the string is not 64 hex digits
+     */
+    public static Hash256 fromHex(String hex) {
+        if (hex.length() != BYTES * 2) {
+            throw new IllegalArgumentException("Expected " + BYTES * 2 + " hex digits but got " + hex.length());
+        }
+        return new Hash256(parseWord(hex, 0), parseWord(hex, 16), parseWord(hex, 32), parseWord(hex, 48));
+    }
+
+    /**
+     * Returns the raw bytes of this hash.
+     *
+     * @return A new 32-byte array, most significant byte first
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[BYTES];
+        writeLong(bytes, 0, w0);
+        writeLong(bytes, 8, w1);
+        writeLong(bytes, 16, w2);
+        writeLong(bytes, 24, w3);
+        return bytes;
+    }
+
+    /**
+     * Returns one 64-bit word of the hash. Because the hash is uniformly distributed, the words
+     * can be used directly as inputs to hash tables and probabilistic filters.
+     *
+     * @param index Word index from 0 (most significant) to 3
+     * @return The word
+     * @throws IndexOutOfBoundsException if the index is not between 0 and 3
+     */
+    public long getWord(int index) {
+        return switch (index) {
+            case 0 -> w0;
+            case 1 -> w1;
+            case 2 -> w2;
+            case 3 -> w3;
+            default -> throw new IndexOutOfBoundsException("Word index " + index);
+        };
+    }
+
+    /**
+     * Counts the leading zero hex digits, i.e. the proof-of-work difficulty this hash satisfies.
+     *
+     * @return Number of leading zero nibbles, between 0 and 64
+     */
+    public int leadingZeroNibbles() {
+        int bits;
+        if (w0 != 0) {
+            bits = Long.numberOfLeadingZeros(w0);
+        } else if (w1 != 0) {
+            bits = 64 + Long.numberOfLeadingZeros(w1);
+        } else if (w2 != 0) {
+            bits = 128 + Long.numberOfLeadingZeros(w2);
+        } else {
+            bits = 192 + Long.numberOfLeadingZeros(w3);
+        }
+        return bits / 4;
+    }
+
+    /**
+     * Orders hashes by their numeric value, as unsigned 256-bit big-endian numbers.
+     *
+     * @param other The hash to compare with
+     * @return A negative number, zero or a positive number as this hash is lower than, equal to or higher than the other
+     */
+    @Override
+    public int compareTo(Hash256 other) {
+        int result = Long.compareUnsigned(w0, other.w0);
+        if (result == 0) result = Long.compareUnsigned(w1, other.w1);
+        if (result == 0) result = Long.compareUnsigned(w2, other.w2);
+        if (result == 0) result = Long.compareUnsigned(w3, other.w3);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Hash256 other)) return false;
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+    }
+
+    /**
+     * The words of a cryptographic hash are already uniformly distributed,
+     * so a few of their bits make a good hash code.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (w0 ^ (w0 >>> 32) ^ w3);
+    }
+
+    /**
+     * @return The 64-character lowercase hexadecimal form of this hash
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[BYTES * 2];
+        writeHex(chars, 0, w0);
+        writeHex(chars, 16, w1);
+        writeHex(chars, 32, w2);
+        writeHex(chars, 48, w3);
+        return new String(chars);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long parseWord(String hex, int offset) {
+        return Long.parseUnsignedLong(hex.substring(offset, offset + 16), 16);
+    }
+
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
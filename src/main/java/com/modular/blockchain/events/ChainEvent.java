@@ -0,0 +1,63 @@
+package com.modular.blockchain.events;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.transaction.Transaction;
+
+/**
+ * A single entry of the {@link EventRing}: a block appended to or removed from the chain,
+ * or a transaction accepted into the pool. Events are numbered by a sequence that increases
+ * by one per published event, which subscribers use as their cursor.
+ */
+public class ChainEvent {
+    /**
+     * Kind of change an event describes.
+     */
+    public enum Type {
+        /** A block was appended to the chain */
+        BLOCK,
+        /** A block was removed from the tip of the chain by a rollback */
+        BLOCK_REMOVED,
+        /** A transaction was accepted into the pool */
+        TRANSACTION
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Block block;
+    private final Transaction transaction;
+
+    ChainEvent(long sequence, Type type, Block block, Transaction transaction) {
+        this.sequence = sequence;
+        this.type = type;
+        this.block = block;
+        this.transaction = transaction;
+    }
+
+    /**
+     * @return The position of this event in the stream
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The block for BLOCK and BLOCK_REMOVED events, null otherwise
+     */
+    public Block getBlock() {
+        return block;
+    }
+
+    /**
+     * @return The transaction for TRANSACTION events, null otherwise
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+}
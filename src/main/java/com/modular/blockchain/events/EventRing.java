@@ -0,0 +1,162 @@
+package com.modular.blockchain.events;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.ChainListener;
+import com.modular.blockchain.transaction.PoolListener;
+import com.modular.blockchain.transaction.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer of chain and mempool events with any number of independent readers.
+ * Producers never wait for readers: publishing overwrites the oldest slot, so the cost of an event
+ * is the same whether there are zero or a thousand subscribers. Each {@link Subscription} keeps its
+ * own cursor; a reader that falls more than a full ring behind has lost events and is marked as
+ * dropped, rather than holding back the chain or the pool.
+ */
+public class EventRing implements ChainListener, PoolListener {
+    private final ChainEvent[] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    /** Sequence number the next published event will get; guarded by lock */
+    private long nextSequence;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity Number of events retained for readers that are behind
+     */
+    public EventRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.slots = new ChainEvent[capacity];
+    }
+
+    @Override
+    public void blockAdded(Block block) {
+        publish(ChainEvent.Type.BLOCK, block, null);
+    }
+
+    @Override
+    public void blockRemoved(Block block) {
+        publish(ChainEvent.Type.BLOCK_REMOVED, block, null);
+    }
+
+    @Override
+    public void transactionAdded(Transaction tx) {
+        publish(ChainEvent.Type.TRANSACTION, null, tx);
+    }
+
+    private void publish(ChainEvent.Type type, Block block, Transaction tx) {
+        lock.lock();
+        try {
+            long sequence = nextSequence++;
+            slots[(int) (sequence % slots.length)] = new ChainEvent(sequence, type, block, tx);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a subscription that receives events published from now on.
+     *
+     * @return A new subscription positioned at the head of the stream
+     */
+    public Subscription subscribe() {
+        lock.lock();
+        try {
+            return new Subscription(nextSequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a subscription that resumes after a previously seen event, e.g. from an SSE
+     * Last-Event-ID header. If that event has already been overwritten, or lies in the future,
+     * the subscription starts at the head of the stream instead.
+     *
+     * @param lastSequence Sequence number of the last event the reader processed
+     * @return A new subscription
+     */
+    public Subscription resume(long lastSequence) {
+        lock.lock();
+        try {
+            long from = lastSequence + 1;
+            if (from < nextSequence - slots.length || from > nextSequence) {
+                from = nextSequence;
+            }
+            return new Subscription(from);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of events retained by the ring
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * A reader's position in the ring. Instances are not thread-safe and belong to one consumer.
+     */
+    public class Subscription {
+        private long cursor;
+        private boolean dropped;
+
+        private Subscription(long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Returns the events published since the last call, waiting up to the given time for at least one.
+         * If the reader has fallen so far behind that unread events were overwritten, the subscription
+         * is marked as dropped and an empty list is returned.
+         *
+         * @param maxEvents Maximum number of events to return
+         * @param timeout Maximum time to wait when no event is pending
+         * @param unit Unit of the timeout
+         * @return The next events in order, empty on timeout or when dropped
+         * @throws InterruptedException If interrupted while waiting
+         */
+        public List<ChainEvent> poll(int maxEvents, long timeout, TimeUnit unit) throws InterruptedException {
+            if (dropped) {
+                return List.of();
+            }
+            lock.lock();
+            try {
+                long nanos = unit.toNanos(timeout);
+                while (cursor == nextSequence && nanos > 0) {
+                    nanos = published.awaitNanos(nanos);
+                }
+                if (cursor < nextSequence - slots.length) {
+                    dropped = true;
+                    return List.of();
+                }
+                int count = (int) Math.min(maxEvents, nextSequence - cursor);
+                List<ChainEvent> events = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    events.add(slots[(int) (cursor++ % slots.length)]);
+                }
+                return events;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return true if events were lost because this reader fell more than a full ring behind
+         */
+        public boolean isDropped() {
+            return dropped;
+        }
+    }
+}
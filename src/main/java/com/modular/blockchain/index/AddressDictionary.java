@@ -0,0 +1,102 @@
+package com.modular.blockchain.index;
+
+import com.modular.blockchain.util.Logger;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global dictionary that interns Base64-encoded public key addresses.
+ * Each distinct address is stored once and receives a dense integer id starting at 0,
+ * so transactions, indexes and the ledger can hold a 4-byte id instead of their own
+ * copy of a ~400 character key. The original string is resolved on demand.
+ * Ids are never reused or released. This class is thread-safe; resolving an id is lock-free.
+ */
+public class AddressDictionary {
+    /** Sentinel returned by {@link #find(String)} for addresses that have never been seen */
+    public static final int UNKNOWN = -1;
+
+    /** The process-wide dictionary shared by transactions, indexes and the ledger */
+    private static final AddressDictionary GLOBAL = new AddressDictionary();
+
+    /** Maps each known address to its id */
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /** Maps each id back to its address; replaced by a larger copy when full */
+    private volatile String[] addresses = new String[64];
+
+    /** Number of ids assigned so far, guarded by this */
+    private int size;
+
+    /**
+     * Returns the process-wide dictionary.
+     *
+     * @return The global address dictionary
+     */
+    public static AddressDictionary global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the id for the given address, assigning a new one if the address is unknown.
+     *
+     * @param address Base64 encoded public key
+     * @return The compact id of the address
+     */
+    public int idOf(String address) {
+        Integer id = ids.get(address);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(address);
+            if (id == null) {
+                id = size;
+                String[] table = addresses;
+                if (id == table.length) {
+                    table = Arrays.copyOf(table, table.length * 2);
+                }
+                table[id] = address;
+                addresses = table;
+                size++;
+                // Publish the id only after the address is readable through the volatile table
+                ids.put(address, id);
+                Logger.debug("Address dictionary assigned id " + id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Looks up the id of an address without assigning a new one.
+     *
+     * @param address Base64 encoded public key
+     * @return The id of the address, or {@link #UNKNOWN} if it has not been seen
+     */
+    public int find(String address) {
+        Integer id = ids.get(address);
+        return id != null ? id : UNKNOWN;
+    }
+
+    /**
+     * Resolves an id back to the address it was assigned to.
+     *
+     * @param id Compact address id
+     * @return The Base64 encoded public key
+     * @throws IndexOutOfBoundsException if the id was never assigned
+     */
+    public String addressOf(int id) {
+        String address = id >= 0 && id < addresses.length ? addresses[id] : null;
+        if (address == null) {
+            throw new IndexOutOfBoundsException("Unknown address id: " + id);
+        }
+        return address;
+    }
+
+    /**
+     * @return The number of distinct addresses in the dictionary
+     */
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,173 @@
+package com.modular.blockchain.index;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.util.Logger;
+import com.modular.blockchain.wallet.Wallet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index from address to the wallet that owns it and to every transaction that touched it.
+ * The index is maintained incrementally as blocks are appended to the chain, so history
+ * lookups never need to scan the chain. Addresses are keyed by their compact id from the
+ * global {@link AddressDictionary}, and transaction locations are stored as packed longs.
+ * This class is thread-safe.
+ */
+public class AddressIndex {
+    private final AddressDictionary dictionary = AddressDictionary.global();
+
+    /** Transaction locations per address id, in chain order; the list position is the address id */
+    private final List<LongList> postings = new ArrayList<>();
+
+    /** Registered wallets keyed by the address id of their public key */
+    private final Map<Integer, Wallet> wallets = new HashMap<>();
+
+    /**
+     * Records every signed transaction of a newly appended block against its sender
+     * and receiver addresses.
+     *
+     * @param block The block that was appended to the chain
+     */
+    public synchronized void indexBlock(Block block) {
+        List<Transaction> txs = block.getTransactions();
+        for (int position = 0; position < txs.size(); position++) {
+            if (!(txs.get(position) instanceof SignedTransaction tx)) {
+                continue;
+            }
+            long location = new TxLocation(block.getIndex(), position).pack();
+            int senderId = tx.getSenderId();
+            int receiverId = tx.getReceiverId();
+            postingsFor(senderId).add(location);
+            if (receiverId != senderId) {
+                postingsFor(receiverId).add(location);
+            }
+        }
+        Logger.debug("Address index updated for block " + block.getIndex());
+    }
+
+    /**
+     * Removes the transactions of a block that is being rolled back from the tip of the chain.
+     * Because locations are kept in chain order, the block's entries are always at the tail.
+     *
+     * @param block The block being removed
+     */
+    public synchronized void unindexBlock(Block block) {
+        for (Transaction t : block.getTransactions()) {
+            if (t instanceof SignedTransaction tx) {
+                removeTail(tx.getSenderId(), block.getIndex());
+                removeTail(tx.getReceiverId(), block.getIndex());
+            }
+        }
+        Logger.debug("Address index rolled back block " + block.getIndex());
+    }
+
+    /**
+     * Associates a wallet with the address of its public key.
+     *
+     * @param wallet The wallet to register
+     */
+    public synchronized void registerWallet(Wallet wallet) {
+        wallets.put(dictionary.idOf(wallet.getAddress()), wallet);
+    }
+
+    /**
+     * Looks up the wallet that owns an address.
+     *
+     * @param address Base64 encoded public key
+     * @return The registered wallet, or null if no wallet owns the address
+     */
+    public synchronized Wallet getWallet(String address) {
+        int id = dictionary.find(address);
+        return id == AddressDictionary.UNKNOWN ? null : wallets.get(id);
+    }
+
+    /**
+     * Returns the number of indexed transactions that touched an address.
+     *
+     * @param address Base64 encoded public key
+     * @return Transaction count, 0 for unknown addresses
+     */
+    public synchronized int getTransactionCount(String address) {
+        LongList list = postingsOf(address);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Returns a page of the transactions that touched an address, newest first.
+     *
+     * @param address Base64 encoded public key
+     * @param offset Number of most recent transactions to skip
+     * @param limit Maximum number of locations to return
+     * @return Locations of the matching transactions
+     */
+    public synchronized List<TxLocation> getTransactions(String address, int offset, int limit) {
+        LongList list = postingsOf(address);
+        if (list == null || offset >= list.size() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        int end = Math.max(list.size() - offset - limit, 0);
+        List<TxLocation> page = new ArrayList<>();
+        for (int i = list.size() - 1 - offset; i >= end; i--) {
+            page.add(TxLocation.unpack(list.get(i)));
+        }
+        return page;
+    }
+
+    private LongList postingsOf(String address) {
+        int id = dictionary.find(address);
+        if (id == AddressDictionary.UNKNOWN || id >= postings.size()) {
+            return null;
+        }
+        return postings.get(id);
+    }
+
+    private void removeTail(int id, int height) {
+        if (id >= postings.size() || postings.get(id) == null) {
+            return;
+        }
+        LongList list = postings.get(id);
+        while (list.size() > 0 && TxLocation.unpack(list.get(list.size() - 1)).getHeight() >= height) {
+            list.removeLast();
+        }
+    }
+
+    private LongList postingsFor(int id) {
+        while (postings.size() <= id) {
+            postings.add(null);
+        }
+        LongList list = postings.get(id);
+        if (list == null) {
+            list = new LongList();
+            postings.set(id, list);
+        }
+        return list;
+    }
+
+    /**
+     * Minimal growable list of primitive longs, avoiding a boxed Long per location.
+     */
+    private static final class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int i) { return values[i]; }
+
+        void removeLast() { size--; }
+
+        int size() { return size; }
+    }
+}
@@ -0,0 +1,55 @@
+package com.modular.blockchain.index;
+
+/**
+ * Identifies a transaction by the height of the block containing it
+ * and its position within that block's transaction list.
+ */
+public class TxLocation {
+    private final int height;
+    private final int position;
+
+    /**
+     * Creates a new transaction location.
+     *
+     * @param height Index of the block in the chain
+     * @param position Position of the transaction within the block
+     */
+    public TxLocation(int height, int position) {
+        this.height = height;
+        this.position = position;
+    }
+
+    /**
+     * @return The index of the block containing the transaction
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return The position of the transaction within its block
+     */
+    public int getPosition() { return position; }
+
+    /**
+     * Packs this location into a single long, height in the upper 32 bits.
+     *
+     * @return The packed location
+     */
+    long pack() {
+        return ((long) height << 32) | (position & 0xffffffffL);
+    }
+
+    /**
+     * Unpacks a location previously produced by {@link #pack()}.
+     *
+     * @param packed The packed location
+     * @return The unpacked TxLocation
+     */
+    static TxLocation unpack(long packed) {
+        return new TxLocation((int) (packed >>> 32), (int) packed);
+    }
+
+    @Override
+    public String toString() {
+        return "TxLocation{height=" + height + ", position=" + position + '}';
+    }
+}
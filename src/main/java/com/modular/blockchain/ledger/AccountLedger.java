@@ -0,0 +1,192 @@
+package com.modular.blockchain.ledger;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.index.AddressDictionary;
+import com.modular.blockchain.transaction.AllocationTransaction;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.util.IntLongHashMap;
+import com.modular.blockchain.util.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Account-state ledger holding the balance of every address as fixed-point units.
+ * Balances are updated incrementally as each block is applied to the chain and
+ * reverted when a block is rolled back, so balance queries never replay the chain.
+ * Initial funds come from the {@link AllocationTransaction}s of the genesis block, so
+ * every balance follows from the blocks of the chain.
+ * Balances are keyed by the compact address id from the global {@link AddressDictionary}.
+ * This class is thread-safe.
+ */
+public class AccountLedger {
+    private final AddressDictionary dictionary = AddressDictionary.global();
+
+    /** Balance in units per address id */
+    private final IntLongHashMap balances = new IntLongHashMap();
+
+    /**
+     * Returns the confirmed balance of an address.
+     *
+     * @param address Base64 encoded public key
+     * @return Balance in units, 0 for unknown addresses
+     */
+    public synchronized long getBalance(String address) {
+        int id = dictionary.find(address);
+        return id == AddressDictionary.UNKNOWN ? 0 : balances.get(id, 0);
+    }
+
+    /**
+     * Checks that the given transactions can be applied in order on top of the current balances,
+     * i.e. that every amount is positive and no sender spends more than it holds at that point.
+     *
+     * @param txs Transactions in block order
+     * @return null if all transactions can be applied, otherwise a description of the first failure
+     */
+    public synchronized String checkTransactions(List<Transaction> txs) {
+        Staging pending = new Staging(txs.size());
+        for (Transaction tx : txs) {
+            String problem = stage(tx, pending);
+            if (problem != null) {
+                return problem;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the given transactions one by one, skipping those that cannot be applied, so every
+     * transaction gets a verdict rather than just the first that fails.
+     *
+     * @param txs Transactions in block order
+     * @return For each transaction, in order, null if it can be applied after the applicable ones
+     *         before it, otherwise a description of the problem
+     */
+    public synchronized String[] checkEach(List<Transaction> txs) {
+        Staging pending = new Staging(txs.size());
+        String[] problems = new String[txs.size()];
+        for (int i = 0; i < problems.length; i++) {
+            problems[i] = stage(txs.get(i), pending);
+        }
+        return problems;
+    }
+
+    /**
+     * Selects the candidates that can be applied in order on top of the current balances and the
+     * preceding transactions, skipping any that cannot, e.g. to fill a block with what the chain
+     * accepts. The preceding transactions are assumed to be valid.
+     *
+     * @param preceding Transactions that come first, such as those of blocks not yet appended
+     * @param candidates Transactions to select from, in order
+     * @return The applicable candidates, in order
+     */
+    public synchronized List<Transaction> selectApplicable(List<Transaction> preceding, List<Transaction> candidates) {
+        Staging pending = new Staging(preceding.size() + candidates.size());
+        preceding.forEach(tx -> stage(tx, pending));
+        List<Transaction> applicable = new ArrayList<>(candidates.size());
+        for (Transaction tx : candidates) {
+            String problem = stage(tx, pending);
+            if (problem == null) {
+                applicable.add(tx);
+            } else {
+                Logger.debug(problem);
+            }
+        }
+        return applicable;
+    }
+
+    /**
+     * Adds a transaction's transfer to the pending balance changes if the sender can afford it.
+     *
+     * @return null if the transfer was staged, otherwise why not
+     */
+    private String stage(Transaction tx, Staging pending) {
+        if (tx instanceof AllocationTransaction) {
+            return "Allocation outside the genesis block: " + tx.getId();
+        }
+        if (!(tx instanceof SignedTransaction signed)) {
+            return null;
+        }
+        long units;
+        try {
+            units = Amounts.toUnits(signed.getAmount());
+        } catch (ArithmeticException e) {
+            return "Invalid amount in transaction: " + tx.getId();
+        }
+        if (units <= 0) {
+            return "Non-positive amount in transaction: " + tx.getId();
+        }
+        int sender = pending.idOf(signed.getSenderId(), signed::getSenderPublicKey);
+        int receiver = pending.idOf(signed.getReceiverId(), signed::getReceiverPublicKey);
+        long available = balances.get(sender, 0) + pending.changes.get(sender, 0);
+        if (available < units) {
+            return "Insufficient funds for transaction: " + tx.getId();
+        }
+        pending.changes.addTo(sender, -units);
+        pending.changes.addTo(receiver, units);
+        return null;
+    }
+
+    /**
+     * Balance changes of transactions that are checked but not applied. Addresses the dictionary
+     * does not know yet hold no balance; they get provisional negative ids, one per key, so that
+     * checking a block does not intern its addresses before it is appended.
+     */
+    private static final class Staging {
+        final IntLongHashMap changes;
+        private Map<String, Integer> provisional;
+
+        Staging(int transactions) {
+            this.changes = new IntLongHashMap(transactions * 2);
+        }
+
+        int idOf(int id, Supplier<String> address) {
+            if (id != AddressDictionary.UNKNOWN) {
+                return id;
+            }
+            if (provisional == null) {
+                provisional = new HashMap<>();
+            }
+            // Below UNKNOWN, so never an assigned id nor the sentinel
+            return provisional.computeIfAbsent(address.get(), key -> AddressDictionary.UNKNOWN - 1 - provisional.size());
+        }
+    }
+
+    /**
+     * Applies the transfers of a block that has been appended to the chain.
+     * The block must have passed {@link #checkTransactions(List)}, unless it is the genesis block,
+     * whose allocations that check refuses.
+     *
+     * @param block The appended block
+     */
+    public synchronized void applyBlock(Block block) {
+        transfer(block, 1);
+        Logger.debug("Ledger applied block " + block.getIndex());
+    }
+
+    /**
+     * Reverts the transfers of a block that is being removed from the tip of the chain.
+     *
+     * @param block The removed block
+     */
+    public synchronized void revertBlock(Block block) {
+        transfer(block, -1);
+        Logger.info("Ledger reverted block " + block.getIndex());
+    }
+
+    private void transfer(Block block, int direction) {
+        for (Transaction tx : block.getTransactions()) {
+            if (tx instanceof SignedTransaction signed) {
+                long units = Amounts.toUnits(signed.getAmount()) * direction;
+                balances.addTo(signed.getSenderId(), -units);
+                balances.addTo(signed.getReceiverId(), units);
+            } else if (tx instanceof AllocationTransaction allocation) {
+                balances.addTo(allocation.getRecipientId(), allocation.getUnits() * direction);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.modular.blockchain.ledger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions between decimal coin amounts and the fixed-point units the ledger stores.
+ * One coin is {@link #UNITS_PER_COIN} units, so balances are exact longs instead of doubles
+ * that accumulate rounding error.
+ */
+public final class Amounts {
+    /** Number of fixed-point units in one coin (8 decimal places) */
+    public static final long UNITS_PER_COIN = 100_000_000L;
+
+    /** Number of decimal places represented by one unit */
+    private static final int SCALE = 8;
+
+    private Amounts() {
+    }
+
+    /**
+     * Converts a decimal coin amount to fixed-point units, rounding to the nearest unit.
+     *
+     * @param amount Amount in coins
+     * @return Amount in units
+     * @throws ArithmeticException if the amount is not finite or does not fit in a long
+     */
+    public static long toUnits(double amount) {
+        if (!Double.isFinite(amount)) {
+            throw new ArithmeticException("Amount is not finite: " + amount);
+        }
+        return BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Renders fixed-point units as a plain decimal coin amount, e.g. 150000000 as "1.5".
+     *
+     * @param units Amount in units
+     * @return Decimal string suitable for JSON output
+     */
+    public static String format(long units) {
+        return BigDecimal.valueOf(units, SCALE).stripTrailingZeros().toPlainString();
+    }
+}
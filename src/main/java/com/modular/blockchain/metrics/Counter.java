@@ -0,0 +1,37 @@
+package com.modular.blockchain.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing counter. Increments are striped across cells by {@link LongAdder},
+ * so concurrent updates from hot paths do not contend on a single memory location.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one to the counter.
+     */
+    public void inc() {
+        value.increment();
+    }
+
+    /**
+     * Adds a non-negative amount to the counter.
+     *
+     * @param amount The amount to add
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * @return The current total
+     */
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,73 @@
+package com.modular.blockchain.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations over fixed bucket boundaries. Recording an observation is a short scan of
+ * the boundaries plus two {@link LongAdder} increments, with no allocation or locking, so it is cheap
+ * enough for the mining loop and every HTTP request. Counts are kept per bucket and made cumulative
+ * only when scraped.
+ */
+public class Histogram {
+    private final double[] bounds;
+    private final long[] boundsNanos;
+    /** One count per bucket, the last one being +Inf */
+    private final LongAdder[] counts;
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram(double[] boundsSeconds) {
+        this.bounds = boundsSeconds.clone();
+        this.boundsNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            boundsNanos[i] = (long) (bounds[i] * 1_000_000_000L);
+        }
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void observeNanos(long nanos) {
+        int i = 0;
+        while (i < boundsNanos.length && nanos > boundsNanos[i]) {
+            i++;
+        }
+        counts[i].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos The reading taken when the measured operation started
+     */
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    double[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * @return Cumulative counts for each bound, followed by the total count
+     */
+    long[] cumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    double sumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+}
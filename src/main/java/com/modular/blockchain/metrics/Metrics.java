@@ -0,0 +1,160 @@
+package com.modular.blockchain.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and histograms, exported in the Prometheus text format.
+ * Metrics are looked up by name and label values; callers on hot paths fetch them once and keep the
+ * returned instance, so recording never touches the registry. Labels are passed as alternating
+ * name and value strings.
+ */
+public final class Metrics {
+    /** Bucket boundaries in seconds for request, verification and validation latencies */
+    public static final double[] LATENCY_BUCKETS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    /** Bucket boundaries in seconds for block intervals and mining durations */
+    public static final double[] BLOCK_TIME_BUCKETS = {
+            0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600, 1800
+    };
+
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private static final class Family {
+        final String type;
+        final String help;
+        /** Metric instances keyed by their rendered label set, e.g. {miner="m1"} */
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with the given name and labels, creating it on first use.
+     *
+     * @param name Metric name, conventionally ending in _total
+     * @param help Description shown in the export
+     * @param labels Alternating label names and values
+     * @return The counter
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, "counter", help).series.computeIfAbsent(labelSet(labels), key -> new Counter());
+    }
+
+    /**
+     * Returns the histogram with the given name and labels, creating it on first use.
+     *
+     * @param name Metric name, conventionally ending in _seconds
+     * @param help Description shown in the export
+     * @param buckets Upper bounds of the buckets in seconds, ascending
+     * @param labels Alternating label names and values
+     * @return The histogram
+     */
+    public static Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return (Histogram) family(name, "histogram", help).series.computeIfAbsent(labelSet(labels), key -> new Histogram(buckets));
+    }
+
+    /**
+     * Registers a gauge whose value is read when metrics are scraped, replacing any gauge
+     * previously registered under the same name and labels.
+     *
+     * @param name Metric name
+     * @param help Description shown in the export
+     * @param value Supplies the current value
+     * @param labels Alternating label names and values
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, "gauge", help).series.put(labelSet(labels), value);
+    }
+
+    /**
+     * Renders all registered metrics in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @return The exposition text
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof Counter counter) {
+                    sample(out, name, labels, counter.get());
+                } else if (metric instanceof DoubleSupplier gauge) {
+                    sample(out, name, labels, gauge.getAsDouble());
+                } else if (metric instanceof Histogram histogram) {
+                    appendHistogram(out, name, labels, histogram);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String labels, Histogram histogram) {
+        double[] bounds = histogram.getBounds();
+        long[] cumulative = histogram.cumulativeCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            sample(out, name + "_bucket", withLabel(labels, "le", format(bounds[i])), cumulative[i]);
+        }
+        long count = cumulative[cumulative.length - 1];
+        sample(out, name + "_bucket", withLabel(labels, "le", "+Inf"), count);
+        sample(out, name + "_sum", labels, histogram.sumSeconds());
+        sample(out, name + "_count", labels, count);
+    }
+
+    private static Family family(String name, String type, String help) {
+        Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labelSet(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs");
+        }
+        String set = "";
+        for (int i = 0; i < labels.length; i += 2) {
+            set = withLabel(set, labels[i], labels[i + 1]);
+        }
+        return set;
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        String label = name + "=\"" + escaped + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
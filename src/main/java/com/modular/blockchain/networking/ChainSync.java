@@ -0,0 +1,535 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.BlockHeader;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.consensus.ConsensusEngine;
+import com.modular.blockchain.consensus.ConsensusResult;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.transaction.TransactionPool;
+import com.modular.blockchain.util.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headers-first chain synchronisation for a {@link NetworkService}.
+ * <p>
+ * A node first asks its peers for headers following its own chain (GETHEADERS with a block locator).
+ * Headers are small and their proof-of-work can be checked without the transactions, so the node
+ * learns and validates the best chain cheaply before downloading anything large. The block bodies
+ * of that chain are then requested by hash from every peer that has them, at most a fixed number per
+ * peer at a time, within a sliding window ahead of the next block to append. Bodies arrive out of
+ * order and are appended strictly in order; requests that time out or whose peer disconnects are
+ * reassigned. Requests go to the peer the {@link PeerManager} expects to deliver soonest, and when the
+ * next block to append is held up by a slow peer while later blocks wait, it is requested again from
+ * a faster one. Sync speed therefore grows with the number of peers rather than being bound by one
+ * peer's round trip, and is not held back by the slowest of them.
+ * <p>
+ * When the best header chain forks from the local chain below its tip, the node switches over once it
+ * holds enough bodies to overtake its current tip, rolling back the old branch and returning its
+ * transactions to the pool. If any downloaded block fails validation the old branch is restored.
+ * Of two equally long chains the one whose tip has the lower hash is the better, so nodes split
+ * between branches that grow in step, as authorities taking turns do, still settle on one.
+ * <p>
+ * All methods run on the node thread of the owning service and are not thread-safe.
+ */
+class ChainSync {
+    /** How far beyond the next block to append bodies are requested */
+    static final int WINDOW = 1_024;
+    /** Most block bodies requested from one peer at a time */
+    static final int MAX_BLOCKS_IN_FLIGHT_PER_PEER = 16;
+    /** A body not delivered within this time is requested from another peer */
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** The next block to append is re-requested elsewhere if it takes this long while later ones wait */
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(2);
+    /** Dense part of the block locator; further back the step doubles each time */
+    private static final int LOCATOR_DENSE = 10;
+
+    private static final Counter HEADERS_ACCEPTED = Metrics.counter("p2p_sync_headers_total",
+            "Block headers received during chain sync, by outcome", "result", "accepted");
+    private static final Counter HEADERS_INVALID = Metrics.counter("p2p_sync_headers_total",
+            "Block headers received during chain sync, by outcome", "result", "invalid");
+    private static final Counter BLOCKS_DOWNLOADED = Metrics.counter("p2p_sync_blocks_downloaded_total",
+            "Block bodies downloaded by chain sync");
+    private static final Counter REORGANISATIONS = Metrics.counter("p2p_sync_reorganisations_total",
+            "Switches of the local chain onto a better branch");
+
+    private final Blockchain blockchain;
+    private final TransactionPool pool;
+    private final ConsensusEngine consensusEngine;
+    private final PeerTransport transport;
+    private final PeerManager peerManager;
+
+    /** Headers of the best known chain after forkHeight, lowest first; empty when there is nothing to sync */
+    private final List<BlockHeader> headers = new ArrayList<>();
+    private final List<Hash256> hashes = new ArrayList<>();
+    /** Height of the last block the header chain shares with the local chain */
+    private int forkHeight;
+    /** Heights below this are known to match the header chain in the local chain */
+    private int matchedUpTo;
+    private final Map<Integer, Block> downloaded = new HashMap<>();
+    private final Map<Integer, Request> inFlight = new HashMap<>();
+    /** Blocks that failed validation; header chains containing them are refused */
+    private final RollingBloomFilter invalidBlocks = new RollingBloomFilter(1_000, 0.000001);
+
+    /** Result of trying to append a downloaded block */
+    private enum Outcome { APPENDED, INVALID, STALE }
+
+    private static final class Request {
+        final PeerConnection peer;
+        final long sentAtNanos;
+
+        Request(PeerConnection peer, long sentAtNanos) {
+            this.peer = peer;
+            this.sentAtNanos = sentAtNanos;
+        }
+    }
+
+    ChainSync(Blockchain blockchain, TransactionPool pool, ConsensusEngine consensusEngine, PeerTransport transport,
+              PeerManager peerManager) {
+        this.blockchain = blockchain;
+        this.pool = pool;
+        this.consensusEngine = consensusEngine;
+        this.transport = transport;
+        this.peerManager = peerManager;
+    }
+
+    /**
+     * @return true while a better header chain is known and not yet fully appended
+     */
+    boolean isSyncing() {
+        return !headers.isEmpty();
+    }
+
+    /**
+     * @return Height of the best known header chain while syncing, otherwise -1
+     */
+    int getTargetHeight() {
+        return isSyncing() ? bestHeaderHeight() : -1;
+    }
+
+    /**
+     * Checks whether a chain ending in the given block would be better than the local chain.
+     *
+     * @param height Height of the other chain's tip
+     * @param tipHash Hash of the other chain's tip
+     * @return true if the other chain is longer, or as long with a lower tip hash
+     */
+    boolean beatsLocalChain(int height, Hash256 tipHash) {
+        Block tip = blockchain.getLatestBlock();
+        return isBetter(height, tipHash, tip.getIndex(), tip.getHash());
+    }
+
+    private static boolean isBetter(int height, Hash256 tipHash, int otherHeight, Hash256 otherTipHash) {
+        return height > otherHeight || (height == otherHeight && tipHash.compareTo(otherTipHash) < 0);
+    }
+
+    /**
+     * Asks a peer for the headers that follow this node's best known chain.
+     *
+     * @param peer The peer to ask
+     */
+    void requestHeaders(PeerConnection peer) {
+        transport.send(peer, MessageType.GETHEADERS, WireCodec.encodeGetHeaders(locator()));
+    }
+
+    /**
+     * Builds a locator: the tip of the best known header chain, then the local chain from its tip
+     * back to genesis with exponentially growing gaps, so a peer can find the fork point in one round trip.
+     */
+    private List<Hash256> locator() {
+        List<Hash256> locator = new ArrayList<>();
+        if (!hashes.isEmpty()) {
+            locator.add(hashes.getLast());
+        }
+        int step = 1;
+        for (int height = blockchain.getHeight(); height > 0; height -= step) {
+            locator.add(blockchain.getBlock(height).getHash());
+            if (locator.size() >= LOCATOR_DENSE) {
+                step *= 2;
+            }
+        }
+        locator.add(blockchain.getBlock(0).getHash());
+        return locator;
+    }
+
+    /**
+     * Answers GETHEADERS with the headers after the first locator hash found in the local chain.
+     *
+     * @param peer The requesting peer
+     * @param locator The peer's locator, newest first
+     */
+    void onGetHeaders(PeerConnection peer, List<Hash256> locator) {
+        int start = 1;
+        for (Hash256 hash : locator) {
+            Block known = blockchain.getBlockByHash(hash);
+            if (known != null) {
+                start = known.getIndex() + 1;
+                break;
+            }
+        }
+        List<BlockHeader> reply = blockchain.getBlocks(start, start + WireCodec.MAX_HEADERS).stream()
+                .map(Block::getHeader)
+                .toList();
+        transport.send(peer, MessageType.HEADERS, WireCodec.encodeHeaders(reply));
+    }
+
+    /**
+     * Validates headers from a peer and adopts them as the sync target if they lead to a better chain
+     * than both the local chain and the current target.
+     *
+     * @param peer The peer that sent the headers
+     * @param received The headers, lowest first
+     */
+    void onHeaders(PeerConnection peer, List<BlockHeader> received) {
+        if (received.isEmpty()) {
+            return;
+        }
+        Hash256 parentHash = received.getFirst().getPreviousHash();
+        int position = hashes.indexOf(parentHash);
+        int parentHeight;
+        if (position >= 0) {
+            parentHeight = headers.get(position).getIndex();
+        } else {
+            Block parent = blockchain.getBlockByHash(parentHash);
+            if (parent == null) {
+                Logger.debug("[ChainSync] Headers from " + peer + " do not connect to a known block");
+                return;
+            }
+            parentHeight = parent.getIndex();
+        }
+        List<Hash256> receivedHashes = validateHeaders(received, parentHash, parentHeight);
+        if (receivedHashes == null) {
+            HEADERS_INVALID.add(received.size());
+            peerManager.misbehaving(peer, PeerManager.BAN_THRESHOLD, "invalid headers");
+            return;
+        }
+        HEADERS_ACCEPTED.add(received.size());
+        int best = received.getLast().getIndex();
+        peer.noteHeight(best);
+        // The peer has these blocks, which makes it the first choice for downloading them
+        receivedHashes.forEach(peer.getKnownInventory()::add);
+        Hash256 bestHash = receivedHashes.getLast();
+        if (beatsLocalChain(best, bestHash)
+                && (!isSyncing() || isBetter(best, bestHash, bestHeaderHeight(), hashes.getLast()))) {
+            if (position >= 0) {
+                truncateAfter(position);
+            } else {
+                reset();
+                forkHeight = parentHeight;
+                matchedUpTo = parentHeight + 1;
+            }
+            headers.addAll(received);
+            hashes.addAll(receivedHashes);
+            Logger.info("[ChainSync] Syncing towards height " + best + " from fork point " + forkHeight);
+        }
+        if (received.size() == WireCodec.MAX_HEADERS) {
+            transport.send(peer, MessageType.GETHEADERS, WireCodec.encodeGetHeaders(List.of(receivedHashes.getLast())));
+        }
+        apply();
+        schedule();
+    }
+
+    /**
+     * Checks that headers are consecutive, linked and carry valid proof-of-work.
+     *
+     * @return The header hashes, or null if any header is invalid
+     */
+    private List<Hash256> validateHeaders(List<BlockHeader> received, Hash256 parentHash, int parentHeight) {
+        List<Hash256> result = new ArrayList<>(received.size());
+        Hash256 previous = parentHash;
+        int expectedIndex = parentHeight + 1;
+        for (BlockHeader header : received) {
+            Hash256 hash = header.calculateHash();
+            if (header.getIndex() != expectedIndex || !header.getPreviousHash().equals(previous)
+                    || hash.leadingZeroNibbles() < blockchain.getDifficulty() || invalidBlocks.contains(hash)) {
+                return null;
+            }
+            result.add(hash);
+            previous = hash;
+            expectedIndex++;
+        }
+        return result;
+    }
+
+    /**
+     * Accepts a block body if it belongs to the header chain being synced.
+     *
+     * @param peer The peer that sent the block
+     * @param block The block
+     * @return true if the block was taken by sync, false if it should be handled as a normal relay
+     */
+    boolean onBlock(PeerConnection peer, Block block) {
+        int height = block.getIndex();
+        if (!isSyncing() || height <= forkHeight || height > bestHeaderHeight() || !hashAt(height).equals(block.getHash())) {
+            return false;
+        }
+        Request request = inFlight.remove(height);
+        if (request != null && request.peer == peer) {
+            peer.recordBlockLatency(System.nanoTime() - request.sentAtNanos);
+        }
+        release(request);
+        if (!downloaded.containsKey(height)) {
+            downloaded.put(height, block);
+            BLOCKS_DOWNLOADED.inc();
+        }
+        apply();
+        schedule();
+        return true;
+    }
+
+    /**
+     * Re-requests bodies that have timed out, and the next block to append if a slow peer is
+     * holding up blocks that have already arrived.
+     */
+    void tick() {
+        if (!isSyncing()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Request> requests = inFlight.values().iterator();
+        while (requests.hasNext()) {
+            Request request = requests.next();
+            if (now - request.sentAtNanos > BLOCK_TIMEOUT_NANOS) {
+                Logger.debug("[ChainSync] Block request to " + request.peer + " timed out");
+                request.peer.recordFailure();
+                release(request);
+                requests.remove();
+            }
+        }
+        int next = firstNeeded();
+        Request head = inFlight.get(next);
+        if (head != null && now - head.sentAtNanos > STALL_NANOS && downloaded.size() >= MAX_BLOCKS_IN_FLIGHT_PER_PEER) {
+            Logger.debug("[ChainSync] " + head.peer + " is stalling block " + next + ", requesting it elsewhere");
+            // Count the wait so far against the peer's latency, which steers the retry to a faster peer
+            head.peer.recordBlockLatency(now - head.sentAtNanos);
+            release(inFlight.remove(next));
+        }
+        schedule();
+    }
+
+    /**
+     * Reassigns the requests of a peer that has gone away.
+     *
+     * @param peer The disconnected peer
+     */
+    void onDisconnected(PeerConnection peer) {
+        inFlight.values().removeIf(request -> request.peer == peer);
+        schedule();
+    }
+
+    /**
+     * Requests missing bodies in the window from peers that have them, each from the peer
+     * expected to deliver it soonest. Peers known to hold the block, because they sent its header
+     * or announced it, are preferred over peers that merely claim a chain as high; during forks
+     * the latter are often on another branch and would leave the request to time out.
+     */
+    private void schedule() {
+        if (!isSyncing()) {
+            return;
+        }
+        int from = firstNeeded();
+        int to = Math.min(bestHeaderHeight(), from + WINDOW - 1);
+        List<PeerConnection> peers = transport.getConnections();
+        Map<PeerConnection, List<InventoryItem>> batches = new HashMap<>();
+        long now = System.nanoTime();
+        for (int height = from; height <= to; height++) {
+            if (downloaded.containsKey(height) || inFlight.containsKey(height)) {
+                continue;
+            }
+            Hash256 hash = hashAt(height);
+            PeerConnection chosen = null;
+            boolean chosenHasBlock = false;
+            long chosenDelay = Long.MAX_VALUE;
+            for (PeerConnection peer : peers) {
+                if (peer.getBestHeight() < height || peer.getBlocksInFlight() >= MAX_BLOCKS_IN_FLIGHT_PER_PEER) {
+                    continue;
+                }
+                boolean hasBlock = peer.getKnownInventory().contains(hash);
+                long delay = PeerManager.expectedFetchNanos(peer);
+                if ((hasBlock && !chosenHasBlock) || (hasBlock == chosenHasBlock && delay < chosenDelay)) {
+                    chosen = peer;
+                    chosenHasBlock = hasBlock;
+                    chosenDelay = delay;
+                }
+            }
+            if (chosen == null) {
+                break;
+            }
+            chosen.addBlocksInFlight(1);
+            inFlight.put(height, new Request(chosen, now));
+            batches.computeIfAbsent(chosen, peer -> new ArrayList<>()).add(new InventoryItem(MessageType.BLOCK, hash));
+        }
+        batches.forEach((peer, items) -> transport.send(peer, MessageType.GETDATA, WireCodec.encodeInventory(items)));
+    }
+
+    /**
+     * Appends downloaded blocks in order, switching branches when the header chain forks below the tip.
+     */
+    private void apply() {
+        while (isSyncing()) {
+            int height = blockchain.getHeight();
+            int from = firstNeeded();
+            if (from > bestHeaderHeight()) {
+                Logger.info("[ChainSync] Chain sync complete at height " + blockchain.getHeight());
+                reset();
+                return;
+            }
+            if (!beatsLocalChain(bestHeaderHeight(), hashes.getLast())) {
+                Logger.info("[ChainSync] Local chain caught up with the sync target at height " + height);
+                reset();
+                return;
+            }
+            if (from > height) {
+                Block block = downloaded.remove(from);
+                if (block == null) {
+                    return;
+                }
+                Outcome outcome = connect(block);
+                if (outcome == Outcome.STALE && blockchain.getHeight() != height) {
+                    // A local miner extended the chain meanwhile; re-evaluate against the new tip
+                    downloaded.put(from, block);
+                    continue;
+                }
+                if (outcome != Outcome.APPENDED) {
+                    abandon(block);
+                    return;
+                }
+            } else {
+                // A branch as long as the local chain wins on its tip hash and replaces it at equal height
+                int upTo = Math.min(height + 1, bestHeaderHeight());
+                for (int h = from; h <= upTo; h++) {
+                    if (!downloaded.containsKey(h)) {
+                        return;
+                    }
+                }
+                if (!reorganize(from - 1, upTo)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Outcome connect(Block block) {
+        ConsensusResult result = consensusEngine.validateBlock(block, blockchain);
+        if (!result.isSuccess()) {
+            Logger.error("[ChainSync] Block " + block.getIndex() + " failed consensus: " + result.getMessage());
+            return Outcome.INVALID;
+        }
+        if (!blockchain.addBlock(block)) {
+            return Outcome.STALE;
+        }
+        pool.removeTransactions(block.getTransactions());
+        return Outcome.APPENDED;
+    }
+
+    /**
+     * Replaces the local blocks above the fork point with downloaded ones, restoring the old
+     * branch if any new block is invalid or a local miner raced the switch.
+     */
+    private boolean reorganize(int fork, int upTo) {
+        List<Block> removed = blockchain.rollbackTo(fork);
+        Set<Hash256> included = new HashSet<>();
+        for (int height = fork + 1; height <= upTo; height++) {
+            Block block = downloaded.get(height);
+            Outcome outcome = connect(block);
+            if (outcome != Outcome.APPENDED) {
+                blockchain.rollbackTo(fork);
+                removed.forEach(blockchain::addBlock);
+                if (outcome == Outcome.INVALID) {
+                    abandon(block);
+                }
+                return false;
+            }
+            block.getTransactions().forEach(tx -> included.add(tx.getId()));
+        }
+        for (int height = fork + 1; height <= upTo; height++) {
+            downloaded.remove(height);
+        }
+        ArrayList<Transaction> orphaned = new ArrayList<>();
+        removed.forEach(block -> block.getTransactions().stream()
+                .filter(tx -> !included.contains(tx.getId()))
+                .forEach(orphaned::add));
+        pool.addBack(orphaned);
+        matchedUpTo = fork + 1;
+        REORGANISATIONS.inc();
+        Logger.info("[ChainSync] Reorganised onto a better branch: replaced " + removed.size()
+                + " blocks above height " + fork + ", " + orphaned.size() + " transactions returned to the pool");
+        return true;
+    }
+
+    /**
+     * Drops the sync target after one of its blocks proved invalid, remembering the block so the
+     * same chain is not downloaded again.
+     */
+    private void abandon(Block invalid) {
+        Logger.error("[ChainSync] Abandoning sync target: block " + invalid.getIndex() + " is invalid");
+        invalidBlocks.add(invalid.getHash());
+        reset();
+    }
+
+    /**
+     * Returns the lowest height of the header chain whose block is not in the local chain.
+     */
+    private int firstNeeded() {
+        int height = blockchain.getHeight();
+        int best = bestHeaderHeight();
+        if (matchedUpTo > forkHeight + 1 && (matchedUpTo - 1 > height
+                || !blockchain.getBlock(matchedUpTo - 1).getHash().equals(hashAt(matchedUpTo - 1)))) {
+            // The local chain was rolled back since the last check
+            matchedUpTo = forkHeight + 1;
+        }
+        while (matchedUpTo <= height && matchedUpTo <= best
+                && blockchain.getBlock(matchedUpTo).getHash().equals(hashAt(matchedUpTo))) {
+            downloaded.remove(matchedUpTo);
+            matchedUpTo++;
+        }
+        return matchedUpTo;
+    }
+
+    private int bestHeaderHeight() {
+        return headers.isEmpty() ? -1 : headers.getLast().getIndex();
+    }
+
+    private Hash256 hashAt(int height) {
+        return hashes.get(height - forkHeight - 1);
+    }
+
+    private void truncateAfter(int position) {
+        int keepUpTo = headers.get(position).getIndex();
+        headers.subList(position + 1, headers.size()).clear();
+        hashes.subList(position + 1, hashes.size()).clear();
+        downloaded.keySet().removeIf(height -> height > keepUpTo);
+        inFlight.entrySet().removeIf(entry -> {
+            if (entry.getKey() > keepUpTo) {
+                release(entry.getValue());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void reset() {
+        inFlight.values().forEach(this::release);
+        inFlight.clear();
+        downloaded.clear();
+        headers.clear();
+        hashes.clear();
+    }
+
+    private void release(Request request) {
+        if (request != null) {
+            request.peer.addBlocksInFlight(-1);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.BlockHeader;
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.transaction.Transaction;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A block as relayed between peers that already share most of its transactions: the header plus a
+ * 6-byte short id per transaction instead of the full signed transaction.
+ * <p>
+ * Short ids are SipHash-2-4 of the transaction id, keyed by a hash of the block hash and a random
+ * salt chosen by the sender, truncated to 48 bits. Keying per block and per sender means nobody can
+ * precompute transactions whose short ids collide, and an accidental collision only costs the
+ * receiver a fallback to the full block.
+ */
+public final class CompactBlock {
+    /** Bytes of each short id on the wire */
+    static final int SHORT_ID_BYTES = 6;
+    private static final long SHORT_ID_MASK = (1L << (8 * SHORT_ID_BYTES)) - 1;
+
+    private final BlockHeader header;
+    private final Hash256 hash;
+    private final long salt;
+    private final long[] shortIds;
+    private final long k0;
+    private final long k1;
+
+    private CompactBlock(BlockHeader header, long salt, long[] shortIds) {
+        this.header = header;
+        this.hash = header.calculateHash();
+        this.salt = salt;
+        this.shortIds = shortIds;
+        byte[] keyInput = ByteBuffer.allocate(Hash256.BYTES + Long.BYTES).put(hash.toBytes()).putLong(salt).array();
+        Hash256 key = CryptoUtils.sha256Hash(keyInput);
+        this.k0 = key.getWord(0);
+        this.k1 = key.getWord(1);
+    }
+
+    /**
+     * Builds the compact form of a block.
+     *
+     * @param block The block
+     * @param salt Random value chosen by the sender
+     * @return The compact block
+     */
+    public static CompactBlock of(Block block, long salt) {
+        List<Transaction> txs = block.getTransactions();
+        CompactBlock compact = new CompactBlock(block.getHeader(), salt, new long[txs.size()]);
+        for (int i = 0; i < txs.size(); i++) {
+            compact.shortIds[i] = compact.shortId(txs.get(i).getId());
+        }
+        return compact;
+    }
+
+    /**
+     * Computes the short id a transaction has in this block.
+     *
+     * @param id The transaction id
+     * @return The 48-bit short id
+     */
+    public long shortId(Hash256 id) {
+        return sipHash(k0, k1, id.getWord(0), id.getWord(1), id.getWord(2), id.getWord(3)) & SHORT_ID_MASK;
+    }
+
+    /**
+     * @return The block header
+     */
+    public BlockHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * @return The block hash, computed from the header
+     */
+    public Hash256 getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The number of transactions in the block
+     */
+    public int getTransactionCount() {
+        return shortIds.length;
+    }
+
+    /**
+     * @param index Position of a transaction in the block
+     * @return The short id of that transaction
+     */
+    public long getShortId(int index) {
+        return shortIds[index];
+    }
+
+    /**
+     * @return The encoded message payload
+     */
+    public byte[] encode() {
+        return WireCodec.write(out -> {
+            WireCodec.writeHeader(out, header);
+            out.writeLong(salt);
+            out.writeInt(shortIds.length);
+            for (long shortId : shortIds) {
+                out.writeShort((int) (shortId >>> 32));
+                out.writeInt((int) shortId);
+            }
+        });
+    }
+
+    /**
+     * Decodes a compact block.
+     *
+     * @param payload The message payload
+     * @return The compact block
+     * @throws IOException If the payload is malformed
+     */
+    public static CompactBlock decode(byte[] payload) throws IOException {
+        DataInputStream in = WireCodec.reader(payload);
+        BlockHeader header = WireCodec.readHeader(in);
+        long salt = in.readLong();
+        int count = in.readInt();
+        WireCodec.checkCount(count, payload.length / SHORT_ID_BYTES);
+        long[] shortIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            long high = in.readUnsignedShort();
+            long low = in.readInt() & 0xFFFFFFFFL;
+            shortIds[i] = (high << 32) | low;
+        }
+        return new CompactBlock(header, salt, shortIds);
+    }
+
+    /**
+     * SipHash-2-4 of a 32-byte message given as four big-endian words.
+     */
+    private static long sipHash(long k0, long k1, long... words) {
+        long[] state = {
+                k0 ^ 0x736f6d6570736575L,
+                k1 ^ 0x646f72616e646f6dL,
+                k0 ^ 0x6c7967656e657261L,
+                k1 ^ 0x7465646279746573L
+        };
+        for (long word : words) {
+            long m = Long.reverseBytes(word);
+            state[3] ^= m;
+            sipRound(state);
+            sipRound(state);
+            state[0] ^= m;
+        }
+        // Final block: message length in bytes in the top byte, no remaining bytes
+        long last = ((long) words.length * Long.BYTES) << 56;
+        state[3] ^= last;
+        sipRound(state);
+        sipRound(state);
+        state[0] ^= last;
+        state[2] ^= 0xff;
+        for (int i = 0; i < 4; i++) {
+            sipRound(state);
+        }
+        return state[0] ^ state[1] ^ state[2] ^ state[3];
+    }
+
+    private static void sipRound(long[] v) {
+        v[0] += v[1];
+        v[1] = Long.rotateLeft(v[1], 13);
+        v[1] ^= v[0];
+        v[0] = Long.rotateLeft(v[0], 32);
+        v[2] += v[3];
+        v[3] = Long.rotateLeft(v[3], 16);
+        v[3] ^= v[2];
+        v[0] += v[3];
+        v[3] = Long.rotateLeft(v[3], 21);
+        v[3] ^= v[0];
+        v[2] += v[1];
+        v[1] = Long.rotateLeft(v[1], 17);
+        v[1] ^= v[2];
+        v[2] = Long.rotateLeft(v[2], 32);
+    }
+}
@@ -0,0 +1,226 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.BlockHeader;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.util.Logger;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends and rebuilds compact blocks for a {@link NetworkService}.
+ * <p>
+ * New blocks are pushed to peers as {@link CompactBlock}s. The receiver matches the short ids against
+ * the transactions it has recently seen, which include those its own miners have taken out of the
+ * pool, and asks the sender only for the ones it lacks with GETBLOCKTXN. A rebuilt block whose hash
+ * does not match the header, because two transactions shared a short id, is fetched in full instead.
+ * <p>
+ * All methods run on the node thread of the owning service and are not thread-safe.
+ */
+class CompactBlockRelay {
+    /** Transactions remembered for rebuilding blocks */
+    private static final int RECENT_TRANSACTIONS = 20_000;
+    /** Blocks waiting for missing transactions */
+    private static final int MAX_PARTIAL_BLOCKS = 32;
+
+    private static final Counter RECONSTRUCTED = Metrics.counter("p2p_compact_blocks_total",
+            "Compact blocks received, by how they were rebuilt", "result", "complete");
+    private static final Counter INCOMPLETE = Metrics.counter("p2p_compact_blocks_total",
+            "Compact blocks received, by how they were rebuilt", "result", "missing_transactions");
+    private static final Counter FAILED = Metrics.counter("p2p_compact_blocks_total",
+            "Compact blocks received, by how they were rebuilt", "result", "full_block_fallback");
+    private static final Counter MISSING_TRANSACTIONS = Metrics.counter("p2p_compact_missing_transactions_total",
+            "Transactions of compact blocks that had to be requested from the sender");
+
+    private final Blockchain blockchain;
+    private final PeerTransport transport;
+    private final Map<Hash256, SignedTransaction> recentTransactions = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Hash256, SignedTransaction> eldest) {
+            return size() > RECENT_TRANSACTIONS;
+        }
+    };
+    private final Map<Hash256, PartialBlock> partialBlocks = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Hash256, PartialBlock> eldest) {
+            return size() > MAX_PARTIAL_BLOCKS;
+        }
+    };
+
+    /** A compact block with some transactions still to be delivered */
+    private static final class PartialBlock {
+        final PeerConnection peer;
+        final CompactBlock compact;
+        final Transaction[] transactions;
+        final int[] missing;
+
+        PartialBlock(PeerConnection peer, CompactBlock compact, Transaction[] transactions, int[] missing) {
+            this.peer = peer;
+            this.compact = compact;
+            this.transactions = transactions;
+            this.missing = missing;
+        }
+    }
+
+    CompactBlockRelay(Blockchain blockchain, PeerTransport transport) {
+        this.blockchain = blockchain;
+        this.transport = transport;
+    }
+
+    /**
+     * Remembers a transaction so blocks containing it can be rebuilt without fetching it.
+     *
+     * @param tx A transaction accepted by or relayed through this node
+     */
+    void rememberTransaction(SignedTransaction tx) {
+        recentTransactions.put(tx.getId(), tx);
+    }
+
+    /**
+     * Pushes a block in compact form to peers.
+     *
+     * @param targets The peers to send to
+     * @param block The block
+     */
+    void send(List<PeerConnection> targets, Block block) {
+        if (targets.isEmpty()) {
+            return;
+        }
+        CompactBlock compact = CompactBlock.of(block, ThreadLocalRandom.current().nextLong());
+        transport.broadcast(targets, MessageType.CMPCTBLOCK, compact.encode());
+    }
+
+    /**
+     * Rebuilds a compact block from known transactions, requesting any that are missing.
+     *
+     * @param peer The peer that sent the block
+     * @param compact The compact block
+     * @return The full block, or null if transactions had to be requested or the block fetched in full
+     */
+    Block onCompactBlock(PeerConnection peer, CompactBlock compact) {
+        if (partialBlocks.containsKey(compact.getHash())) {
+            // Its missing transactions are already being fetched from the first peer to announce it
+            return null;
+        }
+        Map<Long, SignedTransaction> byShortId = new HashMap<>(recentTransactions.size() * 2);
+        for (SignedTransaction tx : recentTransactions.values()) {
+            // Two candidates with the same short id cannot be told apart; treat it as missing
+            byShortId.merge(compact.shortId(tx.getId()), tx, (first, second) -> null);
+        }
+        Transaction[] transactions = new Transaction[compact.getTransactionCount()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = byShortId.get(compact.getShortId(i));
+            if (transactions[i] == null) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            RECONSTRUCTED.inc();
+            return build(peer, compact, transactions);
+        }
+        INCOMPLETE.inc();
+        MISSING_TRANSACTIONS.add(missing.size());
+        int[] indexes = missing.stream().mapToInt(Integer::intValue).toArray();
+        partialBlocks.put(compact.getHash(), new PartialBlock(peer, compact, transactions, indexes));
+        transport.send(peer, MessageType.GETBLOCKTXN, WireCodec.write(out -> {
+            WireCodec.writeHash(out, compact.getHash());
+            out.writeInt(indexes.length);
+            for (int index : indexes) {
+                out.writeInt(index);
+            }
+        }));
+        return null;
+    }
+
+    /**
+     * Answers GETBLOCKTXN with the requested transactions of a block in the chain.
+     *
+     * @param peer The requesting peer
+     * @param payload The request payload
+     * @throws IOException If the payload is malformed
+     */
+    void onGetBlockTxn(PeerConnection peer, byte[] payload) throws IOException {
+        DataInputStream in = WireCodec.reader(payload);
+        Hash256 hash = WireCodec.readHash(in);
+        int count = in.readInt();
+        WireCodec.checkCount(count, payload.length / Integer.BYTES);
+        Block block = blockchain.getBlockByHash(hash);
+        if (block == null) {
+            Logger.debug("[CompactBlockRelay] " + peer + " requested transactions of unknown block " + hash);
+            return;
+        }
+        List<Transaction> txs = block.getTransactions();
+        List<SignedTransaction> reply = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = in.readInt();
+            if (index < 0 || index >= txs.size()) {
+                throw new IOException("Transaction index " + index + " out of range");
+            }
+            reply.add((SignedTransaction) txs.get(index));
+        }
+        transport.send(peer, MessageType.BLOCKTXN, WireCodec.write(out -> {
+            WireCodec.writeHash(out, hash);
+            out.writeInt(reply.size());
+            for (SignedTransaction tx : reply) {
+                WireCodec.writeTransaction(out, tx);
+            }
+        }));
+    }
+
+    /**
+     * Completes a partial block with transactions delivered by the sender.
+     *
+     * @param peer The peer that sent the transactions
+     * @param payload The BLOCKTXN payload
+     * @return The full block, or null if no block was waiting or it had to be fetched in full
+     * @throws IOException If the payload is malformed
+     */
+    Block onBlockTxn(PeerConnection peer, byte[] payload) throws IOException {
+        DataInputStream in = WireCodec.reader(payload);
+        Hash256 hash = WireCodec.readHash(in);
+        PartialBlock partial = partialBlocks.get(hash);
+        if (partial == null || partial.peer != peer) {
+            return null;
+        }
+        partialBlocks.remove(hash);
+        int count = in.readInt();
+        if (count != partial.missing.length) {
+            throw new IOException("Expected " + partial.missing.length + " transactions but got " + count);
+        }
+        for (int index : partial.missing) {
+            SignedTransaction tx = WireCodec.readTransaction(in);
+            partial.transactions[index] = tx;
+            rememberTransaction(tx);
+        }
+        return build(peer, partial.compact, partial.transactions);
+    }
+
+    private Block build(PeerConnection peer, CompactBlock compact, Transaction[] transactions) {
+        BlockHeader header = compact.getHeader();
+        Block block = new Block(header.getIndex(), header.getTimestamp(), new ArrayList<>(Arrays.asList(transactions)),
+                header.getPreviousHash(), header.getMinerId(), header.getNonce());
+        block.setSignature(header.getSignature());
+        if (!block.getHash().equals(compact.getHash())) {
+            FAILED.inc();
+            Logger.debug("[CompactBlockRelay] Rebuilt block " + compact.getHash() + " does not match its header, fetching it in full");
+            transport.send(peer, MessageType.GETDATA, WireCodec.encodeInventory(
+                    List.of(new InventoryItem(MessageType.BLOCK, compact.getHash()))));
+            return null;
+        }
+        return block;
+    }
+}
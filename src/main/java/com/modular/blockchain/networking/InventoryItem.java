@@ -0,0 +1,64 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.transaction.Transaction;
+
+/**
+ * Identifies a transaction or block by its hash in INV and GETDATA messages.
+ */
+public final class InventoryItem {
+    private final MessageType type;
+    private final Hash256 hash;
+
+    /**
+     * Creates an inventory entry.
+     *
+     * @param type {@link MessageType#TX} or {@link MessageType#BLOCK}
+     * @param hash The transaction id or block hash
+     */
+    public InventoryItem(MessageType type, Hash256 hash) {
+        this.type = type;
+        this.hash = hash;
+    }
+
+    /**
+     * Creates the inventory entry for a transaction, whose id is its hash.
+     *
+     * @param tx The transaction
+     * @return The entry
+     */
+    public static InventoryItem of(Transaction tx) {
+        return new InventoryItem(MessageType.TX, tx.getId());
+    }
+
+    /**
+     * @return The type of the object the entry refers to
+     */
+    public MessageType getType() {
+        return type;
+    }
+
+    /**
+     * @return The transaction id or block hash
+     */
+    public Hash256 getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof InventoryItem other)) return false;
+        return type == other.type && hash.equals(other.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode() * 31 + type.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + hash;
+    }
+}
@@ -0,0 +1,60 @@
+package com.modular.blockchain.networking;
+
+/**
+ * Types of the messages exchanged between peers. Each frame on the wire carries one message,
+ * identified by the code of its type.
+ */
+public enum MessageType {
+    /** Handshake: protocol magic and version, node id and listening port */
+    HELLO(1),
+    /** A full signed transaction */
+    TX(2),
+    /** A full block with all of its transactions */
+    BLOCK(3),
+    /** Announcement of transaction and block hashes the sender can supply */
+    INV(4),
+    /** Request for the full transactions and blocks behind announced hashes */
+    GETDATA(5),
+    /** Request for headers following the first known hash in a locator */
+    GETHEADERS(6),
+    /** A run of consecutive block headers */
+    HEADERS(7),
+    /** A block header with short ids of its transactions, rebuilt by the receiver from its own transactions */
+    CMPCTBLOCK(8),
+    /** Request for the transactions of a compact block the receiver could not find */
+    GETBLOCKTXN(9),
+    /** Transactions requested with GETBLOCKTXN */
+    BLOCKTXN(10),
+    /** Liveness and latency probe carrying a nonce */
+    PING(11),
+    /** Reply to PING echoing its nonce */
+    PONG(12);
+
+    private final byte code;
+
+    MessageType(int code) {
+        this.code = (byte) code;
+    }
+
+    /**
+     * @return The code identifying this type on the wire
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Looks up a message type by its wire code.
+     *
+     * @param code The code read from a frame
+     * @return The message type, or null if the code is unknown
+     */
+    public static MessageType fromCode(byte code) {
+        for (MessageType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -1,42 +1,282 @@
 package com.modular.blockchain.networking;
 
 import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.blockchain.ChainListener;
+import com.modular.blockchain.consensus.ConsensusEngine;
+import com.modular.blockchain.consensus.ConsensusResult;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.transaction.PoolListener;
+import com.modular.blockchain.transaction.SignedTransaction;
 import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.transaction.TransactionPool;
 import com.modular.blockchain.util.Logger;
+
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class responsible for managing network operations in the blockchain.
  * Handles peer connections and broadcasting of blocks and transactions.
+ * When created for a node, it listens for peers over a {@link PeerTransport}, relays every block
+ * and transaction accepted locally, and feeds those received from peers into the local pool and chain.
+ * Messages are processed on a single node thread, so the selector thread never waits on chain locks.
+ * <p>
+ * Relay uses inventory gossip: a node announces the hashes of new items in INV messages, and each
+ * peer fetches with GETDATA only the items it has not seen, so a full copy crosses each link at most
+ * once. The node remembers recently seen hashes in a rolling Bloom filter, and every connection
+ * remembers the hashes that peer already knows, so nothing is announced back to where it came from.
+ * Transaction announcements are batched per peer and sent on a short trickle timer.
+ * New blocks are pushed at once as {@link CompactBlock}s, since their propagation delay matters most
+ * and peers usually hold their transactions already; see {@link CompactBlockRelay}.
+ * <p>
+ * A node that is behind, or on a shorter branch, catches up through {@link ChainSync}: headers are
+ * requested from every new peer and whenever a block arrives that does not extend the local tip.
+ * <p>
+ * Which peers the node talks to is decided by a {@link PeerManager}: it dials the known peers up to
+ * the outbound limit, measures every peer's latency, bans peers that send invalid data and replaces
+ * slow outbound peers over time. Inbound connections beyond their own limit are refused.
  */
-public class NetworkService {
+public class NetworkService implements ChainListener, PoolListener {
+    /** Default interval between transaction announcement batches */
+    public static final long DEFAULT_TRICKLE_INTERVAL_MILLIS = 100;
+    /** Default number of peers this node dials */
+    public static final int DEFAULT_MAX_OUTBOUND = 8;
+    /** Default number of connections accepted from peers */
+    public static final int DEFAULT_MAX_INBOUND = 117;
+    /** Misbehaviour points for a block that fails consensus, which may be an honest race */
+    private static final int INVALID_BLOCK_POINTS = 10;
+    private static final long PEER_TICK_MILLIS = 1_000;
+    /** Most entries sent in one INV message; the rest wait for the next trickle */
+    private static final int MAX_INVENTORY_ENTRIES = 1_000;
+    /** Hashes remembered as seen by this node */
+    private static final int KNOWN_ITEMS = 50_000;
+    /** Encoded items kept for answering GETDATA */
+    private static final int RELAY_CACHE_ENTRIES = 10_000;
+    /** An item requested but not delivered within this time may be requested from another peer */
+    private static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private static final Counter INV_ENTRIES_SENT = Metrics.counter("p2p_inventory_entries_total",
+            "Inventory entries sent to peers, by message", "message", "inv");
+    private static final Counter GETDATA_ENTRIES_SENT = Metrics.counter("p2p_inventory_entries_total",
+            "Inventory entries sent to peers, by message", "message", "getdata");
+    private static final Counter ITEMS_NEW = Metrics.counter("p2p_items_received_total",
+            "Full transactions and blocks received from peers, by whether they were already known", "result", "new");
+    private static final Counter ITEMS_DUPLICATE = Metrics.counter("p2p_items_received_total",
+            "Full transactions and blocks received from peers, by whether they were already known", "result", "duplicate");
+
     /** List of connected peers in the network */
-    private final List<Peer> peers = new ArrayList<>();
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final String nodeId;
+    private final int port;
+    private final Blockchain blockchain;
+    private final TransactionPool pool;
+    private final ConsensusEngine consensusEngine;
+    private long trickleIntervalMillis = DEFAULT_TRICKLE_INTERVAL_MILLIS;
+    private int maxOutbound = DEFAULT_MAX_OUTBOUND;
+    private int maxInbound = DEFAULT_MAX_INBOUND;
+    private ScheduledExecutorService nodeExecutor;
+    private volatile PeerTransport transport;
+    private PeerManager peerManager;
+    private ChainSync sync;
+    private CompactBlockRelay compactRelay;
+
+    // Gossip state, only touched on the node thread
+    private final RollingBloomFilter knownItems = new RollingBloomFilter(KNOWN_ITEMS, 0.000001);
+    private final Map<InventoryItem, byte[]> relayCache = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<InventoryItem, byte[]> eldest) {
+            return size() > RELAY_CACHE_ENTRIES;
+        }
+    };
+    private final Map<InventoryItem, Long> requested = new HashMap<>();
+
+    /**
+     * Creates an offline network service that only records peers and logs broadcasts.
+     */
+    public NetworkService() {
+        this(null, 0, null, null, null);
+    }
+
+    /**
+     * Creates a network service for a node. Nothing is opened until {@link #start()} is called.
+     *
+     * @param nodeId Unique id announced to peers
+     * @param port Port to accept peer connections on, or 0 to only connect out
+     * @param blockchain The local chain, which receives blocks from peers
+     * @param pool The local transaction pool, which receives transactions from peers
+     * @param consensusEngine Validates blocks received from peers
+     */
+    public NetworkService(String nodeId, int port, Blockchain blockchain, TransactionPool pool,
+                          ConsensusEngine consensusEngine) {
+        this.nodeId = nodeId;
+        this.port = port;
+        this.blockchain = blockchain;
+        this.pool = pool;
+        this.consensusEngine = consensusEngine;
+        if (blockchain != null) {
+            blockchain.addListener(this);
+        }
+        if (pool != null) {
+            pool.addListener(this);
+        }
+    }
+
+    /**
+     * Starts the peer transport and begins dialling the peers added so far.
+     *
+     * @throws IOException If the listening port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (transport != null) {
+            return;
+        }
+        if (nodeId == null) {
+            throw new IllegalStateException("An offline network service cannot be started");
+        }
+        nodeExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "p2p-node-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        PeerTransport started = new PeerTransport(nodeId, port, PeerTransport.DEFAULT_MAX_QUEUED_BYTES, new TransportListener());
+        started.setMaxInbound(maxInbound);
+        peerManager = new PeerManager(started, peers, maxOutbound);
+        sync = new ChainSync(blockchain, pool, consensusEngine, started, peerManager);
+        compactRelay = new CompactBlockRelay(blockchain, started);
+        started.start();
+        transport = started;
+        nodeExecutor.scheduleWithFixedDelay(this::trickle, trickleIntervalMillis, trickleIntervalMillis, TimeUnit.MILLISECONDS);
+        nodeExecutor.scheduleWithFixedDelay(peerManager::tick, 0, PEER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        Logger.info("[NetworkService] Node " + nodeId + " started");
+    }
+
+    /**
+     * Closes all peer connections and stops processing messages.
+     */
+    public synchronized void stop() {
+        if (transport == null) {
+            return;
+        }
+        transport.stop();
+        transport = null;
+        nodeExecutor.shutdownNow();
+        Logger.info("[NetworkService] Node " + nodeId + " stopped");
+    }
+
+    /**
+     * Sets how often batched transaction announcements are sent. Takes effect on the next start.
+     *
+     * @param trickleIntervalMillis Interval in milliseconds
+     */
+    public void setTrickleIntervalMillis(long trickleIntervalMillis) {
+        this.trickleIntervalMillis = trickleIntervalMillis;
+    }
+
+    /**
+     * Sets how many peers this node dials and how many inbound connections it accepts.
+     * Takes effect on the next start.
+     *
+     * @param maxOutbound Most outbound connections
+     * @param maxInbound Most inbound connections
+     */
+    public void setConnectionLimits(int maxOutbound, int maxInbound) {
+        this.maxOutbound = maxOutbound;
+        this.maxInbound = maxInbound;
+    }
 
     /**
      * Broadcasts a new block to all connected peers in the network.
+     * The block is pushed immediately, in compact form, to every peer not known to have it.
      * @param block The block to broadcast
      */
     public void broadcastBlock(Block block) {
         Logger.info("[NetworkService] Broadcasting block: " + block.getHash());
+        if (transport != null) {
+            submit(() -> relayBlock(block));
+        }
     }
 
     /**
      * Broadcasts a new transaction to all connected peers in the network.
+     * The transaction is queued for the next announcement batch of every peer not known to have it.
      * @param tx The transaction to broadcast
      */
     public void broadcastTransaction(Transaction tx) {
         Logger.info("[NetworkService] Broadcasting transaction: " + tx.getId());
+        if (transport != null && tx instanceof SignedTransaction signed) {
+            submit(() -> relayTransaction(signed));
+        }
+    }
+
+    /**
+     * Relays blocks appended to the local chain, whether mined here or received from a peer.
+     *
+     * @param block The appended block
+     */
+    @Override
+    public void blockAdded(Block block) {
+        broadcastBlock(block);
+    }
+
+    /**
+     * Keeps blocks rolled back by a reorganisation available to peers, which may still be
+     * fetching the branch they belonged to.
+     *
+     * @param block The removed block
+     */
+    @Override
+    public void blockRemoved(Block block) {
+        if (transport != null) {
+            submit(() -> relayCache.put(new InventoryItem(MessageType.BLOCK, block.getHash()), WireCodec.encodeBlock(block)));
+        }
     }
 
     /**
-     * Adds a new peer to the network.
+     * Relays transactions accepted into the local pool, whether submitted here or received from a peer.
+     *
+     * @param tx The accepted transaction
+     */
+    @Override
+    public void transactionAdded(Transaction tx) {
+        broadcastTransaction(tx);
+    }
+
+    /**
+     * Adds a new peer to the network's address book. A running service dials it if an outbound
+     * slot is free.
      * @param peer The peer to add to the network
      */
     public void addPeer(Peer peer) {
         peers.add(peer);
         Logger.info("[NetworkService] Added peer: " + peer.getId());
+        if (transport != null) {
+            submit(peerManager::tick);
+        }
+    }
+
+    /**
+     * Opens a connection to a peer's listening address right away, regardless of the outbound limit.
+     *
+     * @param peer The peer to connect to
+     */
+    public void connect(Peer peer) {
+        PeerTransport current = transport;
+        if (current == null) {
+            throw new IllegalStateException("Network service is not running");
+        }
+        current.connect(peer.getAddress(), peer.getPort());
     }
 
     /**
@@ -48,11 +288,316 @@ public class NetworkService {
     }
 
     /**
-     * Removes a peer from the network.
+     * Returns the connections that have completed the handshake.
+     *
+     * @return The live peer connections; empty when the service is not running
+     */
+    public List<PeerConnection> getConnections() {
+        PeerTransport current = transport;
+        return current == null ? List.of() : current.getConnections();
+    }
+
+    /**
+     * Removes a peer from the network, closing any connection to it.
      * @param peer The peer to remove
      */
     public void removePeer(Peer peer) {
         peers.remove(peer);
         Logger.info("[NetworkService] Removed peer: " + peer.getId());
+        PeerTransport current = transport;
+        if (current != null) {
+            current.getConnections().stream()
+                    .filter(connection -> peer.getId().equals(connection.getNodeId()))
+                    .forEach(current::disconnect);
+        }
+    }
+
+    /**
+     * @return This node's id, or null for an offline service
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void submit(Runnable task) {
+        try {
+            nodeExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            Logger.debug("[NetworkService] Node " + nodeId + " is stopping, dropping network task");
+        }
+    }
+
+    /**
+     * Makes a transaction available to peers and queues its announcement to those not known to have it.
+     */
+    private void relayTransaction(SignedTransaction tx) {
+        PeerTransport current = transport;
+        if (current == null) {
+            return;
+        }
+        InventoryItem item = InventoryItem.of(tx);
+        knownItems.add(item.getHash());
+        relayCache.put(item, WireCodec.encodeTransaction(tx));
+        compactRelay.rememberTransaction(tx);
+        for (PeerConnection connection : current.getConnections()) {
+            if (!connection.getKnownInventory().contains(item.getHash())) {
+                connection.getPendingAnnouncements().add(item);
+            }
+        }
+    }
+
+    /**
+     * Pushes a new block in compact form to the peers not known to have it, provided it is still
+     * the tip. Full copies are served from the chain on request.
+     */
+    private void relayBlock(Block block) {
+        PeerTransport current = transport;
+        if (current == null) {
+            return;
+        }
+        knownItems.add(block.getHash());
+        // Blocks appended while catching up, or already built upon, are old news to peers; the tip
+        // is relayed even when it was reached through sync, so a branch switch spreads at once
+        if (block.getIndex() < sync.getTargetHeight() || !block.getHash().equals(blockchain.getLatestBlock().getHash())) {
+            return;
+        }
+        List<PeerConnection> targets = new ArrayList<>();
+        for (PeerConnection connection : current.getConnections()) {
+            if (!connection.getKnownInventory().contains(block.getHash())) {
+                connection.getKnownInventory().add(block.getHash());
+                targets.add(connection);
+            }
+        }
+        compactRelay.send(targets, block);
+    }
+
+    /**
+     * Sends each peer its batch of pending transaction announcements, skipping items it has
+     * learned about since they were queued, and forgets requests that have timed out.
+     */
+    private void trickle() {
+        PeerTransport current = transport;
+        if (current == null) {
+            return;
+        }
+        for (PeerConnection connection : current.getConnections()) {
+            List<InventoryItem> pending = connection.getPendingAnnouncements();
+            if (pending.isEmpty()) {
+                continue;
+            }
+            List<InventoryItem> batch = pending.subList(0, Math.min(pending.size(), MAX_INVENTORY_ENTRIES));
+            List<InventoryItem> unknown = batch.stream()
+                    .filter(item -> !connection.getKnownInventory().contains(item.getHash()))
+                    .toList();
+            batch.clear();
+            if (!unknown.isEmpty()) {
+                announce(current, connection, unknown);
+            }
+        }
+        long now = System.nanoTime();
+        requested.values().removeIf(at -> now - at > REQUEST_TIMEOUT_NANOS);
+        sync.tick();
+    }
+
+    private void announce(PeerTransport current, PeerConnection connection, List<InventoryItem> items) {
+        items.forEach(item -> connection.getKnownInventory().add(item.getHash()));
+        current.send(connection, MessageType.INV, WireCodec.encodeInventory(items));
+        INV_ENTRIES_SENT.add(items.size());
+    }
+
+    /**
+     * Requests the announced items this node has not seen and is not already fetching.
+     */
+    private void handleInventory(PeerConnection connection, List<InventoryItem> items) {
+        long now = System.nanoTime();
+        List<InventoryItem> wanted = new ArrayList<>();
+        for (InventoryItem item : items) {
+            connection.getKnownInventory().add(item.getHash());
+            if (knownItems.contains(item.getHash())) {
+                continue;
+            }
+            Long since = requested.get(item);
+            if (since != null && now - since < REQUEST_TIMEOUT_NANOS) {
+                continue;
+            }
+            requested.put(item, now);
+            wanted.add(item);
+        }
+        if (!wanted.isEmpty()) {
+            transport.send(connection, MessageType.GETDATA, WireCodec.encodeInventory(wanted));
+            GETDATA_ENTRIES_SENT.add(wanted.size());
+        }
+    }
+
+    /**
+     * Sends the requested items that are still available; unavailable ones are left to time out.
+     */
+    private void handleGetData(PeerConnection connection, List<InventoryItem> items) {
+        for (InventoryItem item : items) {
+            byte[] payload = relayCache.get(item);
+            if (payload == null && item.getType() == MessageType.BLOCK) {
+                Block block = blockchain.getBlockByHash(item.getHash());
+                payload = block == null ? null : WireCodec.encodeBlock(block);
+            }
+            if (payload == null) {
+                Logger.debug("[NetworkService] " + connection + " requested unknown " + item);
+                continue;
+            }
+            connection.getKnownInventory().add(item.getHash());
+            transport.send(connection, item.getType(), payload);
+        }
+    }
+
+    /**
+     * Records a full item received from a peer.
+     *
+     * @return true if the item is new to this node and should be processed
+     */
+    private boolean receiveItem(PeerConnection connection, InventoryItem item) {
+        requested.remove(item);
+        connection.getKnownInventory().add(item.getHash());
+        if (knownItems.contains(item.getHash())) {
+            ITEMS_DUPLICATE.inc();
+            return false;
+        }
+        knownItems.add(item.getHash());
+        ITEMS_NEW.inc();
+        return true;
+    }
+
+    private void handleMessage(PeerConnection connection, MessageType type, byte[] payload) {
+        try {
+            switch (type) {
+                case INV -> handleInventory(connection, WireCodec.decodeInventory(payload));
+                case GETDATA -> handleGetData(connection, WireCodec.decodeInventory(payload));
+                case TX -> {
+                    SignedTransaction tx = WireCodec.decodeTransaction(payload);
+                    if (receiveItem(connection, InventoryItem.of(tx))) {
+                        pool.addTransaction(tx);
+                    }
+                }
+                case GETHEADERS -> sync.onGetHeaders(connection, WireCodec.decodeGetHeaders(payload));
+                case HEADERS -> sync.onHeaders(connection, WireCodec.decodeHeaders(payload));
+                case BLOCK -> {
+                    Block block = WireCodec.decodeBlock(payload);
+                    connection.noteHeight(block.getIndex());
+                    if (sync.onBlock(connection, block)) {
+                        requested.remove(new InventoryItem(MessageType.BLOCK, block.getHash()));
+                        knownItems.add(block.getHash());
+                    } else if (receiveItem(connection, new InventoryItem(MessageType.BLOCK, block.getHash()))) {
+                        handleBlock(connection, block);
+                    }
+                }
+                case PING -> peerManager.onPing(connection, payload);
+                case PONG -> peerManager.onPong(connection, payload);
+                case CMPCTBLOCK -> handleCompactBlock(connection, CompactBlock.decode(payload));
+                case GETBLOCKTXN -> compactRelay.onGetBlockTxn(connection, payload);
+                case BLOCKTXN -> {
+                    Block block = compactRelay.onBlockTxn(connection, payload);
+                    if (block != null && receiveItem(connection, new InventoryItem(MessageType.BLOCK, block.getHash()))) {
+                        handleBlock(connection, block);
+                    }
+                }
+                default -> Logger.debug("[NetworkService] Ignoring " + type + " from " + connection);
+            }
+        } catch (IOException e) {
+            // Decoders and protocol checks report what the peer got wrong as IOException
+            Logger.error("[NetworkService] Malformed " + type + " from " + connection + ": " + e.getMessage());
+            peerManager.misbehaving(connection, PeerManager.BAN_THRESHOLD, "malformed " + type);
+        } catch (RuntimeException e) {
+            // A fault of this node, e.g. in the pool, chain or consensus; the peer is not to blame
+            Logger.error("[NetworkService] Failed to handle " + type + " from " + connection + ": " + e);
+        }
+    }
+
+    /**
+     * Checks a compact block's header before spending any effort on rebuilding it.
+     */
+    private void handleCompactBlock(PeerConnection connection, CompactBlock compact) throws IOException {
+        Hash256 hash = compact.getHash();
+        int index = compact.getHeader().getIndex();
+        connection.getKnownInventory().add(hash);
+        connection.noteHeight(index);
+        if (hash.leadingZeroNibbles() < blockchain.getDifficulty()) {
+            throw new IOException("Compact block " + hash + " does not meet difficulty");
+        }
+        if (knownItems.contains(hash)) {
+            ITEMS_DUPLICATE.inc();
+            return;
+        }
+        int height = blockchain.getHeight();
+        if (index != height + 1 || !compact.getHeader().getPreviousHash().equals(blockchain.getLatestBlock().getHash())) {
+            if (sync.beatsLocalChain(index, hash)) {
+                sync.requestHeaders(connection);
+            }
+            return;
+        }
+        // The block is only marked as seen once rebuilt, so a full copy requested as a fallback is accepted
+        Block block = compactRelay.onCompactBlock(connection, compact);
+        if (block != null) {
+            knownItems.add(hash);
+            ITEMS_NEW.inc();
+            handleBlock(connection, block);
+        }
+    }
+
+    /**
+     * Validates and appends a block received from a peer. A block that does not meet the
+     * difficulty cost its sender nothing to make, so it is a protocol error, like a compact block
+     * failing the same check; any other consensus failure may be an honest race.
+     */
+    private void handleBlock(PeerConnection connection, Block block) throws IOException {
+        if (block.getHash().leadingZeroNibbles() < blockchain.getDifficulty()) {
+            throw new IOException("Block " + block.getHash() + " does not meet difficulty");
+        }
+        int height = blockchain.getHeight();
+        if (!sync.beatsLocalChain(block.getIndex(), block.getHash())) {
+            Logger.debug("[NetworkService] Ignoring block " + block.getIndex() + " from " + connection + " at height " + height);
+            return;
+        }
+        if (block.getIndex() != height + 1 || !block.getPreviousHash().equals(blockchain.getLatestBlock().getHash())) {
+            // The peer is on a longer chain or another branch; fetch its headers to find out
+            sync.requestHeaders(connection);
+            return;
+        }
+        ConsensusResult result = consensusEngine.validateBlock(block, blockchain);
+        if (!result.isSuccess()) {
+            Logger.error("[NetworkService] Block from " + connection + " failed consensus: " + result.getMessage());
+            peerManager.misbehaving(connection, INVALID_BLOCK_POINTS, "invalid block");
+            return;
+        }
+        if (blockchain.addBlock(block)) {
+            pool.removeTransactions(block.getTransactions());
+            Logger.info("[NetworkService] Added block " + block.getIndex() + " from " + connection);
+        }
+    }
+
+    /**
+     * Hands transport events to the node thread.
+     */
+    private final class TransportListener implements PeerTransport.Listener {
+        @Override
+        public void onConnected(PeerConnection connection) {
+            Logger.info("[NetworkService] Peer connected: " + connection);
+            submit(() -> {
+                if (peerManager.onConnected(connection)) {
+                    sync.requestHeaders(connection);
+                }
+            });
+        }
+
+        @Override
+        public void onMessage(PeerConnection connection, MessageType type, byte[] payload) {
+            submit(() -> handleMessage(connection, type, payload));
+        }
+
+        @Override
+        public void onDisconnected(PeerConnection connection) {
+            Logger.info("[NetworkService] Peer disconnected: " + connection);
+            submit(() -> {
+                peerManager.onDisconnected(connection);
+                sync.onDisconnected(connection);
+            });
+        }
     }
-}
\ No newline at end of file
+}
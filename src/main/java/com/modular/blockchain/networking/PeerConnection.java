@@ -0,0 +1,356 @@
+package com.modular.blockchain.networking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One TCP connection to a peer, driven by the {@link PeerTransport} selector thread.
+ * Inbound bytes are assembled into frames in a growable read buffer. Outbound frames wait in a
+ * bounded queue; whenever the socket is writable, everything queued is handed to a single gathering
+ * write, so bursts of small messages are coalesced into few system calls and packets.
+ * A peer that stops reading is disconnected once its queue exceeds the limit, instead of
+ * letting it hold unbounded memory.
+ */
+public class PeerConnection {
+    /** Frames larger than this are treated as a protocol violation */
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_READ_BUFFER = 64 * 1024;
+    /** Maximum number of frames passed to one gathering write */
+    private static final int MAX_GATHER = 64;
+    /** Inventory remembered per peer as already known to it */
+    private static final int KNOWN_INVENTORY_ITEMS = 5_000;
+
+    private final SocketChannel channel;
+    private final boolean outbound;
+    private final long connectedAtNanos = System.nanoTime();
+    private final long maxQueuedBytes;
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER);
+
+    /** Guarded by this */
+    private final ArrayDeque<ByteBuffer> outboundQueue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean closed;
+
+    /** Gossip state, confined to the node thread of the owning NetworkService */
+    private final RollingBloomFilter knownInventory = new RollingBloomFilter(KNOWN_INVENTORY_ITEMS, 0.00001);
+    private final List<InventoryItem> pendingAnnouncements = new ArrayList<>();
+    /** Highest block height the peer is known to have */
+    private volatile int bestHeight = -1;
+    /** Blocks requested from this peer by chain sync and not yet delivered */
+    private int blocksInFlight;
+
+    /** Health, maintained by the PeerManager on the node thread; averages are 0 until measured */
+    private volatile long rttNanos;
+    private volatile long blockLatencyNanos;
+    private volatile int failures;
+    private volatile int misbehaviourScore;
+    private long pingNonce;
+    private long pingSentAtNanos;
+    private long lastPingNanos;
+
+    private volatile String nodeId;
+    private final String remoteHost;
+    private volatile int listenPort;
+
+    PeerConnection(SocketChannel channel, boolean outbound, String remoteHost, long maxQueuedBytes) {
+        this.channel = channel;
+        this.outbound = outbound;
+        this.remoteHost = remoteHost;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Queues a frame for sending.
+     *
+     * @param frame The frame, positioned at its start; it must not be modified afterwards
+     * @return false if the connection is closed or its queue is full
+     */
+    synchronized boolean enqueue(ByteBuffer frame) {
+        if (closed || queuedBytes + frame.remaining() > maxQueuedBytes) {
+            return false;
+        }
+        outboundQueue.add(frame);
+        queuedBytes += frame.remaining();
+        return true;
+    }
+
+    /**
+     * Writes as much queued data as the socket accepts.
+     *
+     * @return true if the queue has been drained
+     * @throws IOException If the write fails
+     */
+    synchronized boolean flush() throws IOException {
+        while (!outboundQueue.isEmpty()) {
+            ByteBuffer[] batch = outboundQueue.stream().limit(MAX_GATHER).toArray(ByteBuffer[]::new);
+            long written = channel.write(batch);
+            queuedBytes -= written;
+            while (!outboundQueue.isEmpty() && !outboundQueue.peek().hasRemaining()) {
+                outboundQueue.poll();
+            }
+            if (written == 0 || batch[batch.length - 1].hasRemaining()) {
+                return outboundQueue.isEmpty();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if frames are waiting to be written
+     */
+    synchronized boolean hasPendingWrites() {
+        return !outboundQueue.isEmpty();
+    }
+
+    /**
+     * Reads available bytes and extracts complete frames.
+     *
+     * @param sink Receives the type code and payload of each complete frame
+     * @return false if the peer closed the connection
+     * @throws IOException If the read fails or a frame is malformed
+     */
+    boolean read(FrameSink sink) throws IOException {
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            return false;
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= WireCodec.LENGTH_PREFIX) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < 1 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (readBuffer.remaining() < WireCodec.LENGTH_PREFIX + length) {
+                if (WireCodec.LENGTH_PREFIX + length > readBuffer.capacity()) {
+                    grow(WireCodec.LENGTH_PREFIX + length);
+                    readBuffer.flip();
+                }
+                break;
+            }
+            readBuffer.getInt();
+            byte type = readBuffer.get();
+            byte[] payload = new byte[length - 1];
+            readBuffer.get(payload);
+            sink.accept(type, payload);
+        }
+        readBuffer.compact();
+        return true;
+    }
+
+    private void grow(int required) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(required, readBuffer.capacity() * 2));
+        larger.put(readBuffer);
+        readBuffer = larger;
+    }
+
+    /**
+     * Receives complete frames read from the connection.
+     */
+    @FunctionalInterface
+    interface FrameSink {
+        void accept(byte type, byte[] payload) throws IOException;
+    }
+
+    /**
+     * @return Hashes the peer has announced or been sent, which are never announced to it again
+     */
+    RollingBloomFilter getKnownInventory() {
+        return knownInventory;
+    }
+
+    /**
+     * @return Inventory waiting for the next trickle announcement to this peer
+     */
+    List<InventoryItem> getPendingAnnouncements() {
+        return pendingAnnouncements;
+    }
+
+    /**
+     * @return The highest block height the peer is known to have, or -1 if unknown
+     */
+    public int getBestHeight() {
+        return bestHeight;
+    }
+
+    /**
+     * Raises the peer's known best height.
+     *
+     * @param height A height the peer has shown it has
+     */
+    void noteHeight(int height) {
+        if (height > bestHeight) {
+            bestHeight = height;
+        }
+    }
+
+    int getBlocksInFlight() {
+        return blocksInFlight;
+    }
+
+    void addBlocksInFlight(int delta) {
+        blocksInFlight += delta;
+    }
+
+    /**
+     * @return Smoothed round-trip time of PING/PONG in nanoseconds, or 0 if not yet measured
+     */
+    public long getRttNanos() {
+        return rttNanos;
+    }
+
+    /**
+     * @return Smoothed time from requesting a block to receiving it, in nanoseconds, or 0 if not yet measured
+     */
+    public long getBlockLatencyNanos() {
+        return blockLatencyNanos;
+    }
+
+    /**
+     * @return Number of timed-out pings and block requests
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return Accumulated misbehaviour points; the peer is banned when they reach the limit
+     */
+    public int getMisbehaviourScore() {
+        return misbehaviourScore;
+    }
+
+    void recordRtt(long sample) {
+        rttNanos = smooth(rttNanos, sample);
+    }
+
+    void recordBlockLatency(long sample) {
+        blockLatencyNanos = smooth(blockLatencyNanos, sample);
+    }
+
+    void recordFailure() {
+        failures++;
+    }
+
+    int addMisbehaviour(int points) {
+        misbehaviourScore += points;
+        return misbehaviourScore;
+    }
+
+    long getPingNonce() {
+        return pingNonce;
+    }
+
+    long getPingSentAtNanos() {
+        return pingSentAtNanos;
+    }
+
+    void setPing(long nonce, long sentAtNanos) {
+        this.pingNonce = nonce;
+        this.pingSentAtNanos = sentAtNanos;
+    }
+
+    long getLastPingNanos() {
+        return lastPingNanos;
+    }
+
+    void setLastPingNanos(long lastPingNanos) {
+        this.lastPingNanos = lastPingNanos;
+    }
+
+    /** Exponentially weighted moving average giving each new sample a weight of 1/4 */
+    private static long smooth(long average, long sample) {
+        return average == 0 ? sample : average + (sample - average) / 4;
+    }
+
+    synchronized void markClosed() {
+        closed = true;
+        outboundQueue.clear();
+        queuedBytes = 0;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    long getConnectedAtNanos() {
+        return connectedAtNanos;
+    }
+
+    void completeHandshake(String nodeId, int listenPort) {
+        this.listenPort = listenPort;
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * @return true once the peer's HELLO has been accepted
+     */
+    public boolean isHandshakeComplete() {
+        return nodeId != null;
+    }
+
+    /**
+     * @return The peer's node id, or null before the handshake
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return true if this node opened the connection
+     */
+    public boolean isOutbound() {
+        return outbound;
+    }
+
+    /**
+     * @return The remote host address
+     */
+    public String getRemoteHost() {
+        return remoteHost;
+    }
+
+    /**
+     * @return The port the peer accepts connections on, as announced in its HELLO
+     */
+    public int getListenPort() {
+        return listenPort;
+    }
+
+    /**
+     * @return The number of bytes waiting to be written
+     */
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * @return The peer as an address book entry
+     */
+    public Peer toPeer() {
+        return new Peer(nodeId, remoteHost, listenPort);
+    }
+
+    @Override
+    public String toString() {
+        return "PeerConnection{" + (nodeId == null ? "?" : nodeId) + "@" + remoteHost + ", "
+                + (outbound ? "outbound" : "inbound") + "}";
+    }
+}
@@ -0,0 +1,319 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.util.Logger;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a node's peer set healthy for a {@link NetworkService}.
+ * <p>
+ * Every connection is pinged periodically and its round-trip time smoothed; block fetches record how
+ * long each peer takes to deliver. {@link #expectedFetchNanos(PeerConnection)} turns these into an
+ * estimate used to send block requests to the fastest peers first. Peers that stop answering pings
+ * are dropped, and peers that send invalid data collect misbehaviour points until they are banned.
+ * <p>
+ * The manager dials the address book until the outbound limit is reached, backing off exponentially
+ * from addresses that fail. Once a minute, if a spare address is available, the slowest outbound peer
+ * is disconnected when it is far slower than the others, so the outbound set drifts towards fast peers.
+ * <p>
+ * All methods run on the node thread of the owning service and are not thread-safe.
+ */
+class PeerManager {
+    /** Misbehaviour points at which a peer is banned */
+    static final int BAN_THRESHOLD = 100;
+    private static final long BAN_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long PING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long PING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(20);
+    /** Timed-out pings and block requests after which a peer is disconnected */
+    private static final int MAX_FAILURES = 5;
+    private static final long DIAL_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long ROTATION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    /** A peer is rotated out when its RTT exceeds the median outbound RTT by this factor */
+    private static final int SLOW_FACTOR = 2;
+    /** Assumed block latency of a peer that has not been measured yet */
+    private static final long DEFAULT_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static final Histogram PING_RTT = Metrics.histogram("p2p_ping_rtt_seconds",
+            "Round-trip time of PING/PONG between peers", Metrics.LATENCY_BUCKETS);
+    private static final Counter BANNED = Metrics.counter("p2p_peers_banned_total",
+            "Peers disconnected and banned for misbehaviour");
+    private static final Counter ROTATED = Metrics.counter("p2p_peers_rotated_total",
+            "Slow outbound peers disconnected to make room for others");
+
+    private final PeerTransport transport;
+    private final List<Peer> addressBook;
+    private final int maxOutbound;
+    /** Earliest next dial per address, keyed by host:port */
+    private final Map<String, Long> nextAttempt = new HashMap<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+    /** Addresses dialled and not yet connected, with the time of the dial */
+    private final Map<String, Long> dialing = new HashMap<>();
+    /** Banned node ids and when the ban ends */
+    private final Map<String, Long> banned = new HashMap<>();
+    private long nextRotation = System.nanoTime() + ROTATION_INTERVAL_NANOS;
+
+    PeerManager(PeerTransport transport, List<Peer> addressBook, int maxOutbound) {
+        this.transport = transport;
+        this.addressBook = addressBook;
+        this.maxOutbound = maxOutbound;
+    }
+
+    /**
+     * Estimates how long a block requested from a peer now would take to arrive, given its
+     * measured latency and the requests it is already serving.
+     *
+     * @param peer The peer
+     * @return Expected delivery time in nanoseconds
+     */
+    static long expectedFetchNanos(PeerConnection peer) {
+        long latency = peer.getBlockLatencyNanos();
+        if (latency == 0) {
+            latency = peer.getRttNanos() == 0 ? DEFAULT_LATENCY_NANOS : peer.getRttNanos();
+        }
+        return latency * (peer.getBlocksInFlight() + 1);
+    }
+
+    /**
+     * Checks a newly handshaken connection against bans and the outbound limit.
+     *
+     * @param connection The connection
+     * @return true if the connection may stay open
+     */
+    boolean onConnected(PeerConnection connection) {
+        if (connection.isOutbound()) {
+            String address = addressOf(connection);
+            dialing.remove(address);
+            attempts.remove(address);
+        }
+        Long bannedUntil = banned.get(connection.getNodeId());
+        if (bannedUntil != null && System.nanoTime() - bannedUntil < 0) {
+            Logger.info("[PeerManager] Refusing banned peer " + connection);
+            transport.disconnect(connection);
+            return false;
+        }
+        if (connection.isOutbound() && outboundCount() > maxOutbound) {
+            Logger.debug("[PeerManager] Outbound limit reached, closing " + connection);
+            transport.disconnect(connection);
+            return false;
+        }
+        ping(connection, System.nanoTime());
+        return true;
+    }
+
+    /**
+     * Delays redialling an outbound peer that went away, so a peer that keeps dropping the
+     * connection is not hammered.
+     *
+     * @param connection The closed connection
+     */
+    void onDisconnected(PeerConnection connection) {
+        if (connection.isOutbound()) {
+            backOff(addressOf(connection), System.nanoTime());
+        }
+    }
+
+    /**
+     * Answers a ping.
+     *
+     * @param connection The pinging peer
+     * @param payload The PING payload, echoed back
+     */
+    void onPing(PeerConnection connection, byte[] payload) {
+        transport.send(connection, MessageType.PONG, payload);
+    }
+
+    /**
+     * Records the round-trip time of a ping.
+     *
+     * @param connection The peer
+     * @param payload The PONG payload
+     * @throws IOException If the payload is malformed
+     */
+    void onPong(PeerConnection connection, byte[] payload) throws IOException {
+        DataInputStream in = WireCodec.reader(payload);
+        long nonce = in.readLong();
+        if (connection.getPingSentAtNanos() == 0 || nonce != connection.getPingNonce()) {
+            return;
+        }
+        long rtt = System.nanoTime() - connection.getPingSentAtNanos();
+        connection.recordRtt(rtt);
+        connection.setPing(0, 0);
+        PING_RTT.observeNanos(rtt);
+    }
+
+    /**
+     * Adds misbehaviour points to a peer, banning and disconnecting it at the threshold.
+     *
+     * @param connection The peer
+     * @param points Points to add
+     * @param reason What the peer did
+     */
+    void misbehaving(PeerConnection connection, int points, String reason) {
+        int score = connection.addMisbehaviour(points);
+        Logger.error("[PeerManager] " + connection + " misbehaving (" + reason + "), score " + score);
+        if (score >= BAN_THRESHOLD) {
+            banned.put(connection.getNodeId(), System.nanoTime() + BAN_NANOS);
+            if (connection.isOutbound()) {
+                nextAttempt.put(addressOf(connection), System.nanoTime() + BAN_NANOS);
+            }
+            BANNED.inc();
+            transport.disconnect(connection);
+        }
+    }
+
+    /**
+     * Pings peers, drops unresponsive ones, keeps the outbound slots filled and periodically
+     * rotates out a slow peer. Called about once a second.
+     */
+    void tick() {
+        long now = System.nanoTime();
+        List<PeerConnection> connections = transport.getConnections();
+        for (PeerConnection connection : connections) {
+            long sentAt = connection.getPingSentAtNanos();
+            if (sentAt != 0 && now - sentAt > PING_TIMEOUT_NANOS) {
+                connection.recordFailure();
+                connection.setPing(0, 0);
+                sentAt = 0;
+            }
+            if (connection.getFailures() >= MAX_FAILURES) {
+                Logger.error("[PeerManager] " + connection + " keeps timing out, disconnecting");
+                transport.disconnect(connection);
+                continue;
+            }
+            if (sentAt == 0 && now - connection.getLastPingNanos() > PING_INTERVAL_NANOS) {
+                ping(connection, now);
+            }
+        }
+        banned.values().removeIf(until -> now - until > 0);
+        if (now - nextRotation > 0) {
+            nextRotation = now + ROTATION_INTERVAL_NANOS;
+            rotate(connections);
+        }
+        fillOutbound(connections, now);
+    }
+
+    private void ping(PeerConnection connection, long now) {
+        long nonce = ThreadLocalRandom.current().nextLong() | 1;
+        connection.setPing(nonce, now);
+        connection.setLastPingNanos(now);
+        transport.send(connection, MessageType.PING, WireCodec.write(out -> out.writeLong(nonce)));
+    }
+
+    /**
+     * Dials addresses from the address book, skipping connected, banned and backed-off ones,
+     * until the outbound limit is reached.
+     */
+    private void fillOutbound(List<PeerConnection> connections, long now) {
+        dialing.entrySet().removeIf(entry -> {
+            if (now - entry.getValue() > DIAL_TIMEOUT_NANOS) {
+                backOff(entry.getKey(), now);
+                return true;
+            }
+            return false;
+        });
+        int slots = maxOutbound - (int) outboundCount() - dialing.size();
+        for (Peer peer : addressBook) {
+            if (slots <= 0) {
+                return;
+            }
+            String address = address(peer.getAddress(), peer.getPort());
+            if (dialing.containsKey(address) || isConnected(connections, peer) || banned.containsKey(peer.getId())
+                    || now - nextAttempt.getOrDefault(address, now) < 0) {
+                continue;
+            }
+            dialing.put(address, now);
+            transport.connect(peer.getAddress(), peer.getPort());
+            slots--;
+        }
+    }
+
+    /**
+     * Disconnects the slowest outbound peer if it is much slower than the median and another
+     * address is available to replace it.
+     */
+    private void rotate(List<PeerConnection> connections) {
+        List<PeerConnection> outbound = connections.stream()
+                .filter(PeerConnection::isOutbound)
+                .filter(connection -> connection.getRttNanos() > 0)
+                .sorted(Comparator.comparingLong(PeerConnection::getRttNanos))
+                .toList();
+        if (outbound.size() < Math.max(2, maxOutbound) || !hasSpareAddress(connections)) {
+            return;
+        }
+        long median = outbound.get(outbound.size() / 2).getRttNanos();
+        PeerConnection slowest = outbound.getLast();
+        if (slowest.getRttNanos() > SLOW_FACTOR * median) {
+            Logger.info("[PeerManager] Rotating out slow peer " + slowest + " (RTT "
+                    + TimeUnit.NANOSECONDS.toMillis(slowest.getRttNanos()) + " ms, median "
+                    + TimeUnit.NANOSECONDS.toMillis(median) + " ms)");
+            nextAttempt.put(addressOf(slowest), System.nanoTime() + ROTATION_INTERVAL_NANOS * 10);
+            ROTATED.inc();
+            transport.disconnect(slowest);
+        }
+    }
+
+    private boolean hasSpareAddress(List<PeerConnection> connections) {
+        long now = System.nanoTime();
+        for (Peer peer : addressBook) {
+            String address = address(peer.getAddress(), peer.getPort());
+            if (!isConnected(connections, peer) && !banned.containsKey(peer.getId())
+                    && now - nextAttempt.getOrDefault(address, now) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(String address, long now) {
+        int failed = attempts.merge(address, 1, Integer::sum);
+        long delay = Math.min(MAX_BACKOFF_NANOS, MIN_BACKOFF_NANOS << Math.min(failed, 20));
+        // Never shorten a longer wait set by a ban or a rotation
+        nextAttempt.merge(address, now + delay, (current, next) -> current - next > 0 ? current : next);
+        Logger.debug("[PeerManager] Could not connect to " + address + ", retrying in "
+                + TimeUnit.NANOSECONDS.toSeconds(delay) + " s");
+    }
+
+    private long outboundCount() {
+        return transport.getConnections().stream().filter(PeerConnection::isOutbound).count();
+    }
+
+    private static boolean isConnected(List<PeerConnection> connections, Peer peer) {
+        for (PeerConnection connection : connections) {
+            if (peer.getId().equals(connection.getNodeId())
+                    || (peer.getPort() == connection.getListenPort() && peer.getAddress().equals(connection.getRemoteHost()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the address an outbound connection was dialled at. The address book entry with the
+     * peer's node id is preferred, since a peer reached through a proxy or NAT announces a
+     * different listening port than the one dialled.
+     */
+    private String addressOf(PeerConnection connection) {
+        for (Peer peer : addressBook) {
+            if (peer.getId().equals(connection.getNodeId())) {
+                return address(peer.getAddress(), peer.getPort());
+            }
+        }
+        return address(connection.getRemoteHost(), connection.getListenPort());
+    }
+
+    private static String address(String host, int port) {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,423 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.util.Logger;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking TCP transport between peers. A single selector thread accepts, connects, reads
+ * and writes every connection, so a node can hold hundreds of peers without a thread per socket.
+ * Messages are length-prefixed binary frames (see {@link WireCodec}). Each side opens with a HELLO;
+ * until a valid one is received no other message is delivered, and connections that do not complete
+ * the handshake in time, connect to ourselves, or duplicate an existing peer are closed. When two
+ * nodes dial each other at the same time, both keep the connection dialled by the lower node id.
+ * Complete messages are handed to a {@link Listener} on the selector thread, which must return quickly.
+ */
+public class PeerTransport {
+    /** Time allowed for a new connection to complete the handshake */
+    private static final long HANDSHAKE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** Default per-connection outbound queue limit */
+    public static final long DEFAULT_MAX_QUEUED_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * Receives connection events and messages from the transport.
+     */
+    public interface Listener {
+        /**
+         * Called when a connection has completed the handshake.
+         *
+         * @param connection The connection
+         */
+        void onConnected(PeerConnection connection);
+
+        /**
+         * Called for every message received after the handshake.
+         *
+         * @param connection The connection the message arrived on
+         * @param type The message type
+         * @param payload The message payload
+         */
+        void onMessage(PeerConnection connection, MessageType type, byte[] payload);
+
+        /**
+         * Called when a handshaken connection is closed.
+         *
+         * @param connection The closed connection
+         */
+        void onDisconnected(PeerConnection connection);
+    }
+
+    private final String nodeId;
+    private final int port;
+    private final long maxQueuedBytes;
+    private final Listener listener;
+    private final Selector selector;
+    private volatile int maxInbound = Integer.MAX_VALUE;
+    private final Map<SocketChannel, PeerConnection> connections = new ConcurrentHashMap<>();
+    /** Work that must run on the selector thread, such as registering new channels */
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    /**
+     * Creates a new transport.
+     *
+     * @param nodeId This node's id, announced in HELLO
+     * @param port Port to accept connections on, or 0 to only make outbound connections
+     * @param maxQueuedBytes Outbound queue limit per connection
+     * @param listener Receives connections and messages
+     * @throws IOException If the selector cannot be opened
+     */
+    public PeerTransport(String nodeId, int port, long maxQueuedBytes, Listener listener) throws IOException {
+        this.nodeId = nodeId;
+        this.port = port;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.listener = listener;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Limits the number of inbound connections; further connection attempts are closed on accept.
+     *
+     * @param maxInbound Maximum inbound connections
+     */
+    public void setMaxInbound(int maxInbound) {
+        this.maxInbound = maxInbound;
+    }
+
+    /**
+     * Binds the listening socket, if a port was given, and starts the selector thread.
+     *
+     * @throws IOException If the port cannot be bound
+     */
+    public void start() throws IOException {
+        if (port > 0) {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            Logger.info("[PeerTransport] " + nodeId + " listening on port " + port);
+        }
+        running = true;
+        selectorThread = new Thread(this::run, "p2p-selector-" + nodeId);
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Closes every connection and stops the selector thread.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            if (selectorThread != null) {
+                selectorThread.join(2000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Opens an outbound connection. The connection is reported to the listener once the
+     * handshake completes; failures are logged.
+     *
+     * @param host The peer's host
+     * @param peerPort The peer's listening port
+     */
+    public void connect(String host, int peerPort) {
+        selectorTasks.add(() -> {
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                configure(channel);
+                PeerConnection connection = new PeerConnection(channel, true, host, maxQueuedBytes);
+                connections.put(channel, connection);
+                if (channel.connect(new InetSocketAddress(host, peerPort))) {
+                    connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                    sendHello(connection);
+                } else {
+                    connection.setKey(channel.register(selector, SelectionKey.OP_CONNECT, connection));
+                }
+            } catch (IOException e) {
+                Logger.error("[PeerTransport] Connection to " + host + ":" + peerPort + " failed: " + e.getMessage());
+                if (channel != null) {
+                    connections.remove(channel);
+                    closeQuietly(channel);
+                }
+            }
+        });
+        selector.wakeup();
+    }
+
+    /**
+     * Queues a message on a connection. If the peer's queue is full it is too slow to keep up
+     * and is disconnected.
+     *
+     * @param connection The connection
+     * @param type The message type
+     * @param payload The message payload
+     * @return true if the message was queued
+     */
+    public boolean send(PeerConnection connection, MessageType type, byte[] payload) {
+        return sendFrame(connection, WireCodec.frame(type, payload));
+    }
+
+    /**
+     * Queues one already-built frame on several connections; the frame bytes are shared.
+     *
+     * @param targets The connections
+     * @param type The message type
+     * @param payload The message payload
+     */
+    public void broadcast(List<PeerConnection> targets, MessageType type, byte[] payload) {
+        ByteBuffer frame = WireCodec.frame(type, payload);
+        for (PeerConnection connection : targets) {
+            sendFrame(connection, frame.duplicate());
+        }
+    }
+
+    private boolean sendFrame(PeerConnection connection, ByteBuffer frame) {
+        if (!connection.enqueue(frame)) {
+            if (!connection.isClosed()) {
+                Logger.error("[PeerTransport] Outbound queue full, disconnecting slow peer " + connection);
+                disconnect(connection);
+            }
+            return false;
+        }
+        selectorTasks.add(() -> enableWrites(connection));
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Closes a connection from any thread.
+     *
+     * @param connection The connection to close
+     */
+    public void disconnect(PeerConnection connection) {
+        selectorTasks.add(() -> close(connection));
+        selector.wakeup();
+    }
+
+    /**
+     * @return All connections that have completed the handshake
+     */
+    public List<PeerConnection> getConnections() {
+        return connections.values().stream().filter(PeerConnection::isHandshakeComplete).toList();
+    }
+
+    /**
+     * @return This node's id
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private void run() {
+        long nextHousekeeping = System.nanoTime();
+        while (running) {
+            try {
+                selector.select(1000);
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+                if (System.nanoTime() - nextHousekeeping >= 0) {
+                    closeStalledHandshakes();
+                    nextHousekeeping = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                }
+            } catch (IOException e) {
+                Logger.error("[PeerTransport] Selector failure: " + e.getMessage());
+            }
+        }
+        connections.values().forEach(this::close);
+        closeQuietly(serverChannel);
+        closeQuietly(selector);
+        Logger.info("[PeerTransport] " + nodeId + " stopped");
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        PeerConnection connection = (PeerConnection) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                connection.getChannel().finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+                sendHello(connection);
+            }
+            if (key.isValid() && key.isReadable()) {
+                if (!connection.read((type, payload) -> handleFrame(connection, type, payload))) {
+                    close(connection);
+                    return;
+                }
+            }
+            if (key.isValid() && key.isWritable() && connection.flush()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            Logger.debug("[PeerTransport] Closing " + connection + ": " + e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                if (inboundCount() >= maxInbound) {
+                    Logger.debug("[PeerTransport] Inbound connection limit reached, refusing connection");
+                    closeQuietly(channel);
+                    continue;
+                }
+                channel.configureBlocking(false);
+                configure(channel);
+                String host = ((InetSocketAddress) channel.getRemoteAddress()).getHostString();
+                PeerConnection connection = new PeerConnection(channel, false, host, maxQueuedBytes);
+                connections.put(channel, connection);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                sendHello(connection);
+            }
+        } catch (IOException e) {
+            Logger.error("[PeerTransport] Accept failed: " + e.getMessage());
+        }
+    }
+
+    private long inboundCount() {
+        return connections.values().stream().filter(connection -> !connection.isOutbound()).count();
+    }
+
+    private void handleFrame(PeerConnection connection, byte code, byte[] payload) throws IOException {
+        MessageType type = MessageType.fromCode(code);
+        if (!connection.isHandshakeComplete()) {
+            if (type != MessageType.HELLO) {
+                throw new IOException("Expected HELLO, got message type " + code);
+            }
+            acceptHello(connection, payload);
+            return;
+        }
+        if (type == null) {
+            Logger.debug("[PeerTransport] Ignoring unknown message type " + code + " from " + connection);
+            return;
+        }
+        listener.onMessage(connection, type, payload);
+    }
+
+    private void acceptHello(PeerConnection connection, byte[] payload) throws IOException {
+        DataInputStream in = WireCodec.reader(payload);
+        if (in.readInt() != WireCodec.MAGIC) {
+            throw new IOException("Bad magic in HELLO");
+        }
+        int version = in.readInt();
+        if (version != WireCodec.PROTOCOL_VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        String remoteId = in.readUTF();
+        int listenPort = in.readInt();
+        if (remoteId.equals(nodeId)) {
+            throw new IOException("Connected to self");
+        }
+        for (PeerConnection other : connections.values()) {
+            if (other == connection || !remoteId.equals(other.getNodeId())) {
+                continue;
+            }
+            // When two nodes dial each other at once, both must keep the same connection: the one
+            // dialled by the node with the lower id
+            if (other.isOutbound() == connection.isOutbound() || !dialledByLowerId(connection, remoteId)) {
+                throw new IOException("Already connected to " + remoteId);
+            }
+            Logger.debug("[PeerTransport] Replacing crossed connection to " + remoteId);
+            close(other);
+        }
+        connection.completeHandshake(remoteId, listenPort);
+        Logger.info("[PeerTransport] " + nodeId + " connected to " + connection);
+        listener.onConnected(connection);
+    }
+
+    private boolean dialledByLowerId(PeerConnection connection, String remoteId) {
+        return connection.isOutbound() == (nodeId.compareTo(remoteId) < 0);
+    }
+
+    private void sendHello(PeerConnection connection) {
+        connection.enqueue(WireCodec.frame(MessageType.HELLO, WireCodec.encodeHello(nodeId, port)));
+        enableWrites(connection);
+    }
+
+    private void enableWrites(PeerConnection connection) {
+        SelectionKey key = connection.getKey();
+        if (key != null && key.isValid() && (key.interestOps() & SelectionKey.OP_CONNECT) == 0
+                && connection.hasPendingWrites()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void closeStalledHandshakes() {
+        long now = System.nanoTime();
+        for (PeerConnection connection : connections.values()) {
+            if (!connection.isHandshakeComplete() && now - connection.getConnectedAtNanos() > HANDSHAKE_TIMEOUT_NANOS) {
+                Logger.error("[PeerTransport] Handshake timed out for " + connection);
+                close(connection);
+            }
+        }
+    }
+
+    private void close(PeerConnection connection) {
+        if (connections.remove(connection.getChannel()) == null) {
+            return;
+        }
+        connection.markClosed();
+        if (connection.getKey() != null) {
+            connection.getKey().cancel();
+        }
+        closeQuietly(connection.getChannel());
+        if (connection.isHandshakeComplete()) {
+            Logger.info("[PeerTransport] " + nodeId + " disconnected from " + connection);
+            listener.onDisconnected(connection);
+        }
+    }
+
+    private static void configure(SocketChannel channel) throws IOException {
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setKeepAlive(true);
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Logger.debug("[PeerTransport] Close failed: " + e.getMessage());
+        }
+    }
+}
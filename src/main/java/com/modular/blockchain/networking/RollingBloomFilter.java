@@ -0,0 +1,93 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.crypto.Hash256;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A Bloom filter over hashes that remembers roughly the most recent items instead of filling up.
+ * Items are inserted into the current generation; once it holds the configured number of items it
+ * becomes the previous generation and a fresh one is started. Lookups check both, so at least the
+ * last {@code itemsPerGeneration} items, and at most twice that many, are remembered, in constant memory.
+ * A false positive makes an item look seen when it is not; the rate is fixed at construction.
+ * <p>
+ * Bit positions are derived from the hash words mixed with a random per-filter tweak, so peers
+ * cannot craft items that collide in every node's filter.
+ */
+public class RollingBloomFilter {
+    private final int itemsPerGeneration;
+    private final int bits;
+    private final int hashFunctions;
+    private final long tweak;
+    private long[] current;
+    private long[] previous;
+    private int count;
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param itemsPerGeneration Items remembered before the oldest generation is discarded
+     * @param falsePositiveRate Target false positive rate for a full generation, e.g. 0.000001
+     */
+    public RollingBloomFilter(int itemsPerGeneration, double falsePositiveRate) {
+        this.itemsPerGeneration = itemsPerGeneration;
+        double ln2 = Math.log(2);
+        this.bits = Math.max(64, (int) Math.ceil(-itemsPerGeneration * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bits / itemsPerGeneration * ln2));
+        this.tweak = ThreadLocalRandom.current().nextLong();
+        this.current = new long[(bits + 63) / 64];
+        this.previous = new long[current.length];
+    }
+
+    /**
+     * Records a hash as seen.
+     *
+     * @param hash The hash to insert
+     */
+    public synchronized void add(Hash256 hash) {
+        if (count >= itemsPerGeneration) {
+            long[] recycled = previous;
+            Arrays.fill(recycled, 0L);
+            previous = current;
+            current = recycled;
+            count = 0;
+        }
+        long h1 = mix(hash.getWord(0) ^ tweak);
+        long h2 = mix(hash.getWord(1) ^ tweak) | 1;
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = (int) Math.floorMod(h1 + i * h2, (long) bits);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        count++;
+    }
+
+    /**
+     * Checks whether a hash may have been seen recently.
+     *
+     * @param hash The hash to look up
+     * @return false if the hash was definitely not added recently, true if it probably was
+     */
+    public synchronized boolean contains(Hash256 hash) {
+        long h1 = mix(hash.getWord(0) ^ tweak);
+        long h2 = mix(hash.getWord(1) ^ tweak) | 1;
+        return containsIn(current, h1, h2) || containsIn(previous, h1, h2);
+    }
+
+    private boolean containsIn(long[] generation, long h1, long h2) {
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = (int) Math.floorMod(h1 + i * h2, (long) bits);
+            if ((generation[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The finalizer of SplitMix64, which spreads every input bit across the output */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,374 @@
+package com.modular.blockchain.networking;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.BlockHeader;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Binary encoding of the messages exchanged between peers.
+ * A frame is a big-endian int length, covering the type byte and payload, followed by the
+ * message type code and the payload. Keys and signatures travel as raw bytes rather than Base64,
+ * and amounts as the exact bits of the double, so a decoded transaction has the same id as the original.
+ */
+public final class WireCodec {
+    /** Magic number leading every HELLO, so connections from unrelated software are dropped early */
+    public static final int MAGIC = 0x4D424C4B;
+    /** Protocol version announced in HELLO; version 2 added the authority signature to blocks and headers */
+    public static final int PROTOCOL_VERSION = 2;
+    /** Size of the frame length prefix */
+    public static final int LENGTH_PREFIX = 4;
+    /** Most headers sent in one HEADERS message */
+    public static final int MAX_HEADERS = 2_000;
+
+    private WireCodec() {
+    }
+
+    /**
+     * Builds a complete frame ready to be queued on a connection.
+     *
+     * @param type The message type
+     * @param payload The encoded message
+     * @return A buffer positioned at the start of the frame
+     */
+    public static ByteBuffer frame(MessageType type, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(LENGTH_PREFIX + 1 + payload.length);
+        frame.putInt(1 + payload.length);
+        frame.put(type.getCode());
+        frame.put(payload);
+        return frame.flip();
+    }
+
+    /**
+     * Encodes the handshake message.
+     *
+     * @param nodeId The sender's node id
+     * @param listenPort The port the sender accepts connections on, or 0 if it does not listen
+     * @return The payload
+     */
+    public static byte[] encodeHello(String nodeId, int listenPort) {
+        return write(out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(PROTOCOL_VERSION);
+            out.writeUTF(nodeId);
+            out.writeInt(listenPort);
+        });
+    }
+
+    /**
+     * Encodes a signed transaction.
+     *
+     * @param tx The transaction
+     * @return The payload
+     */
+    public static byte[] encodeTransaction(SignedTransaction tx) {
+        return write(out -> writeTransaction(out, tx));
+    }
+
+    /**
+     * Decodes a signed transaction.
+     *
+     * @param payload The payload
+     * @return The transaction
+     * @throws IOException If the payload is malformed
+     */
+    public static SignedTransaction decodeTransaction(byte[] payload) throws IOException {
+        return readTransaction(reader(payload));
+    }
+
+    /**
+     * Encodes a block with all of its transactions. The hash is not sent; receivers recompute it.
+     *
+     * @param block The block
+     * @return The payload
+     */
+    public static byte[] encodeBlock(Block block) {
+        return write(out -> {
+            writeBlockFields(out, block);
+            out.writeInt(block.getTransactions().size());
+            for (Transaction tx : block.getTransactions()) {
+                writeTransaction(out, (SignedTransaction) tx);
+            }
+        });
+    }
+
+    /**
+     * Decodes a block and recomputes its hash.
+     *
+     * @param payload The payload
+     * @return The block
+     * @throws IOException If the payload is malformed
+     */
+    public static Block decodeBlock(byte[] payload) throws IOException {
+        DataInputStream in = reader(payload);
+        int index = in.readInt();
+        long timestamp = in.readLong();
+        Hash256 previousHash = readHash(in);
+        String minerId = in.readUTF();
+        int nonce = in.readInt();
+        String signature = readSignature(in);
+        int count = in.readInt();
+        checkCount(count, payload.length);
+        List<Transaction> txs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            txs.add(readTransaction(in));
+        }
+        Block block = new Block(index, timestamp, txs, previousHash, minerId, nonce);
+        block.setSignature(signature);
+        return block;
+    }
+
+    /**
+     * Encodes a list of inventory entries, as sent in INV and GETDATA.
+     *
+     * @param items The entries
+     * @return The payload
+     */
+    public static byte[] encodeInventory(List<InventoryItem> items) {
+        return write(out -> {
+            out.writeInt(items.size());
+            for (InventoryItem item : items) {
+                out.writeByte(item.getType().getCode());
+                writeHash(out, item.getHash());
+            }
+        });
+    }
+
+    /**
+     * Decodes a list of inventory entries.
+     *
+     * @param payload The payload
+     * @return The entries; entries of unknown type are skipped
+     * @throws IOException If the payload is malformed
+     */
+    public static List<InventoryItem> decodeInventory(byte[] payload) throws IOException {
+        DataInputStream in = reader(payload);
+        int count = in.readInt();
+        checkCount(count, payload.length / (1 + Hash256.BYTES));
+        List<InventoryItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MessageType type = MessageType.fromCode(in.readByte());
+            Hash256 hash = readHash(in);
+            if (type == MessageType.TX || type == MessageType.BLOCK) {
+                items.add(new InventoryItem(type, hash));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Encodes a block locator: hashes of the sender's chain from the tip back to genesis,
+     * dense near the tip and exponentially sparser further back.
+     *
+     * @param locator The locator hashes, newest first
+     * @return The payload
+     */
+    public static byte[] encodeGetHeaders(List<Hash256> locator) {
+        return write(out -> {
+            out.writeInt(locator.size());
+            for (Hash256 hash : locator) {
+                writeHash(out, hash);
+            }
+        });
+    }
+
+    /**
+     * Decodes a block locator.
+     *
+     * @param payload The payload
+     * @return The locator hashes, newest first
+     * @throws IOException If the payload is malformed
+     */
+    public static List<Hash256> decodeGetHeaders(byte[] payload) throws IOException {
+        DataInputStream in = reader(payload);
+        int count = in.readInt();
+        checkCount(count, payload.length / Hash256.BYTES);
+        List<Hash256> locator = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locator.add(readHash(in));
+        }
+        return locator;
+    }
+
+    /**
+     * Encodes a run of block headers.
+     *
+     * @param headers The headers, lowest height first
+     * @return The payload
+     */
+    public static byte[] encodeHeaders(List<BlockHeader> headers) {
+        return write(out -> {
+            out.writeInt(headers.size());
+            for (BlockHeader header : headers) {
+                writeHeader(out, header);
+            }
+        });
+    }
+
+    /**
+     * Decodes a run of block headers.
+     *
+     * @param payload The payload
+     * @return The headers, in the order sent
+     * @throws IOException If the payload is malformed
+     */
+    public static List<BlockHeader> decodeHeaders(byte[] payload) throws IOException {
+        DataInputStream in = reader(payload);
+        int count = in.readInt();
+        checkCount(count, Math.min(MAX_HEADERS, payload.length / (2 * Hash256.BYTES)));
+        List<BlockHeader> headers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            headers.add(readHeader(in));
+        }
+        return headers;
+    }
+
+    static void writeHeader(DataOutputStream out, BlockHeader header) throws IOException {
+        out.writeInt(header.getIndex());
+        out.writeLong(header.getTimestamp());
+        writeHash(out, header.getPreviousHash());
+        writeHash(out, header.getMerkleRoot());
+        out.writeUTF(header.getMinerId());
+        out.writeInt(header.getNonce());
+        writeSignature(out, header.getSignature());
+    }
+
+    static BlockHeader readHeader(DataInputStream in) throws IOException {
+        int index = in.readInt();
+        long timestamp = in.readLong();
+        Hash256 previousHash = readHash(in);
+        Hash256 merkleRoot = readHash(in);
+        String minerId = in.readUTF();
+        int nonce = in.readInt();
+        BlockHeader header = new BlockHeader(index, timestamp, previousHash, merkleRoot, nonce, minerId);
+        header.setSignature(readSignature(in));
+        return header;
+    }
+
+    static void writeBlockFields(DataOutputStream out, Block block) throws IOException {
+        out.writeInt(block.getIndex());
+        out.writeLong(block.getTimestamp());
+        writeHash(out, block.getPreviousHash());
+        out.writeUTF(block.getMinerId());
+        out.writeInt(block.getNonce());
+        writeSignature(out, block.getSignature());
+    }
+
+    private static void writeSignature(DataOutputStream out, String signature) throws IOException {
+        writeBytes(out, signature == null ? null : Base64.getDecoder().decode(signature));
+    }
+
+    private static String readSignature(DataInputStream in) throws IOException {
+        byte[] signature = readBytes(in);
+        return signature == null ? null : Base64.getEncoder().encodeToString(signature);
+    }
+
+    static void writeTransaction(DataOutputStream out, SignedTransaction tx) throws IOException {
+        writeBytes(out, Base64.getDecoder().decode(tx.getSenderPublicKey()));
+        writeBytes(out, Base64.getDecoder().decode(tx.getReceiverPublicKey()));
+        out.writeLong(Double.doubleToLongBits(tx.getAmount()));
+        out.writeLong(tx.getNonce());
+        writeBytes(out, tx.getSignature() == null ? null : Base64.getDecoder().decode(tx.getSignature()));
+    }
+
+    static SignedTransaction readTransaction(DataInputStream in) throws IOException {
+        Base64.Encoder base64 = Base64.getEncoder();
+        byte[] senderKey = readBytes(in);
+        byte[] receiverKey = readBytes(in);
+        if (senderKey == null || receiverKey == null) {
+            throw new IOException("Transaction without a sender or receiver key");
+        }
+        String sender = base64.encodeToString(senderKey);
+        String receiver = base64.encodeToString(receiverKey);
+        double amount = Double.longBitsToDouble(in.readLong());
+        long nonce = in.readLong();
+        byte[] signature = readBytes(in);
+        SignedTransaction tx;
+        try {
+            tx = new SignedTransaction(sender, receiver, amount, nonce);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed transaction: " + e.getMessage(), e);
+        }
+        if (signature != null) {
+            tx.setSignature(base64.encodeToString(signature));
+        }
+        return tx;
+    }
+
+    static void writeHash(DataOutputStream out, Hash256 hash) throws IOException {
+        out.write(hash.toBytes());
+    }
+
+    static Hash256 readHash(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[Hash256.BYTES];
+        in.readFully(bytes);
+        return Hash256.of(bytes);
+    }
+
+    /**
+     * Writes a byte array with an int length prefix; null is written as length -1.
+     */
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        checkCount(length, in.available());
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Rejects element counts that cannot possibly fit in the remaining payload, so a corrupt or
+     * hostile length never triggers a huge allocation.
+     */
+    static void checkCount(int count, int available) throws IOException {
+        if (count < 0 || count > available) {
+            throw new IOException("Invalid length " + count + " with " + available + " bytes available");
+        }
+    }
+
+    static DataInputStream reader(byte[] payload) {
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * Writes the body of a payload.
+     */
+    @FunctionalInterface
+    interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    static byte[] write(PayloadWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // Writing to a byte array never fails
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,250 @@
+package com.modular.blockchain.simulation;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.consensus.BftConsensusEngine;
+import com.modular.blockchain.consensus.LocalBftTransport;
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.transaction.TransactionPool;
+import com.modular.blockchain.util.Logger;
+import com.modular.blockchain.wallet.SimpleWallet;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a cluster of {@link BftConsensusEngine} replicas inside one JVM and measures throughput and
+ * finality.
+ * <p>
+ * Unlike {@link ClusterSimulator} the replicas do not run the peer-to-peer stack: each has its own
+ * chain and pool, and they exchange consensus messages as objects over a {@link LocalBftTransport}
+ * that adds the configured latency and jitter to every message. Every workload transaction is
+ * submitted to the pool of every replica, standing in for transaction gossip, so each replica pays
+ * for verifying it once. A transaction is final when its block has been committed on every replica;
+ * committed blocks are never reverted, so there is no fork rate to report.
+ * <p>
+ * Of the {@link SimulationConfig} settings the simulator uses nodes (the number of replicas),
+ * latencyMillis, jitterMillis, viewTimeoutMillis, maxBlockTransactions, wallets,
+ * transactionsPerSecond, durationSeconds, settleSeconds and seed, for example:
+ * <pre>
+ * java com.modular.blockchain.simulation.BftSimulator nodes=4 latencyMillis=20 transactionsPerSecond=2000
+ * </pre>
+ */
+public class BftSimulator {
+    private final SimulationConfig config;
+    /** Commit time of every block on every replica, 0 where it is not committed yet */
+    private final Map<Hash256, long[]> commits = new ConcurrentHashMap<>();
+    /** Submission time of every workload transaction, by id */
+    private final Map<Hash256, Long> submittedAt = new ConcurrentHashMap<>();
+    /** Transactions committed on every replica */
+    private final AtomicLongArray committedTransactions;
+
+    /**
+     * Measurements of a run. Durations are in nanoseconds.
+     *
+     * @param replicas Number of replicas
+     * @param height Height of the first replica's chain
+     * @param agreed Whether every replica committed the same blocks up to the lowest height
+     * @param submitted Transactions submitted by the workload
+     * @param finalised Submitted transactions committed on every replica
+     * @param elapsedNanos Time from the first submission to the last finalisation
+     * @param finalityMedianNanos Median time from submission to finality
+     * @param finalityP90Nanos 90th percentile of the time from submission to finality
+     * @param viewChanges Views abandoned by any replica for lack of progress
+     * @param messages Consensus messages delivered
+     */
+    public record Result(int replicas, int height, boolean agreed, int submitted, int finalised, long elapsedNanos,
+                         long finalityMedianNanos, long finalityP90Nanos, long viewChanges, long messages) {
+        /**
+         * @return Finalised transactions per second
+         */
+        public double transactionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : finalised * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("""
+                    Cluster: %d BFT replicas
+                    Chain: height %d, %s
+                    Transactions: %d submitted, %d final in %d ms (%.1f TPS)
+                    Finality latency: median %d ms, p90 %d ms
+                    Consensus: %d view changes, %d messages""",
+                    replicas, height, agreed ? "all replicas committed the same blocks" : "REPLICAS DISAGREE",
+                    submitted, finalised, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), transactionsPerSecond(),
+                    TimeUnit.NANOSECONDS.toMillis(finalityMedianNanos), TimeUnit.NANOSECONDS.toMillis(finalityP90Nanos),
+                    viewChanges, messages);
+        }
+    }
+
+    /**
+     * @param config Parameters of the run
+     */
+    public BftSimulator(SimulationConfig config) {
+        if (config.getNodes() < 1 || config.getWallets() < 2) {
+            throw new IllegalArgumentException("A simulation needs at least one replica and two wallets");
+        }
+        this.config = config;
+        this.committedTransactions = new AtomicLongArray(config.getNodes());
+    }
+
+    /**
+     * Starts the replicas, runs the workload, stops the replicas and reports what was measured.
+     *
+     * @return The measurements of the run
+     */
+    public Result run() {
+        Random random = new Random(config.getSeed());
+        progress("Creating " + config.getWallets() + " wallets");
+        List<SimpleWallet> wallets = ClusterSimulator.createWallets(config);
+        progress("Signing " + config.getTransactionsPerSecond() * config.getDurationSeconds() + " transactions");
+        List<SignedTransaction> workload = ClusterSimulator.createWorkload(config, wallets, random);
+        progress("Creating " + config.getNodes() + " replicas");
+        Map<String, KeyPair> keyPairs = new LinkedHashMap<>();
+        for (int i = 0; i < config.getNodes(); i++) {
+            keyPairs.put("replica-" + i, CryptoUtils.generateKeyPair());
+        }
+        List<String> ids = List.copyOf(keyPairs.keySet());
+        Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+        keyPairs.forEach((id, keyPair) -> publicKeys.put(id, keyPair.getPublic()));
+
+        LocalBftTransport transport = new LocalBftTransport(config.getLatencyMillis(), config.getJitterMillis(), random);
+        List<Blockchain> chains = new ArrayList<>();
+        List<TransactionPool> pools = new ArrayList<>();
+        List<BftConsensusEngine> replicas = new ArrayList<>();
+        // Every replica starts from the same genesis block, which funds the wallets
+        Map<String, Long> allocations = ClusterSimulator.allocations(wallets);
+        for (int i = 0; i < ids.size(); i++) {
+            Blockchain chain = new Blockchain(0, allocations);
+            int index = i;
+            chain.addListener(block -> recordCommit(block, index, System.nanoTime()));
+            TransactionPool pool = new TransactionPool();
+            BftConsensusEngine replica = new BftConsensusEngine(ids.get(i), ids, publicKeys,
+                    keyPairs.get(ids.get(i)).getPrivate(), transport, chain, pool);
+            replica.setViewTimeoutMillis(config.getViewTimeoutMillis());
+            replica.setMaxBlockTransactions(config.getMaxBlockTransactions());
+            chains.add(chain);
+            pools.add(pool);
+            replicas.add(replica);
+        }
+        try {
+            replicas.forEach(BftConsensusEngine::start);
+            long start = System.nanoTime();
+            submit(pools, workload, start);
+            progress("Workload submitted, settling");
+            settle(workload.size());
+            return report(chains, replicas, transport, workload.size(), start);
+        } finally {
+            replicas.forEach(BftConsensusEngine::stop);
+            transport.close();
+        }
+    }
+
+    private void recordCommit(Block block, int replica, long nanos) {
+        long[] times = commits.computeIfAbsent(block.getHash(), hash -> new long[config.getNodes()]);
+        synchronized (times) {
+            times[replica] = nanos;
+        }
+        committedTransactions.addAndGet(replica, block.getTransactions().size());
+    }
+
+    /**
+     * Submits the workload at the configured rate, every transaction to every replica.
+     */
+    private void submit(List<TransactionPool> pools, List<SignedTransaction> workload, long start) {
+        int sent = 0;
+        long nanosPerTransaction = TimeUnit.SECONDS.toNanos(1) / Math.max(1, config.getTransactionsPerSecond());
+        while (sent < workload.size()) {
+            int due = (int) Math.min(workload.size(), (System.nanoTime() - start) / nanosPerTransaction + 1);
+            List<Transaction> batch = new ArrayList<>(workload.subList(sent, due));
+            long now = System.nanoTime();
+            batch.forEach(tx -> submittedAt.put(tx.getId(), now));
+            pools.forEach(pool -> pool.addTransactions(batch));
+            sent = due;
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Waits until every replica has committed the whole workload, or the settle time runs out.
+     */
+    private void settle(int submitted) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getSettleSeconds());
+        while (System.nanoTime() - deadline < 0) {
+            boolean done = true;
+            for (int i = 0; i < committedTransactions.length(); i++) {
+                done &= committedTransactions.get(i) >= submitted;
+            }
+            if (done) {
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+    }
+
+    private Result report(List<Blockchain> chains, List<BftConsensusEngine> replicas, LocalBftTransport transport,
+                          int submitted, long start) {
+        int lowest = chains.stream().mapToInt(Blockchain::getHeight).min().orElse(0);
+        boolean agreed = true;
+        for (Blockchain chain : chains) {
+            agreed &= chain.getBlock(lowest).getHash().equals(chains.getFirst().getBlock(lowest).getHash());
+        }
+        List<Long> finality = new ArrayList<>();
+        long lastFinal = start;
+        List<Block> chain = chains.getFirst().getChain();
+        for (Block block : chain.subList(1, chain.size())) {
+            long[] times = commits.get(block.getHash());
+            long last = 0;
+            synchronized (times) {
+                for (long time : times) {
+                    last = time == 0 ? Long.MAX_VALUE : Math.max(last, time);
+                }
+            }
+            if (last == Long.MAX_VALUE) {
+                continue;
+            }
+            for (Transaction tx : block.getTransactions()) {
+                Long submittedNanos = submittedAt.remove(tx.getId());
+                if (submittedNanos != null) {
+                    finality.add(last - submittedNanos);
+                    lastFinal = Math.max(lastFinal, last);
+                }
+            }
+        }
+        Collections.sort(finality);
+        return new Result(replicas.size(), chains.getFirst().getHeight(), agreed, submitted, finality.size(),
+                lastFinal - start, ClusterSimulator.percentile(finality, 0.5), ClusterSimulator.percentile(finality, 0.9),
+                replicas.stream().mapToLong(BftConsensusEngine::getViewChanges).sum(), transport.getMessagesDelivered());
+    }
+
+    private static void progress(String message) {
+        System.out.println("[BftSimulator] " + message);
+    }
+
+    /**
+     * Runs a simulation with the settings given as {@code name=value} arguments and prints its report.
+     *
+     * @param args Settings, see {@link SimulationConfig#apply(String)}
+     */
+    public static void main(String[] args) {
+        SimulationConfig config = new SimulationConfig();
+        for (String arg : args) {
+            config.apply(arg);
+        }
+        Logger.setLevel(Logger.Level.ERROR);
+        System.out.println(new BftSimulator(config).run());
+    }
+}
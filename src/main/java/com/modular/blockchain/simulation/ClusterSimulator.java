@@ -0,0 +1,341 @@
+package com.modular.blockchain.simulation;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.transaction.SignedTransaction;
+import com.modular.blockchain.transaction.Transaction;
+import com.modular.blockchain.util.Logger;
+import com.modular.blockchain.wallet.SimpleWallet;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a cluster of full nodes inside one JVM and measures how it behaves as a network.
+ * <p>
+ * Every node has its own chain, pool, miners and {@link com.modular.blockchain.networking.NetworkService},
+ * and listens on a loopback port behind a {@link LinkShaper} that adds latency and limits bandwidth,
+ * so nodes talk over real TCP with the propagation characteristics of a wide-area network. Each node
+ * dials a random subset of the others. A workload of pre-signed transfers between funded wallets is
+ * submitted at a fixed rate, round robin over the nodes, while the miners produce blocks. When the
+ * workload ends the cluster is given time to confirm it and converge, and a {@link SimulationReport}
+ * with block propagation delay, fork rate, throughput and confirmation latency is produced.
+ * <p>
+ * All nodes share the machine's CPUs, so absolute numbers are lower than a real deployment of the
+ * same size; the simulator is meant for comparing configurations and changes to the node.
+ * Run it with settings as {@code name=value} arguments, for example:
+ * <pre>
+ * java com.modular.blockchain.simulation.ClusterSimulator nodes=8 latencyMillis=100 transactionsPerSecond=200
+ * </pre>
+ */
+public class ClusterSimulator {
+    /** Time allowed for the nodes to connect before the workload starts */
+    private static final long CONNECT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** Time allowed after mining stops for the last blocks to reach every node */
+    private static final long CONVERGE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** Balance given to every workload wallet on every node */
+    private static final long WALLET_FUNDS = Long.MAX_VALUE / 1024;
+
+    private final SimulationConfig config;
+    /** Arrival time of every appended block on every node, 0 where it has not arrived */
+    private final Map<Hash256, long[]> arrivals = new ConcurrentHashMap<>();
+    /** Submission time of every workload transaction, by id */
+    private final Map<Hash256, Long> submittedAt = new ConcurrentHashMap<>();
+
+    /**
+     * @param config Parameters of the run
+     */
+    public ClusterSimulator(SimulationConfig config) {
+        if (config.getNodes() < 1 || config.getWallets() < 2) {
+            throw new IllegalArgumentException("A simulation needs at least one node and two wallets");
+        }
+        this.config = config;
+    }
+
+    /**
+     * Starts the cluster, runs the workload, stops the cluster and reports what was measured.
+     *
+     * @return The measurements of the run
+     * @throws IOException If a node cannot bind its ports
+     * @throws InterruptedException If the run is interrupted
+     */
+    public SimulationReport run() throws IOException, InterruptedException {
+        Random random = new Random(config.getSeed());
+        progress("Creating " + config.getWallets() + " wallets");
+        List<SimpleWallet> wallets = createWallets(config);
+        progress("Signing " + config.getTransactionsPerSecond() * config.getDurationSeconds() + " transactions");
+        List<SignedTransaction> workload = createWorkload(config, wallets, random);
+        Map<String, KeyPair> authorities = config.getAuthoritySlotMillis() > 0 ? createAuthorities() : null;
+        // Every node starts from the same genesis block, which funds the wallets
+        Map<String, Long> allocations = allocations(wallets);
+        List<SimulatedNode> nodes = new ArrayList<>();
+        try {
+            for (int i = 0; i < config.getNodes(); i++) {
+                SimulatedNode node = new SimulatedNode(i, config, this, random, authorities, allocations);
+                node.start();
+                nodes.add(node);
+            }
+            double averagePeers = connect(nodes, random);
+            progress("Cluster connected with " + String.format("%.1f", averagePeers) + " peers per node");
+            long miningInterval = config.getMiningIntervalMillis();
+            nodes.forEach(node -> node.startMining(miningInterval, (long) (random.nextDouble() * miningInterval)));
+
+            long start = System.nanoTime();
+            int refused = submit(nodes, workload, start);
+            progress("Workload submitted, settling");
+            settle(nodes);
+            nodes.forEach(SimulatedNode::stopMining);
+            awaitConvergence(nodes);
+            return report(nodes, averagePeers, workload.size(), refused, start);
+        } finally {
+            nodes.forEach(SimulatedNode::stop);
+        }
+    }
+
+    /**
+     * Records that a node appended a block. Called by the nodes under their chain lock.
+     *
+     * @param block The appended block
+     * @param node Index of the node
+     * @param nanos Time of arrival
+     */
+    void recordArrival(Block block, int node, long nanos) {
+        long[] times = arrivals.computeIfAbsent(block.getHash(), hash -> new long[config.getNodes()]);
+        synchronized (times) {
+            // A block re-appended after a reorganisation keeps its first arrival
+            if (times[node] == 0) {
+                times[node] = nanos;
+            }
+        }
+    }
+
+    /**
+     * Creates the workload wallets of a run.
+     */
+    static List<SimpleWallet> createWallets(SimulationConfig config) {
+        return IntStream.range(0, config.getWallets()).parallel()
+                .mapToObj(i -> new SimpleWallet("sim-wallet-" + i))
+                .toList();
+    }
+
+    /**
+     * Funds every workload wallet through the genesis block.
+     */
+    static Map<String, Long> allocations(List<SimpleWallet> wallets) {
+        Map<String, Long> allocations = new HashMap<>();
+        wallets.forEach(wallet -> allocations.put(wallet.getAddress(), WALLET_FUNDS));
+        return allocations;
+    }
+
+    /**
+     * Generates a key pair for every miner of the cluster. Turns go to the first miner of every
+     * node before any node's second miner, so consecutive slots belong to different nodes.
+     */
+    private Map<String, KeyPair> createAuthorities() {
+        progress("Creating " + config.getNodes() * config.getMinersPerNode() + " authorities");
+        Map<String, KeyPair> authorities = new LinkedHashMap<>();
+        for (int miner = 0; miner < config.getMinersPerNode(); miner++) {
+            for (int node = 0; node < config.getNodes(); node++) {
+                authorities.put(SimulatedNode.minerId(node, miner), CryptoUtils.generateKeyPair());
+            }
+        }
+        return authorities;
+    }
+
+    /**
+     * Signs the whole workload up front, so signing cost does not limit the offered load.
+     */
+    static List<SignedTransaction> createWorkload(SimulationConfig config, List<SimpleWallet> wallets, Random random) {
+        int count = config.getTransactionsPerSecond() * config.getDurationSeconds();
+        int[] receivers = new int[count];
+        for (int i = 0; i < count; i++) {
+            receivers[i] = (i + 1 + random.nextInt(wallets.size() - 1)) % wallets.size();
+        }
+        return IntStream.range(0, count).parallel()
+                .mapToObj(i -> wallets.get(i % wallets.size()).createTransaction(wallets.get(receivers[i]).getAddress(), 1))
+                .toList();
+    }
+
+    /**
+     * Gives every node a shuffled address book of the others and waits for the outbound
+     * connections to be made.
+     *
+     * @return Average number of peers per node
+     */
+    private double connect(List<SimulatedNode> nodes, Random random) {
+        for (SimulatedNode node : nodes) {
+            List<SimulatedNode> others = new ArrayList<>(nodes);
+            others.remove(node);
+            Collections.shuffle(others, random);
+            node.addPeers(others);
+        }
+        int wanted = Math.min(config.getOutboundPeers(), nodes.size() - 1);
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT_NANOS;
+        while (System.nanoTime() - deadline < 0
+                && nodes.stream().anyMatch(node -> node.getNetwork().getConnections().size() < wanted)) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        return nodes.stream().mapToInt(node -> node.getNetwork().getConnections().size()).average().orElse(0);
+    }
+
+    /**
+     * Submits the workload at the configured rate, round robin over the nodes.
+     *
+     * @return Number of transactions refused by the pools
+     */
+    private int submit(List<SimulatedNode> nodes, List<SignedTransaction> workload, long start) {
+        int refused = 0;
+        int sent = 0;
+        long nanosPerTransaction = TimeUnit.SECONDS.toNanos(1) / Math.max(1, config.getTransactionsPerSecond());
+        while (sent < workload.size()) {
+            long due = Math.min(workload.size(), (System.nanoTime() - start) / nanosPerTransaction + 1);
+            for (; sent < due; sent++) {
+                SignedTransaction tx = workload.get(sent);
+                submittedAt.put(tx.getId(), System.nanoTime());
+                if (!nodes.get(sent % nodes.size()).getPool().addTransaction(tx)) {
+                    refused++;
+                }
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return refused;
+    }
+
+    /**
+     * Lets the miners work until the pools hold less than a block's worth of transactions, or
+     * the settle time runs out.
+     */
+    private void settle(List<SimulatedNode> nodes) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.getSettleSeconds());
+        while (System.nanoTime() - deadline < 0) {
+            if (config.getMinersPerNode() == 0
+                    || nodes.stream().allMatch(node -> node.getPool().size() < config.getMiningThreshold())) {
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Waits for every node to reach the same tip. Of two tips of equal height the nodes settle on
+     * the one with the lower hash, which takes another round of headers.
+     */
+    private void awaitConvergence(List<SimulatedNode> nodes) {
+        long deadline = System.nanoTime() + CONVERGE_TIMEOUT_NANOS;
+        while (System.nanoTime() - deadline < 0 && agreedHeight(nodes) < nodes.getFirst().getBlockchain().getHeight()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Returns the height up to which every node has the same chain.
+     */
+    private static int agreedHeight(List<SimulatedNode> nodes) {
+        int height = nodes.stream().mapToInt(node -> node.getBlockchain().getHeight()).min().orElse(0);
+        for (; height > 0; height--) {
+            Hash256 hash = nodes.getFirst().getBlockchain().getBlock(height).getHash();
+            int at = height;
+            if (nodes.stream().allMatch(node -> node.getBlockchain().getBlock(at).getHash().equals(hash))) {
+                break;
+            }
+        }
+        return height;
+    }
+
+    private SimulationReport report(List<SimulatedNode> nodes, double averagePeers, int submitted, int refused, long start) {
+        List<Block> chain = nodes.getFirst().getBlockchain().getChain();
+        List<Long> delays = new ArrayList<>();
+        List<Long> confirmations = new ArrayList<>();
+        long fullPropagationTotal = 0;
+        int fullyPropagated = 0;
+        int mainChainBlocks = 0;
+        long lastConfirmation = start;
+        for (Block block : chain.subList(1, chain.size())) {
+            long[] times = arrivals.get(block.getHash());
+            if (times == null) {
+                continue;
+            }
+            mainChainBlocks++;
+            long first = Long.MAX_VALUE;
+            long last = 0;
+            boolean everywhere = true;
+            synchronized (times) {
+                for (long time : times) {
+                    if (time == 0) {
+                        everywhere = false;
+                    } else {
+                        first = Math.min(first, time);
+                        last = Math.max(last, time);
+                    }
+                }
+                for (long time : times) {
+                    if (time != 0 && time != first) {
+                        delays.add(time - first);
+                    }
+                }
+            }
+            if (everywhere) {
+                fullPropagationTotal += last - first;
+                fullyPropagated++;
+            }
+            for (Transaction tx : block.getTransactions()) {
+                // Removing counts a transaction included twice only once
+                Long submittedNanos = submittedAt.remove(tx.getId());
+                if (submittedNanos != null && everywhere) {
+                    confirmations.add(last - submittedNanos);
+                    lastConfirmation = Math.max(lastConfirmation, last);
+                }
+            }
+        }
+        Collections.sort(delays);
+        Collections.sort(confirmations);
+        return new SimulationReport(config, averagePeers, chain.size() - 1, agreedHeight(nodes),
+                mainChainBlocks, arrivals.size() - mainChainBlocks,
+                nodes.stream().mapToLong(SimulatedNode::getBlocksRejected).sum(),
+                percentile(delays, 0.5), percentile(delays, 0.9), percentile(delays, 1.0),
+                fullyPropagated == 0 ? 0 : fullPropagationTotal / fullyPropagated,
+                submitted, refused, confirmations.size(), lastConfirmation - start,
+                percentile(confirmations, 0.5), percentile(confirmations, 0.9),
+                nodes.stream().mapToLong(node -> node.getShaper().getBytesForwarded()).sum());
+    }
+
+    static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private static void progress(String message) {
+        System.out.println("[ClusterSimulator] " + message);
+    }
+
+    /**
+     * Runs a simulation with the settings given as {@code name=value} arguments and prints its report.
+     * Node logging is limited to errors, since a cluster logs every transaction many times over.
+     *
+     * @param args Settings, see {@link SimulationConfig#apply(String)}
+     */
+    public static void main(String[] args) throws Exception {
+        SimulationConfig config = new SimulationConfig();
+        for (String arg : args) {
+            config.apply(arg);
+        }
+        Logger.setLevel(Logger.Level.ERROR);
+        SimulationReport report = new ClusterSimulator(config).run();
+        System.out.println(report);
+    }
+}
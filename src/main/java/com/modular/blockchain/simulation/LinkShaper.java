@@ -0,0 +1,198 @@
+package com.modular.blockchain.simulation;
+
+import com.modular.blockchain.util.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loopback TCP proxy in front of one simulated node that makes its links behave like a wide-area
+ * network. Peers dial the shaper instead of the node; every accepted connection is forwarded to
+ * the node, and each direction is delayed by the link's latency and paced to its bandwidth.
+ * <p>
+ * Each link draws its latency once, so bytes on a link are never reordered. Pacing follows a
+ * serialisation model: a chunk is transmitted once the link has finished sending the previous
+ * ones, taking size / bandwidth, and arrives a latency later. Only a bounded number of chunks is
+ * buffered per direction, so a sender that outpaces the link is slowed down by TCP flow control
+ * just as it would be by a real one.
+ */
+class LinkShaper implements Closeable {
+    private static final int CHUNK_BYTES = 16 * 1024;
+    /** Chunks buffered per direction before the reader blocks */
+    private static final int CHUNKS_IN_FLIGHT = 64;
+
+    private final String name;
+    private final int targetPort;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final long bytesPerSecond;
+    private final Random random;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final AtomicLong bytesForwarded = new AtomicLong();
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    /**
+     * @param name Name of the node behind the shaper, for logging
+     * @param targetPort Port the node listens on
+     * @param latencyMillis Mean one-way latency of a link
+     * @param jitterMillis Largest difference of a link's latency from the mean
+     * @param bytesPerSecond Bandwidth of a link in each direction, or 0 for unlimited
+     * @param random Source of link latencies
+     */
+    LinkShaper(String name, int targetPort, long latencyMillis, long jitterMillis, long bytesPerSecond, Random random) {
+        this.name = name;
+        this.targetPort = targetPort;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+        this.jitterNanos = TimeUnit.MILLISECONDS.toNanos(jitterMillis);
+        this.bytesPerSecond = bytesPerSecond;
+        this.random = random;
+    }
+
+    /**
+     * Starts accepting connections on an ephemeral loopback port.
+     *
+     * @return The port peers should dial to reach the node
+     * @throws IOException If no port can be bound
+     */
+    int start() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("shaper-" + name).start(this::acceptLoop);
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Bytes forwarded in both directions over all links so far
+     */
+    long getBytesForwarded() {
+        return bytesForwarded.get();
+    }
+
+    /**
+     * Stops accepting and closes every link.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        sockets.forEach(LinkShaper::closeQuietly);
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket inbound = null;
+            try {
+                inbound = serverSocket.accept();
+                Socket outbound = new Socket();
+                outbound.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), targetPort));
+                inbound.setTcpNoDelay(true);
+                outbound.setTcpNoDelay(true);
+                sockets.add(inbound);
+                sockets.add(outbound);
+                long latency = linkLatency();
+                forward(inbound, outbound, latency);
+                forward(outbound, inbound, latency);
+            } catch (IOException e) {
+                if (!closed) {
+                    Logger.error("[LinkShaper] " + name + ": " + e.getMessage());
+                    closeQuietly(inbound);
+                }
+            }
+        }
+    }
+
+    private synchronized long linkLatency() {
+        if (jitterNanos == 0) {
+            return latencyNanos;
+        }
+        long offset = (long) ((random.nextDouble() * 2 - 1) * jitterNanos);
+        return Math.max(0, latencyNanos + offset);
+    }
+
+    /**
+     * Pumps one direction of a link: a reader stamps each chunk with its arrival time and a
+     * writer delivers it no earlier than that.
+     */
+    private void forward(Socket from, Socket to, long latency) {
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(CHUNKS_IN_FLIGHT);
+        Thread.ofVirtual().start(() -> {
+            long linkFreeAt = System.nanoTime();
+            byte[] buffer = new byte[CHUNK_BYTES];
+            try (InputStream in = from.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    long now = System.nanoTime();
+                    long transmit = bytesPerSecond == 0 ? 0 : read * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+                    linkFreeAt = Math.max(linkFreeAt, now) + transmit;
+                    queue.put(new Chunk(Arrays.copyOf(buffer, read), linkFreeAt + latency));
+                }
+            } catch (IOException e) {
+                // The link is closed by the writer
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                queue.put(Chunk.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.ofVirtual().start(() -> {
+            try (OutputStream out = to.getOutputStream()) {
+                while (true) {
+                    Chunk chunk = queue.take();
+                    if (chunk == Chunk.END) {
+                        break;
+                    }
+                    long wait;
+                    while ((wait = chunk.deliverAtNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    out.write(chunk.data);
+                    bytesForwarded.addAndGet(chunk.data.length);
+                }
+            } catch (IOException e) {
+                // The peer went away
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeQuietly(from);
+            closeQuietly(to);
+            sockets.remove(from);
+            sockets.remove(to);
+            // Unblocks the reader if the writer gave up first
+            queue.clear();
+        });
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing left to do
+        }
+    }
+
+    private record Chunk(byte[] data, long deliverAtNanos) {
+        static final Chunk END = new Chunk(new byte[0], 0);
+    }
+}
@@ -0,0 +1,189 @@
+package com.modular.blockchain.simulation;
+
+import com.modular.blockchain.blockchain.Block;
+import com.modular.blockchain.blockchain.Blockchain;
+import com.modular.blockchain.blockchain.ChainListener;
+import com.modular.blockchain.blockchain.Miner;
+import com.modular.blockchain.consensus.ConsensusEngine;
+import com.modular.blockchain.consensus.ProofOfAuthorityEngine;
+import com.modular.blockchain.consensus.SimpleConsensusEngine;
+import com.modular.blockchain.metrics.Metrics;
+import com.modular.blockchain.networking.NetworkService;
+import com.modular.blockchain.networking.Peer;
+import com.modular.blockchain.transaction.TransactionPool;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full node of a simulated cluster: chain, pool, miners and network service, reachable by
+ * its peers only through a {@link LinkShaper}. Every block appended to the chain is reported to
+ * the {@link ClusterSimulator} with the time it arrived.
+ */
+class SimulatedNode implements ChainListener {
+    private final int index;
+    private final String id;
+    private final ClusterSimulator simulator;
+    private final Blockchain blockchain;
+    private final TransactionPool pool;
+    private final NetworkService network;
+    private final LinkShaper shaper;
+    private final List<Miner> miners = new ArrayList<>();
+    private ProofOfAuthorityEngine authorityEngine;
+    private int shaperPort;
+
+    /**
+     * @param index Index of the node in the cluster
+     * @param config Parameters of the run
+     * @param simulator The simulator to report block arrivals to
+     * @param random Source of the node's link latencies
+     * @param authorities Key pairs of all authorities in turn order, or null to run proof-of-work
+     * @param allocations Initial funds of the genesis block, the same for every node
+     */
+    SimulatedNode(int index, SimulationConfig config, ClusterSimulator simulator, Random random,
+                  Map<String, KeyPair> authorities, Map<String, Long> allocations) {
+        this.index = index;
+        this.id = "sim-" + index;
+        this.simulator = simulator;
+        int port = config.getBasePort() + index;
+        ConsensusEngine consensusEngine;
+        if (authorities == null) {
+            consensusEngine = new SimpleConsensusEngine();
+            blockchain = new Blockchain(config.getDifficulty(), allocations);
+        } else {
+            Map<String, PublicKey> publicKeys = new HashMap<>();
+            authorities.forEach((minerId, keyPair) -> publicKeys.put(minerId, keyPair.getPublic()));
+            authorityEngine = new ProofOfAuthorityEngine(new ArrayList<>(authorities.keySet()), publicKeys,
+                    config.getAuthoritySlotMillis());
+            for (int i = 0; i < config.getMinersPerNode(); i++) {
+                authorityEngine.addSigningKey(minerId(index, i), authorities.get(minerId(index, i)).getPrivate());
+            }
+            consensusEngine = authorityEngine;
+            blockchain = new Blockchain(0, allocations);
+        }
+        pool = new TransactionPool();
+        network = new NetworkService(id, port, blockchain, pool, consensusEngine);
+        network.setConnectionLimits(config.getOutboundPeers(), NetworkService.DEFAULT_MAX_INBOUND);
+        shaper = new LinkShaper(id, port, config.getLatencyMillis(), config.getJitterMillis(),
+                config.getBandwidthBytesPerSecond(), new Random(random.nextLong()));
+        for (int i = 0; i < config.getMinersPerNode(); i++) {
+            miners.add(new Miner(minerId(index, i), config.getMiningThreshold(), pool, blockchain, consensusEngine));
+        }
+        blockchain.addListener(this);
+    }
+
+    /**
+     * @param node Index of a node
+     * @param miner Index of a miner of that node
+     * @return The miner's id, which is also its authority name under proof-of-authority
+     */
+    static String minerId(int node, int miner) {
+        return "sim-" + node + "-miner-" + miner;
+    }
+
+    /**
+     * Starts the network service and the shaper in front of it.
+     *
+     * @throws IOException If a port cannot be bound
+     */
+    void start() throws IOException {
+        network.start();
+        shaperPort = shaper.start();
+    }
+
+    /**
+     * Adds the given nodes to the address book, to be dialled through their shapers.
+     *
+     * @param others The other nodes, in the order they should be tried
+     */
+    void addPeers(List<SimulatedNode> others) {
+        for (SimulatedNode other : others) {
+            network.addPeer(new Peer(other.id, "127.0.0.1", other.shaperPort));
+        }
+    }
+
+    /**
+     * Starts every miner of the node, the first attempt after the given delay so that nodes do
+     * not all mine in lockstep. Under proof-of-authority the miners instead attempt at the start
+     * of every slot.
+     *
+     * @param intervalMillis Time between mining attempts
+     * @param offsetMillis Delay before the first attempt
+     */
+    void startMining(long intervalMillis, long offsetMillis) {
+        if (authorityEngine != null) {
+            long slotMillis = authorityEngine.getSlotMillis();
+            miners.forEach(miner -> miner.startMining(authorityEngine.millisUntilNextSlot(), slotMillis, TimeUnit.MILLISECONDS));
+            return;
+        }
+        Thread.ofVirtual().start(() -> {
+            try {
+                Thread.sleep(offsetMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            miners.forEach(miner -> miner.startMining(intervalMillis, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    void stopMining() {
+        miners.forEach(Miner::stopMining);
+    }
+
+    /**
+     * Blocks mined here but refused by the node's own chain, in practice because a block from a
+     * peer moved the tip on while mining. They never reach the network.
+     *
+     * @return Number of such blocks over all miners of the node
+     */
+    long getBlocksRejected() {
+        long total = 0;
+        for (Miner miner : miners) {
+            total += Metrics.counter("miner_blocks_total", "Blocks mined, by outcome",
+                    "miner", miner.getMinerId(), "result", "rejected").get();
+        }
+        return total;
+    }
+
+    void stop() {
+        stopMining();
+        network.stop();
+        shaper.close();
+    }
+
+    @Override
+    public void blockAdded(Block block) {
+        simulator.recordArrival(block, index, System.nanoTime());
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    Blockchain getBlockchain() {
+        return blockchain;
+    }
+
+    TransactionPool getPool() {
+        return pool;
+    }
+
+    NetworkService getNetwork() {
+        return network;
+    }
+
+    LinkShaper getShaper() {
+        return shaper;
+    }
+}
@@ -0,0 +1,400 @@
+package com.modular.blockchain.simulation;
+
+/**
+ * Parameters of a {@link ClusterSimulator} or {@link BftSimulator} run: the size and shape of the
+ * cluster, the links between nodes, mining and the transaction workload.
+ * Defaults describe a small cluster of well-connected nodes under a moderate load and finish
+ * in well under a minute.
+ */
+public class SimulationConfig {
+    /** Default number of nodes */
+    public static final int DEFAULT_NODES = 4;
+    /** Default number of peers each node dials */
+    public static final int DEFAULT_OUTBOUND_PEERS = 4;
+    /** Default listening port of the first node; node i listens on basePort + i */
+    public static final int DEFAULT_BASE_PORT = 19500;
+    /** Default proof-of-work difficulty */
+    public static final int DEFAULT_DIFFICULTY = 3;
+    /** Default one-way latency of every link, in milliseconds */
+    public static final long DEFAULT_LATENCY_MILLIS = 50;
+    /** Default spread of link latencies around the default, in milliseconds */
+    public static final long DEFAULT_JITTER_MILLIS = 10;
+    /** Default bandwidth of every link in each direction, 10 Mbit/s */
+    public static final long DEFAULT_BANDWIDTH_BYTES_PER_SECOND = 1_250_000;
+    /** Default number of miners per node */
+    public static final int DEFAULT_MINERS_PER_NODE = 1;
+    /** Default time between mining attempts, in milliseconds */
+    public static final long DEFAULT_MINING_INTERVAL_MILLIS = 1_000;
+    /** Default proof-of-authority slot length; 0 runs the cluster on proof-of-work */
+    public static final long DEFAULT_AUTHORITY_SLOT_MILLIS = 0;
+    /** Default time a {@link BftSimulator} replica waits for progress before changing view, in milliseconds */
+    public static final long DEFAULT_VIEW_TIMEOUT_MILLIS = 1_000;
+    /** Default largest number of transactions in a {@link BftSimulator} proposal */
+    public static final int DEFAULT_MAX_BLOCK_TRANSACTIONS = 2_000;
+    /** Default number of pending transactions a miner waits for */
+    public static final int DEFAULT_MINING_THRESHOLD = 20;
+    /** Default number of funded wallets the workload transfers between */
+    public static final int DEFAULT_WALLETS = 20;
+    /** Default offered load, in transactions per second across the cluster */
+    public static final int DEFAULT_TRANSACTIONS_PER_SECOND = 100;
+    /** Default time the workload runs, in seconds */
+    public static final int DEFAULT_DURATION_SECONDS = 20;
+    /** Default time allowed after the workload for the cluster to confirm it and converge, in seconds */
+    public static final int DEFAULT_SETTLE_SECONDS = 10;
+
+    private int nodes = DEFAULT_NODES;
+    private int outboundPeers = DEFAULT_OUTBOUND_PEERS;
+    private int basePort = DEFAULT_BASE_PORT;
+    private int difficulty = DEFAULT_DIFFICULTY;
+    private long latencyMillis = DEFAULT_LATENCY_MILLIS;
+    private long jitterMillis = DEFAULT_JITTER_MILLIS;
+    private long bandwidthBytesPerSecond = DEFAULT_BANDWIDTH_BYTES_PER_SECOND;
+    private int minersPerNode = DEFAULT_MINERS_PER_NODE;
+    private long miningIntervalMillis = DEFAULT_MINING_INTERVAL_MILLIS;
+    private long authoritySlotMillis = DEFAULT_AUTHORITY_SLOT_MILLIS;
+    private long viewTimeoutMillis = DEFAULT_VIEW_TIMEOUT_MILLIS;
+    private int maxBlockTransactions = DEFAULT_MAX_BLOCK_TRANSACTIONS;
+    private int miningThreshold = DEFAULT_MINING_THRESHOLD;
+    private int wallets = DEFAULT_WALLETS;
+    private int transactionsPerSecond = DEFAULT_TRANSACTIONS_PER_SECOND;
+    private int durationSeconds = DEFAULT_DURATION_SECONDS;
+    private int settleSeconds = DEFAULT_SETTLE_SECONDS;
+    private long seed = System.nanoTime();
+
+    /**
+     * Applies a setting given as {@code name=value}, as passed on the simulator's command line.
+     * Names are the property names of this class, e.g. {@code nodes=8} or {@code latencyMillis=100}.
+     *
+     * @param setting The setting
+     * @throws IllegalArgumentException If the name is unknown or the value is not a number
+     */
+    public void apply(String setting) {
+        String[] parts = setting.split("=", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected name=value, got " + setting);
+        }
+        long value;
+        try {
+            value = Long.parseLong(parts[1].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + setting);
+        }
+        switch (parts[0].trim()) {
+            case "nodes" -> setNodes((int) value);
+            case "outboundPeers" -> setOutboundPeers((int) value);
+            case "basePort" -> setBasePort((int) value);
+            case "difficulty" -> setDifficulty((int) value);
+            case "latencyMillis" -> setLatencyMillis(value);
+            case "jitterMillis" -> setJitterMillis(value);
+            case "bandwidthBytesPerSecond" -> setBandwidthBytesPerSecond(value);
+            case "minersPerNode" -> setMinersPerNode((int) value);
+            case "miningIntervalMillis" -> setMiningIntervalMillis(value);
+            case "authoritySlotMillis" -> setAuthoritySlotMillis(value);
+            case "viewTimeoutMillis" -> setViewTimeoutMillis(value);
+            case "maxBlockTransactions" -> setMaxBlockTransactions((int) value);
+            case "miningThreshold" -> setMiningThreshold((int) value);
+            case "wallets" -> setWallets((int) value);
+            case "transactionsPerSecond" -> setTransactionsPerSecond((int) value);
+            case "durationSeconds" -> setDurationSeconds((int) value);
+            case "settleSeconds" -> setSettleSeconds((int) value);
+            case "seed" -> setSeed(value);
+            default -> throw new IllegalArgumentException("Unknown setting: " + parts[0]);
+        }
+    }
+
+    /**
+     * @return Number of nodes in the cluster
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Sets the number of nodes in the cluster.
+     *
+     * @param nodes Number of nodes, at least 1
+     */
+    public void setNodes(int nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return Number of peers each node dials
+     */
+    public int getOutboundPeers() {
+        return outboundPeers;
+    }
+
+    /**
+     * Sets the number of peers each node dials. Nodes also accept connections from others,
+     * so most nodes end up with more peers than this.
+     *
+     * @param outboundPeers Outbound connections per node
+     */
+    public void setOutboundPeers(int outboundPeers) {
+        this.outboundPeers = outboundPeers;
+    }
+
+    /**
+     * @return Listening port of the first node
+     */
+    public int getBasePort() {
+        return basePort;
+    }
+
+    /**
+     * Sets the listening port of the first node; node i listens on basePort + i.
+     *
+     * @param basePort The first port
+     */
+    public void setBasePort(int basePort) {
+        this.basePort = basePort;
+    }
+
+    /**
+     * @return Proof-of-work difficulty of every node's chain
+     */
+    public int getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Sets the proof-of-work difficulty of every node's chain.
+     *
+     * @param difficulty Leading zero hex digits required of block hashes
+     */
+    public void setDifficulty(int difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * @return Mean one-way link latency in milliseconds
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Sets the mean one-way latency added to every link.
+     *
+     * @param latencyMillis Latency in milliseconds
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return Spread of link latencies in milliseconds
+     */
+    public long getJitterMillis() {
+        return jitterMillis;
+    }
+
+    /**
+     * Sets how far the latency of each link may differ from the mean. Every link draws its
+     * latency once, uniformly within this distance, so messages on a link stay in order.
+     *
+     * @param jitterMillis Spread in milliseconds
+     */
+    public void setJitterMillis(long jitterMillis) {
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * @return Bandwidth of every link in each direction, in bytes per second
+     */
+    public long getBandwidthBytesPerSecond() {
+        return bandwidthBytesPerSecond;
+    }
+
+    /**
+     * Sets the bandwidth of every link in each direction.
+     *
+     * @param bandwidthBytesPerSecond Bytes per second, or 0 for unlimited
+     */
+    public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+    }
+
+    /**
+     * @return Number of miners per node
+     */
+    public int getMinersPerNode() {
+        return minersPerNode;
+    }
+
+    /**
+     * Sets the number of miners per node; 0 makes the nodes relay only.
+     *
+     * @param minersPerNode Miners per node
+     */
+    public void setMinersPerNode(int minersPerNode) {
+        this.minersPerNode = minersPerNode;
+    }
+
+    /**
+     * @return Time between mining attempts in milliseconds
+     */
+    public long getMiningIntervalMillis() {
+        return miningIntervalMillis;
+    }
+
+    /**
+     * Sets the time between mining attempts of every miner.
+     *
+     * @param miningIntervalMillis Interval in milliseconds
+     */
+    public void setMiningIntervalMillis(long miningIntervalMillis) {
+        this.miningIntervalMillis = miningIntervalMillis;
+    }
+
+    /**
+     * @return Proof-of-authority slot length in milliseconds, or 0 if the cluster runs proof-of-work
+     */
+    public long getAuthoritySlotMillis() {
+        return authoritySlotMillis;
+    }
+
+    /**
+     * Runs the cluster on proof-of-authority with every miner as an authority, taking turns in
+     * slots of the given length. Miners then attempt once per slot, chains use difficulty 0 and the
+     * mining interval and difficulty settings are ignored.
+     *
+     * @param authoritySlotMillis Slot length in milliseconds, or 0 for proof-of-work
+     */
+    public void setAuthoritySlotMillis(long authoritySlotMillis) {
+        this.authoritySlotMillis = authoritySlotMillis;
+    }
+
+    /**
+     * @return Time a BFT replica waits for progress before changing view, in milliseconds
+     */
+    public long getViewTimeoutMillis() {
+        return viewTimeoutMillis;
+    }
+
+    /**
+     * Sets how long a {@link BftSimulator} replica waits for progress before it gives up on the
+     * view's leader.
+     *
+     * @param viewTimeoutMillis Timeout in milliseconds
+     */
+    public void setViewTimeoutMillis(long viewTimeoutMillis) {
+        this.viewTimeoutMillis = viewTimeoutMillis;
+    }
+
+    /**
+     * @return Largest number of transactions in a BFT proposal
+     */
+    public int getMaxBlockTransactions() {
+        return maxBlockTransactions;
+    }
+
+    /**
+     * Sets the largest number of transactions a {@link BftSimulator} leader puts in a proposal.
+     *
+     * @param maxBlockTransactions Transactions per block
+     */
+    public void setMaxBlockTransactions(int maxBlockTransactions) {
+        this.maxBlockTransactions = maxBlockTransactions;
+    }
+
+    /**
+     * @return Pending transactions a miner waits for before mining
+     */
+    public int getMiningThreshold() {
+        return miningThreshold;
+    }
+
+    /**
+     * Sets the number of pending transactions a miner waits for, which is also the block size.
+     *
+     * @param miningThreshold Transactions per block
+     */
+    public void setMiningThreshold(int miningThreshold) {
+        this.miningThreshold = miningThreshold;
+    }
+
+    /**
+     * @return Number of funded wallets in the workload
+     */
+    public int getWallets() {
+        return wallets;
+    }
+
+    /**
+     * Sets the number of wallets the workload transfers between. Every wallet is funded on
+     * every node before the run.
+     *
+     * @param wallets Number of wallets, at least 2
+     */
+    public void setWallets(int wallets) {
+        this.wallets = wallets;
+    }
+
+    /**
+     * @return Offered load in transactions per second
+     */
+    public int getTransactionsPerSecond() {
+        return transactionsPerSecond;
+    }
+
+    /**
+     * Sets the offered load, spread evenly over the nodes.
+     *
+     * @param transactionsPerSecond Transactions per second across the cluster
+     */
+    public void setTransactionsPerSecond(int transactionsPerSecond) {
+        this.transactionsPerSecond = transactionsPerSecond;
+    }
+
+    /**
+     * @return Time the workload runs, in seconds
+     */
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Sets how long transactions are submitted for.
+     *
+     * @param durationSeconds Workload duration in seconds
+     */
+    public void setDurationSeconds(int durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * @return Time allowed after the workload to confirm it, in seconds
+     */
+    public int getSettleSeconds() {
+        return settleSeconds;
+    }
+
+    /**
+     * Sets how long the cluster keeps running after the workload to confirm the remaining
+     * transactions and converge on one chain.
+     *
+     * @param settleSeconds Settle time in seconds
+     */
+    public void setSettleSeconds(int settleSeconds) {
+        this.settleSeconds = settleSeconds;
+    }
+
+    /**
+     * @return Seed of the random choices of the run
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed for link latencies and which peers each node dials, so a topology can be
+     * repeated. Timing on a shared machine still varies between runs.
+     *
+     * @param seed The seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -0,0 +1,215 @@
+package com.modular.blockchain.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of a {@link ClusterSimulator} run. Durations are in nanoseconds.
+ * <p>
+ * Propagation delay is measured from the moment a block was appended on the node that mined it
+ * to the moment each other node appended it. A block is stale if some node appended it but it is
+ * not on the final chain; the fork rate is the share of all appended blocks that went stale.
+ * A transaction counts as confirmed once its block on the final chain had reached every node, and
+ * throughput is the number of confirmed transactions over the time from the first submission to
+ * the last confirmation.
+ */
+public final class SimulationReport {
+    private final SimulationConfig config;
+    private final double averagePeers;
+    private final int height;
+    private final int agreedHeight;
+    private final int mainChainBlocks;
+    private final int staleBlocks;
+    private final long blocksRejected;
+    private final long propagationMedianNanos;
+    private final long propagationP90Nanos;
+    private final long propagationMaxNanos;
+    private final long fullPropagationMeanNanos;
+    private final int submitted;
+    private final int refused;
+    private final int confirmed;
+    private final long elapsedNanos;
+    private final long confirmationMedianNanos;
+    private final long confirmationP90Nanos;
+    private final long bytesForwarded;
+
+    SimulationReport(SimulationConfig config, double averagePeers, int height, int agreedHeight,
+                     int mainChainBlocks, int staleBlocks, long blocksRejected,
+                     long propagationMedianNanos, long propagationP90Nanos, long propagationMaxNanos,
+                     long fullPropagationMeanNanos, int submitted, int refused, int confirmed, long elapsedNanos,
+                     long confirmationMedianNanos, long confirmationP90Nanos, long bytesForwarded) {
+        this.config = config;
+        this.averagePeers = averagePeers;
+        this.height = height;
+        this.agreedHeight = agreedHeight;
+        this.mainChainBlocks = mainChainBlocks;
+        this.staleBlocks = staleBlocks;
+        this.blocksRejected = blocksRejected;
+        this.propagationMedianNanos = propagationMedianNanos;
+        this.propagationP90Nanos = propagationP90Nanos;
+        this.propagationMaxNanos = propagationMaxNanos;
+        this.fullPropagationMeanNanos = fullPropagationMeanNanos;
+        this.submitted = submitted;
+        this.refused = refused;
+        this.confirmed = confirmed;
+        this.elapsedNanos = elapsedNanos;
+        this.confirmationMedianNanos = confirmationMedianNanos;
+        this.confirmationP90Nanos = confirmationP90Nanos;
+        this.bytesForwarded = bytesForwarded;
+    }
+
+    /**
+     * @return Share of appended blocks that did not end up on the final chain, between 0 and 1
+     */
+    public double getForkRate() {
+        int appended = mainChainBlocks + staleBlocks;
+        return appended == 0 ? 0 : (double) staleBlocks / appended;
+    }
+
+    /**
+     * @return Confirmed transactions per second, end to end
+     */
+    public double getTransactionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : confirmed * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return Median delay for a block to reach another node
+     */
+    public long getPropagationMedianNanos() {
+        return propagationMedianNanos;
+    }
+
+    /**
+     * @return 90th percentile of the delay for a block to reach another node
+     */
+    public long getPropagationP90Nanos() {
+        return propagationP90Nanos;
+    }
+
+    /**
+     * @return Longest delay for a block to reach another node
+     */
+    public long getPropagationMaxNanos() {
+        return propagationMaxNanos;
+    }
+
+    /**
+     * @return Mean time for a block on the final chain to reach every node
+     */
+    public long getFullPropagationMeanNanos() {
+        return fullPropagationMeanNanos;
+    }
+
+    /**
+     * @return Median time from submitting a transaction to its confirmation on every node
+     */
+    public long getConfirmationMedianNanos() {
+        return confirmationMedianNanos;
+    }
+
+    /**
+     * @return 90th percentile of the time from submitting a transaction to its confirmation on every node
+     */
+    public long getConfirmationP90Nanos() {
+        return confirmationP90Nanos;
+    }
+
+    /**
+     * @return Height of the final chain
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Height up to which every node ended with the same chain
+     */
+    public int getAgreedHeight() {
+        return agreedHeight;
+    }
+
+    /**
+     * @return true if every node ended on the same tip
+     */
+    public boolean isConverged() {
+        return agreedHeight == height;
+    }
+
+    /**
+     * @return Blocks mined during the run that are on the final chain
+     */
+    public int getMainChainBlocks() {
+        return mainChainBlocks;
+    }
+
+    /**
+     * @return Blocks appended by some node that are not on the final chain
+     */
+    public int getStaleBlocks() {
+        return staleBlocks;
+    }
+
+    /**
+     * @return Blocks refused by their own miner's chain because its tip moved on while mining
+     */
+    public long getBlocksRejected() {
+        return blocksRejected;
+    }
+
+    /**
+     * @return Transactions submitted by the workload
+     */
+    public int getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * @return Submitted transactions the receiving node's pool refused
+     */
+    public int getRefused() {
+        return refused;
+    }
+
+    /**
+     * @return Submitted transactions confirmed on the final chain
+     */
+    public int getConfirmed() {
+        return confirmed;
+    }
+
+    /**
+     * @return Bytes carried over all links
+     */
+    public long getBytesForwarded() {
+        return bytesForwarded;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("""
+                Cluster: %d nodes, %.1f peers per node, links %d ms +/- %d ms at %s, %s
+                Chain: height %d, %s
+                Blocks: %d on the final chain, %d stale (fork rate %.1f%%), %d refused by their own miner
+                Propagation to a node: median %s, p90 %s, max %s; to every node %s on average
+                Transactions: %d submitted, %d refused, %d confirmed in %s (%.1f TPS)
+                Confirmation latency: median %s, p90 %s
+                Traffic: %.1f MB over all links""",
+                config.getNodes(), averagePeers, config.getLatencyMillis(), config.getJitterMillis(),
+                config.getBandwidthBytesPerSecond() == 0 ? "unlimited bandwidth"
+                        : String.format("%.1f Mbit/s", config.getBandwidthBytesPerSecond() * 8 / 1e6),
+                config.getAuthoritySlotMillis() > 0
+                        ? "proof-of-authority with " + config.getAuthoritySlotMillis() + " ms slots"
+                        : "difficulty " + config.getDifficulty(),
+                height, isConverged() ? "all nodes agree on the tip" : "all nodes agree up to height " + agreedHeight,
+                mainChainBlocks, staleBlocks, getForkRate() * 100, blocksRejected,
+                millis(propagationMedianNanos), millis(propagationP90Nanos), millis(propagationMaxNanos),
+                millis(fullPropagationMeanNanos),
+                submitted, refused, confirmed, millis(elapsedNanos), getTransactionsPerSecond(),
+                millis(confirmationMedianNanos), millis(confirmationP90Nanos),
+                bytesForwarded / 1e6);
+    }
+
+    private static String millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+}
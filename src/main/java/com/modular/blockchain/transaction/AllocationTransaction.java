@@ -0,0 +1,91 @@
+package com.modular.blockchain.transaction;
+
+import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.index.AddressDictionary;
+import com.modular.blockchain.ledger.Amounts;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Credits an address with funds that do not come from another account. Allocations only
+ * appear in the genesis block, where they set the initial balances every node starts from;
+ * consensus refuses them in any other block, and the ledger applies and reverts them like
+ * any other transaction of a block.
+ * <p>
+ * The id is the SHA-256 hash of an encoding whose leading tag differs from the version byte
+ * of {@link SignedTransaction}, so an allocation never shares an id with a transfer.
+ */
+public class AllocationTransaction implements Transaction {
+    /** Tag leading the encoding hashed into the id */
+    private static final byte ENCODING_TAG = (byte) 0xA1;
+
+    private final Hash256 id;       // SHA-256 of the encoding
+    private final int recipientId;  // Address dictionary id of the recipient's public key
+    private final long units;       // Allocated amount in ledger units
+
+    /**
+     * Creates an allocation. Allocations are configured by the node operator, so the recipient
+     * is interned in the global {@link AddressDictionary} right away.
+     *
+     * @param recipientPublicKey Base64 encoded public key of the recipient
+     * @param units Amount to allocate in ledger units, must be positive
+     * @throws IllegalArgumentException if the key is not valid Base64 or the amount is not positive
+     */
+    public AllocationTransaction(String recipientPublicKey, long units) {
+        if (units <= 0) {
+            throw new IllegalArgumentException("Allocation must be positive: " + units);
+        }
+        this.id = CryptoUtils.sha256Hash(encode(recipientPublicKey, units));
+        this.recipientId = AddressDictionary.global().idOf(recipientPublicKey);
+        this.units = units;
+    }
+
+    private static byte[] encode(String recipientPublicKey, long units) {
+        try {
+            byte[] recipient = Base64.getDecoder().decode(recipientPublicKey);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(13 + recipient.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ENCODING_TAG);
+            out.writeInt(recipient.length);
+            out.write(recipient);
+            out.writeLong(units);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Hash256 getId() { return id; }
+
+    /**
+     * Allocations carry no signature; whether one is allowed depends only on the block it is in.
+     */
+    @Override
+    public boolean isValid() { return true; }
+
+    @Override
+    public String toJson() {
+        return String.format("{\"id\":\"%s\",\"receiver\":\"%s\",\"amount\":%s}",
+                id, getRecipientPublicKey(), Amounts.format(units));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AllocationTransaction other)) return false;
+        return id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    public String getRecipientPublicKey() { return AddressDictionary.global().addressOf(recipientId); }
+    public int getRecipientId() { return recipientId; }
+    public long getUnits() { return units; }
+}
@@ -0,0 +1,15 @@
+package com.modular.blockchain.transaction;
+
+/**
+ * Callback interface for components that react to transactions entering the pool.
+ * Listeners are invoked synchronously while the pool is locked, so they must return quickly
+ * and must not call back into the {@link TransactionPool}.
+ */
+public interface PoolListener {
+    /**
+     * Called after a transaction has been validated and accepted into the pool.
+     *
+     * @param tx The accepted transaction
+     */
+    void transactionAdded(Transaction tx);
+}
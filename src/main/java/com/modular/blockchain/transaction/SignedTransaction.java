@@ -1,6 +1,12 @@
 package com.modular.blockchain.transaction;
 
 import com.modular.blockchain.crypto.CryptoUtils;
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.index.AddressDictionary;
+import com.modular.blockchain.ledger.Amounts;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.Base64;
@@ -8,38 +14,103 @@ import java.util.Base64;
 /**
  * Represents a signed transaction in the blockchain.
  * Contains transaction details and cryptographic signature for verification.
+ * Sender and receiver keys are held as compact ids of the global {@link AddressDictionary},
+ * with the Base64 key strings resolved on demand. The dictionary never releases an id, so
+ * keys are only interned once the transaction is admitted, see {@link #intern()}; until
+ * then a transaction keeps its own copy of any key the dictionary does not know yet, and
+ * decoding or parsing a transaction that is then rejected leaves the dictionary unchanged.
+ * <p>
+ * The signed payload is a canonical binary encoding of the transaction content
+ * (see {@link #getSigningBytes()}), and the transaction id is the SHA-256 hash of that
+ * encoding. Identical submissions therefore share an id. The encoding holds both full keys,
+ * so it is rebuilt to sign or verify rather than kept on every pooled and mined transaction.
  */
 public class SignedTransaction implements Transaction {
-    private final String id;                    // Unique transaction identifier
-    private final String senderPublicKey;       // Base64 encoded public key of sender
-    private final String receiverPublicKey;     // Base64 encoded public key of receiver
+    /** Version tag leading the signing encoding, bumped if the layout ever changes */
+    private static final byte ENCODING_VERSION = 1;
+
+    private final Hash256 id;                   // SHA-256 of the signing bytes
+    private volatile int senderId;              // Address dictionary id of the sender's public key, UNKNOWN until interned
+    private volatile int receiverId;            // Address dictionary id of the receiver's public key, UNKNOWN until interned
+    private volatile String senderKey;          // Sender's public key while it is not interned, otherwise null
+    private volatile String receiverKey;        // Receiver's public key while it is not interned, otherwise null
     private final double amount;                // Transaction amount
+    private final long nonce;                   // Sender-chosen value that distinguishes otherwise identical transfers
     private String signature;                   // Base64 encoded cryptographic signature
 
     /**
-     * Creates a new signed transaction with the specified parameters.
+     * Creates a new unsigned transaction whose id is derived from its content.
      *
-     * @param id Unique transaction identifier
      * @param senderPublicKey Base64 encoded public key of the sender
      * @param receiverPublicKey Base64 encoded public key of the receiver
      * @param amount Transaction amount
+     * @param nonce Value that makes repeated transfers of the same amount between the same parties distinct
+     * @throws IllegalArgumentException if a key is not valid Base64 or the amount is not representable
      */
-    public SignedTransaction(String id, String senderPublicKey, String receiverPublicKey, double amount) {
-        this.id = id;
-        this.senderPublicKey = senderPublicKey;
-        this.receiverPublicKey = receiverPublicKey;
+    public SignedTransaction(String senderPublicKey, String receiverPublicKey, double amount, long nonce) {
+        this.id = CryptoUtils.sha256Hash(encode(senderPublicKey, receiverPublicKey, amount, nonce));
+        AddressDictionary dictionary = AddressDictionary.global();
+        this.senderId = dictionary.find(senderPublicKey);
+        this.senderKey = senderId == AddressDictionary.UNKNOWN ? senderPublicKey : null;
+        this.receiverId = dictionary.find(receiverPublicKey);
+        this.receiverKey = receiverId == AddressDictionary.UNKNOWN ? receiverPublicKey : null;
         this.amount = amount;
+        this.nonce = nonce;
+    }
+
+    /**
+     * Builds the canonical signing encoding: version byte, nonce, length-prefixed
+     * X.509 sender and receiver keys, then the amount in fixed-point ledger units.
+     * All integers are big-endian, so the encoding does not depend on string formatting of doubles.
+     */
+    private static byte[] encode(String senderPublicKey, String receiverPublicKey, double amount, long nonce) {
+        try {
+            byte[] sender = Base64.getDecoder().decode(senderPublicKey);
+            byte[] receiver = Base64.getDecoder().decode(receiverPublicKey);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(25 + sender.length + receiver.length);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(ENCODING_VERSION);
+            out.writeLong(nonce);
+            out.writeInt(sender.length);
+            out.write(sender);
+            out.writeInt(receiver.length);
+            out.write(receiver);
+            out.writeLong(Amounts.toUnits(amount));
+            return bytes.toByteArray();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Unrepresentable amount: " + amount, e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Interns the sender and receiver keys in the global {@link AddressDictionary} and drops the
+     * transaction's own copies. Called once the transaction has been admitted to the pool or its
+     * block to the chain, i.e. after its signature was verified; calling it again has no effect.
+     */
+    public void intern() {
+        AddressDictionary dictionary = AddressDictionary.global();
+        // The id is published before the key is cleared, so readers that miss the key find the id
+        String key = senderKey;
+        if (key != null) {
+            senderId = dictionary.idOf(key);
+            senderKey = null;
+        }
+        key = receiverKey;
+        if (key != null) {
+            receiverId = dictionary.idOf(key);
+            receiverKey = null;
+        }
     }
 
     /**
-     * Signs the transaction using the sender's private key.
-     * Concatenates transaction data and generates a cryptographic signature.
+     * Signs the transaction using the sender's private key over its canonical signing bytes.
      *
      * @param privateKey The sender's private key used for signing
      */
     public void sign(PrivateKey privateKey) {
-        String data = id + senderPublicKey + receiverPublicKey + amount;
-        byte[] sig = CryptoUtils.sign(data.getBytes(), privateKey);
+        byte[] sig = CryptoUtils.sign(getSigningBytes(), privateKey);
         this.signature = Base64.getEncoder().encodeToString(sig);
     }
 
@@ -50,17 +121,26 @@ public class SignedTransaction implements Transaction {
      */
     public boolean verifySignature() {
         try {
-            PublicKey pubKey = CryptoUtils.decodePublicKey(senderPublicKey);
-            String data = id + senderPublicKey + receiverPublicKey + amount;
+            PublicKey pubKey = CryptoUtils.decodePublicKey(getSenderPublicKey());
             byte[] sig = Base64.getDecoder().decode(signature);
-            return CryptoUtils.verify(data.getBytes(), sig, pubKey);
+            return CryptoUtils.verify(getSigningBytes(), sig, pubKey);
         } catch (Exception e) {
             return false;
         }
     }
 
+    /**
+     * Returns the canonical encoding of this transaction that is signed and hashed into its id.
+     * The encoding is rebuilt on every call.
+     *
+     * @return The signing bytes
+     */
+    public byte[] getSigningBytes() {
+        return encode(getSenderPublicKey(), getReceiverPublicKey(), amount, nonce);
+    }
+
     @Override
-    public String getId() { return id; }
+    public Hash256 getId() { return id; }
 
     @Override
     public boolean isValid() { return verifySignature(); }
@@ -72,14 +152,52 @@ public class SignedTransaction implements Transaction {
      */
     @Override
     public String toJson() {
-        return String.format("{\"id\":\"%s\",\"sender\":\"%s\",\"receiver\":\"%s\",\"amount\":%f,\"signature\":\"%s\"}",
-                id, senderPublicKey, receiverPublicKey, amount, signature);
+        return String.format("{\"id\":\"%s\",\"sender\":\"%s\",\"receiver\":\"%s\",\"amount\":%f,\"nonce\":%d,\"signature\":\"%s\"}",
+                id, getSenderPublicKey(), getReceiverPublicKey(), amount, nonce, signature);
+    }
+
+    /**
+     * Transactions are content-addressed, so two transactions are equal when their ids are.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SignedTransaction other)) return false;
+        return id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
     }
 
     // Getters and setters
-    public String getSenderPublicKey() { return senderPublicKey; }
-    public String getReceiverPublicKey() { return receiverPublicKey; }
+    public String getSenderPublicKey() { return resolve(senderKey, senderId); }
+    public String getReceiverPublicKey() { return resolve(receiverKey, receiverId); }
+
+    /**
+     * @return Dictionary id of the sender, or {@link AddressDictionary#UNKNOWN} if no admitted
+     *         transaction has involved that key yet
+     */
+    public int getSenderId() { return lookup(senderKey, senderId); }
+
+    /**
+     * @return Dictionary id of the receiver, or {@link AddressDictionary#UNKNOWN} if no admitted
+     *         transaction has involved that key yet
+     */
+    public int getReceiverId() { return lookup(receiverKey, receiverId); }
     public double getAmount() { return amount; }
+    public long getNonce() { return nonce; }
     public String getSignature() { return signature; }
     public void setSignature(String signature) { this.signature = signature; }
+
+    // The key is read before the id: once it is cleared, the id has been published
+    private static String resolve(String key, int id) {
+        return key != null ? key : AddressDictionary.global().addressOf(id);
+    }
+
+    // Another transaction may have interned the key since this one was created
+    private static int lookup(String key, int id) {
+        return key != null ? AddressDictionary.global().find(key) : id;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.modular.blockchain.transaction;
 
+import com.modular.blockchain.crypto.Hash256;
+
 /**
  * Interface representing a blockchain transaction.
  * Defines core functionality required for all transaction types.
@@ -7,9 +9,9 @@ package com.modular.blockchain.transaction;
 public interface Transaction {
     /**
      * Gets the unique identifier for this transaction.
-     * @return String containing the transaction ID
+     * @return The SHA-256 hash identifying the transaction; rendered as hex only where it leaves the node
      */
-    String getId();
+    Hash256 getId();
 
     /**
      * Validates if this transaction meets all required criteria.
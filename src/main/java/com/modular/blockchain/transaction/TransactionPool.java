@@ -1,32 +1,171 @@
 package com.modular.blockchain.transaction;
 
+import com.modular.blockchain.crypto.Hash256;
+import com.modular.blockchain.metrics.Counter;
+import com.modular.blockchain.metrics.Histogram;
+import com.modular.blockchain.metrics.Metrics;
 import com.modular.blockchain.util.Logger;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
 
 /**
  * Manages a thread-safe pool of pending transactions waiting to be added to the blockchain.
  * Provides synchronized methods for adding, retrieving and removing transactions.
  * The pool acts as a temporary storage for transactions before they are mined into blocks.
+ * Transaction ids are content-addressed, so duplicate submissions are detected by id in O(1).
  */
 public class TransactionPool {
+    private static final Histogram VERIFY_TIME = Metrics.histogram("mempool_verify_seconds",
+            "Time to verify the signature of a submitted transaction", Metrics.LATENCY_BUCKETS);
+    private static final Histogram ADMISSION_TIME = Metrics.histogram("mempool_admission_seconds",
+            "Time to admit a single transaction into the pool, including verification and lock wait", Metrics.LATENCY_BUCKETS);
+    private static final Counter ACCEPTED = Metrics.counter("mempool_transactions_total",
+            "Transactions submitted to the pool, by outcome", "result", "accepted");
+    private static final Counter INVALID = Metrics.counter("mempool_transactions_total",
+            "Transactions submitted to the pool, by outcome", "result", "invalid");
+    private static final Counter DUPLICATE = Metrics.counter("mempool_transactions_total",
+            "Transactions submitted to the pool, by outcome", "result", "duplicate");
+
     private final List<Transaction> pendingTransactions = new ArrayList<>();
+    /** Ids of all pending transactions mapped to their System.nanoTime() arrival, kept in step with pendingTransactions */
+    private final Map<Hash256, Long> pendingIds = new HashMap<>();
+    private final List<PoolListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener that is notified whenever a transaction is accepted into the pool.
+     *
+     * @param listener The listener to add
+     */
+    public void addListener(PoolListener listener) {
+        listeners.add(listener);
+    }
 
     /**
      * Adds a new transaction to the pending pool after validating it.
-     * Invalid transactions are rejected and logged as errors.
-     * This method is synchronized to prevent concurrent modifications.
+     * Invalid and duplicate transactions are rejected and logged as errors.
+     * The signature is verified before the pool is locked, so concurrent submissions verify in
+     * parallel; only the duplicate check and insertion hold the lock. The time taken is recorded.
      *
      * @param tx The transaction to validate and add to the pool
+     * @return true if the transaction was added, false if it was invalid or already pending
+     */
+    public boolean addTransaction(Transaction tx) {
+        long start = System.nanoTime();
+        try {
+            if (!verify(tx)) {
+                Logger.error("Invalid transaction rejected: " + tx.getId());
+                INVALID.inc();
+                return false;
+            }
+            return admit(tx);
+        } finally {
+            ADMISSION_TIME.observeSince(start);
+        }
+    }
+
+    private synchronized boolean admit(Transaction tx) {
+        if (pendingIds.putIfAbsent(tx.getId(), System.nanoTime()) != null) {
+            Logger.error("Duplicate transaction rejected: " + tx.getId());
+            DUPLICATE.inc();
+            return false;
+        }
+        intern(tx);
+        pendingTransactions.add(tx);
+        Logger.info("Transaction added to pool: " + tx.getId());
+        ACCEPTED.inc();
+        listeners.forEach(listener -> listener.transactionAdded(tx));
+        return true;
+    }
+
+    /**
+     * Interns the addresses of an admitted transaction; rejected ones must not grow the
+     * dictionary, which never releases an address.
+     */
+    private static void intern(Transaction tx) {
+        if (tx instanceof SignedTransaction signed) {
+            signed.intern();
+        }
+    }
+
+    private static boolean verify(Transaction tx) {
+        long start = System.nanoTime();
+        boolean valid = tx.isValid();
+        VERIFY_TIME.observeSince(start);
+        return valid;
+    }
+
+    /**
+     * Adds a batch of transactions to the pending pool.
+     * Signatures are verified in parallel before the pool is locked, then all valid,
+     * non-duplicate transactions are inserted under a single lock acquisition.
+     *
+     * @param txs The transactions to validate and add
+     * @return For each transaction, in order, whether it was added
      */
-    public synchronized void addTransaction(Transaction tx) {
-        if (tx.isValid()) {
-            pendingTransactions.add(tx);
-            Logger.info("Transaction added to pool: " + tx.getId());
-        } else {
-            Logger.error("Invalid transaction rejected: " + tx.getId());
+    public boolean[] addTransactions(List<Transaction> txs) {
+        boolean[] accepted = new boolean[txs.size()];
+        IntStream.range(0, txs.size()).parallel().forEach(i -> accepted[i] = verify(txs.get(i)));
+        synchronized (this) {
+            int added = 0;
+            long now = System.nanoTime();
+            for (int i = 0; i < accepted.length; i++) {
+                Transaction tx = txs.get(i);
+                if (!accepted[i]) {
+                    Logger.error("Invalid transaction rejected: " + tx.getId());
+                    INVALID.inc();
+                } else if (pendingIds.putIfAbsent(tx.getId(), now) != null) {
+                    Logger.error("Duplicate transaction rejected: " + tx.getId());
+                    DUPLICATE.inc();
+                    accepted[i] = false;
+                } else {
+                    intern(tx);
+                    pendingTransactions.add(tx);
+                    ACCEPTED.inc();
+                    listeners.forEach(listener -> listener.transactionAdded(tx));
+                    added++;
+                }
+            }
+            Logger.info("Added " + added + " of " + txs.size() + " transactions to pool");
         }
+        return accepted;
+    }
+
+    /**
+     * Checks whether a transaction with the given id is waiting in the pool.
+     *
+     * @param id The transaction id
+     * @return true if the transaction is pending
+     */
+    public synchronized boolean contains(Hash256 id) {
+        return pendingIds.containsKey(id);
+    }
+
+    /**
+     * @return The number of transactions waiting in the pool
+     */
+    public synchronized int size() {
+        return pendingTransactions.size();
+    }
+
+    /**
+     * Returns how long the longest-waiting transaction has been in the pool.
+     * Transactions put back after a failed mining attempt count from when they were put back.
+     *
+     * @return The age of the oldest pending transaction in nanoseconds, or 0 if the pool is empty
+     */
+    public synchronized long getOldestAgeNanos() {
+        if (pendingTransactions.isEmpty()) {
+            return 0;
+        }
+        Long since = pendingIds.get(pendingTransactions.getFirst().getId());
+        return since == null ? 0 : System.nanoTime() - since;
     }
 
     /**
@@ -49,6 +188,29 @@ public class TransactionPool {
         return batch;
     }
 
+    /**
+     * Retrieves and removes a batch of pending transactions up to the specified size, skipping
+     * those whose id is excluded. Excluded transactions stay in the pool, in their place, e.g.
+     * while they sit in a block that is proposed but not yet final.
+     *
+     * @param size The maximum number of transactions to retrieve
+     * @param excludedIds Ids of transactions to leave in the pool
+     * @return A list of up to 'size' transactions, oldest first
+     */
+    public synchronized List<Transaction> getBatch(int size, Set<Hash256> excludedIds) {
+        ArrayList<Transaction> batch = new ArrayList<>(Math.min(size, pendingTransactions.size()));
+        for (Transaction tx : pendingTransactions) {
+            if (batch.size() == size) {
+                break;
+            }
+            if (!excludedIds.contains(tx.getId())) {
+                batch.add(tx);
+            }
+        }
+        removeBatch(batch);
+        return batch;
+    }
+
     /**
      * Removes a batch of transactions from the pending pool.
      * Used internally after retrieving a batch to prevent double-processing.
@@ -57,7 +219,7 @@ public class TransactionPool {
      * @param batch The list of transactions to remove from the pool
      */
     public synchronized void removeBatch(ArrayList<Transaction> batch) {
-        pendingTransactions.removeAll(batch);
+        removeById(batch);
         String message = "Remaining Transection Count " + pendingTransactions.size();
         Logger.debug(message);
     }
@@ -70,7 +232,12 @@ public class TransactionPool {
      * @param batch The list of transactions to add back to the pool
      */
     public synchronized void addBack(ArrayList<Transaction> batch) {
-        pendingTransactions.addAll(batch);
+        long now = System.nanoTime();
+        for (Transaction tx : batch) {
+            if (pendingIds.putIfAbsent(tx.getId(), now) == null) {
+                pendingTransactions.add(tx);
+            }
+        }
         String message = "Remaining Transection Count " + pendingTransactions.size();
         Logger.debug(message);
     }
@@ -83,7 +250,23 @@ public class TransactionPool {
      * @param txs The list of transactions to permanently remove from the pool
      */
     public synchronized void removeTransactions(List<Transaction> txs) {
-        pendingTransactions.removeAll(txs);
+        removeById(txs);
         Logger.info("Removed " + txs.size() + " transactions from pool");
     }
+
+    /**
+     * Removes transactions in one pass over the pool, matching them by id; removeAll on the
+     * list would compare every pending transaction with every removed one.
+     */
+    private void removeById(List<Transaction> txs) {
+        Set<Hash256> ids = new HashSet<>();
+        for (Transaction tx : txs) {
+            if (pendingIds.remove(tx.getId()) != null) {
+                ids.add(tx.getId());
+            }
+        }
+        if (!ids.isEmpty()) {
+            pendingTransactions.removeIf(tx -> ids.contains(tx.getId()));
+        }
+    }
 }
\ No newline at end of file
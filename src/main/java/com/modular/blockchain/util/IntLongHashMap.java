@@ -0,0 +1,135 @@
+package com.modular.blockchain.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive int keys to primitive long values.
+ * Avoids the boxed Integer/Long entries of a HashMap, which dominate memory when
+ * the map holds one small value per key. Uses linear probing and grows at 50% load.
+ * {@link Integer#MIN_VALUE} is reserved as the empty-slot marker and cannot be used as a key.
+ * This class is not thread-safe.
+ */
+public class IntLongHashMap {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private long[] values;
+    private int size;
+
+    /**
+     * Creates an empty map with a small initial capacity.
+     */
+    public IntLongHashMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map sized for the expected number of keys.
+     *
+     * @param expectedSize Number of keys the map should hold without resizing
+     */
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Returns the value mapped to a key.
+     *
+     * @param key The key to look up
+     * @param defaultValue Value returned when the key is absent
+     * @return The mapped value, or defaultValue if the key is absent
+     */
+    public long get(int key, long defaultValue) {
+        int slot = find(key);
+        return keys[slot] == EMPTY ? defaultValue : values[slot];
+    }
+
+    /**
+     * Checks whether a key is present.
+     *
+     * @param key The key to look up
+     * @return true if the key has a mapping
+     */
+    public boolean containsKey(int key) {
+        return keys[find(key)] != EMPTY;
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous mapping.
+     *
+     * @param key The key, must not be {@link Integer#MIN_VALUE}
+     * @param value The value to store
+     */
+    public void put(int key, long value) {
+        int slot = insertionSlot(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Adds a delta to the value mapped to a key, treating an absent key as 0.
+     *
+     * @param key The key, must not be {@link Integer#MIN_VALUE}
+     * @param delta Amount to add, may be negative
+     * @return The new value
+     */
+    public long addTo(int key, long delta) {
+        int slot = insertionSlot(key);
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * @return The number of keys in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    private int insertionSlot(int key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Reserved key: " + key);
+        }
+        int slot = find(key);
+        if (keys[slot] == EMPTY) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        return slot;
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -23,6 +23,30 @@ public class Logger {
     private static final String LOG_FILE = LOG_DIR + File.separator + "server.log";
     // Flag to track if log directory has been created
     private static boolean logDirCreated = false;
+    // Most verbose level that is written; everything is written by default
+    private static volatile Level level = Level.DEBUG;
+
+    /**
+     * Sets the most verbose level that is written. ERROR writes only errors, INFO adds
+     * informational messages and DEBUG writes everything.
+     * @param level The most verbose level to write
+     */
+    public static void setLevel(Level level) {
+        Logger.level = level;
+    }
+
+    /**
+     * Ranks levels from least to most verbose
+     * @param level A logging level
+     * @return 0 for ERROR, 1 for INFO, 2 for DEBUG
+     */
+    private static int verbosity(Level level) {
+        return switch (level) {
+            case ERROR -> 0;
+            case INFO -> 1;
+            case DEBUG -> 2;
+        };
+    }
 
     /**
      * Ensures the logging directory exists, creates it if necessary
@@ -45,6 +69,7 @@ public class Logger {
      * @param message Content to be logged
      */
     public static void log(Level level, String message) {
+        if (verbosity(level) > verbosity(Logger.level)) return;
         String timestamp = LocalDateTime.now().format(formatter);
         String logMsg = "[" + timestamp + "] [" + level + "] " + message;
         System.out.println(logMsg);
@@ -8,7 +8,7 @@ import com.modular.blockchain.transaction.Transaction;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.util.Base64;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A simple cryptocurrency wallet implementation that manages keys and can sign transactions
@@ -19,7 +19,16 @@ public class SimpleWallet extends Wallet {
      * @param userId The unique identifier for this wallet's owner
      */
     public SimpleWallet(String userId) {
-        super(userId, new KeyPairInfo(CryptoUtils.generateKeyPair()));
+        this(userId, CryptoUtils.generateKeyPair());
+    }
+
+    /**
+     * Creates a wallet with the given user ID around an existing key pair
+     * @param userId The unique identifier for this wallet's owner
+     * @param keyPair The key pair the wallet signs with
+     */
+    public SimpleWallet(String userId, KeyPair keyPair) {
+        super(userId, new KeyPairInfo(keyPair));
     }
 
     /**
@@ -37,12 +46,24 @@ public class SimpleWallet extends Wallet {
      * @return A signed transaction ready to be submitted to the network
      */
     public SignedTransaction createTransaction(String receiverPublicKey, double amount) {
-        String id = UUID.randomUUID().toString();
-        SignedTransaction tx = new SignedTransaction(id, getPublicKeyBase64(), receiverPublicKey, amount);
+        SignedTransaction tx = newTransaction(receiverPublicKey, amount);
         tx.sign(keys.getKeyPair().getPrivate());
         return tx;
     }
 
+    /**
+     * Creates a new unsigned transaction to transfer funds to a receiver.
+     * Its id is already final, so it can be reported before {@link #signTransaction} is called.
+     * @param receiverPublicKey The receiver's public key in Base64 format
+     * @param amount The amount to transfer
+     * @return An unsigned transaction
+     */
+    public SignedTransaction newTransaction(String receiverPublicKey, double amount) {
+        // A random nonce keeps repeated transfers distinct; the id is derived from the content
+        long nonce = ThreadLocalRandom.current().nextLong();
+        return new SignedTransaction(getPublicKeyBase64(), receiverPublicKey, amount, nonce);
+    }
+
     /**
      * Signs transaction data with the wallet's private key
      * @param tx The transaction to sign
@@ -52,9 +73,7 @@ public class SimpleWallet extends Wallet {
     @Override
     public byte[] sign(Transaction tx) {
         if (tx instanceof SignedTransaction) {
-            // Concatenate transaction fields to create signing data
-            String data = tx.getId() + ((SignedTransaction)tx).getSenderPublicKey() + ((SignedTransaction)tx).getReceiverPublicKey() + ((SignedTransaction)tx).getAmount();
-            return CryptoUtils.sign(data.getBytes(), keys.getKeyPair().getPrivate());
+            return CryptoUtils.sign(((SignedTransaction) tx).getSigningBytes(), keys.getKeyPair().getPrivate());
         }
         throw new IllegalArgumentException("Unsupported transaction type");
     }
@@ -1,17 +1,21 @@
 package com.modular.blockchain.wallet;
 
 import com.modular.blockchain.util.Logger;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WalletStore provides persistent storage and management of user cryptocurrency wallets.
- * Implements an in-memory HashMap data structure to store wallet objects, using unique user IDs as keys.
+ * Implements an in-memory concurrent map to store wallet objects, using unique user IDs as keys.
  * Provides methods for adding, retrieving, removing and listing wallets.
+ * A version counter changes whenever the set of wallets changes, so callers can cheaply detect updates.
  */
 public class WalletStore {
     /** In-memory map that stores wallet objects indexed by their associated user ID */
-    private final Map<String, Wallet> store = new HashMap<>();
+    private final Map<String, Wallet> store = new ConcurrentHashMap<>();
+    /** Incremented on every add or remove */
+    private final AtomicLong version = new AtomicLong();
 
     /**
      * Adds a new wallet to the store.
@@ -20,6 +24,7 @@ public class WalletStore {
      */
     public void addWallet(Wallet w) {
         store.put(w.getUserId(), w);
+        version.incrementAndGet();
         Logger.info("Wallet added to store for user: " + w.getUserId());
     }
 
@@ -45,6 +50,7 @@ public class WalletStore {
      */
     public void removeWallet(String userId) {
         store.remove(userId);
+        version.incrementAndGet();
         Logger.info("Wallet removed from store for user: " + userId);
     }
 
@@ -55,4 +61,12 @@ public class WalletStore {
     public Iterable<String> getAllUserIds() {
         return store.keySet();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns a counter that changes whenever a wallet is added or removed.
+     * @return The current store version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+}